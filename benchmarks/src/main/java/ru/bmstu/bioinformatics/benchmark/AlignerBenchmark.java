@@ -0,0 +1,61 @@
+package ru.bmstu.bioinformatics.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.bmstu.bioinformatics.Aligner;
+import ru.bmstu.bioinformatics.AlignmentResult;
+import ru.bmstu.bioinformatics.AlignmentType;
+import ru.bmstu.bioinformatics.PairAlignment;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A reused {@link Aligner} against a new {@link PairAlignment} per pair. Run with {@code -prof gc}:
+ * {@code gc.alloc.rate.norm} of {@code alignerFill} is the steady-state allocation of the fill (zero bytes),
+ * that of {@code alignerAlign} is the result and its copy of the path only.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class AlignerBenchmark {
+
+    @State(Scope.Thread)
+    public static class ThreadAligner {
+        public Aligner aligner;
+
+        @Setup(Level.Trial)
+        public void create(AlignmentInput input) {
+            aligner = new Aligner(input.scoringFunction, AlignmentType.of(input.optimization));
+        }
+    }
+
+    @Benchmark
+    public PairAlignment pairAlignment(AlignmentInput input, CellCounter counter) {
+        counter.cells += input.cells();
+        return new PairAlignment(input.firstSequence, input.secondSequence, input.scoringFunction,
+                input.optimization);
+    }
+
+    @Benchmark
+    public AlignmentResult alignerAlign(AlignmentInput input, ThreadAligner threadAligner, CellCounter counter) {
+        counter.cells += input.cells();
+        return threadAligner.aligner.align(input.firstSequence, input.secondSequence);
+    }
+
+    @Benchmark
+    public int alignerFill(AlignmentInput input, ThreadAligner threadAligner, CellCounter counter) {
+        counter.cells += input.cells();
+        return threadAligner.aligner.fill(input.firstSequence, input.secondSequence);
+    }
+}
@@ -0,0 +1,87 @@
+package ru.bmstu.bioinformatics.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import ru.bmstu.bioinformatics.BLOSUM62;
+import ru.bmstu.bioinformatics.DNAFull;
+import ru.bmstu.bioinformatics.Default;
+import ru.bmstu.bioinformatics.ScoringFunction;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+/**
+ * One sequence pair per trial: a random sequence of the given length and a mutated copy of it.
+ * Peak heap usage of every measurement iteration is printed after it.
+ */
+@State(Scope.Benchmark)
+public class AlignmentInput {
+    private static final String DNA_FULL = "DNAFull", BLOSUM_62 = "BLOSUM62",
+            PEAK_HEAP_FORMAT = "%nPeak heap: %.1f MB%n";
+    private static final int SEED = 42, MATCH_DNA_FULL = 5, MISMATCH_DNA_FULL = -4, INDEL_DNA_FULL = -5,
+            INDEL_BLOSUM_62 = -4, INDEL_DEFAULT = -2, MATCH_DEFAULT = 1, MISMATCH_DEFAULT = -1;
+    private static final double BYTES_IN_MEGABYTE = 1024 * 1024;
+
+    @Param({"100", "1000", "10000"})
+    public int length;
+
+    @Param({"Default", "DNAFull", "BLOSUM62"})
+    public String alphabet;
+
+    @Param({"false", "true"})
+    public boolean optimization;
+
+    @Param({"0.9"})
+    public double identity;
+
+    public String firstSequence,
+            secondSequence;
+    public ScoringFunction scoringFunction;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        SequenceGenerator generator;
+        if (alphabet.equals(BLOSUM_62)) {
+            generator = new SequenceGenerator(SequenceGenerator.AMINO_ACIDS, SEED);
+            scoringFunction = new BLOSUM62(INDEL_BLOSUM_62);
+        } else if (alphabet.equals(DNA_FULL)) {
+            generator = new SequenceGenerator(SequenceGenerator.NUCLEOTIDES, SEED);
+            scoringFunction = new DNAFull(INDEL_DNA_FULL, MATCH_DNA_FULL, MISMATCH_DNA_FULL);
+        } else {
+            generator = new SequenceGenerator(SequenceGenerator.NUCLEOTIDES, SEED);
+            scoringFunction = new Default(INDEL_DEFAULT, MATCH_DEFAULT, MISMATCH_DEFAULT);
+        }
+
+        firstSequence = generator.random(length);
+        secondSequence = generator.mutate(firstSequence, identity);
+    }
+
+    public long cells() {
+        return (long) firstSequence.length() * secondSequence.length();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.out.printf(PEAK_HEAP_FORMAT, peak / BYTES_IN_MEGABYTE);
+    }
+}
@@ -0,0 +1,85 @@
+package ru.bmstu.bioinformatics.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.bmstu.bioinformatics.AlignmentType;
+import ru.bmstu.bioinformatics.BitParallelAlignment;
+import ru.bmstu.bioinformatics.Default;
+import ru.bmstu.bioinformatics.FullAlignment;
+import ru.bmstu.bioinformatics.ScoreOnlyAlignment;
+import ru.bmstu.bioinformatics.ScoringFunction;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BitParallelAlignment} against the scalar engines on the nucleotide pairs of {@link AlignmentInput}
+ * ({@code -p alphabet=Default}): the fill with the stored traceback against {@link FullAlignment}, and the score
+ * alone against {@link ScoreOnlyAlignment}. The scoring is Default (five levels) or unit costs (two levels).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class BitParallelAlignmentBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Scoring {
+        private static final String UNIT = "unit";
+        private static final int SINGLE_THREAD = 1, INDEL_DEFAULT = -2, MATCH_DEFAULT = 1, MISMATCH_DEFAULT = -1,
+                INDEL_UNIT = -1, MATCH_UNIT = 0, MISMATCH_UNIT = -1;
+
+        @Param({"default", "unit"})
+        public String scoring;
+
+        public ScoringFunction scoringFunction;
+        public AlignmentType type;
+        public int threads = SINGLE_THREAD;
+
+        @Setup(Level.Trial)
+        public void create(AlignmentInput input) {
+            scoringFunction = scoring.equals(UNIT)
+                    ? new Default(INDEL_UNIT, MATCH_UNIT, MISMATCH_UNIT)
+                    : new Default(INDEL_DEFAULT, MATCH_DEFAULT, MISMATCH_DEFAULT);
+            type = AlignmentType.of(input.optimization);
+        }
+    }
+
+    @Benchmark
+    public int fullFill(AlignmentInput input, Scoring scoring, CellCounter counter) {
+        counter.cells += input.cells();
+        return new FullAlignment(input.firstSequence, input.secondSequence, scoring.scoringFunction, scoring.type,
+                scoring.threads).fill();
+    }
+
+    @Benchmark
+    public int bitParallelFill(AlignmentInput input, Scoring scoring, CellCounter counter) {
+        counter.cells += input.cells();
+        return new BitParallelAlignment(input.firstSequence, input.secondSequence, scoring.scoringFunction,
+                scoring.type).fill();
+    }
+
+    @Benchmark
+    public int scoreOnly(AlignmentInput input, Scoring scoring, CellCounter counter) {
+        counter.cells += input.cells();
+        return new ScoreOnlyAlignment(input.firstSequence, input.secondSequence, scoring.scoringFunction,
+                scoring.type).score();
+    }
+
+    @Benchmark
+    public int bitParallelScore(AlignmentInput input, Scoring scoring, CellCounter counter) {
+        counter.cells += input.cells();
+        return new BitParallelAlignment(input.firstSequence, input.secondSequence, scoring.scoringFunction,
+                scoring.type).score();
+    }
+}
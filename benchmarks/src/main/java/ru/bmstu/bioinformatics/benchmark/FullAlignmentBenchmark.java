@@ -0,0 +1,68 @@
+package ru.bmstu.bioinformatics.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.bmstu.bioinformatics.AlignmentOperations;
+import ru.bmstu.bioinformatics.AlignmentType;
+import ru.bmstu.bioinformatics.FullAlignment;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The two steps of {@link FullAlignment} measured separately: the matrix fill (with an optional
+ * number of wavefront threads, e.g. -p threads=1,2,4,8) and the traceback of an already filled matrix.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class FullAlignmentBenchmark {
+    private static final int SINGLE_THREAD = 1;
+
+    @State(Scope.Benchmark)
+    public static class Threads {
+        @Param({"1"})
+        public int threads;
+    }
+
+    @State(Scope.Thread)
+    public static class FilledMatrix {
+        public FullAlignment fullAlignment;
+
+        @Setup(Level.Invocation)
+        public void fill(AlignmentInput input) {
+            fullAlignment = new FullAlignment(input.firstSequence, input.secondSequence, input.scoringFunction,
+                    AlignmentType.of(input.optimization), SINGLE_THREAD);
+            fullAlignment.fill();
+        }
+    }
+
+    @Benchmark
+    public int fill(AlignmentInput input, Threads threads, CellCounter counter) {
+        counter.cells += input.cells();
+        return new FullAlignment(input.firstSequence, input.secondSequence, input.scoringFunction,
+                AlignmentType.of(input.optimization), threads.threads).fill();
+    }
+
+    /**
+     * The matrix is refilled before every call, so short sequences are dominated by JMH's per-invocation overhead.
+     */
+    @Benchmark
+    public AlignmentOperations traceBack(AlignmentInput input, FilledMatrix matrix) {
+        AlignmentOperations operations = new AlignmentOperations(
+                input.firstSequence.length() + input.secondSequence.length());
+        matrix.fullAlignment.traceBack(operations);
+        return operations;
+    }
+}
@@ -0,0 +1,60 @@
+package ru.bmstu.bioinformatics.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.bmstu.bioinformatics.AlignmentType;
+import ru.bmstu.bioinformatics.DNAFull;
+import ru.bmstu.bioinformatics.PairAlignment;
+import ru.bmstu.bioinformatics.ScoringFunction;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local alignment of a nucleotide query against a long random target that holds a mutated copy of it
+ * in the middle, the query-against-genome scan of {@link AlignmentType#LOCAL}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class LocalAlignmentBenchmark {
+    private static final int SEED = 42, MATCH = 5, MISMATCH = -4, INDEL = -5;
+    private static final double IDENTITY = 0.9;
+
+    @Param({"1000"})
+    public int queryLength;
+
+    @Param({"100000", "5000000"})
+    public int targetLength;
+
+    public String query,
+            target;
+    public ScoringFunction scoringFunction;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        SequenceGenerator generator = new SequenceGenerator(SequenceGenerator.NUCLEOTIDES, SEED);
+        query = generator.random(queryLength);
+        target = generator.random(targetLength / 2) + generator.mutate(query, IDENTITY)
+                + generator.random(targetLength / 2);
+        scoringFunction = new DNAFull(INDEL, MATCH, MISMATCH);
+    }
+
+    @Benchmark
+    public PairAlignment local(CellCounter counter) {
+        counter.cells += (long) query.length() * target.length();
+        return new PairAlignment(query, target, scoringFunction, AlignmentType.LOCAL);
+    }
+}
@@ -0,0 +1,45 @@
+package ru.bmstu.bioinformatics.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.bmstu.bioinformatics.AlignmentStrategy;
+import ru.bmstu.bioinformatics.BandedAlignment;
+import ru.bmstu.bioinformatics.PairAlignment;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@link PairAlignment}: matrix fill, traceback and the alignment strings.
+ * Banded mode has no optimization, so it always runs without it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class PairAlignmentBenchmark {
+    private static final double DIVERGENCE = 0.1;
+
+    @Param({"FULL", "HIRSCHBERG", "BANDED"})
+    public AlignmentStrategy mode;
+
+    @Benchmark
+    public PairAlignment alignment(AlignmentInput input, CellCounter counter) {
+        counter.cells += input.cells();
+        if (mode == AlignmentStrategy.BANDED) {
+            return new PairAlignment(input.firstSequence, input.secondSequence, input.scoringFunction,
+                    BandedAlignment.autoBandWidth(input.firstSequence.length(), input.secondSequence.length(),
+                            DIVERGENCE));
+        } else return new PairAlignment(input.firstSequence, input.secondSequence, input.scoringFunction,
+                input.optimization, mode);
+    }
+}
@@ -0,0 +1,62 @@
+package ru.bmstu.bioinformatics.benchmark;
+
+import java.util.Random;
+
+/**
+ * Reproducible synthetic sequences: uniform random sequences and mutated copies with a controlled identity.
+ */
+public class SequenceGenerator {
+    public static final String NUCLEOTIDES = "ACGT", AMINO_ACIDS = "ARNDCQEGHILKMFPSTWYV";
+    private static final double SUBSTITUTION_SHARE = 0.8, INSERTION_SHARE = 0.9;
+
+    private String symbols;
+    private Random random;
+
+    public SequenceGenerator(String symbols, long seed) {
+        this.symbols = symbols;
+        this.random = new Random(seed);
+    }
+
+    private char randomSymbol() {
+        return symbols.charAt(random.nextInt(symbols.length()));
+    }
+
+    private char otherSymbol(char symbol) {
+        char other;
+        do {
+            other = randomSymbol();
+        } while (other == symbol && symbols.length() > 1);
+        return other;
+    }
+
+    public String random(int length) {
+        StringBuilder stringBuilder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            stringBuilder.append(randomSymbol());
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Copy of the sequence in which a (1 - identity) fraction of the positions is mutated:
+     * 80% of the mutations are substitutions, 10% insertions and 10% deletions.
+     */
+    public String mutate(String sequence, double identity) {
+        StringBuilder stringBuilder = new StringBuilder(sequence.length());
+        for (int i = 0; i < sequence.length(); i++) {
+            char symbol = sequence.charAt(i);
+            if (random.nextDouble() < identity) {
+                stringBuilder.append(symbol);
+                continue;
+            }
+
+            double kind = random.nextDouble();
+            if (kind < SUBSTITUTION_SHARE) {
+                stringBuilder.append(otherSymbol(symbol));
+            } else if (kind < INSERTION_SHARE) {
+                stringBuilder.append(symbol).append(randomSymbol());
+            }
+        }
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,182 @@
+package ru.bmstu.bioinformatics;
+
+/**
+ * Global alignment with affine gaps (Gotoh): a gap of length k scores gapOpen + gapExtend * (k - 1).
+ * The match, horizontal gap and vertical gap layers are kept in rolling lines and the traceback
+ * in an {@link AffineTracebackMatrix}. With gapOpen equal to gapExtend the result is the same
+ * as the linear-gap {@link PairAlignment}.
+ */
+public class AffineAlignment {
+    private final int ZERO = 0, GAP_INDEX = 0, ONE = 1, FIRST_INDEX = 1, LINE_INDEX = 0, COLUMN_INDEX = 1,
+            MINUS_INFINITY = Integer.MIN_VALUE / 2;
+
+    private CharSequence firstSequence,
+            secondSequence;
+    private byte[] firstCodes,
+            secondCodes;
+    private int[] table;
+    private int gapOpen,
+            gapExtend;
+    private AlignmentType type;
+
+    private AffineTracebackMatrix traceback;
+    private int optimalLineIndex,
+            optimalColumnIndex;
+
+    public AffineAlignment(CharSequence firstSequence, CharSequence secondSequence, ScoringFunction scoringFunction,
+                           int gapOpen, int gapExtend, AlignmentType type) {
+        if (type.isLocal()) {
+            throw new IllegalArgumentException("Local alignment with affine gaps is not supported");
+        }
+        this.firstSequence = firstSequence;
+        this.secondSequence = secondSequence;
+        this.firstCodes = scoringFunction.encode(firstSequence);
+        this.secondCodes = scoringFunction.encode(secondSequence);
+        this.table = scoringFunction.getTable();
+        this.gapOpen = gapOpen;
+        this.gapExtend = gapExtend;
+        this.type = type;
+    }
+
+    private int gapValue(int length, boolean free) {
+        return free || length == ZERO
+                ? ZERO
+                : gapOpen + gapExtend * (length - ONE);
+    }
+
+    /**
+     * Fills the matrix and returns {lastLine, lastColumn} of the best-state scores.
+     */
+    private int[][] fillScoringMatrix() {
+        int lines = secondSequence.length() + ONE,
+                columns = firstSequence.length() + ONE;
+        int[] previousLine = new int[columns], currentLine = new int[columns],
+                previousVertical = new int[columns], currentVertical = new int[columns],
+                lastColumn = new int[lines];
+
+        traceback.set(GAP_INDEX, GAP_INDEX, PredecessorType.NULL, false, false);
+        for (int columnIndex = FIRST_INDEX; columnIndex < columns; columnIndex++) {
+            previousLine[columnIndex] = gapValue(columnIndex, type.isFirstStartFree());
+            previousVertical[columnIndex] = MINUS_INFINITY;
+            traceback.set(GAP_INDEX, columnIndex, PredecessorType.LEFT, columnIndex > FIRST_INDEX, false);
+        }
+        lastColumn[GAP_INDEX] = previousLine[columns - ONE];
+
+        for (int lineIndex = FIRST_INDEX; lineIndex < lines; lineIndex++) {
+            int secondCode = secondCodes[lineIndex - ONE];
+            int horizontal = MINUS_INFINITY;
+            currentLine[GAP_INDEX] = gapValue(lineIndex, type.isSecondStartFree());
+            traceback.set(lineIndex, GAP_INDEX, PredecessorType.UP, false, lineIndex > FIRST_INDEX);
+
+            for (int columnIndex = FIRST_INDEX; columnIndex < columns; columnIndex++) {
+                int verticalOpen = previousLine[columnIndex] + gapOpen,
+                        verticalExtend = previousVertical[columnIndex] + gapExtend,
+                        horizontalOpen = currentLine[columnIndex - ONE] + gapOpen,
+                        horizontalExtend = horizontal + gapExtend;
+                boolean verticalExtension = verticalExtend > verticalOpen,
+                        horizontalExtension = horizontalExtend > horizontalOpen;
+                int vertical = verticalExtension ? verticalExtend : verticalOpen;
+                horizontal = horizontalExtension ? horizontalExtend : horizontalOpen;
+
+                int currentMaximum = previousLine[columnIndex - ONE]
+                        + table[firstCodes[columnIndex - ONE] * ScoringFunction.ALPHABET_SIZE + secondCode];
+                PredecessorType currentType = PredecessorType.DIAG;
+                if (vertical > currentMaximum) {
+                    currentMaximum = vertical;
+                    currentType = PredecessorType.UP;
+                }
+                if (horizontal > currentMaximum) {
+                    currentMaximum = horizontal;
+                    currentType = PredecessorType.LEFT;
+                }
+
+                currentLine[columnIndex] = currentMaximum;
+                currentVertical[columnIndex] = vertical;
+                traceback.set(lineIndex, columnIndex, currentType, horizontalExtension, verticalExtension);
+            }
+
+            lastColumn[lineIndex] = currentLine[columns - ONE];
+            int[] swap = previousLine;
+            previousLine = currentLine;
+            currentLine = swap;
+            swap = previousVertical;
+            previousVertical = currentVertical;
+            currentVertical = swap;
+        }
+
+        return new int[][]{previousLine, lastColumn};
+    }
+
+    private void traceBack(AlignmentOperations operations) {
+        byte[] block = new byte[optimalLineIndex + optimalColumnIndex];
+        int position = block.length,
+                lineIndex = optimalLineIndex,
+                columnIndex = optimalColumnIndex;
+        PredecessorType state = traceback.get(lineIndex, columnIndex);
+
+        while (state != PredecessorType.NULL) {
+            position--;
+            block[position] = (byte) state.ordinal();
+            switch (state) {
+                case DIAG:
+                    lineIndex--;
+                    columnIndex--;
+                    state = traceback.get(lineIndex, columnIndex);
+                    break;
+                case LEFT:
+                    state = traceback.isHorizontalExtension(lineIndex, columnIndex)
+                            ? PredecessorType.LEFT
+                            : traceback.get(lineIndex, columnIndex - ONE);
+                    columnIndex--;
+                    break;
+                case UP:
+                    state = traceback.isVerticalExtension(lineIndex, columnIndex)
+                            ? PredecessorType.UP
+                            : traceback.get(lineIndex - ONE, columnIndex);
+                    lineIndex--;
+                    break;
+            }
+        }
+
+        operations.append(block, position, block.length - position);
+    }
+
+    /**
+     * Appends the optimal alignment path to the operations and returns its score.
+     * With a free end the unaligned tail after the optimal cell is left to the caller.
+     */
+    public int align(AlignmentOperations operations) {
+        AlignmentMetrics.Probe probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.FILL);
+        traceback = new AffineTracebackMatrix(secondSequence.length() + ONE, firstSequence.length() + ONE);
+        int[][] borders = fillScoringMatrix();
+        int[] lastLine = borders[LINE_INDEX], lastColumn = borders[COLUMN_INDEX];
+
+        optimalLineIndex = secondSequence.length();
+        optimalColumnIndex = firstSequence.length();
+        if (type.hasFreeEnd()) {
+            int[] optimalScoreCell = type.findOptimalCell(lastLine, lastColumn);
+            optimalLineIndex = optimalScoreCell[LINE_INDEX];
+            optimalColumnIndex = optimalScoreCell[COLUMN_INDEX];
+        }
+        int score = optimalLineIndex == secondSequence.length()
+                ? lastLine[optimalColumnIndex]
+                : lastColumn[optimalLineIndex];
+        AlignmentMetrics.recordMatrixBytes(traceback.getBytes());
+        AlignmentMetrics.end(probe, (long) secondSequence.length() * firstSequence.length());
+
+        probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.TRACEBACK);
+        int size = operations.size();
+        traceBack(operations);
+        AlignmentMetrics.end(probe, operations.size() - size);
+        traceback = null;
+        return score;
+    }
+
+    public int getOptimalLineIndex() {
+        return optimalLineIndex;
+    }
+
+    public int getOptimalColumnIndex() {
+        return optimalColumnIndex;
+    }
+}
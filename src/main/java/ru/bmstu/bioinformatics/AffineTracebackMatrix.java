@@ -0,0 +1,63 @@
+package ru.bmstu.bioinformatics;
+
+/**
+ * Traceback for affine gaps: 4 bits per cell holding the predecessor of the best state
+ * and whether the horizontal and vertical gap states extend an existing gap.
+ */
+public class AffineTracebackMatrix {
+    private final int CELLS_PER_WORD_SHIFT = 4, CELL_IN_WORD_MASK = 15, BITS_PER_CELL_SHIFT = 2,
+            TYPE_MASK = 3, HORIZONTAL_EXTENSION = 4, VERTICAL_EXTENSION = 8;
+    private final long CELL_MASK = 15L;
+    private static final PredecessorType[] TYPES = PredecessorType.values();
+
+    private long[] words;
+    private int stride;
+
+    private long cellIndex(int lineIndex, int columnIndex) {
+        return (long) lineIndex * stride + columnIndex;
+    }
+
+    private int cell(int lineIndex, int columnIndex) {
+        long index = cellIndex(lineIndex, columnIndex);
+        int word = (int) (index >>> CELLS_PER_WORD_SHIFT),
+                shift = (int) (index & CELL_IN_WORD_MASK) << BITS_PER_CELL_SHIFT;
+        return (int) ((words[word] >>> shift) & CELL_MASK);
+    }
+
+    public AffineTracebackMatrix(int lines, int columns) {
+        this.stride = (columns + CELL_IN_WORD_MASK) & ~CELL_IN_WORD_MASK;
+        long cells = (long) lines * stride;
+        long size = (cells + CELL_IN_WORD_MASK) >>> CELLS_PER_WORD_SHIFT;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Traceback of " + lines + "x" + columns + " cells is too large");
+        }
+        words = new long[(int) size];
+    }
+
+    public long getBytes() {
+        return (long) words.length * Long.BYTES;
+    }
+
+    public void set(int lineIndex, int columnIndex, PredecessorType predecessorType,
+                    boolean horizontalExtension, boolean verticalExtension) {
+        long index = cellIndex(lineIndex, columnIndex);
+        int word = (int) (index >>> CELLS_PER_WORD_SHIFT),
+                shift = (int) (index & CELL_IN_WORD_MASK) << BITS_PER_CELL_SHIFT;
+        long value = predecessorType.ordinal()
+                | (horizontalExtension ? HORIZONTAL_EXTENSION : 0)
+                | (verticalExtension ? VERTICAL_EXTENSION : 0);
+        words[word] = (words[word] & ~(CELL_MASK << shift)) | (value << shift);
+    }
+
+    public PredecessorType get(int lineIndex, int columnIndex) {
+        return TYPES[cell(lineIndex, columnIndex) & TYPE_MASK];
+    }
+
+    public boolean isHorizontalExtension(int lineIndex, int columnIndex) {
+        return (cell(lineIndex, columnIndex) & HORIZONTAL_EXTENSION) != 0;
+    }
+
+    public boolean isVerticalExtension(int lineIndex, int columnIndex) {
+        return (cell(lineIndex, columnIndex) & VERTICAL_EXTENSION) != 0;
+    }
+}
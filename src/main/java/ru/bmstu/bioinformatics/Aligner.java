@@ -0,0 +1,104 @@
+package ru.bmstu.bioinformatics;
+
+/**
+ * Reusable full-matrix aligner with linear gaps for aligning many pairs, e.g. one per worker thread of a service.
+ * The traceback matrix, the codes, the lines and the path buffer are kept between calls and only grow, so once
+ * they fit the largest pair seen the fill allocates nothing; each call returns an {@link AlignmentResult} with its
+ * own copy of the path. Buffers above {@code retainedCells} traceback cells are dropped after the call, so a single
+ * huge pair does not pin its matrix for the lifetime of the aligner.
+ * <p>
+ * An aligner is not thread-safe: confine it to one thread or share aligners through an {@link AlignerPool}.
+ * Local alignment locates the region with {@link LocalAlignment}, which allocates its own O(min(n, m)) lines,
+ * and aligns only the region with the reused buffers.
+ */
+public class Aligner {
+    public static final long DEFAULT_RETAINED_CELLS = 1L << 26;
+    private static final String EVENT_MODE = "aligner";
+    private final int ZERO = 0;
+
+    private ScoringFunction scoringFunction;
+    private AlignmentType type;
+    private long retainedCells;
+
+    private FullAlignment fullAlignment;
+    private AlignmentOperations operations = new AlignmentOperations(ZERO);
+
+    public Aligner(ScoringFunction scoringFunction, AlignmentType type, long retainedCells) {
+        this.scoringFunction = scoringFunction;
+        this.type = type;
+        this.retainedCells = retainedCells;
+        this.fullAlignment = new FullAlignment(scoringFunction, type.isLocal() ? AlignmentType.GLOBAL : type);
+    }
+
+    public Aligner(ScoringFunction scoringFunction, AlignmentType type) {
+        this(scoringFunction, type, DEFAULT_RETAINED_CELLS);
+    }
+
+    private int alignRegion(CharSequence firstSequence, CharSequence secondSequence) {
+        fullAlignment.reset(firstSequence, secondSequence);
+        int score = fullAlignment.fill();
+        fullAlignment.traceBack(operations);
+        operations.appendUnaligned(fullAlignment.getOptimalLineIndex(), fullAlignment.getOptimalColumnIndex(),
+                secondSequence.length(), firstSequence.length());
+        return score;
+    }
+
+    private void trim() {
+        if (fullAlignment.getRetainedCells() > retainedCells) {
+            fullAlignment.release();
+            operations = new AlignmentOperations(ZERO);
+        }
+    }
+
+    public AlignmentResult align(CharSequence firstSequence, CharSequence secondSequence) {
+        AlignmentEvent event = AlignmentEvent.start();
+        operations.clear();
+        try {
+            AlignmentResult result;
+            long cells = (long) firstSequence.length() * secondSequence.length();
+            if (!type.isLocal()) {
+                int score = alignRegion(firstSequence, secondSequence);
+                result = new AlignmentResult(firstSequence, secondSequence, operations.copy(), score, ZERO, ZERO);
+            } else {
+                LocalAlignment localAlignment = new LocalAlignment(firstSequence, secondSequence, scoringFunction);
+                localAlignment.locate();
+                cells += (long) (localAlignment.getFirstEnd() - localAlignment.getFirstStart())
+                        * (localAlignment.getSecondEnd() - localAlignment.getSecondStart());
+                alignRegion(firstSequence.subSequence(localAlignment.getFirstStart(), localAlignment.getFirstEnd()),
+                        secondSequence.subSequence(localAlignment.getSecondStart(), localAlignment.getSecondEnd()));
+                result = new AlignmentResult(firstSequence, secondSequence, operations.copy(),
+                        localAlignment.getScore(), localAlignment.getFirstStart(), localAlignment.getSecondStart());
+            }
+            AlignmentEvent.finish(event, EVENT_MODE, type, firstSequence.length(), secondSequence.length(), cells,
+                    result.getScore());
+            return result;
+        } finally {
+            trim();
+        }
+    }
+
+    /**
+     * Only the matrix fill of a global, semi-global or overlap alignment: the score without the path.
+     * For scores alone {@link ScoreOnlyAlignment} needs far less memory; this is the allocation-free fill
+     * that {@link #align(CharSequence, CharSequence)} runs before its traceback.
+     */
+    public int fill(CharSequence firstSequence, CharSequence secondSequence) {
+        if (type.isLocal()) {
+            throw new IllegalArgumentException("Local alignment has no full-matrix fill");
+        }
+        fullAlignment.reset(firstSequence, secondSequence);
+        try {
+            return fullAlignment.fill();
+        } finally {
+            trim();
+        }
+    }
+
+    public ScoringFunction getScoringFunction() {
+        return scoringFunction;
+    }
+
+    public AlignmentType getType() {
+        return type;
+    }
+}
@@ -0,0 +1,58 @@
+package ru.bmstu.bioinformatics;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Thread-safe source of {@link Aligner}s with the same scoring and type, for sharing warm buffers across the
+ * threads of a request executor. An aligner is taken for one or more pairs and given back; a new one is created
+ * when none is idle, and at most {@code maximumIdle} are kept, so the pool never holds more buffers than the
+ * busiest moment needed.
+ */
+public class AlignerPool {
+    private ScoringFunction scoringFunction;
+    private AlignmentType type;
+    private long retainedCells;
+    private BlockingQueue<Aligner> idle;
+
+    public AlignerPool(ScoringFunction scoringFunction, AlignmentType type, int maximumIdle, long retainedCells) {
+        this.scoringFunction = scoringFunction;
+        this.type = type;
+        this.retainedCells = retainedCells;
+        this.idle = new ArrayBlockingQueue<>(maximumIdle);
+    }
+
+    public AlignerPool(ScoringFunction scoringFunction, AlignmentType type, int maximumIdle) {
+        this(scoringFunction, type, maximumIdle, Aligner.DEFAULT_RETAINED_CELLS);
+    }
+
+    /**
+     * An idle aligner, or a new one; it belongs to the caller until {@link #release(Aligner)}.
+     */
+    public Aligner acquire() {
+        Aligner aligner = idle.poll();
+        return aligner != null
+                ? aligner
+                : new Aligner(scoringFunction, type, retainedCells);
+    }
+
+    /**
+     * Returns an aligner of this pool; it is dropped if the pool already keeps enough idle ones.
+     */
+    public void release(Aligner aligner) {
+        idle.offer(aligner);
+    }
+
+    public AlignmentResult align(CharSequence firstSequence, CharSequence secondSequence) {
+        Aligner aligner = acquire();
+        try {
+            return aligner.align(firstSequence, secondSequence);
+        } finally {
+            release(aligner);
+        }
+    }
+
+    public int getIdle() {
+        return idle.size();
+    }
+}
@@ -0,0 +1,72 @@
+package ru.bmstu.bioinformatics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of one pairwise alignment, so slow pairs can be lined up with GC pauses and safepoints in a recording
+ * ({@code -XX:StartFlightRecording}). While no recording enables the event, {@link #start()} returns null and
+ * nothing is allocated; fields are only filled and the event committed when the recording wants it.
+ */
+@Name("ru.bmstu.bioinformatics.Alignment")
+@Label("Alignment")
+@Category("Alignment")
+@Description("One pairwise alignment")
+class AlignmentEvent extends Event {
+    private static final EventType TYPE = EventType.getEventType(AlignmentEvent.class);
+
+    @Label("Mode")
+    String mode;
+
+    @Label("Type")
+    String type;
+
+    @Label("First Length")
+    int firstLength;
+
+    @Label("Second Length")
+    int secondLength;
+
+    @Label("Cells")
+    @Description("Matrix cells the engine computed")
+    long cells;
+
+    @Label("Score")
+    int score;
+
+    /**
+     * Started event; {@code null} when no recording enables it.
+     */
+    static AlignmentEvent start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        AlignmentEvent event = new AlignmentEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits an event of {@link #start()} if the recording wants it; {@code cells} are those the engine computed.
+     */
+    static void finish(AlignmentEvent event, String mode, AlignmentType alignmentType, int firstLength,
+                       int secondLength, long cells, int alignmentScore) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.mode = mode;
+            event.type = alignmentType.toString();
+            event.firstLength = firstLength;
+            event.secondLength = secondLength;
+            event.cells = cells;
+            event.score = alignmentScore;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package ru.bmstu.bioinformatics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide timing and size counters of the alignment phases, off by default.
+ * Engines wrap each phase in {@link #begin(Phase)} and {@link #end(Probe, long)}; while disabled {@code begin}
+ * is a single volatile read that returns {@code null}, and nothing is counted per cell, so the overhead is one
+ * branch per phase. Each phase counts calls, time, its own size unit (symbols parsed, matrices loaded, cells
+ * filled, columns traced back or written) and the bytes allocated by the calling thread; threads of a parallel
+ * fill are not included. The counters are published through JMX (see {@link #register()}) and as JSON.
+ */
+public final class AlignmentMetrics implements AlignmentMetricsMXBean {
+    public static final String OBJECT_NAME = "ru.bmstu.bioinformatics:type=AlignmentMetrics";
+    private static final double NANOSECONDS_IN_SECOND = 1e9, CELLS_IN_GIGACELL = 1e9;
+    private static final int COUNT = 0, NANOSECONDS = 1, MAXIMUM_NANOSECONDS = 2, UNITS = 3, ALLOCATED_BYTES = 4,
+            FIELDS = 5;
+
+    private static final AlignmentMetrics INSTANCE = new AlignmentMetrics();
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+    private static volatile boolean enabled;
+
+    private final Phase[] phases = Phase.values();
+    private final AtomicLongArray counters = new AtomicLongArray(phases.length * FIELDS);
+    private final AtomicLong peakMatrixBytes = new AtomicLong();
+
+    public enum Phase {
+        PARSE("parse"),
+        MATRIX_LOAD("matrixLoad"),
+        FILL("fill"),
+        TRACEBACK("traceback"),
+        OUTPUT("output");
+
+        private final String name;
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * Start of one measured phase; {@code null} when metrics are disabled.
+     */
+    public static final class Probe {
+        private final Phase phase;
+        private final long start,
+                allocatedBytes;
+
+        private Probe(Phase phase) {
+            this.phase = phase;
+            this.allocatedBytes = allocatedBytes();
+            this.start = System.nanoTime();
+        }
+    }
+
+    /**
+     * Snapshot of one phase.
+     */
+    public static final class PhaseStatistics {
+        private final long count,
+                nanoseconds,
+                maximumNanoseconds,
+                units,
+                allocatedBytes;
+
+        private PhaseStatistics(long count, long nanoseconds, long maximumNanoseconds, long units,
+                                long allocatedBytes) {
+            this.count = count;
+            this.nanoseconds = nanoseconds;
+            this.maximumNanoseconds = maximumNanoseconds;
+            this.units = units;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getNanoseconds() {
+            return nanoseconds;
+        }
+
+        public long getMaximumNanoseconds() {
+            return maximumNanoseconds;
+        }
+
+        public long getUnits() {
+            return units;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+
+    private AlignmentMetrics() {
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+            return (com.sun.management.ThreadMXBean) threads;
+        } else return null;
+    }
+
+    private static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    public static AlignmentMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    public static Probe begin(Phase phase) {
+        return enabled ? new Probe(phase) : null;
+    }
+
+    /**
+     * Ends the phase started by {@link #begin(Phase)} with its size in the phase unit; no-op for {@code null}.
+     */
+    public static void end(Probe probe, long units) {
+        if (probe == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - probe.start,
+                allocated = allocatedBytes() - probe.allocatedBytes;
+        int base = probe.phase.ordinal() * FIELDS;
+        AtomicLongArray counters = INSTANCE.counters;
+        counters.incrementAndGet(base + COUNT);
+        counters.addAndGet(base + NANOSECONDS, elapsed);
+        counters.accumulateAndGet(base + MAXIMUM_NANOSECONDS, elapsed, Math::max);
+        counters.addAndGet(base + UNITS, units);
+        counters.addAndGet(base + ALLOCATED_BYTES, allocated);
+    }
+
+    /**
+     * Size of a dynamic programming matrix just allocated or reused; the largest one is kept.
+     */
+    public static void recordMatrixBytes(long bytes) {
+        if (enabled) {
+            INSTANCE.peakMatrixBytes.accumulateAndGet(bytes, Math::max);
+        }
+    }
+
+    public static boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Registers the MXBean with the platform MBean server; repeated calls are ignored.
+     */
+    public static void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Already published.
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    public PhaseStatistics getPhase(Phase phase) {
+        int base = phase.ordinal() * FIELDS;
+        return new PhaseStatistics(counters.get(base + COUNT), counters.get(base + NANOSECONDS),
+                counters.get(base + MAXIMUM_NANOSECONDS), counters.get(base + UNITS),
+                counters.get(base + ALLOCATED_BYTES));
+    }
+
+    @Override
+    public Map<String, PhaseStatistics> getPhases() {
+        Map<String, PhaseStatistics> statistics = new LinkedHashMap<>();
+        for (Phase phase : phases) {
+            statistics.put(phase.getName(), getPhase(phase));
+        }
+        return statistics;
+    }
+
+    @Override
+    public long getCells() {
+        return getPhase(Phase.FILL).getUnits();
+    }
+
+    /**
+     * Billions of cells filled per second of fill time.
+     */
+    @Override
+    public double getGcups() {
+        PhaseStatistics fill = getPhase(Phase.FILL);
+        return fill.getNanoseconds() == 0
+                ? 0
+                : fill.getUnits() / CELLS_IN_GIGACELL / (fill.getNanoseconds() / NANOSECONDS_IN_SECOND);
+    }
+
+    @Override
+    public long getPeakMatrixBytes() {
+        return peakMatrixBytes.get();
+    }
+
+    @Override
+    public String getJson() {
+        StringBuilder json = new StringBuilder(String.format(Locale.ROOT,
+                "{\"enabled\":%b,\"cells\":%d,\"gcups\":%.3f,\"peakMatrixBytes\":%d,\"phases\":{",
+                enabled, getCells(), getGcups(), getPeakMatrixBytes()));
+        for (Phase phase : phases) {
+            PhaseStatistics statistics = getPhase(phase);
+            json.append(phase.ordinal() == 0 ? "" : ",").append(String.format(Locale.ROOT,
+                    "\"%s\":{\"count\":%d,\"seconds\":%.6f,\"maximumSeconds\":%.6f,\"units\":%d,"
+                            + "\"allocatedBytes\":%d}",
+                    phase.getName(), statistics.getCount(), statistics.getNanoseconds() / NANOSECONDS_IN_SECOND,
+                    statistics.getMaximumNanoseconds() / NANOSECONDS_IN_SECOND, statistics.getUnits(),
+                    statistics.getAllocatedBytes()));
+        }
+        return json.append("}}").toString();
+    }
+
+    @Override
+    public void reset() {
+        for (int index = 0; index < counters.length(); index++) {
+            counters.set(index, 0);
+        }
+        peakMatrixBytes.set(0);
+    }
+}
@@ -0,0 +1,27 @@
+package ru.bmstu.bioinformatics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link AlignmentMetrics}, registered as {@value AlignmentMetrics#OBJECT_NAME}.
+ */
+public interface AlignmentMetricsMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * Statistics by phase name: parse, matrixLoad, fill, traceback and output.
+     */
+    Map<String, AlignmentMetrics.PhaseStatistics> getPhases();
+
+    long getCells();
+
+    double getGcups();
+
+    long getPeakMatrixBytes();
+
+    String getJson();
+
+    void reset();
+}
@@ -0,0 +1,76 @@
+package ru.bmstu.bioinformatics;
+
+import java.util.Arrays;
+
+/**
+ * Alignment path stored as one byte per alignment column: the {@link PredecessorType} ordinal of the move
+ * (LEFT takes a character of the first sequence, UP of the second one, DIAG of both).
+ * Engines trace back into a block from its end and append the filled part here in forward order,
+ * so the traceback stays linear in the alignment length.
+ */
+public class AlignmentOperations {
+    private static final PredecessorType[] TYPES = PredecessorType.values();
+    private static final int MIN_CAPACITY = 16, GROWTH_FACTOR = 2;
+
+    private byte[] operations;
+    private int size;
+
+    public AlignmentOperations(int capacity) {
+        operations = new byte[Math.max(MIN_CAPACITY, capacity)];
+    }
+
+    private void ensureCapacity(int additional) {
+        if (size + additional > operations.length) {
+            operations = Arrays.copyOf(operations, Math.max(size + additional, operations.length * GROWTH_FACTOR));
+        }
+    }
+
+    public void append(byte[] block, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(block, offset, operations, size, length);
+        size += length;
+    }
+
+    public void append(PredecessorType type, int count) {
+        ensureCapacity(count);
+        Arrays.fill(operations, size, size + count, (byte) type.ordinal());
+        size += count;
+    }
+
+    /**
+     * Appends the unaligned tail after an alignment that ended at (lineIndex, columnIndex) before the end
+     * of one of the sequences; lines follow the second sequence and columns the first one.
+     */
+    public void appendUnaligned(int lineIndex, int columnIndex, int lines, int columns) {
+        if (lineIndex != lines) {
+            append(PredecessorType.UP, lines - lineIndex);
+        } else if (columnIndex != columns) {
+            append(PredecessorType.LEFT, columns - columnIndex);
+        }
+    }
+
+    /**
+     * Empties the operations and keeps the buffer for reuse.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Copy trimmed to the current size.
+     */
+    public AlignmentOperations copy() {
+        AlignmentOperations copy = new AlignmentOperations(size);
+        System.arraycopy(operations, 0, copy.operations, 0, size);
+        copy.size = size;
+        return copy;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public PredecessorType get(int index) {
+        return TYPES[operations[index]];
+    }
+}
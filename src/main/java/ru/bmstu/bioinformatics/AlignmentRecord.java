@@ -0,0 +1,159 @@
+package ru.bmstu.bioinformatics;
+
+/**
+ * Compact, immutable summary of one pairwise alignment for the SAM, PAF and binary writers: the score,
+ * the coordinates of the aligned block, its identity and a run-length CIGAR.
+ * <p>
+ * The first sequence of the pair is the query and the second one the target, as for reads aligned
+ * to references in batch mode. The block runs from the first to the last aligned pair of the path; end gaps
+ * outside it are left out, so the unaligned ends of the query become soft clips in SAM.
+ * Coordinates are 0-based and end-exclusive. A path without aligned pairs gives an unmapped record.
+ */
+public final class AlignmentRecord {
+    /**
+     * CIGAR operation codes of the BAM format: aligned pair, query symbol only, target symbol only, soft clip.
+     */
+    public static final int MATCH = 0, INSERTION = 1, DELETION = 2, SOFT_CLIP = 4;
+    static final int OPERATION_BITS = 4, OPERATION_MASK = 15;
+    private static final String OPERATIONS = "MIDNS";
+
+    private final String queryName,
+            targetName;
+    private final int queryLength,
+            queryStart,
+            queryEnd,
+            targetLength,
+            targetStart,
+            targetEnd;
+    private final int score,
+            matches,
+            edits;
+    private final int[] cigar;
+
+    /**
+     * The runs are {@code length << OPERATION_BITS | operation} and are not copied.
+     */
+    AlignmentRecord(String queryName, String targetName, int queryLength, int queryStart, int queryEnd,
+                    int targetLength, int targetStart, int targetEnd, int score, int matches, int edits,
+                    int[] cigar) {
+        this.queryName = queryName;
+        this.targetName = targetName;
+        this.queryLength = queryLength;
+        this.queryStart = queryStart;
+        this.queryEnd = queryEnd;
+        this.targetLength = targetLength;
+        this.targetStart = targetStart;
+        this.targetEnd = targetEnd;
+        this.score = score;
+        this.matches = matches;
+        this.edits = edits;
+        this.cigar = cigar;
+    }
+
+    public String getQueryName() {
+        return queryName;
+    }
+
+    public String getTargetName() {
+        return targetName;
+    }
+
+    public int getQueryLength() {
+        return queryLength;
+    }
+
+    public int getQueryStart() {
+        return queryStart;
+    }
+
+    public int getQueryEnd() {
+        return queryEnd;
+    }
+
+    public int getTargetLength() {
+        return targetLength;
+    }
+
+    public int getTargetStart() {
+        return targetStart;
+    }
+
+    public int getTargetEnd() {
+        return targetEnd;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Aligned pairs of identical symbols.
+     */
+    public int getMatches() {
+        return matches;
+    }
+
+    /**
+     * Edit distance within the block: mismatches plus inserted and deleted symbols, the NM tag of SAM.
+     */
+    public int getEdits() {
+        return edits;
+    }
+
+    public boolean isMapped() {
+        return cigar.length > 0;
+    }
+
+    public int getNumberOfRuns() {
+        return cigar.length;
+    }
+
+    public int getRunLength(int run) {
+        return cigar[run] >>> OPERATION_BITS;
+    }
+
+    public int getRunOperation(int run) {
+        return cigar[run] & OPERATION_MASK;
+    }
+
+    int getRun(int run) {
+        return cigar[run];
+    }
+
+    /**
+     * Number of alignment columns in the block.
+     */
+    public int getBlockLength() {
+        int length = 0;
+        for (int run : cigar) {
+            length += run >>> OPERATION_BITS;
+        }
+        return length;
+    }
+
+    /**
+     * Matches per column of the block; 0 for an unmapped record.
+     */
+    public double getIdentity() {
+        int length = getBlockLength();
+        return length == 0 ? 0 : (double) matches / length;
+    }
+
+    static char operationSymbol(int operation) {
+        return OPERATIONS.charAt(operation);
+    }
+
+    /**
+     * Appends the CIGAR of the block, without clips.
+     */
+    public StringBuilder appendCigar(StringBuilder stringBuilder) {
+        for (int run : cigar) {
+            stringBuilder.append(run >>> OPERATION_BITS).append(operationSymbol(run & OPERATION_MASK));
+        }
+        return stringBuilder;
+    }
+
+    public String getCigar() {
+        return appendCigar(new StringBuilder()).toString();
+    }
+}
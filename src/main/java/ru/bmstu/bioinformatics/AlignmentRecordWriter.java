@@ -0,0 +1,42 @@
+package ru.bmstu.bioinformatics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Streaming writer of {@link AlignmentRecord}s in one of the compact formats; unlike the text of
+ * {@link AlignmentResult#write} none of them repeats the sequences. Not thread-safe.
+ */
+public interface AlignmentRecordWriter extends Closeable {
+    int BUFFER_SIZE = 1 << 16;
+
+    enum Format {
+        SAM,
+        PAF,
+        /**
+         * {@link BinaryAlignmentWriter}, read back by {@link BinaryAlignmentWriter#read}.
+         */
+        BINARY
+    }
+
+    /**
+     * Writer over a buffer of BUFFER_SIZE bytes; the targets are the references of the SAM header.
+     */
+    static AlignmentRecordWriter create(Format format, OutputStream output, List<FastaRecord> targets)
+            throws IOException {
+        switch (format) {
+            case SAM:
+                return new SamWriter(output, targets);
+            case PAF:
+                return new PafWriter(output);
+            default:
+                return new BinaryAlignmentWriter(output);
+        }
+    }
+
+    void write(AlignmentRecord record) throws IOException;
+
+    void flush() throws IOException;
+}
@@ -0,0 +1,202 @@
+package ru.bmstu.bioinformatics;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Immutable outcome of one pairwise alignment: the score, the path and where it starts in both sequences.
+ * Results of an {@link Aligner} own a trimmed copy of the path, so they stay valid after the aligner moves on
+ * to the next pair and can be handed to other threads.
+ */
+public final class AlignmentResult {
+    private static final String OUTPUT_SEQUENCE_1 = "Seq1: ", OUTPUT_SEQUENCE_2 = "Seq2: ", OUTPUT_SCORE = "Score: ",
+            NEXT_LINE = "\n", CIGAR_OPERATIONS = "DMI";
+    private static final char GAP = '_';
+    private static final int ZERO = 0, ONE = 1, NUMBER_OF_SYMBOLS_IN_LINE = 50;
+
+    private final CharSequence firstSequence,
+            secondSequence;
+    private final AlignmentOperations operations;
+    private final int score,
+            firstStart,
+            secondStart;
+
+    /**
+     * The operations are not copied and must not change afterwards.
+     */
+    AlignmentResult(CharSequence firstSequence, CharSequence secondSequence, AlignmentOperations operations,
+                    int score, int firstStart, int secondStart) {
+        this.firstSequence = firstSequence;
+        this.secondSequence = secondSequence;
+        this.operations = operations;
+        this.score = score;
+        this.firstStart = firstStart;
+        this.secondStart = secondStart;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Index of the first symbol of the first sequence covered by the path; non-zero only for local alignment.
+     */
+    public int getFirstStart() {
+        return firstStart;
+    }
+
+    public int getSecondStart() {
+        return secondStart;
+    }
+
+    /**
+     * Number of alignment columns.
+     */
+    public int getLength() {
+        return operations.size();
+    }
+
+    public PredecessorType getOperation(int index) {
+        return operations.get(index);
+    }
+
+    /**
+     * The path as a CIGAR string with the first sequence as the reference and the second one as the query:
+     * M for an aligned pair, I for a symbol of the second sequence only, D for a symbol of the first one only.
+     * Unaligned ends of a local alignment are not included.
+     */
+    public String getCigar() {
+        StringBuilder cigar = new StringBuilder();
+        int length = operations.size();
+        int start = ZERO;
+        while (start < length) {
+            PredecessorType operation = operations.get(start);
+            int end = start + ONE;
+            while (end < length && operations.get(end) == operation) {
+                end++;
+            }
+            cigar.append(end - start).append(CIGAR_OPERATIONS.charAt(operation.ordinal()));
+            start = end;
+        }
+        return cigar.toString();
+    }
+
+    /**
+     * Compact summary for the SAM, PAF and binary writers, with the first sequence as the query;
+     * note that its CIGAR has I and D the other way round from {@link #getCigar()}.
+     */
+    public AlignmentRecord toRecord(String queryName, String targetName) {
+        int length = operations.size();
+        int first = ZERO;
+        while (first < length && operations.get(first) != PredecessorType.DIAG) {
+            first++;
+        }
+        int last = length - ONE;
+        while (last > first && operations.get(last) != PredecessorType.DIAG) {
+            last--;
+        }
+
+        int queryIndex = firstStart,
+                targetIndex = secondStart;
+        for (int position = ZERO; position < first; position++) {
+            if (operations.get(position) == PredecessorType.LEFT) {
+                queryIndex++;
+            } else targetIndex++;
+        }
+        if (first == length) {
+            return new AlignmentRecord(queryName, targetName, firstSequence.length(), ZERO, ZERO,
+                    secondSequence.length(), ZERO, ZERO, score, ZERO, ZERO, new int[ZERO]);
+        }
+
+        int queryStart = queryIndex,
+                targetStart = targetIndex,
+                matches = ZERO,
+                edits = ZERO,
+                runs = ZERO;
+        int[] cigar = new int[last - first + ONE];
+        for (int position = first; position <= last; ) {
+            PredecessorType operation = operations.get(position);
+            int end = position;
+            for (; end <= last && operations.get(end) == operation; end++) {
+                if (operation == PredecessorType.DIAG) {
+                    if (firstSequence.charAt(queryIndex++) == secondSequence.charAt(targetIndex++)) {
+                        matches++;
+                    } else edits++;
+                } else if (operation == PredecessorType.LEFT) {
+                    queryIndex++;
+                    edits++;
+                } else {
+                    targetIndex++;
+                    edits++;
+                }
+            }
+            cigar[runs++] = (end - position) << AlignmentRecord.OPERATION_BITS | (operation == PredecessorType.DIAG
+                    ? AlignmentRecord.MATCH
+                    : operation == PredecessorType.LEFT ? AlignmentRecord.INSERTION : AlignmentRecord.DELETION);
+            position = end;
+        }
+        return new AlignmentRecord(queryName, targetName, firstSequence.length(), queryStart, queryIndex,
+                secondSequence.length(), targetStart, targetIndex, score, matches, edits,
+                Arrays.copyOf(cigar, runs));
+    }
+
+    /**
+     * Streams the alignment in blocks of NUMBER_OF_SYMBOLS_IN_LINE columns, followed by the score.
+     */
+    public void write(Writer writer) throws IOException {
+        AlignmentMetrics.Probe probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.OUTPUT);
+        char[] firstLine = new char[NUMBER_OF_SYMBOLS_IN_LINE],
+                secondLine = new char[NUMBER_OF_SYMBOLS_IN_LINE];
+        int length = operations.size(),
+                blocks = Math.max(ONE, (length + NUMBER_OF_SYMBOLS_IN_LINE - ONE) / NUMBER_OF_SYMBOLS_IN_LINE),
+                position = ZERO,
+                firstIndex = firstStart,
+                secondIndex = secondStart;
+
+        for (int block = ZERO; block < blocks; block++) {
+            int width = Math.min(NUMBER_OF_SYMBOLS_IN_LINE, length - position);
+            for (int column = ZERO; column < width; column++, position++) {
+                switch (operations.get(position)) {
+                    case LEFT:
+                        firstLine[column] = firstSequence.charAt(firstIndex++);
+                        secondLine[column] = GAP;
+                        break;
+                    case DIAG:
+                        firstLine[column] = firstSequence.charAt(firstIndex++);
+                        secondLine[column] = secondSequence.charAt(secondIndex++);
+                        break;
+                    case UP:
+                        firstLine[column] = GAP;
+                        secondLine[column] = secondSequence.charAt(secondIndex++);
+                        break;
+                }
+            }
+
+            writer.write(OUTPUT_SEQUENCE_1);
+            writer.write(firstLine, ZERO, width);
+            writer.write(NEXT_LINE);
+            writer.write(OUTPUT_SEQUENCE_2);
+            writer.write(secondLine, ZERO, width);
+            writer.write(NEXT_LINE);
+            writer.write(NEXT_LINE);
+        }
+
+        writer.write(OUTPUT_SCORE);
+        writer.write(Integer.toString(score));
+        AlignmentMetrics.end(probe, length);
+    }
+
+    @Override
+    public String toString() {
+        StringWriter stringWriter = new StringWriter();
+        try {
+            write(stringWriter);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return stringWriter.toString();
+    }
+}
@@ -0,0 +1,468 @@
+package ru.bmstu.bioinformatics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-running HTTP alignment service on the JDK {@link HttpServer}, so clients pay neither JVM startup nor matrix
+ * parsing per pair.
+ * <ul>
+ * <li>{@code POST /align}: one pair, {@code {"first": ..., "second": ..., settings}}</li>
+ * <li>{@code POST /align/batch}: {@code {"pairs": [{"first": ..., "second": ...}, ...], settings}}</li>
+ * <li>{@code GET /stats}: throughput, queue depth, batch sizes and latency percentiles for sizing instances</li>
+ * </ul>
+ * Settings are the command line options as JSON fields: {@code alphabet}, {@code matrix}, {@code gap},
+ * {@code unknown}, {@code type}, {@code free}, {@code gapOpen} and {@code gapExtend}, and {@code output}:
+ * {@code alignment} (default), {@code cigar} or {@code score}. Each distinct setting is resolved once and kept
+ * with its scoring function and a pool of warm {@link Aligner}s. Pairs of all requests go through one
+ * {@link RequestBatcher}, whose workers take one aligner per setting for a whole batch. A pair of more than
+ * MAXIMUM_CELLS matrix cells is refused with 413, and a request still waiting for its pairs after two minutes
+ * gets 500.
+ */
+public class AlignmentServer {
+    private static final String ALIGN_PATH = "/align", BATCH_PATH = "/align/batch", STATS_PATH = "/stats",
+            POST = "POST", GET = "GET", CONTENT_TYPE = "Content-Type", JSON_TYPE = "application/json; charset=utf-8",
+            FIRST = "first", SECOND = "second", PAIRS = "pairs", ALPHABET = "alphabet", MATRIX = "matrix",
+            GAP = "gap", UNKNOWN = "unknown", TYPE = "type", FREE = "free", GAP_OPEN = "gapOpen",
+            GAP_EXTEND = "gapExtend", OUTPUT = "output", OUTPUT_ALIGNMENT = "alignment", OUTPUT_CIGAR = "cigar",
+            OUTPUT_SCORE = "score", DEFAULT_ALPHABET = "Default", DNA_FULL = "DNAFull", BLOSUM_62 = "BLOSUM62",
+            DEFAULT_TYPE = "global", SEMI_GLOBAL_TYPE = "semiglobal", EMPTY = "",
+            KEY_SEPARATOR = "|", PATH_SEPARATORS = "/\\", STOPPING = "Server is stopping",
+            ABANDONED = "The batch of the pair failed", TIMED_OUT = "Alignment timed out";
+    private static final int OK = 200, BAD_REQUEST = 400, NOT_FOUND = 404, METHOD_NOT_ALLOWED = 405,
+            PAYLOAD_TOO_LARGE = 413, INTERNAL_ERROR = 500, SERVICE_UNAVAILABLE = 503, NO_BODY = -1,
+            BACKLOG = 256, QUEUE_PER_WORKER = 64, MAXIMUM_BODY = 64 << 20, MAXIMUM_CACHED_SETTINGS = 256,
+            STOP_DELAY_SECONDS = 1;
+    private static final long MAXIMUM_CELLS = 1L << 30;
+    private static final long RESULT_TIMEOUT_NANOSECONDS = TimeUnit.MINUTES.toNanos(2);
+    private static final char GAP_SYMBOL = '_';
+    private static final double NANOSECONDS_IN_SECOND = 1e9, NANOSECONDS_IN_MILLISECOND = 1e6,
+            MEDIAN = 50, PERCENTILE_90 = 90, PERCENTILE_99 = 99;
+
+    private HttpServer server;
+    private ExecutorService connections;
+    private RequestBatcher<Job> batcher;
+    private int capacity;
+
+    private ConcurrentHashMap<String, Settings> settingsCache = new ConcurrentHashMap<>();
+    private LatencyHistogram latencies = new LatencyHistogram();
+    private AtomicLong requests = new AtomicLong(),
+            rejected = new AtomicLong(),
+            errors = new AtomicLong();
+    private long startTime;
+
+    /**
+     * Scoring, type and gap model of a request, with the aligners shared by all requests that use it.
+     */
+    private static class Settings {
+        private ScoringFunction scoringFunction;
+        private AlignmentType type;
+        private boolean affine;
+        private int gapOpen,
+                gapExtend;
+        private AlignerPool alignerPool;
+    }
+
+    private static class Job {
+        private final Settings settings;
+        private final String firstSequence,
+                secondSequence,
+                output;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        Job(Settings settings, String firstSequence, String secondSequence, String output) {
+            this.settings = settings;
+            this.firstSequence = firstSequence;
+            this.secondSequence = secondSequence;
+            this.output = output;
+        }
+    }
+
+    /**
+     * Binds the port (0 picks a free one); pairs are aligned by {@code workers} threads in batches of at most
+     * {@code maximumBatch}, waiting at most {@code lingerNanoseconds} for a batch to fill.
+     */
+    public AlignmentServer(int port, int workers, int maximumBatch, long lingerNanoseconds) throws IOException {
+        this.capacity = workers * QUEUE_PER_WORKER;
+        this.batcher = new RequestBatcher<>(workers, maximumBatch, lingerNanoseconds, capacity, this::alignBatch);
+        this.connections = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        server.setExecutor(connections);
+        server.createContext(ALIGN_PATH, exchange -> handle(exchange, false));
+        server.createContext(BATCH_PATH, exchange -> handle(exchange, true));
+        server.createContext(STATS_PATH, this::handleStats);
+    }
+
+    public void start() {
+        startTime = System.nanoTime();
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests; pairs still queued fail with an error.
+     */
+    public void stop() throws InterruptedException {
+        server.stop(STOP_DELAY_SECONDS);
+        for (Job job : batcher.shutdown()) {
+            job.result.completeExceptionally(new IllegalStateException(STOPPING));
+        }
+        connections.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private static String stringField(Map<String, Object> request, String name, String defaultValue) {
+        Object value = request.get(name);
+        if (value == null) {
+            return defaultValue;
+        } else if (!(value instanceof String)) {
+            throw new IllegalArgumentException("Field " + name + " must be a string");
+        }
+        return (String) value;
+    }
+
+    /**
+     * Integer field as a string, empty when absent, the way the command line options are kept.
+     */
+    private static String integerField(Map<String, Object> request, String name) {
+        Object value = request.get(name);
+        if (value == null) {
+            return EMPTY;
+        } else if (!(value instanceof Long) || (Long) value != ((Long) value).intValue()) {
+            throw new IllegalArgumentException("Field " + name + " must be an integer");
+        }
+        return value.toString();
+    }
+
+    private Settings createSettings(String alphabet, String matrix, String gap, String unknown, String typeName,
+                                    String freeEnds, String gapOpen, String gapExtend) {
+        if (!(alphabet.equals(DEFAULT_ALPHABET) || alphabet.equals(DNA_FULL) || alphabet.equals(BLOSUM_62))) {
+            throw new IllegalArgumentException("Unknown alphabet: " + alphabet);
+        } else if ((!alphabet.equals(DEFAULT_ALPHABET) || !matrix.isEmpty()) && gap.isEmpty() && gapOpen.isEmpty()) {
+            throw new IllegalArgumentException("Field gap or gapOpen is required with this scoring");
+        } else if (!unknown.isEmpty() && matrix.isEmpty()) {
+            throw new IllegalArgumentException("Field unknown requires a matrix");
+        } else if (matrix.chars().anyMatch(symbol -> PATH_SEPARATORS.indexOf(symbol) >= 0)) {
+            throw new IllegalArgumentException("Matrix paths are not accepted, only names");
+        } else if (gapOpen.isEmpty() != gapExtend.isEmpty()) {
+            throw new IllegalArgumentException("Fields gapOpen and gapExtend go together");
+        } else if (!freeEnds.isEmpty() && !typeName.equals(SEMI_GLOBAL_TYPE)) {
+            throw new IllegalArgumentException("Field free requires the semiglobal type");
+        }
+
+        Settings settings = new Settings();
+        settings.type = AlignmentType.parse(typeName, freeEnds);
+        settings.affine = !gapOpen.isEmpty();
+        if (settings.affine && settings.type.isLocal()) {
+            throw new IllegalArgumentException("Local alignment supports linear gaps only");
+        }
+        settings.scoringFunction = Main.createScoringFunction(alphabet, matrix, gap.isEmpty() ? gapOpen : gap,
+                unknown);
+        if (settings.affine) {
+            settings.gapOpen = Integer.parseInt(gapOpen);
+            settings.gapExtend = Integer.parseInt(gapExtend);
+        } else settings.alignerPool = new AlignerPool(settings.scoringFunction, settings.type,
+                batcher.getWorkers());
+        return settings;
+    }
+
+    private Settings settings(Map<String, Object> request) {
+        String alphabet = stringField(request, ALPHABET, DEFAULT_ALPHABET),
+                matrix = stringField(request, MATRIX, EMPTY),
+                gap = integerField(request, GAP),
+                unknown = integerField(request, UNKNOWN),
+                typeName = stringField(request, TYPE, DEFAULT_TYPE),
+                freeEnds = stringField(request, FREE, EMPTY),
+                gapOpen = integerField(request, GAP_OPEN),
+                gapExtend = integerField(request, GAP_EXTEND);
+        String key = String.join(KEY_SEPARATOR, alphabet, matrix, gap, unknown, typeName, freeEnds, gapOpen,
+                gapExtend);
+
+        Settings settings = settingsCache.get(key);
+        if (settings != null) {
+            return settings;
+        } else if (settingsCache.size() >= MAXIMUM_CACHED_SETTINGS) {
+            return createSettings(alphabet, matrix, gap, unknown, typeName, freeEnds, gapOpen, gapExtend);
+        }
+        return settingsCache.computeIfAbsent(key, ignored ->
+                createSettings(alphabet, matrix, gap, unknown, typeName, freeEnds, gapOpen, gapExtend));
+    }
+
+    private static Job job(Settings settings, Map<String, Object> pair, String output) {
+        String firstSequence = stringField(pair, FIRST, null),
+                secondSequence = stringField(pair, SECOND, null);
+        if (firstSequence == null || secondSequence == null) {
+            throw new IllegalArgumentException("Fields first and second are required");
+        }
+        return new Job(settings, firstSequence, secondSequence, output);
+    }
+
+    private static String describe(AlignmentResult result, String output, CharSequence firstSequence,
+                                   CharSequence secondSequence) {
+        StringBuilder json = new StringBuilder().append("{\"score\":").append(result.getScore());
+        if (output.equals(OUTPUT_SCORE)) {
+            return json.append('}').toString();
+        }
+        json.append(",\"firstStart\":").append(result.getFirstStart())
+                .append(",\"secondStart\":").append(result.getSecondStart());
+        if (output.equals(OUTPUT_CIGAR)) {
+            return json.append(",\"cigar\":").append(Json.quote(result.getCigar())).append('}').toString();
+        }
+
+        StringBuilder firstLine = new StringBuilder(result.getLength()),
+                secondLine = new StringBuilder(result.getLength());
+        int firstIndex = result.getFirstStart(),
+                secondIndex = result.getSecondStart();
+        for (int position = 0; position < result.getLength(); position++) {
+            PredecessorType operation = result.getOperation(position);
+            firstLine.append(operation == PredecessorType.UP ? GAP_SYMBOL : firstSequence.charAt(firstIndex++));
+            secondLine.append(operation == PredecessorType.LEFT ? GAP_SYMBOL : secondSequence.charAt(secondIndex++));
+        }
+        return json.append(",\"alignedFirst\":").append(Json.quote(firstLine))
+                .append(",\"alignedSecond\":").append(Json.quote(secondLine)).append('}').toString();
+    }
+
+    private static String align(Job job, Map<Settings, Aligner> aligners) {
+        Settings settings = job.settings;
+        if (settings.affine) {
+            return describe(new PairAlignment(job.firstSequence, job.secondSequence, settings.scoringFunction,
+                            settings.type, settings.gapOpen, settings.gapExtend).getResult(), job.output,
+                    job.firstSequence, job.secondSequence);
+        } else if (job.output.equals(OUTPUT_SCORE)) {
+            return "{\"score\":" + new ScoreOnlyAlignment(job.firstSequence, job.secondSequence,
+                    settings.scoringFunction, settings.type).score() + "}";
+        }
+        Aligner aligner = aligners.computeIfAbsent(settings, ignored -> settings.alignerPool.acquire());
+        return describe(aligner.align(job.firstSequence, job.secondSequence), job.output,
+                job.firstSequence, job.secondSequence);
+    }
+
+    /**
+     * Runs on a batcher worker: one aligner per setting for the whole batch. Every job is completed, even when
+     * a pair fails with an {@link Error} such as OutOfMemoryError; jobs already cancelled are skipped.
+     */
+    private void alignBatch(List<Job> jobs) {
+        Map<Settings, Aligner> aligners = new IdentityHashMap<>();
+        try {
+            for (Job job : jobs) {
+                if (job.result.isDone()) {
+                    continue;
+                }
+                try {
+                    job.result.complete(align(job, aligners));
+                } catch (Throwable e) {
+                    job.result.completeExceptionally(e);
+                }
+            }
+        } finally {
+            for (Job job : jobs) {
+                job.result.completeExceptionally(new IllegalStateException(ABANDONED));
+            }
+            aligners.forEach((settings, aligner) -> settings.alignerPool.release(aligner));
+        }
+    }
+
+    private static String errorJson(String message) {
+        return "{\"error\":" + Json.quote(String.valueOf(message)) + "}";
+    }
+
+    /**
+     * Result of the job, or its error; waits until the deadline of the request in System.nanoTime().
+     */
+    private String await(Job job, long deadline) throws InterruptedException, TimeoutException {
+        try {
+            return job.result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            errors.incrementAndGet();
+            return errorJson(e.getCause() instanceof Error ? e.getCause().toString() : e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Status of a single pair: a failed pair is a bad request unless the service ran into an {@link Error}.
+     */
+    private static int status(Job job) {
+        if (!job.result.isCompletedExceptionally()) {
+            return OK;
+        }
+        try {
+            job.result.join();
+            return OK;
+        } catch (RuntimeException e) {
+            return e.getCause() instanceof Error || e.getCause() instanceof IllegalStateException
+                    ? INTERNAL_ERROR
+                    : BAD_REQUEST;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Job> jobs(Map<String, Object> request, boolean batch) {
+        Settings settings = settings(request);
+        String output = stringField(request, OUTPUT, OUTPUT_ALIGNMENT);
+        if (!(output.equals(OUTPUT_ALIGNMENT) || output.equals(OUTPUT_CIGAR) || output.equals(OUTPUT_SCORE))) {
+            throw new IllegalArgumentException("Unknown output: " + output);
+        }
+
+        List<Job> jobs = new ArrayList<>();
+        if (!batch) {
+            jobs.add(job(settings, request, output));
+            return jobs;
+        }
+        Object pairs = request.get(PAIRS);
+        if (!(pairs instanceof List)) {
+            throw new IllegalArgumentException("Field pairs must be an array");
+        }
+        for (Object pair : (List<Object>) pairs) {
+            if (!(pair instanceof Map)) {
+                throw new IllegalArgumentException("Every pair must be an object");
+            }
+            jobs.add(job(settings, (Map<String, Object>) pair, output));
+        }
+        return jobs;
+    }
+
+    private void handle(HttpExchange exchange, boolean batch) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (!exchange.getRequestURI().getPath().equals(batch ? BATCH_PATH : ALIGN_PATH)) {
+                respond(exchange, NOT_FOUND, errorJson("Not found"));
+                return;
+            } else if (!exchange.getRequestMethod().equals(POST)) {
+                respond(exchange, METHOD_NOT_ALLOWED, errorJson("Use POST"));
+                return;
+            }
+            requests.incrementAndGet();
+
+            byte[] body;
+            try (InputStream input = exchange.getRequestBody()) {
+                body = input.readNBytes(MAXIMUM_BODY + 1);
+            }
+            if (body.length > MAXIMUM_BODY) {
+                respond(exchange, PAYLOAD_TOO_LARGE, errorJson("Request body is too large"));
+                return;
+            }
+
+            List<Job> jobs;
+            try {
+                jobs = jobs(Json.parseObject(new String(body, StandardCharsets.UTF_8)), batch);
+            } catch (IllegalArgumentException e) {
+                errors.incrementAndGet();
+                respond(exchange, BAD_REQUEST, errorJson(e.getMessage()));
+                return;
+            }
+            if (jobs.size() > capacity) {
+                respond(exchange, PAYLOAD_TOO_LARGE, errorJson("At most " + capacity + " pairs per request"));
+                return;
+            }
+            for (Job job : jobs) {
+                long cells = (job.firstSequence.length() + 1L) * (job.secondSequence.length() + 1L);
+                if (cells > MAXIMUM_CELLS) {
+                    respond(exchange, PAYLOAD_TOO_LARGE, errorJson("A pair of " + cells + " matrix cells, at most "
+                            + MAXIMUM_CELLS + " per pair"));
+                    return;
+                }
+            }
+            if (!batcher.offerAll(jobs)) {
+                rejected.incrementAndGet();
+                respond(exchange, SERVICE_UNAVAILABLE, errorJson("Alignment queue is full"));
+                return;
+            }
+
+            long deadline = System.nanoTime() + RESULT_TIMEOUT_NANOSECONDS;
+            try {
+                if (!batch) {
+                    Job job = jobs.get(0);
+                    String text = await(job, deadline);
+                    respond(exchange, status(job), text);
+                    return;
+                }
+                StringBuilder json = new StringBuilder("{\"results\":[");
+                for (int index = 0; index < jobs.size(); index++) {
+                    json.append(index == 0 ? "" : ",").append(await(jobs.get(index), deadline));
+                }
+                respond(exchange, OK, json.append("]}").toString());
+            } catch (TimeoutException e) {
+                errors.incrementAndGet();
+                respond(exchange, INTERNAL_ERROR, errorJson(TIMED_OUT));
+            } finally {
+                // Pairs of a request that timed out or was interrupted are not aligned any more.
+                for (Job job : jobs) {
+                    job.result.cancel(false);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, SERVICE_UNAVAILABLE, errorJson(STOPPING));
+        } catch (RuntimeException e) {
+            errors.incrementAndGet();
+            respond(exchange, INTERNAL_ERROR, errorJson(e.toString()));
+        } finally {
+            latencies.record(System.nanoTime() - start);
+            exchange.close();
+        }
+    }
+
+    /**
+     * Statistics since start; pairsPerSecond over the whole uptime, queueDepth at the moment of the request.
+     */
+    public String getStats() {
+        double seconds = (System.nanoTime() - startTime) / NANOSECONDS_IN_SECOND;
+        long pairs = batcher.getItems(),
+                batches = batcher.getBatches();
+        return String.format(Locale.ROOT, "{\"uptimeSeconds\":%.3f,\"requests\":%d,\"rejected\":%d,\"errors\":%d,"
+                        + "\"pairs\":%d,\"pairsPerSecond\":%.1f,\"batches\":%d,\"meanBatchSize\":%.2f,"
+                        + "\"queueDepth\":%d,\"maximumQueueDepth\":%d,\"queueCapacity\":%d,"
+                        + "\"busyWorkers\":%d,\"workers\":%d,\"cachedSettings\":%d,"
+                        + "\"latencyMs\":{\"p50\":%.3f,\"p90\":%.3f,\"p99\":%.3f,\"max\":%.3f},\"metrics\":%s}",
+                seconds, requests.get(), rejected.get(), errors.get(), pairs, seconds > 0 ? pairs / seconds : 0,
+                batches, batches > 0 ? (double) pairs / batches : 0, batcher.getQueueDepth(),
+                batcher.getMaximumQueueDepth(), capacity, batcher.getBusyWorkers(), batcher.getWorkers(),
+                settingsCache.size(),
+                latencies.percentile(MEDIAN) / NANOSECONDS_IN_MILLISECOND,
+                latencies.percentile(PERCENTILE_90) / NANOSECONDS_IN_MILLISECOND,
+                latencies.percentile(PERCENTILE_99) / NANOSECONDS_IN_MILLISECOND,
+                latencies.getMaximum() / NANOSECONDS_IN_MILLISECOND, AlignmentMetrics.getInstance().getJson());
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestURI().getPath().equals(STATS_PATH)) {
+                respond(exchange, NOT_FOUND, errorJson("Not found"));
+            } else if (!exchange.getRequestMethod().equals(GET)) {
+                respond(exchange, METHOD_NOT_ALLOWED, errorJson("Use GET"));
+            } else respond(exchange, OK, getStats());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set(CONTENT_TYPE, JSON_TYPE);
+        exchange.sendResponseHeaders(status, body.length == 0 ? NO_BODY : body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package ru.bmstu.bioinformatics;
+
+public enum AlignmentStrategy {
+    FULL,
+    HIRSCHBERG,
+    BANDED,
+    /**
+     * {@link BitParallelAlignment} when the scoring fits it, {@link #FULL} otherwise.
+     */
+    BIT_PARALLEL,
+    /**
+     * {@link OutOfCoreAlignment}: the traceback of {@link #FULL} in a scratch file, with checkpoints to resume from.
+     */
+    OUT_OF_CORE
+}
@@ -0,0 +1,203 @@
+package ru.bmstu.bioinformatics;
+
+import java.util.Locale;
+
+/**
+ * Which parts of the two sequences an alignment has to cover.
+ * Global alignment covers both sequences end to end; semi-global alignment leaves any chosen start or end
+ * unaligned at no cost; overlap frees all four ends (the former {@code optimization}); local alignment
+ * (Smith-Waterman) aligns the best-scoring pair of substrings.
+ * <p>
+ * Lines of the matrix follow the second sequence and columns the first one, so a free start of the first
+ * sequence zeroes the gap line and a free end of it lets the path finish anywhere on the last line;
+ * the second sequence does the same with the gap column and the last column.
+ */
+public final class AlignmentType {
+    public static final AlignmentType GLOBAL = new AlignmentType(false, false, false, false, false),
+            OVERLAP = new AlignmentType(true, true, true, true, false),
+            LOCAL = new AlignmentType(false, false, false, false, true);
+
+    private static final String GLOBAL_NAME = "global", SEMI_GLOBAL_NAME = "semiglobal", OVERLAP_NAME = "overlap",
+            LOCAL_NAME = "local", FIRST_START = "first-start", FIRST_END = "first-end",
+            SECOND_START = "second-start", SECOND_END = "second-end", END_SEPARATOR = ",";
+    private static final int FIRST_INDEX = 1;
+
+    private final boolean firstStartFree,
+            firstEndFree,
+            secondStartFree,
+            secondEndFree,
+            local;
+
+    private AlignmentType(boolean firstStartFree, boolean firstEndFree, boolean secondStartFree,
+                          boolean secondEndFree, boolean local) {
+        this.firstStartFree = firstStartFree;
+        this.firstEndFree = firstEndFree;
+        this.secondStartFree = secondStartFree;
+        this.secondEndFree = secondEndFree;
+        this.local = local;
+    }
+
+    public static AlignmentType semiGlobal(boolean firstStartFree, boolean firstEndFree,
+                                           boolean secondStartFree, boolean secondEndFree) {
+        return new AlignmentType(firstStartFree, firstEndFree, secondStartFree, secondEndFree, false);
+    }
+
+    /**
+     * The former {@code optimization} flag: overlap when set, global otherwise.
+     */
+    public static AlignmentType of(boolean optimization) {
+        return optimization ? OVERLAP : GLOBAL;
+    }
+
+    /**
+     * Type by name: global, overlap, local or semiglobal. The free ends of a semi-global alignment are given
+     * as a comma-separated list of first-start, first-end, second-start and second-end; an empty list
+     * frees both ends of the first sequence, so the second one is aligned entirely within it.
+     */
+    public static AlignmentType parse(String name, String freeEnds) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case GLOBAL_NAME:
+                return GLOBAL;
+            case OVERLAP_NAME:
+                return OVERLAP;
+            case LOCAL_NAME:
+                return LOCAL;
+            case SEMI_GLOBAL_NAME:
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown alignment type: " + name);
+        }
+        if (freeEnds.isEmpty()) {
+            return semiGlobal(true, true, false, false);
+        }
+
+        boolean firstStart = false, firstEnd = false, secondStart = false, secondEnd = false;
+        for (String end : freeEnds.split(END_SEPARATOR)) {
+            switch (end.trim().toLowerCase(Locale.ROOT)) {
+                case FIRST_START:
+                    firstStart = true;
+                    break;
+                case FIRST_END:
+                    firstEnd = true;
+                    break;
+                case SECOND_START:
+                    secondStart = true;
+                    break;
+                case SECOND_END:
+                    secondEnd = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown sequence end: " + end);
+            }
+        }
+        return semiGlobal(firstStart, firstEnd, secondStart, secondEnd);
+    }
+
+    public boolean isFirstStartFree() {
+        return firstStartFree;
+    }
+
+    public boolean isFirstEndFree() {
+        return firstEndFree;
+    }
+
+    public boolean isSecondStartFree() {
+        return secondStartFree;
+    }
+
+    public boolean isSecondEndFree() {
+        return secondEndFree;
+    }
+
+    public boolean isLocal() {
+        return local;
+    }
+
+    public boolean isGlobal() {
+        return !local && !firstStartFree && !firstEndFree && !secondStartFree && !secondEndFree;
+    }
+
+    public boolean hasFreeEnd() {
+        return firstEndFree || secondEndFree;
+    }
+
+    /**
+     * The same type with the roles of the sequences swapped.
+     */
+    public AlignmentType transpose() {
+        return new AlignmentType(secondStartFree, secondEndFree, firstStartFree, firstEndFree, local);
+    }
+
+    /**
+     * Best end cell on the last line (free first end) and the last column (free second end) of a filled matrix,
+     * as {lineIndex, columnIndex}. The bottom right corner wins ties, then the leftmost cell of the last line,
+     * then the topmost cell of the last column; the gap cells of both are not candidates.
+     */
+    public int[] findOptimalCell(int[] lastLine, int[] lastColumn) {
+        return findOptimalCell(lastLine, lastColumn, lastColumn.length - 1, lastLine.length - 1);
+    }
+
+    /**
+     * The same over the first lineSize + 1 and columnSize + 1 cells of possibly longer, reused arrays.
+     */
+    public int[] findOptimalCell(int[] lastLine, int[] lastColumn, int lineSize, int columnSize) {
+        int lineMaximum = lineSize,
+                columnMaximum = columnSize,
+                maximum = lastLine[columnMaximum];
+
+        for (int columnIndex = FIRST_INDEX; firstEndFree && columnIndex <= columnSize; columnIndex++) {
+            if (lastLine[columnIndex] > maximum) {
+                columnMaximum = columnIndex;
+                maximum = lastLine[columnIndex];
+            }
+        }
+        for (int lineIndex = FIRST_INDEX; secondEndFree && lineIndex <= lineSize; lineIndex++) {
+            if (lastColumn[lineIndex] > maximum) {
+                lineMaximum = lineIndex;
+                columnMaximum = columnSize;
+                maximum = lastColumn[lineIndex];
+            }
+        }
+
+        return new int[]{lineMaximum, columnMaximum};
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        } else if (!(object instanceof AlignmentType)) {
+            return false;
+        }
+        AlignmentType type = (AlignmentType) object;
+        return firstStartFree == type.firstStartFree && firstEndFree == type.firstEndFree
+                && secondStartFree == type.secondStartFree && secondEndFree == type.secondEndFree
+                && local == type.local;
+    }
+
+    @Override
+    public int hashCode() {
+        return (firstStartFree ? 1 : 0) | (firstEndFree ? 2 : 0) | (secondStartFree ? 4 : 0)
+                | (secondEndFree ? 8 : 0) | (local ? 16 : 0);
+    }
+
+    @Override
+    public String toString() {
+        if (local) {
+            return LOCAL_NAME;
+        } else if (isGlobal()) {
+            return GLOBAL_NAME;
+        } else if (equals(OVERLAP)) {
+            return OVERLAP_NAME;
+        }
+        StringBuilder ends = new StringBuilder();
+        String[] names = {FIRST_START, FIRST_END, SECOND_START, SECOND_END};
+        boolean[] free = {firstStartFree, firstEndFree, secondStartFree, secondEndFree};
+        for (int end = 0; end < names.length; end++) {
+            if (free[end]) {
+                ends.append(ends.length() == 0 ? "" : END_SEPARATOR).append(names[end]);
+            }
+        }
+        return SEMI_GLOBAL_NAME + "(" + ends + ")";
+    }
+}
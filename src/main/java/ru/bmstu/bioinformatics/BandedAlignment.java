@@ -0,0 +1,246 @@
+package ru.bmstu.bioinformatics;
+
+import java.util.Arrays;
+
+/**
+ * Global alignment restricted to a diagonal band, for highly similar sequences.
+ * Diagonal d holds the cells with columnIndex - lineIndex = d; the band always contains the diagonals
+ * between 0 and the length difference, widened by bandWidth on both sides.
+ * <p>
+ * After every fill the band score is checked against an upper bound on the score of any path that
+ * leaves the band: such a path needs at least G gaps, so it scores at most
+ * (n + m - G) / 2 * maxSubstitution + G * indel. While the bound is not met the band is doubled,
+ * so the returned score always equals the score of the full matrix.
+ */
+public class BandedAlignment {
+    private static final int MIN_BAND_WIDTH = 16;
+    private final int ZERO = 0, ONE = 1, TWO = 2, GAP_INDEX = 0, FIRST_INDEX = 1,
+            MINUS_INFINITY = Integer.MIN_VALUE / 2;
+
+    private CharSequence firstSequence,
+            secondSequence;
+    private byte[] firstCodes,
+            secondCodes;
+    private int[] table;
+    private int indel;
+    private int bandWidth;
+
+    private TracebackMatrix traceback;
+    private int lowDiagonal,
+            highDiagonal;
+    private long cells;
+
+    public BandedAlignment(CharSequence firstSequence, CharSequence secondSequence, ScoringFunction scoringFunction,
+                           int bandWidth) {
+        this.firstSequence = firstSequence;
+        this.secondSequence = secondSequence;
+        this.firstCodes = scoringFunction.encode(firstSequence);
+        this.secondCodes = scoringFunction.encode(secondSequence);
+        this.table = scoringFunction.getTable();
+        this.indel = scoringFunction.getIndel();
+        this.bandWidth = bandWidth;
+    }
+
+    /**
+     * Initial band width for sequences that are expected to differ in the given fraction of positions.
+     */
+    public static int autoBandWidth(int firstLength, int secondLength, double divergence) {
+        return Math.max(MIN_BAND_WIDTH, (int) Math.ceil(divergence * Math.max(firstLength, secondLength)));
+    }
+
+    /**
+     * Band width that covers the diagonals between the low and the high one, e.g. those of seed hits.
+     */
+    public static int diagonalBandWidth(int firstLength, int secondLength, int lowDiagonal, int highDiagonal) {
+        int lengthDifference = firstLength - secondLength;
+        return Math.max(0, Math.max(Math.min(0, lengthDifference) - lowDiagonal,
+                highDiagonal - Math.max(0, lengthDifference)));
+    }
+
+    /**
+     * Best substitution score between any symbol of the first codes and any symbol of the second ones.
+     */
+    static int maximumSubstitution(int[] table, byte[] firstCodes, byte[] secondCodes) {
+        boolean[] firstAlphabet = new boolean[ScoringFunction.ALPHABET_SIZE],
+                secondAlphabet = new boolean[ScoringFunction.ALPHABET_SIZE];
+        for (byte code : firstCodes) {
+            firstAlphabet[code] = true;
+        }
+        for (byte code : secondCodes) {
+            secondAlphabet[code] = true;
+        }
+
+        int maximum = Integer.MIN_VALUE / 2;
+        for (int firstCode = 0; firstCode < ScoringFunction.ALPHABET_SIZE; firstCode++) {
+            if (!firstAlphabet[firstCode]) {
+                continue;
+            }
+            for (int secondCode = 0; secondCode < ScoringFunction.ALPHABET_SIZE; secondCode++) {
+                if (secondAlphabet[secondCode]) {
+                    maximum = Math.max(maximum, table[firstCode * ScoringFunction.ALPHABET_SIZE + secondCode]);
+                }
+            }
+        }
+        return maximum;
+    }
+
+    private boolean coversMatrix() {
+        return lowDiagonal <= -secondSequence.length() && highDiagonal >= firstSequence.length();
+    }
+
+    /**
+     * Checks that no path leaving the band can score better than the band optimum.
+     */
+    private boolean isOptimal(int score, int maximumSubstitution) {
+        if (coversMatrix()) {
+            return true;
+        }
+        long doubledGapCost = (long) maximumSubstitution - TWO * (long) indel;
+        if (doubledGapCost <= ZERO) {
+            return false;
+        }
+
+        int lengthDifference = firstSequence.length() - secondSequence.length();
+        long minimumGaps = Long.MAX_VALUE;
+        if (highDiagonal < firstSequence.length()) {
+            minimumGaps = TWO * (long) (highDiagonal + ONE) - lengthDifference;
+        }
+        if (lowDiagonal > -secondSequence.length()) {
+            minimumGaps = Math.min(minimumGaps, lengthDifference - TWO * (long) (lowDiagonal - ONE));
+        }
+
+        long doubledCost = (long) (firstSequence.length() + secondSequence.length()) * maximumSubstitution
+                - TWO * (long) score;
+        return doubledCost <= minimumGaps * doubledGapCost;
+    }
+
+    private int fillBand() {
+        int lines = secondSequence.length(),
+                columns = firstSequence.length(),
+                width = highDiagonal - lowDiagonal + ONE;
+        traceback = new TracebackMatrix(lines + ONE, width);
+        // Offset k of a line holds the cell of diagonal lowDiagonal + k; index 0 and width + 1 are sentinels.
+        int[] previousLine = new int[width + TWO], currentLine = new int[width + TWO];
+        Arrays.fill(previousLine, MINUS_INFINITY);
+        Arrays.fill(currentLine, MINUS_INFINITY);
+
+        for (int columnIndex = Math.max(ZERO, lowDiagonal); columnIndex <= Math.min(columns, highDiagonal);
+             columnIndex++) {
+            int offset = columnIndex - lowDiagonal;
+            previousLine[offset + ONE] = indel * columnIndex;
+            traceback.set(GAP_INDEX, offset, columnIndex == GAP_INDEX ? PredecessorType.NULL : PredecessorType.LEFT);
+        }
+
+        for (int lineIndex = FIRST_INDEX; lineIndex <= lines; lineIndex++) {
+            int columnBegin = Math.max(ZERO, lineIndex + lowDiagonal),
+                    columnEnd = Math.min(columns, lineIndex + highDiagonal);
+            int secondCode = secondCodes[lineIndex - ONE];
+            Arrays.fill(currentLine, MINUS_INFINITY);
+
+            for (int columnIndex = columnBegin; columnIndex <= columnEnd; columnIndex++) {
+                int offset = columnIndex - lineIndex - lowDiagonal;
+                if (columnIndex == GAP_INDEX) {
+                    currentLine[offset + ONE] = indel * lineIndex;
+                    traceback.set(lineIndex, offset, PredecessorType.UP);
+                    continue;
+                }
+
+                int currentMaximum = previousLine[offset + ONE]
+                        + table[firstCodes[columnIndex - ONE] * ScoringFunction.ALPHABET_SIZE + secondCode];
+                PredecessorType currentType = PredecessorType.DIAG;
+                if (previousLine[offset + TWO] + indel > currentMaximum) {
+                    currentMaximum = previousLine[offset + TWO] + indel;
+                    currentType = PredecessorType.UP;
+                }
+                if (currentLine[offset] + indel > currentMaximum) {
+                    currentMaximum = currentLine[offset] + indel;
+                    currentType = PredecessorType.LEFT;
+                }
+
+                currentLine[offset + ONE] = Math.max(currentMaximum, MINUS_INFINITY);
+                traceback.set(lineIndex, offset, currentType);
+            }
+
+            int[] swap = previousLine;
+            previousLine = currentLine;
+            currentLine = swap;
+        }
+
+        return previousLine[columns - lines - lowDiagonal + ONE];
+    }
+
+    private void traceBack(AlignmentOperations operations) {
+        int lineIndex = secondSequence.length(),
+                columnIndex = firstSequence.length();
+        byte[] block = new byte[lineIndex + columnIndex];
+        int position = block.length;
+        PredecessorType currentType;
+
+        while ((currentType = traceback.get(lineIndex, columnIndex - lineIndex - lowDiagonal))
+                != PredecessorType.NULL) {
+            position--;
+            block[position] = (byte) currentType.ordinal();
+            switch (currentType) {
+                case LEFT:
+                    columnIndex--;
+                    break;
+                case DIAG:
+                    lineIndex--;
+                    columnIndex--;
+                    break;
+                case UP:
+                    lineIndex--;
+                    break;
+            }
+        }
+
+        operations.append(block, position, block.length - position);
+    }
+
+    /**
+     * Appends the optimal alignment path to the operations and returns its score.
+     */
+    public int align(AlignmentOperations operations) {
+        AlignmentMetrics.Probe probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.FILL);
+        cells = ZERO;
+        int lengthDifference = firstSequence.length() - secondSequence.length(),
+                maximumSubstitution = maximumSubstitution(table, firstCodes, secondCodes),
+                width = Math.max(ZERO, bandWidth),
+                score;
+
+        while (true) {
+            lowDiagonal = Math.max(-secondSequence.length(), Math.min(ZERO, lengthDifference) - width);
+            highDiagonal = Math.min(firstSequence.length(), Math.max(ZERO, lengthDifference) + width);
+            score = fillBand();
+            cells += (long) secondSequence.length() * (highDiagonal - lowDiagonal + ONE);
+            if (isOptimal(score, maximumSubstitution)) {
+                break;
+            }
+            width = Math.max(MIN_BAND_WIDTH, width * TWO);
+        }
+
+        bandWidth = width;
+        AlignmentMetrics.end(probe, cells);
+
+        probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.TRACEBACK);
+        int size = operations.size();
+        traceBack(operations);
+        AlignmentMetrics.end(probe, operations.size() - size);
+        traceback = null;
+        return score;
+    }
+
+    /**
+     * Cells of every band filled by {@link #align}, the narrower ones that were not provably optimal included.
+     */
+    public long getCells() {
+        return cells;
+    }
+
+    /**
+     * Band width the last alignment finished with, after doubling.
+     */
+    public int getBandWidth() {
+        return bandWidth;
+    }
+}
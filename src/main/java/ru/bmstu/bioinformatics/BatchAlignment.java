@@ -0,0 +1,245 @@
+package ru.bmstu.bioinformatics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiFunction;
+
+/**
+ * Aligns every query against every target, or every unordered pair of one record set, on a fixed worker pool.
+ * At most {@code workers * WINDOW_PER_WORKER} pairs are in flight or waiting to be written, so memory stays bounded
+ * however many pairs are generated. Results are streamed either in job order or as soon as they complete;
+ * each one is tagged with the ids of both records. A pair for which the aligner returns {@code null} is skipped.
+ * With a {@link KmerIndex} of the targets only the pairs with enough seed hits on nearby diagonals are aligned.
+ * A {@link RecordAligner} streams {@link AlignmentRecord}s to an {@link AlignmentRecordWriter} instead of text;
+ * the pairs it fails on are then reported to stderr.
+ */
+public class BatchAlignment {
+    private static final String HEADER_START = ">", SEPARATOR = " ", NEXT_LINE = "\n", ERROR = "Error: ",
+            REPORT_FORMAT = "Pairs: %d, time: %.3f s, throughput: %.1f pairs/s%n"
+                    + "Latency, ms: p50 %.3f, p90 %.3f, p99 %.3f, max %.3f%n",
+            FILTER_FORMAT = "Seed filter: %d of %d pairs passed (%.1f%%)%n";
+    private static final int WINDOW_PER_WORKER = 4;
+    private static final double NANOSECONDS_IN_SECOND = 1e9, NANOSECONDS_IN_MILLISECOND = 1e6,
+            MEDIAN = 50, PERCENTILE_90 = 90, PERCENTILE_99 = 99, PERCENT = 100;
+    private static final Result END_OF_JOBS = new Result(-1, null, null);
+
+    private List<FastaRecord> queries,
+            targets;
+    private boolean allPairs;
+    private SeededAligner aligner;
+    private RecordAligner recordAligner;
+    private int workers;
+    private boolean ordered;
+    private KmerIndex kmerIndex;
+    private int minimumHits;
+
+    private volatile long submitted;
+
+    private LatencyHistogram latencies = new LatencyHistogram();
+    private long elapsed;
+
+    private static class Result {
+        private final long index;
+        private final String text;
+        private final AlignmentRecord record;
+
+        Result(long index, String text, AlignmentRecord record) {
+            this.index = index;
+            this.text = text;
+            this.record = record;
+        }
+    }
+
+    /**
+     * Aligner of a pair with the best seed hit run of the target, which is null without a seed filter.
+     */
+    public interface SeededAligner {
+        String apply(CharSequence query, CharSequence target, KmerIndex.Hit hit);
+    }
+
+    /**
+     * Record of an aligned pair, or null to skip it; the hit is as for {@link SeededAligner}.
+     */
+    public interface RecordAligner {
+        AlignmentRecord apply(FastaRecord query, FastaRecord target, KmerIndex.Hit hit);
+    }
+
+    /**
+     * Queries against targets; pass {@code null} targets to align every unordered pair of queries.
+     */
+    public BatchAlignment(List<FastaRecord> queries, List<FastaRecord> targets,
+                          BiFunction<CharSequence, CharSequence, String> aligner, int workers, boolean ordered) {
+        this(queries, targets, null, 0, (query, target, hit) -> aligner.apply(query, target), workers, ordered);
+    }
+
+    /**
+     * Only the pairs whose target has at least {@code minimumHits} seed hits of the query in the index,
+     * which is built over the targets, or over the queries when the targets are {@code null}.
+     */
+    public BatchAlignment(List<FastaRecord> queries, List<FastaRecord> targets, KmerIndex kmerIndex, int minimumHits,
+                          SeededAligner aligner, int workers, boolean ordered) {
+        this.queries = queries;
+        this.allPairs = targets == null;
+        this.targets = allPairs ? queries : targets;
+        this.kmerIndex = kmerIndex;
+        this.minimumHits = minimumHits;
+        this.aligner = aligner;
+        this.workers = workers;
+        this.ordered = ordered;
+    }
+
+    /**
+     * Records instead of text, for {@link #run(AlignmentRecordWriter)}; the other arguments are as for the
+     * constructor.
+     */
+    public static BatchAlignment ofRecords(List<FastaRecord> queries, List<FastaRecord> targets, KmerIndex kmerIndex,
+                                           int minimumHits, RecordAligner recordAligner, int workers,
+                                           boolean ordered) {
+        BatchAlignment batchAlignment = new BatchAlignment(queries, targets, kmerIndex, minimumHits,
+                (SeededAligner) null, workers, ordered);
+        batchAlignment.recordAligner = recordAligner;
+        return batchAlignment;
+    }
+
+    public long getNumberOfPairs() {
+        long size = queries.size();
+        return allPairs
+                ? size * (size - 1) / 2
+                : size * targets.size();
+    }
+
+    private Runnable job(long index, FastaRecord query, FastaRecord target, KmerIndex.Hit hit,
+                         BlockingQueue<Result> completed) {
+        return () -> {
+            long start = System.nanoTime();
+            String text = ERROR;
+            AlignmentRecord record = null;
+            try {
+                if (recordAligner != null) {
+                    record = recordAligner.apply(query, target, hit);
+                    text = null;
+                } else text = aligner.apply(query.getSequence(), target.getSequence(), hit);
+            } catch (RuntimeException e) {
+                text = ERROR + e;
+            } finally {
+                latencies.record(System.nanoTime() - start);
+                completed.add(new Result(index, text == null
+                        ? null
+                        : HEADER_START + query.getId() + SEPARATOR + target.getId() + NEXT_LINE + text + NEXT_LINE,
+                        record));
+            }
+        };
+    }
+
+    private void submitJobs(ExecutorService executor, Semaphore window, BlockingQueue<Result> completed) {
+        long index = 0;
+        try {
+            for (int queryIndex = 0; queryIndex < queries.size(); queryIndex++) {
+                if (kmerIndex != null) {
+                    for (KmerIndex.Hit hit : kmerIndex.search(queries.get(queryIndex).getSequence(), minimumHits)) {
+                        if (!allPairs || hit.getTarget() > queryIndex) {
+                            window.acquire();
+                            executor.execute(job(index++, queries.get(queryIndex), targets.get(hit.getTarget()), hit,
+                                    completed));
+                        }
+                    }
+                    continue;
+                }
+                for (int targetIndex = allPairs ? queryIndex + 1 : 0; targetIndex < targets.size(); targetIndex++) {
+                    window.acquire();
+                    executor.execute(job(index++, queries.get(queryIndex), targets.get(targetIndex), null,
+                            completed));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            submitted = index;
+            completed.add(END_OF_JOBS);
+        }
+    }
+
+    private static void write(Writer writer, AlignmentRecordWriter recordWriter, Result result) throws IOException {
+        if (result.record != null) {
+            recordWriter.write(result.record);
+        } else if (result.text != null) {
+            if (writer != null) {
+                writer.write(result.text);
+            } else System.err.print(result.text);
+        }
+    }
+
+    public void run(Writer writer) throws IOException, InterruptedException {
+        run(writer, null);
+    }
+
+    public void run(AlignmentRecordWriter recordWriter) throws IOException, InterruptedException {
+        run(null, recordWriter);
+    }
+
+    private void run(Writer writer, AlignmentRecordWriter recordWriter) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        Semaphore window = new Semaphore(workers * WINDOW_PER_WORKER);
+        BlockingQueue<Result> completed = new LinkedBlockingQueue<>();
+        Thread producer = new Thread(() -> submitJobs(executor, window, completed));
+        HashMap<Long, Result> pending = new HashMap<>();
+        long total = -1,
+                next = 0,
+                start = System.nanoTime();
+
+        producer.start();
+        try {
+            for (long written = 0; total < 0 || written < total; ) {
+                Result result = completed.take();
+                if (result == END_OF_JOBS) {
+                    total = submitted;
+                    continue;
+                } else if (!ordered) {
+                    write(writer, recordWriter, result);
+                    window.release();
+                    written++;
+                    continue;
+                }
+
+                pending.put(result.index, result);
+                while ((result = pending.remove(next)) != null) {
+                    write(writer, recordWriter, result);
+                    window.release();
+                    next++;
+                    written++;
+                }
+            }
+            if (writer != null) {
+                writer.flush();
+            } else recordWriter.flush();
+        } finally {
+            producer.interrupt();
+            producer.join();
+            executor.shutdownNow();
+            elapsed = System.nanoTime() - start;
+        }
+    }
+
+    public String getReport() {
+        long pairs = latencies.getCount(),
+                candidates = getNumberOfPairs();
+        double seconds = elapsed / NANOSECONDS_IN_SECOND;
+        String report = String.format(Locale.ROOT, REPORT_FORMAT, pairs, seconds, seconds > 0 ? pairs / seconds : 0,
+                latencies.percentile(MEDIAN) / NANOSECONDS_IN_MILLISECOND,
+                latencies.percentile(PERCENTILE_90) / NANOSECONDS_IN_MILLISECOND,
+                latencies.percentile(PERCENTILE_99) / NANOSECONDS_IN_MILLISECOND,
+                latencies.getMaximum() / NANOSECONDS_IN_MILLISECOND);
+        return kmerIndex == null
+                ? report
+                : report + String.format(Locale.ROOT, FILTER_FORMAT, submitted, candidates,
+                candidates > 0 ? PERCENT * submitted / candidates : 0);
+    }
+}
@@ -0,0 +1,120 @@
+package ru.bmstu.bioinformatics;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compact binary records: a MAGIC header, then per record the query and target names in modified UTF-8
+ * followed by variable-length ints of 7 bits per byte, low bits first: query length, start and end, target length,
+ * start and end, the zigzag-encoded score, matches, edit distance, the number of CIGAR runs and the runs
+ * as {@code length << 4 | operation} with the BAM codes, so that most runs take a single byte.
+ */
+public class BinaryAlignmentWriter implements AlignmentRecordWriter {
+    private static final long MAGIC = 0x4e57414c49474e31L;
+    private static final int PAYLOAD_BITS = 7, PAYLOAD_MASK = 0x7f, CONTINUATION = 0x80, MAXIMUM_SHIFT = 28;
+
+    private final DataOutputStream output;
+
+    public BinaryAlignmentWriter(OutputStream output) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(output, BUFFER_SIZE));
+        this.output.writeLong(MAGIC);
+    }
+
+    @Override
+    public void write(AlignmentRecord record) throws IOException {
+        AlignmentMetrics.Probe probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.OUTPUT);
+        output.writeUTF(record.getQueryName());
+        output.writeUTF(record.getTargetName());
+        writeNumber(record.getQueryLength());
+        writeNumber(record.getQueryStart());
+        writeNumber(record.getQueryEnd());
+        writeNumber(record.getTargetLength());
+        writeNumber(record.getTargetStart());
+        writeNumber(record.getTargetEnd());
+        writeNumber(record.getScore() << 1 ^ record.getScore() >> (Integer.SIZE - 1));
+        writeNumber(record.getMatches());
+        writeNumber(record.getEdits());
+        writeNumber(record.getNumberOfRuns());
+        for (int run = 0; run < record.getNumberOfRuns(); run++) {
+            writeNumber(record.getRun(run));
+        }
+        AlignmentMetrics.end(probe, record.getBlockLength());
+    }
+
+    private void writeNumber(int value) throws IOException {
+        while ((value & ~PAYLOAD_MASK) != 0) {
+            output.write(value & PAYLOAD_MASK | CONTINUATION);
+            value >>>= PAYLOAD_BITS;
+        }
+        output.write(value);
+    }
+
+    private static int readNumber(DataInputStream input) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += PAYLOAD_BITS) {
+            int next = input.readUnsignedByte();
+            value |= (next & PAYLOAD_MASK) << shift;
+            if ((next & CONTINUATION) == 0) {
+                return value;
+            } else if (shift == MAXIMUM_SHIFT) {
+                throw new IOException("Malformed alignment records: number of more than 5 bytes");
+            }
+        }
+    }
+
+    /**
+     * Checks the header at the start of the stream.
+     */
+    public static void readHeader(DataInputStream input) throws IOException {
+        if (input.readLong() != MAGIC) {
+            throw new IOException("Malformed alignment records: bad header");
+        }
+    }
+
+    /**
+     * Next record after {@link #readHeader}; null at the end of the stream.
+     */
+    public static AlignmentRecord read(DataInputStream input) throws IOException {
+        String queryName;
+        try {
+            queryName = input.readUTF();
+        } catch (EOFException e) {
+            return null;
+        }
+        String targetName = input.readUTF();
+        int queryLength = readNumber(input),
+                queryStart = readNumber(input),
+                queryEnd = readNumber(input),
+                targetLength = readNumber(input),
+                targetStart = readNumber(input),
+                targetEnd = readNumber(input),
+                zigzagScore = readNumber(input),
+                score = zigzagScore >>> 1 ^ -(zigzagScore & 1),
+                matches = readNumber(input),
+                edits = readNumber(input),
+                runs = readNumber(input);
+        if (runs < 0 || runs > queryLength + targetLength) {
+            throw new IOException("Malformed alignment records: " + runs + " CIGAR runs");
+        }
+        int[] cigar = new int[runs];
+        for (int run = 0; run < runs; run++) {
+            cigar[run] = readNumber(input);
+        }
+        return new AlignmentRecord(queryName, targetName, queryLength, queryStart, queryEnd, targetLength,
+                targetStart, targetEnd, score, matches, edits, cigar);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+}
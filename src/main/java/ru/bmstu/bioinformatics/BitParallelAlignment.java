@@ -0,0 +1,411 @@
+package ru.bmstu.bioinformatics;
+
+/**
+ * Bit-parallel global, semi-global or overlap alignment for match/mismatch scoring ({@link Default},
+ * {@link DNAFull}) with linear gaps: 64 cells of a column per {@code long}, several words for longer
+ * second sequences.
+ * <p>
+ * Myers' edit distance algorithm in Hyyro's formulation generalised to integer scores. The difference
+ * between vertically or horizontally adjacent cells lies in [indel, match - indel], so a column is kept as
+ * match - 2 * indel bit-vectors of "the difference is at least k". The next column follows with word
+ * operations and one addition per level, which carries a run of cells taking the gap down the column.
+ * Scores are divided by their greatest common divisor first. Unit costs (match 0, mismatch -1, indel -1)
+ * need two levels and Default (1, -1, -2) five. The work grows with the square of the number of levels,
+ * so {@link #supports(ScoringFunction, AlignmentType)} leaves schemes above MAXIMUM_LEVELS, substitution
+ * matrices and local alignment to the other engines.
+ * <p>
+ * {@link #fill()} keeps every column as the binary planes of its vertical differences,
+ * ceil(log2(levels + 1)) bits per cell, for a traceback that takes the same path as {@link FullAlignment};
+ * {@link #score()} keeps only the current column.
+ */
+public class BitParallelAlignment {
+    private static final int WORD_SHIFT = 6, WORD_MASK = 63, MAXIMUM_LEVELS = 6, TWO_LEVELS = 2, SCORES = 3,
+            MATCH_INDEX = 0, MISMATCH_INDEX = 1, INDEL_INDEX = 2;
+    private static final long ALL = -1L, NONE = 0L, ONE_BIT = 1L;
+    private final int ZERO = 0, ONE = 1;
+
+    private AlignmentType type;
+    private byte[] firstCodes,
+            secondCodes;
+    private int match,
+            mismatch,
+            indel,
+            factor,
+            levels,
+            planes,
+            words;
+
+    private long[] thresholds,
+            stored;
+    private int[] bases;
+    private int optimalLineIndex,
+            optimalColumnIndex;
+    private long cells;
+
+    public BitParallelAlignment(CharSequence firstSequence, CharSequence secondSequence,
+                                ScoringFunction scoringFunction, AlignmentType type) {
+        int[] scores = scaledScores(scoringFunction);
+        if (scores == null || type.isLocal() || levels(scores) > MAXIMUM_LEVELS) {
+            throw new IllegalArgumentException("Scoring is not supported by the bit-parallel alignment");
+        }
+        this.type = type;
+        this.firstCodes = scoringFunction.encode(firstSequence);
+        this.secondCodes = scoringFunction.encode(secondSequence);
+        this.match = scores[MATCH_INDEX];
+        this.mismatch = scores[MISMATCH_INDEX];
+        this.indel = scores[INDEL_INDEX];
+        this.factor = scores[SCORES];
+        this.levels = levels(scores);
+        this.planes = Integer.SIZE - Integer.numberOfLeadingZeros(levels);
+    }
+
+    /**
+     * Whether the scoring fits the model: the same match and the same mismatch score for all symbols,
+     * a non-positive indel and at most MAXIMUM_LEVELS differences after scaling.
+     */
+    public static boolean supports(ScoringFunction scoringFunction, AlignmentType type) {
+        int[] scores = scaledScores(scoringFunction);
+        return scores != null && !type.isLocal() && levels(scores) <= MAXIMUM_LEVELS;
+    }
+
+    /**
+     * {match, mismatch, indel, divisor} divided by the divisor, or null if the scoring does not fit the model.
+     */
+    private static int[] scaledScores(ScoringFunction scoringFunction) {
+        int match, mismatch;
+        if (scoringFunction instanceof Default) {
+            match = ((Default) scoringFunction).getMatch();
+            mismatch = ((Default) scoringFunction).getMismatch();
+        } else if (scoringFunction instanceof DNAFull) {
+            match = ((DNAFull) scoringFunction).getMatch();
+            mismatch = ((DNAFull) scoringFunction).getMismatch();
+        } else return null;
+        int indel = scoringFunction.getIndel();
+        int divisor = gcd(gcd(Math.abs(match), Math.abs(mismatch)), Math.abs(indel));
+        if (match < mismatch || indel > 0 || match < indel || divisor == 0 || match - 2 * indel == 0) {
+            return null;
+        }
+        return new int[]{match / divisor, mismatch / divisor, indel / divisor, divisor};
+    }
+
+    private static int levels(int[] scores) {
+        return scores[MATCH_INDEX] - 2 * scores[INDEL_INDEX];
+    }
+
+    private static int gcd(int first, int second) {
+        return second == 0 ? first : gcd(second, first % second);
+    }
+
+    /**
+     * Bit-vector of "value at least k" from vectors of the levels indel + 1 .. match - indel at offset.
+     */
+    private long atLeast(long[] vectors, int offset, int value) {
+        if (value <= indel) {
+            return ALL;
+        } else if (value > indel + levels) {
+            return NONE;
+        } else return vectors[offset + value - indel - ONE];
+    }
+
+    private static long select(int level, long first, long second) {
+        if (level == 0) {
+            return ALL;
+        } else return level == 1 ? first : second;
+    }
+
+    private int gapValue(int index, boolean free) {
+        return free ? ZERO : indel * index;
+    }
+
+    /**
+     * Fills the matrix column by column, optionally storing the traceback, and finds the optimal cell.
+     * The score is still scaled.
+     */
+    private int fill(boolean traceback) {
+        AlignmentMetrics.Probe probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.FILL);
+        int lines = secondCodes.length,
+                columns = firstCodes.length;
+        words = (lines + WORD_MASK) >>> WORD_SHIFT;
+
+        long[] equal = new long[ScoringFunction.ALPHABET_SIZE * words];
+        for (int lineIndex = ZERO; lineIndex < lines; lineIndex++) {
+            equal[secondCodes[lineIndex] * words + (lineIndex >>> WORD_SHIFT)] |= ONE_BIT << lineIndex;
+        }
+
+        int gapColumn = gapValue(ONE, type.isSecondStartFree()),
+                gapLine = gapValue(ONE, type.isFirstStartFree());
+        thresholds = new long[words * levels];
+        for (int level = ZERO; level < levels; level++) {
+            long vector = gapColumn > indel + level ? ALL : NONE;
+            for (int word = ZERO; word < words; word++) {
+                thresholds[word * levels + level] = vector;
+            }
+        }
+        if (traceback) {
+            long size = (long) columns * words * planes;
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Traceback of " + lines + "x" + columns + " cells is too large");
+            }
+            stored = new long[(int) size];
+            bases = new int[columns * words];
+        }
+
+        // Vectors of one word padded for "at least indel or less" (all cells) and "above the highest level" (none),
+        // so that every level is read without a range check.
+        long[] current = new long[levels + 2],
+                shifted = new long[levels + 2],
+                single = new long[levels + ONE];
+        current[ZERO] = shifted[ZERO] = ALL;
+        int[] mismatchLevels = new int[levels];
+        for (int level = ZERO; level < levels; level++) {
+            mismatchLevels[level] = Math.max(ZERO, levels - level - (match - mismatch));
+        }
+        int[] lastLine = new int[columns + ONE];
+        int top = ZERO,
+                bottom = gapColumn * lines,
+                lastBit = (lines - ONE) & WORD_MASK;
+        lastLine[ZERO] = bottom;
+
+        for (int columnIndex = ONE; columnIndex <= columns; columnIndex++) {
+            top += gapLine;
+            int offset = firstCodes[columnIndex - ONE] * words,
+                    above = gapLine,
+                    base = top;
+
+            for (int word = ZERO; word < words; word++) {
+                int vectors = word * levels;
+                long eq = equal[offset + word],
+                        notEq = ~eq;
+                int bit = word == words - ONE ? lastBit : WORD_MASK,
+                        below = indel;
+                if (levels == TWO_LEVELS) {
+                    // Unit costs, the case of Myers' algorithm, unrolled from the loops below.
+                    long first = thresholds[vectors],
+                            second = thresholds[vectors + ONE],
+                            none = ~first,
+                            one = first & ~second;
+                    long generate = eq & ~first | notEq & ~select(mismatchLevels[ONE], first, second),
+                            carry = above > indel + ONE ? ONE_BIT : NONE;
+                    generate |= none & carry;
+                    long run = none | generate,
+                            gap = (((generate + run) ^ run) | generate) & run,
+                            shiftedSecond = gap << ONE | carry;
+                    below += (int) (gap >>> bit) & ONE;
+                    generate = eq & ~second | notEq & ~select(mismatchLevels[ZERO], first, second)
+                            | one & shiftedSecond;
+                    carry = above > indel ? ONE_BIT : NONE;
+                    generate |= none & carry;
+                    run = none | generate;
+                    gap = (((generate + run) ^ run) | generate) & run;
+                    long shiftedFirst = gap << ONE | carry;
+                    below += (int) (gap >>> bit) & ONE;
+                    thresholds[vectors] = eq & ~shiftedSecond
+                            | notEq & ~select(mismatchLevels[ZERO], shiftedFirst, shiftedSecond)
+                            | one & ~shiftedFirst | second & ~shiftedSecond;
+                    thresholds[vectors + ONE] = eq & ~shiftedFirst
+                            | notEq & ~select(mismatchLevels[ONE], shiftedFirst, shiftedSecond)
+                            | second & ~shiftedFirst;
+                } else {
+                    for (int level = ZERO; level < levels; level++) {
+                        current[level + ONE] = thresholds[vectors + level];
+                    }
+                    for (int value = ZERO; value <= levels; value++) {
+                        single[value] = current[value] & ~current[value + ONE];
+                    }
+
+                    // Horizontal differences from the highest level down: a level is reached directly, from a higher
+                    // level of the line above, or carried down a run of cells whose vertical difference is the indel.
+                    for (int level = levels - ONE; level >= ZERO; level--) {
+                        long generate = eq & ~current[levels - level] | notEq & ~current[mismatchLevels[level]];
+                        for (int step = ONE; level + step < levels; step++) {
+                            generate |= single[step] & shifted[level + step + ONE];
+                        }
+                        long carry = above > indel + level ? ONE_BIT : NONE,
+                                propagate = single[ZERO];
+                        generate |= propagate & carry;
+                        long run = propagate | generate,
+                                gap = (((generate + run) ^ run) | generate) & run;
+                        shifted[level + ONE] = gap << ONE | carry;
+                        below += (int) (gap >>> bit) & ONE;
+                    }
+
+                    for (int level = ZERO; level < levels; level++) {
+                        long next = eq & ~shifted[levels - level] | notEq & ~shifted[mismatchLevels[level]];
+                        for (int difference = level + ONE; difference <= levels; difference++) {
+                            next |= single[difference] & ~shifted[difference - level];
+                        }
+                        thresholds[vectors + level] = next;
+                    }
+                }
+                above = below;
+
+                if (traceback) {
+                    int index = (columnIndex - ONE) * words + word;
+                    bases[index] = base;
+                    store(index * planes, vectors);
+                    base += indel << WORD_SHIFT;
+                    for (int level = ZERO; level < levels; level++) {
+                        base += Long.bitCount(thresholds[vectors + level]);
+                    }
+                }
+            }
+
+            bottom += above;
+            lastLine[columnIndex] = bottom;
+        }
+
+        optimalLineIndex = lines;
+        optimalColumnIndex = columns;
+        int score = bottom;
+        if (type.hasFreeEnd()) {
+            int[] lastColumn = new int[lines + ONE];
+            lastColumn[ZERO] = top;
+            for (int lineIndex = ONE; lineIndex <= lines; lineIndex++) {
+                lastColumn[lineIndex] = lastColumn[lineIndex - ONE] + vertical(thresholds, lineIndex);
+            }
+            int[] optimalScoreCell = type.findOptimalCell(lastLine, lastColumn);
+            optimalLineIndex = optimalScoreCell[ZERO];
+            optimalColumnIndex = optimalScoreCell[ONE];
+            score = optimalLineIndex == lines ? lastLine[optimalColumnIndex] : lastColumn[optimalLineIndex];
+        }
+        if (traceback) {
+            AlignmentMetrics.recordMatrixBytes((long) stored.length * Long.BYTES + (long) bases.length * Integer.BYTES);
+        }
+        cells = (long) columns * words * Long.SIZE;
+        AlignmentMetrics.end(probe, cells);
+        return score;
+    }
+
+    /**
+     * Stores the vertical differences of one word minus the indel as binary planes:
+     * bit p is set where the difference lies in [q * 2^(p+1) + 2^p, (q + 1) * 2^(p+1)) for some q.
+     */
+    private void store(int index, int vectors) {
+        for (int plane = ZERO; plane < planes; plane++) {
+            long bits = NONE;
+            for (int low = ONE << plane; low <= levels; low += ONE << (plane + ONE)) {
+                bits |= atLeast(thresholds, vectors, indel + low)
+                        & ~atLeast(thresholds, vectors, indel + low + (ONE << plane));
+            }
+            stored[index + plane] = bits;
+        }
+    }
+
+    /**
+     * Vertical difference of the line from threshold vectors of a whole column.
+     */
+    private int vertical(long[] vectors, int lineIndex) {
+        int word = (lineIndex - ONE) >>> WORD_SHIFT,
+                bit = (lineIndex - ONE) & WORD_MASK,
+                value = indel;
+        for (int level = ZERO; level < levels; level++) {
+            value += (int) (vectors[word * levels + level] >>> bit) & ONE;
+        }
+        return value;
+    }
+
+    /**
+     * Vertical difference of a stored cell below the gap line and right of the gap column.
+     */
+    private int storedVertical(int lineIndex, int columnIndex) {
+        int index = ((columnIndex - ONE) * words + ((lineIndex - ONE) >>> WORD_SHIFT)) * planes,
+                bit = (lineIndex - ONE) & WORD_MASK,
+                value = indel;
+        for (int plane = ZERO; plane < planes; plane++) {
+            value += ((int) (stored[index + plane] >>> bit) & ONE) << plane;
+        }
+        return value;
+    }
+
+    /**
+     * Scaled score of a cell of the filled matrix.
+     */
+    private int storedValue(int lineIndex, int columnIndex) {
+        if (lineIndex == ZERO) {
+            return gapValue(columnIndex, type.isFirstStartFree());
+        } else if (columnIndex == ZERO) {
+            return gapValue(lineIndex, type.isSecondStartFree());
+        }
+        int word = (lineIndex - ONE) >>> WORD_SHIFT,
+                bit = (lineIndex - ONE) & WORD_MASK,
+                index = (columnIndex - ONE) * words + word;
+        long mask = ALL >>> (WORD_MASK - bit);
+        int value = bases[index] + indel * (bit + ONE);
+        for (int plane = ZERO; plane < planes; plane++) {
+            value += Long.bitCount(stored[index * planes + plane] & mask) << plane;
+        }
+        return value;
+    }
+
+    /**
+     * Fills the matrix and stores it for {@link #traceBack(AlignmentOperations)}; returns the optimal score.
+     */
+    public int fill() {
+        return fill(true) * factor;
+    }
+
+    /**
+     * Optimal score only, keeping a single column: O(n / 64 * levels) memory.
+     */
+    public int score() {
+        return fill(false) * factor;
+    }
+
+    /**
+     * Appends the path up to the optimal cell; with a free end the unaligned tail is left to the caller.
+     * Ties are broken as in {@link FullAlignment}: diagonal, then up, then left. Requires {@link #fill()}.
+     */
+    public void traceBack(AlignmentOperations operations) {
+        AlignmentMetrics.Probe probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.TRACEBACK);
+        int lineIndex = optimalLineIndex,
+                columnIndex = optimalColumnIndex,
+                current = storedValue(lineIndex, columnIndex);
+        int length = lineIndex + columnIndex,
+                position = length;
+        byte[] block = new byte[length];
+
+        while (lineIndex > ZERO && columnIndex > ZERO) {
+            int substitution = firstCodes[columnIndex - ONE] == secondCodes[lineIndex - ONE] ? match : mismatch;
+            PredecessorType currentType;
+            if (storedValue(lineIndex - ONE, columnIndex - ONE) + substitution == current) {
+                currentType = PredecessorType.DIAG;
+                current -= substitution;
+                lineIndex--;
+                columnIndex--;
+            } else if (storedVertical(lineIndex, columnIndex) == indel) {
+                currentType = PredecessorType.UP;
+                current -= indel;
+                lineIndex--;
+            } else {
+                currentType = PredecessorType.LEFT;
+                current -= indel;
+                columnIndex--;
+            }
+            block[--position] = (byte) currentType.ordinal();
+        }
+        for (; columnIndex > ZERO; columnIndex--) {
+            block[--position] = (byte) PredecessorType.LEFT.ordinal();
+        }
+        for (; lineIndex > ZERO; lineIndex--) {
+            block[--position] = (byte) PredecessorType.UP.ordinal();
+        }
+
+        operations.append(block, position, length - position);
+        AlignmentMetrics.end(probe, length - position);
+    }
+
+    /**
+     * Cells computed by the last fill, those of the padding of the last word of every column included.
+     */
+    public long getCells() {
+        return cells;
+    }
+
+    public int getOptimalLineIndex() {
+        return optimalLineIndex;
+    }
+
+    public int getOptimalColumnIndex() {
+        return optimalColumnIndex;
+    }
+}
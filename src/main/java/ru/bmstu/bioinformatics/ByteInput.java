@@ -0,0 +1,118 @@
+package ru.bmstu.bioinformatics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Byte source of {@link SequenceReader}: plain files are memory-mapped in chunks of up to 1 GiB,
+ * gzip files (recognised by their magic number) are streamed through an inflater.
+ */
+abstract class ByteInput implements Closeable {
+    static final int END = -1;
+    private static final int GZIP_MAGIC_FIRST = 0x1f, GZIP_MAGIC_SECOND = 0x8b, BYTE_MASK = 0xff;
+
+    abstract int read() throws IOException;
+
+    abstract long getPosition();
+
+    static boolean isGzip(Path path) throws IOException {
+        try (InputStream stream = Files.newInputStream(path)) {
+            return stream.read() == GZIP_MAGIC_FIRST && stream.read() == GZIP_MAGIC_SECOND;
+        }
+    }
+
+    static ByteInput open(Path path) throws IOException {
+        return isGzip(path)
+                ? new GzipInput(path)
+                : new MappedInput(path);
+    }
+
+    static final class MappedInput extends ByteInput {
+        private static final int CHUNK_BITS = 30;
+        private static final long CHUNK_SIZE = 1L << CHUNK_BITS, CHUNK_MASK = CHUNK_SIZE - 1;
+
+        private final MappedByteBuffer[] chunks;
+        private final long size;
+        private long position;
+
+        MappedInput(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                size = channel.size();
+                chunks = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_BITS)];
+                for (int chunk = 0; chunk < chunks.length; chunk++) {
+                    long start = (long) chunk << CHUNK_BITS;
+                    chunks[chunk] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                            Math.min(CHUNK_SIZE, size - start));
+                }
+            }
+        }
+
+        @Override
+        int read() {
+            if (position >= size) {
+                return END;
+            }
+            int symbol = chunks[(int) (position >>> CHUNK_BITS)].get((int) (position & CHUNK_MASK)) & BYTE_MASK;
+            position++;
+            return symbol;
+        }
+
+        @Override
+        long getPosition() {
+            return position;
+        }
+
+        void seek(long position) {
+            this.position = position;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    static final class GzipInput extends ByteInput {
+        private static final int BUFFER_SIZE = 1 << 16;
+
+        private final InputStream stream;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int limit,
+                index;
+        private long position;
+
+        GzipInput(Path path) throws IOException {
+            stream = new GZIPInputStream(Files.newInputStream(path), BUFFER_SIZE);
+        }
+
+        @Override
+        int read() throws IOException {
+            if (index == limit) {
+                limit = stream.read(buffer);
+                index = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return END;
+                }
+            }
+            position++;
+            return buffer[index++] & BYTE_MASK;
+        }
+
+        @Override
+        long getPosition() {
+            return position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream.close();
+        }
+    }
+}
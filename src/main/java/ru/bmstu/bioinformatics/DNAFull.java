@@ -4,17 +4,25 @@ public class DNAFull implements ScoringFunction {
     private int indel;
     private int match;
     private int mismatch;
+    private int[] table;
 
     public DNAFull(int indel, int match, int mismatch) {
         this.indel = indel;
         this.match = match;
         this.mismatch = mismatch;
+        this.table = ScoringFunction.matchMismatchTable(match, mismatch);
     }
 
+    @Override
     public int getIndel() {
         return indel;
     }
 
+    @Override
+    public int[] getTable() {
+        return table;
+    }
+
     public int getMatch() {
         return match;
     }
@@ -0,0 +1,225 @@
+package ru.bmstu.bioinformatics;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * samtools-compatible .fai index of an uncompressed FASTA or FASTQ file: one tab-separated line per record
+ * with its name, length, sequence offset, bases per line, bytes per line and, for FASTQ, the quality offset.
+ */
+public class FastaIndex {
+    public static final String EXTENSION = ".fai";
+    private static final int FASTA_HEADER = '>', FASTQ_HEADER = '@', QUALITY_HEADER = '+', NEW_LINE = '\n',
+            SPACE = ' ', FASTA_COLUMNS = 5, FASTQ_COLUMNS = 6, NO_QUALITY = -1;
+    private static final String SEPARATOR = "\t";
+
+    public static class Entry {
+        private final String name;
+        private final int length;
+        private final long offset;
+        private final int lineBases,
+                lineWidth;
+        private final long qualityOffset;
+
+        public Entry(String name, int length, long offset, int lineBases, int lineWidth, long qualityOffset) {
+            this.name = name;
+            this.length = length;
+            this.offset = offset;
+            this.lineBases = lineBases;
+            this.lineWidth = lineWidth;
+            this.qualityOffset = qualityOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getLineBases() {
+            return lineBases;
+        }
+
+        public int getLineWidth() {
+            return lineWidth;
+        }
+
+        /**
+         * Offset of the qualities of a FASTQ record, -1 for FASTA.
+         */
+        public long getQualityOffset() {
+            return qualityOffset;
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public FastaIndex(List<Entry> entries) {
+        for (Entry entry : entries) {
+            this.entries.put(entry.getName(), entry);
+        }
+    }
+
+    public List<Entry> getEntries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    public Entry getEntry(String name) {
+        return entries.get(name);
+    }
+
+    public static Path indexPath(String path) {
+        return Paths.get(path + EXTENSION);
+    }
+
+    public static FastaIndex load(Path path) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] columns = line.split(SEPARATOR);
+                if (columns.length != FASTA_COLUMNS && columns.length != FASTQ_COLUMNS) {
+                    throw new IOException("Malformed index line in " + path + ": " + line);
+                }
+                try {
+                    entries.add(new Entry(columns[0], Integer.parseInt(columns[1]), Long.parseLong(columns[2]),
+                            Integer.parseInt(columns[3]), Integer.parseInt(columns[4]),
+                            columns.length == FASTQ_COLUMNS ? Long.parseLong(columns[5]) : NO_QUALITY));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed index line in " + path + ": " + line, e);
+                }
+            }
+        }
+        return new FastaIndex(entries);
+    }
+
+    public void write(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.US_ASCII)) {
+            for (Entry entry : entries.values()) {
+                writer.write(entry.getName() + SEPARATOR + entry.getLength() + SEPARATOR + entry.getOffset()
+                        + SEPARATOR + entry.getLineBases() + SEPARATOR + entry.getLineWidth());
+                if (entry.getQualityOffset() != NO_QUALITY) {
+                    writer.write(SEPARATOR + entry.getQualityOffset());
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    private static int skipLine(ByteInput input, int symbol) throws IOException {
+        while (symbol != ByteInput.END && symbol != NEW_LINE) {
+            symbol = input.read();
+        }
+        return symbol == ByteInput.END ? symbol : input.read();
+    }
+
+    /**
+     * Scans the file once; every line of a record except its last must hold the same number of bases.
+     */
+    public static FastaIndex build(String path) throws IOException {
+        Path file = Paths.get(path);
+        if (ByteInput.isGzip(file)) {
+            throw new IOException("Cannot index a gzip-compressed file: " + path);
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        try (ByteInput input = new ByteInput.MappedInput(file)) {
+            int symbol = input.read();
+            while (symbol != ByteInput.END) {
+                if (symbol != FASTA_HEADER && symbol != FASTQ_HEADER) {
+                    long start = input.getPosition() - 1;
+                    while (symbol != ByteInput.END && symbol != NEW_LINE && symbol <= SPACE) {
+                        symbol = input.read();
+                    }
+                    if (symbol != ByteInput.END && symbol != NEW_LINE) {
+                        throw new IOException("Sequence data outside of a record at byte " + start + " of " + path);
+                    }
+                    symbol = skipLine(input, symbol);
+                    continue;
+                }
+
+                boolean fastq = symbol == FASTQ_HEADER;
+                StringBuilder header = new StringBuilder();
+                while ((symbol = input.read()) != ByteInput.END && symbol != NEW_LINE) {
+                    header.append((char) symbol);
+                }
+                String name = SequenceReader.recordId(header);
+                long offset = input.getPosition(),
+                        length = 0;
+                int lineBases = 0,
+                        lineWidth = 0;
+                boolean shortLine = false;
+
+                symbol = input.read();
+                while (symbol != ByteInput.END
+                        && (fastq ? symbol != QUALITY_HEADER : symbol != FASTA_HEADER && symbol != FASTQ_HEADER)) {
+                    int bases = 0,
+                            width = 0;
+                    while (symbol != ByteInput.END && symbol != NEW_LINE) {
+                        width++;
+                        if (symbol > SPACE) {
+                            bases++;
+                        }
+                        symbol = input.read();
+                    }
+                    if (symbol == NEW_LINE) {
+                        width++;
+                        symbol = input.read();
+                    }
+                    if (bases == 0) {
+                        shortLine = true;
+                        continue;
+                    }
+
+                    if (shortLine || (lineBases != 0 && bases > lineBases)) {
+                        throw new IOException("Different line length in sequence '" + name + "' of " + path);
+                    }
+                    if (lineBases == 0) {
+                        lineBases = bases;
+                        lineWidth = width;
+                    } else if (bases != lineBases || width != lineWidth) {
+                        shortLine = true;
+                    }
+                    length += bases;
+                }
+                if (length > Integer.MAX_VALUE) {
+                    throw new IOException("Sequence '" + name + "' is too long: " + length);
+                }
+
+                long qualityOffset = NO_QUALITY;
+                if (fastq) {
+                    symbol = skipLine(input, symbol);
+                    qualityOffset = input.getPosition() - 1;
+                    for (long qualities = 0; qualities < length; symbol = input.read()) {
+                        if (symbol == ByteInput.END) {
+                            throw new IOException("Truncated qualities of '" + name + "' in " + path);
+                        }
+                        if (symbol > SPACE) {
+                            qualities++;
+                        }
+                    }
+                    symbol = skipLine(input, symbol);
+                }
+                entries.add(new Entry(name, (int) length, offset, lineBases, lineWidth, qualityOffset));
+            }
+        }
+        return new FastaIndex(entries);
+    }
+}
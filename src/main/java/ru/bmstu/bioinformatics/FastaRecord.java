@@ -0,0 +1,19 @@
+package ru.bmstu.bioinformatics;
+
+public class FastaRecord {
+    private String id;
+    private CharSequence sequence;
+
+    public FastaRecord(String id, CharSequence sequence) {
+        this.id = id;
+        this.sequence = sequence;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public CharSequence getSequence() {
+        return sequence;
+    }
+}
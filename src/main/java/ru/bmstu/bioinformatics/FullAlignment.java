@@ -0,0 +1,217 @@
+package ru.bmstu.bioinformatics;
+
+/**
+ * Global, semi-global or overlap alignment over the whole matrix with a 2-bit traceback,
+ * the default mode of {@link PairAlignment}.
+ * The matrix fill and the traceback are separate steps, so each of them can be measured on its own.
+ * The traceback, the codes and the lines are kept between calls and only grow, so an {@link Aligner}
+ * can align pair after pair with the same instance without allocating in the fill.
+ */
+public class FullAlignment {
+    private final int ZERO = 0, GAP_INDEX = 0, ONE = 1, FIRST_INDEX = 1,
+            LINE_INDEX = 0, COLUMN_INDEX = 1;
+    private static final String EMPTY_SEQUENCE = "";
+    private static final int SINGLE_THREAD = 1;
+
+    private CharSequence firstSequence,
+            secondSequence;
+    private ScoringFunction scoringFunction;
+    private AlignmentType type;
+    private int threads;
+
+    private TracebackMatrix traceback;
+    private byte[] firstCodes,
+            secondCodes,
+            block;
+    private int[] previousLine,
+            currentLine,
+            lastColumn;
+    private int lines,
+            columns;
+    private int optimalLineIndex,
+            optimalColumnIndex;
+
+    public FullAlignment(CharSequence firstSequence, CharSequence secondSequence, ScoringFunction scoringFunction,
+                         AlignmentType type, int threads) {
+        if (type.isLocal()) {
+            throw new IllegalArgumentException("Local alignment is computed by LocalAlignment");
+        }
+        this.firstSequence = firstSequence;
+        this.secondSequence = secondSequence;
+        this.scoringFunction = scoringFunction;
+        this.type = type;
+        this.threads = threads;
+    }
+
+    /**
+     * Single-threaded instance for {@link #reset(CharSequence, CharSequence)}.
+     */
+    FullAlignment(ScoringFunction scoringFunction, AlignmentType type) {
+        this(EMPTY_SEQUENCE, EMPTY_SEQUENCE, scoringFunction, type, SINGLE_THREAD);
+    }
+
+    /**
+     * Switches to another pair of sequences, keeping the buffers of the previous one.
+     */
+    void reset(CharSequence firstSequence, CharSequence secondSequence) {
+        this.firstSequence = firstSequence;
+        this.secondSequence = secondSequence;
+    }
+
+    /**
+     * Drops the buffers, e.g. after an unusually large pair.
+     */
+    void release() {
+        traceback = null;
+        firstCodes = secondCodes = block = null;
+        previousLine = currentLine = lastColumn = null;
+    }
+
+    /**
+     * Number of traceback cells held between calls.
+     */
+    long getRetainedCells() {
+        return traceback == null ? ZERO : traceback.getCapacity();
+    }
+
+    private static byte[] ensureLength(byte[] array, int length) {
+        return array == null || array.length < length ? new byte[length] : array;
+    }
+
+    private static int[] ensureLength(int[] array, int length) {
+        return array == null || array.length < length ? new int[length] : array;
+    }
+
+    private int gapValue(int index, boolean free) {
+        return free
+                ? ZERO
+                : scoringFunction.getIndel() * index;
+    }
+
+    private void fillGapCells() {
+        traceback.set(GAP_INDEX, GAP_INDEX, PredecessorType.NULL);
+        previousLine[GAP_INDEX] = ZERO;
+
+        for (int columnIndex = FIRST_INDEX; columnIndex < columns; columnIndex++) {
+            traceback.set(GAP_INDEX, columnIndex, PredecessorType.LEFT);
+            previousLine[columnIndex] = gapValue(columnIndex, type.isFirstStartFree());
+        }
+        for (int lineIndex = FIRST_INDEX; lineIndex < lines; lineIndex++) {
+            traceback.set(lineIndex, GAP_INDEX, PredecessorType.UP);
+            lastColumn[lineIndex] = gapValue(lineIndex, type.isSecondStartFree());
+        }
+    }
+
+    private void fillScoringMatrix() {
+        int indel = scoringFunction.getIndel();
+        int[] table = scoringFunction.getTable();
+
+        for (int lineIndex = FIRST_INDEX; lineIndex < lines; lineIndex++) {
+            int secondCode = secondCodes[lineIndex - ONE];
+            currentLine[GAP_INDEX] = gapValue(lineIndex, type.isSecondStartFree());
+
+            for (int columnIndex = FIRST_INDEX; columnIndex < columns; columnIndex++) {
+                int currentMaximum = previousLine[columnIndex - ONE]
+                        + table[firstCodes[columnIndex - ONE] * ScoringFunction.ALPHABET_SIZE + secondCode];
+                PredecessorType currentType = PredecessorType.DIAG;
+
+                if (previousLine[columnIndex] + indel > currentMaximum) {
+                    currentMaximum = previousLine[columnIndex] + indel;
+                    currentType = PredecessorType.UP;
+                }
+                if (currentLine[columnIndex - ONE] + indel > currentMaximum) {
+                    currentMaximum = currentLine[columnIndex - ONE] + indel;
+                    currentType = PredecessorType.LEFT;
+                }
+
+                currentLine[columnIndex] = currentMaximum;
+                traceback.set(lineIndex, columnIndex, currentType);
+            }
+
+            lastColumn[lineIndex] = currentLine[columns - ONE];
+            int[] swap = previousLine;
+            previousLine = currentLine;
+            currentLine = swap;
+        }
+    }
+
+    /**
+     * Fills the scoring matrix and the traceback, finds the optimal cell and returns its score.
+     */
+    public int fill() {
+        AlignmentMetrics.Probe probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.FILL);
+        lines = secondSequence.length() + ONE;
+        columns = firstSequence.length() + ONE;
+        if (traceback == null) {
+            traceback = new TracebackMatrix(lines, columns);
+        } else traceback.reshape(lines, columns);
+        firstCodes = ensureLength(firstCodes, firstSequence.length());
+        secondCodes = ensureLength(secondCodes, secondSequence.length());
+        scoringFunction.encode(firstSequence, firstCodes);
+        scoringFunction.encode(secondSequence, secondCodes);
+        previousLine = ensureLength(previousLine, columns);
+        currentLine = ensureLength(currentLine, columns);
+        lastColumn = ensureLength(lastColumn, lines);
+
+        fillGapCells();
+        if (threads > ONE) {
+            new WavefrontFill(firstCodes, secondCodes, scoringFunction, traceback, threads)
+                    .fill(previousLine, lastColumn);
+        } else fillScoringMatrix();
+
+        optimalLineIndex = secondSequence.length();
+        optimalColumnIndex = firstSequence.length();
+        if (type.hasFreeEnd()) {
+            int[] optimalScoreCell = type.findOptimalCell(previousLine, lastColumn, lines - ONE, columns - ONE);
+            optimalLineIndex = optimalScoreCell[LINE_INDEX];
+            optimalColumnIndex = optimalScoreCell[COLUMN_INDEX];
+        }
+        AlignmentMetrics.recordMatrixBytes(traceback.getBytes());
+        AlignmentMetrics.end(probe, (long) (lines - ONE) * (columns - ONE));
+        return optimalLineIndex == secondSequence.length()
+                ? previousLine[optimalColumnIndex]
+                : lastColumn[optimalLineIndex];
+    }
+
+    /**
+     * Appends the path up to the optimal cell; with a free end the unaligned tail
+     * is left to the caller. Requires {@link #fill()}.
+     */
+    public void traceBack(AlignmentOperations operations) {
+        AlignmentMetrics.Probe probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.TRACEBACK);
+        int lineIndex = optimalLineIndex,
+                columnIndex = optimalColumnIndex;
+        int length = lineIndex + columnIndex,
+                position = length;
+        block = ensureLength(block, length);
+        PredecessorType currentType;
+
+        while ((currentType = traceback.get(lineIndex, columnIndex)) != PredecessorType.NULL) {
+            position--;
+            block[position] = (byte) currentType.ordinal();
+            switch (currentType) {
+                case LEFT:
+                    columnIndex--;
+                    break;
+                case DIAG:
+                    lineIndex--;
+                    columnIndex--;
+                    break;
+                case UP:
+                    lineIndex--;
+                    break;
+            }
+        }
+
+        operations.append(block, position, length - position);
+        AlignmentMetrics.end(probe, length - position);
+    }
+
+    public int getOptimalLineIndex() {
+        return optimalLineIndex;
+    }
+
+    public int getOptimalColumnIndex() {
+        return optimalColumnIndex;
+    }
+}
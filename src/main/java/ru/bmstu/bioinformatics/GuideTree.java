@@ -0,0 +1,202 @@
+package ru.bmstu.bioinformatics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rooted binary tree over n sequences for progressive alignment. Nodes 0..n-1 are the leaves in input order,
+ * node n + k is the k-th join, so children always come before their parent and the last node is the root.
+ * Both constructions take O(n^2) memory and O(n^3) time.
+ */
+public class GuideTree {
+    private static final double HALF = 0.5;
+    private static final int JOINED_BY_THREE = 3;
+
+    private final int numberOfLeaves;
+    private final int[] left,
+            right;
+
+    private GuideTree(int numberOfLeaves) {
+        this.numberOfLeaves = numberOfLeaves;
+        this.left = new int[Math.max(0, numberOfLeaves - 1)];
+        this.right = new int[Math.max(0, numberOfLeaves - 1)];
+    }
+
+    private static double[][] copy(double[][] distances) {
+        double[][] copy = new double[distances.length][];
+        for (int i = 0; i < distances.length; i++) {
+            copy[i] = distances[i].clone();
+        }
+        return copy;
+    }
+
+    /**
+     * Average linkage: the two closest clusters are joined, and the distance to the union is the mean
+     * of the distances between their members.
+     */
+    public static GuideTree upgma(double[][] distances) {
+        int n = distances.length;
+        GuideTree tree = new GuideTree(n);
+        double[][] d = copy(distances);
+        int[] nodes = new int[n],
+                sizes = new int[n];
+        int[] active = new int[n];
+        for (int i = 0; i < n; i++) {
+            nodes[i] = i;
+            sizes[i] = 1;
+            active[i] = i;
+        }
+
+        for (int join = 0; join < n - 1; join++) {
+            int bestI = -1,
+                    bestJ = -1;
+            double best = Double.POSITIVE_INFINITY;
+            for (int a = 0; a < n - join; a++) {
+                double[] line = d[active[a]];
+                for (int b = a + 1; b < n - join; b++) {
+                    double distance = line[active[b]];
+                    if (distance < best || bestI < 0) {
+                        best = distance;
+                        bestI = a;
+                        bestJ = b;
+                    }
+                }
+            }
+
+            int i = active[bestI],
+                    j = active[bestJ];
+            for (int a = 0; a < n - join; a++) {
+                int k = active[a];
+                if (k != i && k != j) {
+                    d[i][k] = d[k][i] = (d[i][k] * sizes[i] + d[j][k] * sizes[j]) / (sizes[i] + sizes[j]);
+                }
+            }
+            tree.join(join, nodes[i], nodes[j]);
+            nodes[i] = n + join;
+            sizes[i] += sizes[j];
+            System.arraycopy(active, bestJ + 1, active, bestJ, n - join - bestJ - 1);
+        }
+        return tree;
+    }
+
+    /**
+     * Saitou-Nei neighbour joining; the unrooted result is rooted at the last join.
+     */
+    public static GuideTree neighbourJoining(double[][] distances) {
+        int n = distances.length;
+        GuideTree tree = new GuideTree(n);
+        double[][] d = copy(distances);
+        int[] nodes = new int[n];
+        double[] sums = new double[n];
+        int[] active = new int[n];
+        for (int i = 0; i < n; i++) {
+            nodes[i] = i;
+            active[i] = i;
+            for (int k = 0; k < n; k++) {
+                sums[i] += d[i][k];
+            }
+        }
+
+        for (int join = 0; join < n - 1; join++) {
+            int bestI = 0,
+                    bestJ = 1;
+            if (n - join >= JOINED_BY_THREE) {
+                double best = Double.POSITIVE_INFINITY;
+                for (int a = 0; a < n - join; a++) {
+                    for (int b = a + 1; b < n - join; b++) {
+                        int i = active[a],
+                                j = active[b];
+                        double q = (n - join - 2) * d[i][j] - sums[i] - sums[j];
+                        if (q < best) {
+                            best = q;
+                            bestI = a;
+                            bestJ = b;
+                        }
+                    }
+                }
+            }
+
+            int i = active[bestI],
+                    j = active[bestJ];
+            sums[i] = 0;
+            for (int a = 0; a < n - join; a++) {
+                int k = active[a];
+                if (k != i && k != j) {
+                    double distance = HALF * (d[i][k] + d[j][k] - d[i][j]);
+                    sums[k] += distance - d[i][k] - d[j][k];
+                    d[i][k] = d[k][i] = distance;
+                    sums[i] += distance;
+                }
+            }
+            tree.join(join, nodes[i], nodes[j]);
+            nodes[i] = n + join;
+            System.arraycopy(active, bestJ + 1, active, bestJ, n - join - bestJ - 1);
+        }
+        return tree;
+    }
+
+    private void join(int join, int first, int second) {
+        left[join] = first;
+        right[join] = second;
+    }
+
+    public int getNumberOfLeaves() {
+        return numberOfLeaves;
+    }
+
+    public int getNumberOfNodes() {
+        return Math.max(0, 2 * numberOfLeaves - 1);
+    }
+
+    public int getRoot() {
+        return getNumberOfNodes() - 1;
+    }
+
+    public boolean isLeaf(int node) {
+        return node < numberOfLeaves;
+    }
+
+    public int getLeft(int node) {
+        return left[node - numberOfLeaves];
+    }
+
+    public int getRight(int node) {
+        return right[node - numberOfLeaves];
+    }
+
+    /**
+     * Newick text of the topology with the given leaf names.
+     */
+    public String toNewick(List<String> names) {
+        StringBuilder newick = new StringBuilder();
+        if (numberOfLeaves > 0) {
+            appendNewick(newick, getRoot(), names);
+        }
+        return newick.append(';').toString();
+    }
+
+    private void appendNewick(StringBuilder newick, int root, List<String> names) {
+        // Iterative, so that the ladder-like trees of large families do not overflow the stack.
+        List<int[]> stack = new ArrayList<>();
+        stack.add(new int[]{root, 0});
+        while (!stack.isEmpty()) {
+            int[] top = stack.get(stack.size() - 1);
+            int node = top[0];
+            if (isLeaf(node)) {
+                newick.append(names.get(node));
+                stack.remove(stack.size() - 1);
+            } else if (top[1] == 0) {
+                newick.append('(');
+                top[1] = 1;
+                stack.add(new int[]{getLeft(node), 0});
+            } else if (top[1] == 1) {
+                newick.append(',');
+                top[1] = 2;
+                stack.add(new int[]{getRight(node), 0});
+            } else {
+                newick.append(')');
+                stack.remove(stack.size() - 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package ru.bmstu.bioinformatics;
+
+/**
+ * Divide-and-conquer (Hirschberg) global alignment in O(n + m) memory.
+ * Lines of the dynamic programming matrix correspond to the second sequence,
+ * columns to the first one, exactly as in {@link PairAlignment}.
+ */
+public class HirschbergAlignment {
+    private final int ZERO = 0, GAP_INDEX = 0, ONE = 1, FIRST_INDEX = 1, HALF = 2,
+            LINE_INDEX = 0, COLUMN_INDEX = 1, BASE_CASE_CELLS = 1 << 12;
+
+    private CharSequence firstSequence,
+            secondSequence;
+    private byte[] firstCodes,
+            secondCodes;
+    private int[] table;
+    private AlignmentType type;
+    private int indel;
+
+    private int[] forwardLine, forwardSwap,
+            backwardLine, backwardSwap;
+    private int optimalLineIndex,
+            optimalColumnIndex;
+    private long cells;
+
+    public HirschbergAlignment(CharSequence firstSequence, CharSequence secondSequence,
+                               ScoringFunction scoringFunction, AlignmentType type) {
+        if (type.isLocal()) {
+            throw new IllegalArgumentException("Local alignment is computed by LocalAlignment");
+        }
+        this.firstSequence = firstSequence;
+        this.secondSequence = secondSequence;
+        this.firstCodes = scoringFunction.encode(firstSequence);
+        this.secondCodes = scoringFunction.encode(secondSequence);
+        this.table = scoringFunction.getTable();
+        this.type = type;
+        this.indel = scoringFunction.getIndel();
+    }
+
+    private int gapValue(int index, boolean freeGaps) {
+        return freeGaps
+                ? ZERO
+                : indel * index;
+    }
+
+    private int substitution(int lineIndex, int columnIndex) {
+        return table[firstCodes[columnIndex] * ScoringFunction.ALPHABET_SIZE + secondCodes[lineIndex]];
+    }
+
+    /**
+     * Scores lines [lineBegin, lineEnd) against columns [columnBegin, columnEnd) from the top left corner.
+     * Returns the last line; when lastColumn is not null it receives the last value of every line.
+     * Free lines and columns mark blocks that lie on the zero-valued gap cells of the whole matrix.
+     */
+    private int[] forwardScores(int lineBegin, int lineEnd, int columnBegin, int columnEnd,
+                                boolean freeLine, boolean freeColumn, int[] lastColumn) {
+        int width = columnEnd - columnBegin;
+        int[] previous = forwardLine, current = forwardSwap;
+        cells += (long) (lineEnd - lineBegin) * width;
+
+        for (int columnIndex = GAP_INDEX; columnIndex <= width; columnIndex++) {
+            previous[columnIndex] = gapValue(columnIndex, freeLine);
+        }
+        if (lastColumn != null) {
+            lastColumn[GAP_INDEX] = previous[width];
+        }
+        for (int lineIndex = lineBegin; lineIndex < lineEnd; lineIndex++) {
+            current[GAP_INDEX] = gapValue(lineIndex - lineBegin + ONE, freeColumn);
+            for (int columnIndex = FIRST_INDEX; columnIndex <= width; columnIndex++) {
+                int value = previous[columnIndex - ONE] + substitution(lineIndex, columnBegin + columnIndex - ONE);
+                value = Math.max(value, previous[columnIndex] + indel);
+                current[columnIndex] = Math.max(value, current[columnIndex - ONE] + indel);
+            }
+            if (lastColumn != null) {
+                lastColumn[lineIndex - lineBegin + ONE] = current[width];
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        forwardLine = previous;
+        forwardSwap = current;
+        return previous;
+    }
+
+    /**
+     * Scores lines [lineBegin, lineEnd) against columns [columnBegin, columnEnd) from the bottom right corner.
+     * Element k of the result is the score of the suffix that starts k columns before columnEnd.
+     * A free column lets the path climb the first column of the block at no cost.
+     */
+    private int[] backwardScores(int lineBegin, int lineEnd, int columnBegin, int columnEnd, boolean freeColumn) {
+        int width = columnEnd - columnBegin;
+        int[] previous = backwardLine, current = backwardSwap;
+        cells += (long) (lineEnd - lineBegin) * width;
+
+        for (int columnIndex = GAP_INDEX; columnIndex <= width; columnIndex++) {
+            previous[columnIndex] = indel * columnIndex;
+        }
+        for (int lineIndex = lineEnd - ONE; lineIndex >= lineBegin; lineIndex--) {
+            current[GAP_INDEX] = indel * (lineEnd - lineIndex);
+            for (int columnIndex = FIRST_INDEX; columnIndex <= width; columnIndex++) {
+                int value = previous[columnIndex - ONE] + substitution(lineIndex, columnEnd - columnIndex);
+                value = Math.max(value, previous[columnIndex] + indel);
+                current[columnIndex] = Math.max(value, current[columnIndex - ONE] + indel);
+            }
+            if (freeColumn) {
+                current[width] = Math.max(current[width], previous[width]);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        backwardLine = previous;
+        backwardSwap = current;
+        return previous;
+    }
+
+    /**
+     * Aligns a small block with a full traceback, using the same tie-breaking as {@link PairAlignment}.
+     */
+    private int alignBlock(int lineBegin, int lineEnd, int columnBegin, int columnEnd,
+                           boolean freeLine, boolean freeColumn, AlignmentOperations operations) {
+        int height = lineEnd - lineBegin,
+                width = columnEnd - columnBegin;
+        TracebackMatrix traceback = new TracebackMatrix(height + ONE, width + ONE);
+        cells += (long) height * width;
+        int[] previous = new int[width + ONE], current = new int[width + ONE];
+
+        traceback.set(GAP_INDEX, GAP_INDEX, PredecessorType.NULL);
+        for (int columnIndex = FIRST_INDEX; columnIndex <= width; columnIndex++) {
+            previous[columnIndex] = gapValue(columnIndex, freeLine);
+            traceback.set(GAP_INDEX, columnIndex, PredecessorType.LEFT);
+        }
+        for (int lineIndex = FIRST_INDEX; lineIndex <= height; lineIndex++) {
+            current[GAP_INDEX] = gapValue(lineIndex, freeColumn);
+            traceback.set(lineIndex, GAP_INDEX, PredecessorType.UP);
+            for (int columnIndex = FIRST_INDEX; columnIndex <= width; columnIndex++) {
+                int currentMaximum = previous[columnIndex - ONE]
+                        + substitution(lineBegin + lineIndex - ONE, columnBegin + columnIndex - ONE);
+                PredecessorType currentType = PredecessorType.DIAG;
+
+                if (previous[columnIndex] + indel > currentMaximum) {
+                    currentMaximum = previous[columnIndex] + indel;
+                    currentType = PredecessorType.UP;
+                }
+                if (current[columnIndex - ONE] + indel > currentMaximum) {
+                    currentMaximum = current[columnIndex - ONE] + indel;
+                    currentType = PredecessorType.LEFT;
+                }
+
+                current[columnIndex] = currentMaximum;
+                traceback.set(lineIndex, columnIndex, currentType);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        byte[] block = new byte[height + width];
+        int position = block.length,
+                lineIndex = height,
+                columnIndex = width;
+        PredecessorType currentType;
+        while ((currentType = traceback.get(lineIndex, columnIndex)) != PredecessorType.NULL) {
+            position--;
+            block[position] = (byte) currentType.ordinal();
+            switch (currentType) {
+                case LEFT:
+                    columnIndex--;
+                    break;
+                case DIAG:
+                    lineIndex--;
+                    columnIndex--;
+                    break;
+                case UP:
+                    lineIndex--;
+                    break;
+            }
+        }
+        operations.append(block, position, block.length - position);
+
+        return previous[width];
+    }
+
+    private int alignRecursively(int lineBegin, int lineEnd, int columnBegin, int columnEnd,
+                                 boolean freeLine, boolean freeColumn, AlignmentOperations operations) {
+        int height = lineEnd - lineBegin,
+                width = columnEnd - columnBegin;
+        if (height <= ONE || width <= ONE || (long) (height + ONE) * (width + ONE) <= BASE_CASE_CELLS) {
+            return alignBlock(lineBegin, lineEnd, columnBegin, columnEnd, freeLine, freeColumn, operations);
+        }
+
+        int lineMiddle = lineBegin + height / HALF;
+        int[] forward = forwardScores(lineBegin, lineMiddle, columnBegin, columnEnd, freeLine, freeColumn, null),
+                backward = backwardScores(lineMiddle, lineEnd, columnBegin, columnEnd, freeColumn);
+
+        int splitOffset = ZERO,
+                maximum = forward[ZERO] + backward[width];
+        for (int offset = FIRST_INDEX; offset <= width; offset++) {
+            int value = forward[offset] + backward[width - offset];
+            if (value > maximum) {
+                maximum = value;
+                splitOffset = offset;
+            }
+        }
+
+        int columnSplit = columnBegin + splitOffset;
+        alignRecursively(lineBegin, lineMiddle, columnBegin, columnSplit, freeLine, freeColumn, operations);
+        alignRecursively(lineMiddle, lineEnd, columnSplit, columnEnd, false, freeColumn && splitOffset == ZERO,
+                operations);
+
+        return maximum;
+    }
+
+    /**
+     * Appends the optimal alignment path to the operations and returns its score.
+     * With a free end the unaligned tail after the optimal cell is left to the caller.
+     */
+    public int align(AlignmentOperations operations) {
+        AlignmentMetrics.Probe probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.FILL);
+        int width = firstSequence.length();
+        cells = ZERO;
+        forwardLine = new int[width + ONE];
+        forwardSwap = new int[width + ONE];
+        backwardLine = new int[width + ONE];
+        backwardSwap = new int[width + ONE];
+
+        optimalLineIndex = secondSequence.length();
+        optimalColumnIndex = width;
+        if (type.hasFreeEnd()) {
+            int[] lastColumn = new int[secondSequence.length() + ONE];
+            int[] lastLine = forwardScores(ZERO, secondSequence.length(), ZERO, width,
+                    type.isFirstStartFree(), type.isSecondStartFree(), lastColumn);
+            int[] optimalScoreCell = type.findOptimalCell(lastLine, lastColumn);
+            optimalLineIndex = optimalScoreCell[LINE_INDEX];
+            optimalColumnIndex = optimalScoreCell[COLUMN_INDEX];
+        }
+
+        int score = alignRecursively(ZERO, optimalLineIndex, ZERO, optimalColumnIndex,
+                type.isFirstStartFree(), type.isSecondStartFree(), operations);
+
+        forwardLine = forwardSwap = backwardLine = backwardSwap = null;
+        AlignmentMetrics.end(probe, cells);
+        return score;
+    }
+
+    /**
+     * Cells computed by {@link #align}: the forward and backward passes of every level and the small blocks.
+     */
+    public long getCells() {
+        return cells;
+    }
+
+    public int getOptimalLineIndex() {
+        return optimalLineIndex;
+    }
+
+    public int getOptimalColumnIndex() {
+        return optimalColumnIndex;
+    }
+}
@@ -0,0 +1,268 @@
+package ru.bmstu.bioinformatics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON reader and string quoting for the {@link AlignmentServer} protocol, so the project needs no JSON
+ * library. Objects become {@code Map<String, Object>}, arrays {@code List<Object>}, integral numbers {@code Long},
+ * other numbers {@code Double}. Objects and arrays nest at most MAXIMUM_DEPTH levels deep, so that a small
+ * hostile body cannot overflow the stack of the recursive reader.
+ */
+final class Json {
+    static final int MAXIMUM_DEPTH = 64;
+    private static final int HEX_RADIX = 16, UNICODE_ESCAPE_LENGTH = 4, CONTROL_LIMIT = 0x20;
+
+    private final String text;
+    private int position,
+            depth;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    static Object parse(String text) {
+        Json json = new Json(text);
+        Object value = json.readValue();
+        json.skipWhitespace();
+        if (json.position != text.length()) {
+            throw json.error("Unexpected data after the value");
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> parseObject(String text) {
+        Object value = parse(text);
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("JSON object expected");
+        }
+        return (Map<String, Object>) value;
+    }
+
+    /**
+     * The string as a JSON string literal, quotes included.
+     */
+    static String quote(CharSequence value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int index = 0; index < value.length(); index++) {
+            char symbol = value.charAt(index);
+            switch (symbol) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (symbol < CONTROL_LIMIT) {
+                        builder.append(String.format("\\u%04x", (int) symbol));
+                    } else builder.append(symbol);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position + " of the JSON input");
+    }
+
+    private void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private char peek() {
+        skipWhitespace();
+        if (position >= text.length()) {
+            throw error("Unexpected end");
+        }
+        return text.charAt(position);
+    }
+
+    private void expect(char symbol) {
+        if (peek() != symbol) {
+            throw error("'" + symbol + "' expected");
+        }
+        position++;
+    }
+
+    private void enter() {
+        if (++depth > MAXIMUM_DEPTH) {
+            throw error("Nesting deeper than " + MAXIMUM_DEPTH + " levels");
+        }
+    }
+
+    private Object readValue() {
+        char symbol = peek();
+        switch (symbol) {
+            case '{':
+                enter();
+                Map<String, Object> object = readObject();
+                depth--;
+                return object;
+            case '[':
+                enter();
+                List<Object> array = readArray();
+                depth--;
+                return array;
+            case '"':
+                return readString();
+            case 't':
+                return readLiteral("true", Boolean.TRUE);
+            case 'f':
+                return readLiteral("false", Boolean.FALSE);
+            case 'n':
+                return readLiteral("null", null);
+            default:
+                if (symbol == '-' || Character.isDigit(symbol)) {
+                    return readNumber();
+                }
+                throw error("Unexpected character '" + symbol + "'");
+        }
+    }
+
+    private Map<String, Object> readObject() {
+        Map<String, Object> object = new LinkedHashMap<>();
+        expect('{');
+        if (peek() == '}') {
+            position++;
+            return object;
+        }
+        do {
+            if (peek() != '"') {
+                throw error("Object key expected");
+            }
+            String key = readString();
+            expect(':');
+            object.put(key, readValue());
+        } while (nextElement('}'));
+        return object;
+    }
+
+    private List<Object> readArray() {
+        List<Object> array = new ArrayList<>();
+        expect('[');
+        if (peek() == ']') {
+            position++;
+            return array;
+        }
+        do {
+            array.add(readValue());
+        } while (nextElement(']'));
+        return array;
+    }
+
+    /**
+     * Consumes a comma (true, another element follows) or the closing bracket (false).
+     */
+    private boolean nextElement(char closing) {
+        char symbol = peek();
+        position++;
+        if (symbol == ',') {
+            return true;
+        } else if (symbol == closing) {
+            return false;
+        }
+        position--;
+        throw error("',' or '" + closing + "' expected");
+    }
+
+    private String readString() {
+        expect('"');
+        StringBuilder builder = new StringBuilder();
+        while (true) {
+            if (position >= text.length()) {
+                throw error("Unterminated string");
+            }
+            char symbol = text.charAt(position++);
+            if (symbol == '"') {
+                return builder.toString();
+            } else if (symbol != '\\') {
+                builder.append(symbol);
+                continue;
+            }
+
+            if (position >= text.length()) {
+                throw error("Unterminated string");
+            }
+            char escaped = text.charAt(position++);
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    builder.append(escaped);
+                    break;
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'u':
+                    if (position + UNICODE_ESCAPE_LENGTH > text.length()) {
+                        throw error("Unterminated escape");
+                    }
+                    try {
+                        builder.append((char) Integer.parseInt(
+                                text.substring(position, position + UNICODE_ESCAPE_LENGTH), HEX_RADIX));
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid escape");
+                    }
+                    position += UNICODE_ESCAPE_LENGTH;
+                    break;
+                default:
+                    throw error("Invalid escape");
+            }
+        }
+    }
+
+    private Object readLiteral(String literal, Object value) {
+        if (!text.startsWith(literal, position)) {
+            throw error("Unexpected literal");
+        }
+        position += literal.length();
+        return value;
+    }
+
+    private Object readNumber() {
+        int start = position;
+        boolean integral = true;
+        while (position < text.length()) {
+            char symbol = text.charAt(position);
+            if (symbol == '.' || symbol == 'e' || symbol == 'E') {
+                integral = false;
+            } else if (!(Character.isDigit(symbol) || symbol == '-' || symbol == '+')) {
+                break;
+            }
+            position++;
+        }
+        String number = text.substring(start, position);
+        try {
+            return integral ? (Object) Long.parseLong(number) : (Object) Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            throw error("Invalid number " + number);
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package ru.bmstu.bioinformatics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Positions of every seed of a target set, for finding the targets that share diagonals with a query.
+ * <p>
+ * A seed is a pattern of cared ('1') and ignored ('0') positions, "11111111111" for contiguous 11-mers;
+ * the cared symbols, case-insensitive letters of 5 bits each, form its code, and a window with any other symbol
+ * is not indexed. The index is three primitive arrays: the distinct codes in ascending order, the offsets of their
+ * postings, and the postings (target and position) in target order. It can be saved and later memory-mapped,
+ * so that a large panel is indexed once.
+ * <p>
+ * A query hit at query position q and target position p lies on diagonal q - p; a target passes when at least
+ * {@code minimumHits} hits fall into {@value #DIAGONAL_WINDOW} consecutive diagonals. As in common seeders,
+ * codes of repeats such as poly-A or microsatellites are not searched: a code is skipped when it has more than
+ * {@value #MINIMUM_CUTOFF} postings and is in the most frequent fraction {@value #FREQUENT_FRACTION} of the codes,
+ * so the hits of a query do not grow with the size of the targets.
+ */
+public class KmerIndex {
+    public static final int MAXIMUM_WEIGHT = 12, DIAGONAL_WINDOW = 32;
+    private static final long MAGIC = 0x4e574b4d45523031L;
+    public static final int MINIMUM_CUTOFF = 500;
+    public static final double FREQUENT_FRACTION = 0.0002;
+    private static final int HEADER_BYTES = 5 * Long.BYTES, SYMBOL_BITS = 5, INVALID = 0,
+            MAXIMUM_SPAN = Long.SIZE, INITIAL_HITS = 64;
+    private static final char CARED = '1', IGNORED = '0';
+    private static final String COPY_SUFFIX = ".tmp";
+
+    private final long seed;
+    private final int span;
+    private final long fingerprint;
+    private final int numberOfTargets;
+
+    private final LongBuffer codes;
+    private final IntBuffer offsets,
+            postingTargets,
+            postingPositions;
+    private final int postingsCutoff;
+
+    /**
+     * Best run of diagonals of one target: the hits in it and the diagonals of its first and last hit.
+     */
+    public static class Hit {
+        private final int target,
+                hits,
+                lowDiagonal,
+                highDiagonal;
+
+        Hit(int target, int hits, int lowDiagonal, int highDiagonal) {
+            this.target = target;
+            this.hits = hits;
+            this.lowDiagonal = lowDiagonal;
+            this.highDiagonal = highDiagonal;
+        }
+
+        public int getTarget() {
+            return target;
+        }
+
+        public int getHits() {
+            return hits;
+        }
+
+        public int getLowDiagonal() {
+            return lowDiagonal;
+        }
+
+        public int getHighDiagonal() {
+            return highDiagonal;
+        }
+    }
+
+    public KmerIndex(List<FastaRecord> targets, String seedPattern) {
+        this.seed = parseSeed(seedPattern);
+        this.span = seedPattern.length();
+        this.fingerprint = fingerprint(targets);
+        this.numberOfTargets = targets.size();
+
+        int windows = 0;
+        for (FastaRecord target : targets) {
+            windows += Math.max(0, target.getSequence().length() - span + 1);
+        }
+        long[] windowCodes = new long[windows];
+        int count = 0;
+        windows = 0;
+        for (FastaRecord target : targets) {
+            CharSequence sequence = target.getSequence();
+            for (int position = 0; position + span <= sequence.length(); position++) {
+                long code = code(sequence, position);
+                windowCodes[windows++] = code;
+                if (code != INVALID) {
+                    count++;
+                }
+            }
+        }
+
+        long[] keys = new long[count];
+        count = 0;
+        for (long code : windowCodes) {
+            if (code != INVALID) {
+                keys[count++] = code;
+            }
+        }
+        Arrays.sort(keys);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || keys[i] != keys[distinct - 1]) {
+                keys[distinct++] = keys[i];
+            }
+        }
+        keys = Arrays.copyOf(keys, distinct);
+
+        // Counting sort of the windows by key: the postings of a key stay in target and position order.
+        int[] starts = new int[distinct + 1];
+        for (int window = 0; window < windows; window++) {
+            if (windowCodes[window] != INVALID) {
+                int key = Arrays.binarySearch(keys, windowCodes[window]);
+                starts[key + 1]++;
+                windowCodes[window] = key;
+            } else windowCodes[window] = -1;
+        }
+        for (int i = 0; i < distinct; i++) {
+            starts[i + 1] += starts[i];
+        }
+        int[] cursors = Arrays.copyOf(starts, distinct),
+                targetsOf = new int[count],
+                positionsOf = new int[count];
+        int window = 0;
+        for (int targetIndex = 0; targetIndex < targets.size(); targetIndex++) {
+            int length = targets.get(targetIndex).getSequence().length();
+            for (int position = 0; position + span <= length; position++) {
+                long key = windowCodes[window++];
+                if (key >= 0) {
+                    int posting = cursors[(int) key]++;
+                    targetsOf[posting] = targetIndex;
+                    positionsOf[posting] = position;
+                }
+            }
+        }
+
+        this.codes = LongBuffer.wrap(keys);
+        this.offsets = IntBuffer.wrap(starts);
+        this.postingTargets = IntBuffer.wrap(targetsOf);
+        this.postingPositions = IntBuffer.wrap(positionsOf);
+        this.postingsCutoff = postingsCutoff();
+    }
+
+    private KmerIndex(long seed, int span, long fingerprint, int numberOfTargets, LongBuffer codes,
+                      IntBuffer offsets, IntBuffer postingTargets, IntBuffer postingPositions) {
+        this.seed = seed;
+        this.span = span;
+        this.fingerprint = fingerprint;
+        this.numberOfTargets = numberOfTargets;
+        this.codes = codes;
+        this.offsets = offsets;
+        this.postingTargets = postingTargets;
+        this.postingPositions = postingPositions;
+        this.postingsCutoff = postingsCutoff();
+    }
+
+    /**
+     * Largest number of postings of a searched code: the codes above it have more than {@value #MINIMUM_CUTOFF}
+     * postings and are in the most frequent fraction {@value #FREQUENT_FRACTION} of the codes.
+     */
+    private int postingsCutoff() {
+        int[] frequent = new int[INITIAL_HITS];
+        int count = 0;
+        for (int key = 0; key < codes.limit(); key++) {
+            int postings = offsets.get(key + 1) - offsets.get(key);
+            if (postings > MINIMUM_CUTOFF) {
+                if (count == frequent.length) {
+                    frequent = Arrays.copyOf(frequent, count * 2);
+                }
+                frequent[count++] = postings;
+            }
+        }
+        int skipped = (int) (codes.limit() * FREQUENT_FRACTION);
+        if (count <= skipped) {
+            return MINIMUM_CUTOFF;
+        }
+        Arrays.sort(frequent, 0, count);
+        return frequent[count - skipped - 1];
+    }
+
+    /**
+     * Pattern of a contiguous k-mer.
+     */
+    public static String contiguousSeed(int k) {
+        char[] pattern = new char[k];
+        Arrays.fill(pattern, CARED);
+        return new String(pattern);
+    }
+
+    /**
+     * Bit mask of the cared positions; the pattern starts and ends with a cared one and cares for at most
+     * {@value #MAXIMUM_WEIGHT} symbols.
+     */
+    private static long parseSeed(String pattern) {
+        if (pattern.isEmpty() || pattern.length() > MAXIMUM_SPAN || pattern.charAt(0) != CARED
+                || pattern.charAt(pattern.length() - 1) != CARED) {
+            throw new IllegalArgumentException("Invalid seed pattern: " + pattern);
+        }
+        long mask = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            if (pattern.charAt(i) == CARED) {
+                mask |= 1L << i;
+            } else if (pattern.charAt(i) != IGNORED) {
+                throw new IllegalArgumentException("Invalid seed pattern: " + pattern);
+            }
+        }
+        if (Long.bitCount(mask) > MAXIMUM_WEIGHT) {
+            throw new IllegalArgumentException("Seed cares for more than " + MAXIMUM_WEIGHT + " symbols: " + pattern);
+        }
+        return mask;
+    }
+
+    public String getSeedPattern() {
+        StringBuilder pattern = new StringBuilder();
+        for (int i = 0; i < span; i++) {
+            pattern.append((seed >>> i & 1) != 0 ? CARED : IGNORED);
+        }
+        return pattern.toString();
+    }
+
+    private static int symbolCode(char symbol) {
+        int letter = Character.toUpperCase(symbol) - 'A';
+        return letter >= 0 && letter < 26 ? letter + 1 : INVALID;
+    }
+
+    /**
+     * Code of the seed window at the position, or INVALID when it covers a symbol that is not a letter.
+     */
+    private long code(CharSequence sequence, int position) {
+        long code = 0;
+        for (long mask = seed; mask != 0; mask &= mask - 1) {
+            int symbol = symbolCode(sequence.charAt(position + Long.numberOfTrailingZeros(mask)));
+            if (symbol == INVALID) {
+                return INVALID;
+            }
+            code = code << SYMBOL_BITS | symbol;
+        }
+        return code;
+    }
+
+    /**
+     * Hash of the lengths and symbols of the targets, to tell whether a saved index still describes them.
+     */
+    public static long fingerprint(List<FastaRecord> targets) {
+        long hash = targets.size();
+        for (FastaRecord target : targets) {
+            CharSequence sequence = target.getSequence();
+            hash = hash * 31 + sequence.length();
+            for (int i = 0; i < sequence.length(); i++) {
+                hash = hash * 31 + sequence.charAt(i);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Whether the index was built over these targets with this seed.
+     */
+    public boolean matches(List<FastaRecord> targets, String seedPattern) {
+        return seedPattern.equals(getSeedPattern()) && targets.size() == numberOfTargets
+                && fingerprint(targets) == fingerprint;
+    }
+
+    public int getNumberOfTargets() {
+        return numberOfTargets;
+    }
+
+    public int getNumberOfCodes() {
+        return codes.limit();
+    }
+
+    public int getNumberOfPostings() {
+        return postingTargets.limit();
+    }
+
+    public int getPostingsCutoff() {
+        return postingsCutoff;
+    }
+
+    private int find(long code) {
+        int low = 0,
+                high = codes.limit() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long value = codes.get(middle);
+            if (value < code) {
+                low = middle + 1;
+            } else if (value > code) {
+                high = middle - 1;
+            } else return middle;
+        }
+        return -1;
+    }
+
+    /**
+     * Targets with at least {@code minimumHits} seed hits in a window of diagonals, in target order,
+     * each with its best window; codes with more than {@link #getPostingsCutoff()} postings are skipped.
+     */
+    public List<Hit> search(CharSequence query, int minimumHits) {
+        long[] hits = new long[INITIAL_HITS];
+        int count = 0;
+        for (int position = 0; position + span <= query.length(); position++) {
+            long code = code(query, position);
+            int key = code == INVALID ? -1 : find(code);
+            if (key < 0 || offsets.get(key + 1) - offsets.get(key) > postingsCutoff) {
+                continue;
+            }
+            for (int posting = offsets.get(key); posting < offsets.get(key + 1); posting++) {
+                if (count == hits.length) {
+                    hits = Arrays.copyOf(hits, count * 2);
+                }
+                // Target in the high half, diagonal shifted to an unsigned value in the low one.
+                int diagonal = position - postingPositions.get(posting);
+                hits[count++] = (long) postingTargets.get(posting) << Integer.SIZE
+                        | (diagonal - Integer.MIN_VALUE & 0xffffffffL);
+            }
+        }
+        Arrays.sort(hits, 0, count);
+
+        List<Hit> result = new ArrayList<>();
+        for (int start = 0; start < count; ) {
+            int target = (int) (hits[start] >>> Integer.SIZE),
+                    end = start;
+            while (end < count && (int) (hits[end] >>> Integer.SIZE) == target) {
+                end++;
+            }
+
+            int best = 0,
+                    bestLow = 0,
+                    bestHigh = 0;
+            for (int low = start, high = start; high < end; high++) {
+                while (diagonal(hits[high]) - diagonal(hits[low]) >= DIAGONAL_WINDOW) {
+                    low++;
+                }
+                if (high - low + 1 > best) {
+                    best = high - low + 1;
+                    bestLow = diagonal(hits[low]);
+                    bestHigh = diagonal(hits[high]);
+                }
+            }
+            if (best >= minimumHits) {
+                result.add(new Hit(target, best, bestLow, bestHigh));
+            }
+            start = end;
+        }
+        return result;
+    }
+
+    private static int diagonal(long hit) {
+        return (int) hit + Integer.MIN_VALUE;
+    }
+
+    /**
+     * Writes the index, replacing the file atomically so that a mapped copy of an older one stays intact.
+     */
+    public void save(Path path) throws IOException {
+        Path copy = Paths.get(path + COPY_SUFFIX);
+        try (FileChannel channel = FileChannel.open(copy, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putLong(MAGIC).putLong(seed)
+                    .putLong(fingerprint).putInt(span).putInt(numberOfTargets)
+                    .putInt(getNumberOfCodes()).putInt(getNumberOfPostings());
+            header.flip();
+            write(channel, header);
+
+            ByteBuffer buffer = ByteBuffer.allocate(getNumberOfCodes() * Long.BYTES);
+            for (int i = 0; i < getNumberOfCodes(); i++) {
+                buffer.putLong(codes.get(i));
+            }
+            buffer.flip();
+            write(channel, buffer);
+            write(channel, ints(offsets));
+            write(channel, ints(postingTargets));
+            write(channel, ints(postingPositions));
+            channel.force(false);
+        }
+        Files.move(copy, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static ByteBuffer ints(IntBuffer values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.limit() * Integer.BYTES);
+        for (int i = 0; i < values.limit(); i++) {
+            buffer.putInt(values.get(i));
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Index saved by {@link #save}, read in place from a read-only mapping; files above 2 GiB are not supported.
+     */
+    public static KmerIndex map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE || channel.size() < HEADER_BYTES) {
+                throw new IOException("Malformed k-mer index: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getLong() != MAGIC) {
+                throw new IOException("Malformed k-mer index: " + path);
+            }
+            long seed = buffer.getLong(),
+                    fingerprint = buffer.getLong();
+            int span = buffer.getInt(),
+                    numberOfTargets = buffer.getInt(),
+                    numberOfCodes = buffer.getInt(),
+                    numberOfPostings = buffer.getInt();
+            long expected = HEADER_BYTES + (long) numberOfCodes * Long.BYTES
+                    + ((long) numberOfCodes + 1 + 2L * numberOfPostings) * Integer.BYTES;
+            if (numberOfCodes < 0 || numberOfPostings < 0 || expected != channel.size()) {
+                throw new IOException("Malformed k-mer index: " + path);
+            }
+
+            int position = HEADER_BYTES;
+            LongBuffer codes = buffer.slice(position, numberOfCodes * Long.BYTES).asLongBuffer();
+            position += numberOfCodes * Long.BYTES;
+            IntBuffer offsets = buffer.slice(position, (numberOfCodes + 1) * Integer.BYTES).asIntBuffer();
+            position += (numberOfCodes + 1) * Integer.BYTES;
+            IntBuffer postingTargets = buffer.slice(position, numberOfPostings * Integer.BYTES).asIntBuffer();
+            position += numberOfPostings * Integer.BYTES;
+            IntBuffer postingPositions = buffer.slice(position, numberOfPostings * Integer.BYTES).asIntBuffer();
+            return new KmerIndex(seed, span, fingerprint, numberOfTargets, codes, offsets, postingTargets,
+                    postingPositions);
+        }
+    }
+}
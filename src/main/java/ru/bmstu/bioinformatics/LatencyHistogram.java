@@ -0,0 +1,66 @@
+package ru.bmstu.bioinformatics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe log-linear histogram of durations in nanoseconds: every power of two is split
+ * into 16 buckets, so percentiles are reported within about 6%.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4, SUB_BUCKETS = 1 << SUB_BUCKET_BITS, LONG_BITS = 64,
+            SUB_BUCKET_MASK = SUB_BUCKETS - 1;
+
+    private AtomicLongArray counts = new AtomicLongArray(LONG_BITS * SUB_BUCKETS);
+    private AtomicLong count = new AtomicLong(),
+            maximum = new AtomicLong();
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = LONG_BITS - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & SUB_BUCKET_MASK;
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1,
+                subBucket = bucket & SUB_BUCKET_MASK;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public void record(long nanoseconds) {
+        long value = Math.max(0, nanoseconds);
+        counts.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        maximum.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaximum() {
+        return maximum.get();
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile (0-100).
+     */
+    public long percentile(double percentile) {
+        long total = count.get(),
+                rank = (long) Math.ceil(total * percentile / 100),
+                seen = 0;
+        for (int bucket = 0; bucket < counts.length(); bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(upperBound(bucket), maximum.get());
+            }
+        }
+        return maximum.get();
+    }
+}
@@ -0,0 +1,165 @@
+package ru.bmstu.bioinformatics;
+
+/**
+ * Locates the optimal local (Smith-Waterman) alignment with linear gaps in O(min(n, m)) memory,
+ * so that a short query can be scanned against a target of millions of symbols.
+ * <p>
+ * A forward score-only pass keeps the best cell as it goes; it is where the alignment ends. A backward pass
+ * anchored at that cell finds where it starts: the first cell whose suffix alignment reaches the best score.
+ * An alignment of score S over at most d aligned pairs holds at most (d * maxSubstitution - S) / -indel gaps,
+ * which bounds the backward pass to a small region near the end cell. The substrings between the two cells
+ * are then aligned globally with the same score, see {@link PairAlignment}.
+ */
+public class LocalAlignment {
+    private final int ZERO = 0, GAP_INDEX = 0, ONE = 1, FIRST_INDEX = 1;
+
+    private byte[] lineCodes,
+            columnCodes;
+    private int[] table;
+    private int indel;
+    private int maximumSubstitution;
+    private boolean transposed;
+
+    private int score,
+            lineStart,
+            lineEnd,
+            columnStart,
+            columnEnd;
+
+    public LocalAlignment(CharSequence firstSequence, CharSequence secondSequence, ScoringFunction scoringFunction) {
+        byte[] firstCodes = scoringFunction.encode(firstSequence),
+                secondCodes = scoringFunction.encode(secondSequence);
+        int[] table = scoringFunction.getTable();
+        this.indel = scoringFunction.getIndel();
+        this.maximumSubstitution = BandedAlignment.maximumSubstitution(table, firstCodes, secondCodes);
+
+        // The shorter sequence goes along the rolling line, the table stays indexed by column code first.
+        this.transposed = firstCodes.length > secondCodes.length;
+        this.columnCodes = transposed ? secondCodes : firstCodes;
+        this.lineCodes = transposed ? firstCodes : secondCodes;
+        this.table = transposed ? ScoringFunction.transposedTable(table) : table;
+    }
+
+    private int substitution(int lineIndex, int columnIndex) {
+        return table[columnCodes[columnIndex] * ScoringFunction.ALPHABET_SIZE + lineCodes[lineIndex]];
+    }
+
+    private void findEnd() {
+        int columns = columnCodes.length + ONE,
+                best = ZERO,
+                bestLine = ZERO,
+                bestColumn = ZERO;
+        int[] previousLine = new int[columns], currentLine = new int[columns];
+
+        for (int lineIndex = FIRST_INDEX; lineIndex <= lineCodes.length; lineIndex++) {
+            int lineCode = lineCodes[lineIndex - ONE];
+            for (int columnIndex = FIRST_INDEX; columnIndex < columns; columnIndex++) {
+                int value = previousLine[columnIndex - ONE]
+                        + table[columnCodes[columnIndex - ONE] * ScoringFunction.ALPHABET_SIZE + lineCode];
+                value = Math.max(value, previousLine[columnIndex] + indel);
+                value = Math.max(value, currentLine[columnIndex - ONE] + indel);
+                currentLine[columnIndex] = Math.max(value, ZERO);
+                if (value > best) {
+                    best = value;
+                    bestLine = lineIndex;
+                    bestColumn = columnIndex;
+                }
+            }
+
+            int[] swap = previousLine;
+            previousLine = currentLine;
+            currentLine = swap;
+        }
+        score = best;
+        lineEnd = bestLine;
+        columnEnd = bestColumn;
+    }
+
+    private void findStart() {
+        int lines = lineEnd,
+                columns = columnEnd;
+        if (indel < ZERO) {
+            long maximumGaps = ((long) Math.min(lineEnd, columnEnd) * maximumSubstitution - score) / -indel;
+            lines = (int) Math.min(lineEnd, columnEnd + maximumGaps);
+            columns = (int) Math.min(columnEnd, lineEnd + maximumGaps);
+        }
+
+        // Cell (a, b) scores the global alignment of the a symbols of the line sequence and the b symbols
+        // of the column sequence that precede the end cell.
+        int[] previousLine = new int[columns + ONE], currentLine = new int[columns + ONE];
+        for (int columnIndex = GAP_INDEX; columnIndex <= columns; columnIndex++) {
+            previousLine[columnIndex] = indel * columnIndex;
+            if (columnIndex > GAP_INDEX && previousLine[columnIndex] == score) {
+                lineStart = lineEnd;
+                columnStart = columnEnd - columnIndex;
+                return;
+            }
+        }
+        for (int lineIndex = FIRST_INDEX; lineIndex <= lines; lineIndex++) {
+            currentLine[GAP_INDEX] = indel * lineIndex;
+            if (currentLine[GAP_INDEX] == score) {
+                lineStart = lineEnd - lineIndex;
+                columnStart = columnEnd;
+                return;
+            }
+            for (int columnIndex = FIRST_INDEX; columnIndex <= columns; columnIndex++) {
+                int value = previousLine[columnIndex - ONE]
+                        + substitution(lineEnd - lineIndex, columnEnd - columnIndex);
+                value = Math.max(value, previousLine[columnIndex] + indel);
+                value = Math.max(value, currentLine[columnIndex - ONE] + indel);
+                currentLine[columnIndex] = value;
+                if (value == score) {
+                    lineStart = lineEnd - lineIndex;
+                    columnStart = columnEnd - columnIndex;
+                    return;
+                }
+            }
+
+            int[] swap = previousLine;
+            previousLine = currentLine;
+            currentLine = swap;
+        }
+        throw new IllegalStateException("No start of the local alignment with score " + score);
+    }
+
+    /**
+     * Finds the best local alignment and returns its score; zero and an empty region if no pair scores above zero.
+     */
+    public int locate() {
+        AlignmentMetrics.Probe probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.FILL);
+        score = ZERO;
+        lineStart = lineEnd = columnStart = columnEnd = ZERO;
+        findEnd();
+        if (score > ZERO) {
+            findStart();
+        }
+        AlignmentMetrics.end(probe, (long) lineCodes.length * columnCodes.length);
+        return score;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Index of the first aligned symbol of the first sequence.
+     */
+    public int getFirstStart() {
+        return transposed ? lineStart : columnStart;
+    }
+
+    /**
+     * Index after the last aligned symbol of the first sequence.
+     */
+    public int getFirstEnd() {
+        return transposed ? lineEnd : columnEnd;
+    }
+
+    public int getSecondStart() {
+        return transposed ? columnStart : lineStart;
+    }
+
+    public int getSecondEnd() {
+        return transposed ? columnEnd : lineEnd;
+    }
+}
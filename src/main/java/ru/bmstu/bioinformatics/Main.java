@@ -5,11 +5,22 @@ import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
 
 import java.io.*;
+import java.lang.reflect.Field;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
 
 public class Main {
-    @Parameter(names = "-i", description = "Paths to input sequences", arity = 2, required = true)
+    @Parameter(names = "-i", description = "Paths to input sequences (batch mode: queries [targets])",
+            variableArity = true)
     private static List<String> inputPaths = new ArrayList<>();
 
     @Parameter(names = "-a", description = "Alphabet")
@@ -21,85 +32,616 @@ public class Main {
     @Parameter(names = "-o", description = "Path to output file")
     private static String outputPath = "";
 
+    @Parameter(names = "-f", description = "Output format: text (both rows of the alignment), sam, paf "
+            + "or binary (compact records, see BinaryAlignmentWriter); the first sequence of a pair is the query")
+    private static String format = "text";
+
     @Parameter(names = "-optimization", arity = 1, description = "Enable optimization")
     private static boolean optimization = false;
 
-    private static final String DNA_FULL = "DNAFull", BLOSUM_62 = "BLOSUM62", DEFAULT = "Default", EMPTY = "";
-    private static final int MATCH_DNA_FULL = 5, MISMATCH_DNA_FULL = -4,
-            INDEL_DEFAULT = -2, MATCH_DEFAULT = 1, MISMATCH_DEFAULT = -1,
-            NUMBER_OF_SEQUENCES = 2, FIRST_SEQUENCE_INDEX = 0, SECOND_SEQUENCE_INDEX = 1,
-            EXIT_CODE_WITH_ERROR = 1;
+    @Parameter(names = "-type", description = "Alignment type: global, semiglobal, overlap or local; "
+            + "-optimization true is the same as overlap")
+    private static String type = "global";
 
-    public static ArrayList<String> readFile() {
-        ArrayList<String> sequences = new ArrayList<>();
+    @Parameter(names = "-free", description = "Free ends of a semiglobal alignment, comma-separated: "
+            + "first-start, first-end, second-start, second-end (default: first-start,first-end)")
+    private static String freeEnds = "";
 
-        for (String sequencePath : inputPaths) {
-            try {
-                BufferedReader bufferedReader = new BufferedReader(new FileReader(sequencePath));
-                StringBuilder stringBuilder = new StringBuilder();
-                String line;
+    @Parameter(names = "-mode", description = "Alignment mode: full, hirschberg (linear memory), banded, "
+            + "bitparallel (match/mismatch scoring with few score levels, full otherwise) "
+            + "or outofcore (traceback in a scratch file)")
+    private static String mode = "full";
+
+    @Parameter(names = "-scratch", description = "Scratch file of the traceback in outofcore mode; a run with "
+            + "the scratch file of an interrupted one resumes from its last checkpoint")
+    private static String scratchPath = "";
+
+    @Parameter(names = "-checkpoint", description = "Seconds between checkpoints of the outofcore fill")
+    private static long checkpointSeconds = 60;
+
+    @Parameter(names = {"-t", "--threads"}, description = "Number of threads for the matrix fill in full mode")
+    private static int threads = 1;
+
+    @Parameter(names = "-go", description = "Gap open score for affine gaps (used together with -ge)")
+    private static String gapOpen = "";
+
+    @Parameter(names = "-ge", description = "Gap extend score for affine gaps (used together with -go)")
+    private static String gapExtend = "";
+
+    @Parameter(names = "-band", description = "Initial band width for banded mode (default: from -divergence)")
+    private static int bandWidth = -1;
+
+    @Parameter(names = "-divergence", description = "Expected fraction of differing positions for banded mode")
+    private static double divergence = 0.01;
+
+    @Parameter(names = "-m", description = "Substitution matrix: bundled name (BLOSUM62, NUC.4.4) "
+            + "or path to an NCBI-format file; overrides -a")
+    private static String matrix = "";
+
+    @Parameter(names = "-unknown", description = "Score of pairs with a symbol the matrix does not define "
+            + "(default: the matrix minimum)")
+    private static String unknownScore = "";
+
+    @Parameter(names = "-batch", description = "Align every query record against every target record, "
+            + "or all pairs of records of a single file")
+    private static boolean batch = false;
+
+    @Parameter(names = "-workers", description = "Number of pairs aligned concurrently in batch mode")
+    private static int workers = Runtime.getRuntime().availableProcessors();
+
+    @Parameter(names = "-ordered", arity = 1, description = "Write batch results in input order")
+    private static boolean ordered = true;
+
+    @Parameter(names = "-score", description = "Output only the optimal score, computed without a traceback")
+    private static boolean scoreOnly = false;
+
+    @Parameter(names = "-threshold", description = "Skip pairs whose optimal score is below this value; "
+            + "such pairs are abandoned as soon as the score bound drops below it")
+    private static String threshold = "";
+
+    @Parameter(names = "-port", description = "Run the HTTP alignment service on this port (0: any free port)")
+    private static int port = -1;
+
+    @Parameter(names = "-microbatch", description = "Maximum number of pairs a service worker takes at once")
+    private static int microbatch = 32;
+
+    @Parameter(names = "-linger", description = "Microseconds a service worker waits for its batch to fill")
+    private static long linger = 100;
+
+    @Parameter(names = {"-stats", "--stats"}, description = "Collect phase timings and print them as JSON to stderr; "
+            + "the service publishes them under /stats and JMX")
+    private static boolean stats = false;
+
+    @Parameter(names = "-cache", description = "Path to a persistent result cache, keyed by the sequences "
+            + "and the options; entries of a substitution matrix file are dropped when the file changes")
+    private static String cachePath = "";
+
+    @Parameter(names = "-cachesize", description = "Maximum size of the result cache in megabytes; "
+            + "the least recently used results are evicted")
+    private static long cacheSize = 256;
+
+    @Parameter(names = "-kmer", description = "Align in batch mode only the pairs that share k-mer seeds "
+            + "on nearby diagonals (k up to 12)")
+    private static int kmer = 0;
+
+    @Parameter(names = "-spaced", description = "Spaced seed pattern for the batch pre-filter, e.g. 110100110111; "
+            + "overrides -kmer")
+    private static String spacedSeed = "";
+
+    @Parameter(names = "-minhits", description = "Seed hits on nearby diagonals a pair needs to be aligned")
+    private static int minimumHits = 2;
+
+    @Parameter(names = "-index", description = "Path to the seed index of the targets: memory-mapped when it "
+            + "matches them, built and saved otherwise")
+    private static String indexPath = "";
+
+    @Parameter(names = "-msa", description = "Progressive multiple alignment of all records of the input file, "
+            + "written as aligned FASTA; pairwise distances and independent subtrees use -workers threads")
+    private static boolean multiple = false;
+
+    @Parameter(names = "-tree", description = "Guide tree of the multiple alignment: upgma or nj (neighbour joining)")
+    private static String treeMethod = "upgma";
+
+    @Parameter(names = "-newick", description = "Path to write the guide tree of the multiple alignment "
+            + "in Newick format")
+    private static String newickPath = "";
+
+    private static ResultCache resultCache;
+
+    private static final Map<Field, Object> DEFAULTS = defaults();
+
+    private static final String DNA_FULL = "DNAFull", BLOSUM_62 = "BLOSUM62", DEFAULT = "Default", EMPTY = "",
+            MODE_FULL = "full", MODE_HIRSCHBERG = "hirschberg", MODE_BANDED = "banded",
+            MODE_BIT_PARALLEL = "bitparallel", MODE_OUT_OF_CORE = "outofcore", SETTING_SEPARATOR = "\u0000",
+            FORMAT_TEXT = "text", FORMAT_SAM = "sam", FORMAT_PAF = "paf", FORMAT_BINARY = "binary",
+            TREE_UPGMA = "upgma", TREE_NEIGHBOUR_JOINING = "nj",
+            TYPE_GLOBAL = "global", TYPE_SEMI_GLOBAL = "semiglobal", TYPE_OVERLAP = "overlap", TYPE_LOCAL = "local";
+    private static final int MATCH_DNA_FULL = 5, MISMATCH_DNA_FULL = -4,
+            INDEL_DEFAULT = -2, MATCH_DEFAULT = 1, MISMATCH_DEFAULT = -1,
+            NUMBER_OF_SEQUENCES = 2, FIRST_SEQUENCE_INDEX = 0, SECOND_SEQUENCE_INDEX = 1, SINGLE_FILE = 1,
+            MIN_THREADS = 1, MIN_BAND_WIDTH = 0, MIN_PORT = 0, MIN_BATCH = 1, MIN_HITS = 1;
+    private static final long NANOSECONDS_IN_MICROSECOND = 1000, NANOSECONDS_IN_SECOND = 1_000_000_000,
+            BYTES_IN_MEGABYTE = 1024 * 1024, MIN_CACHE_SIZE = 1;
 
-                bufferedReader.readLine();
-                while ((line = bufferedReader.readLine()) != null) {
-                    stringBuilder.append(line);
+    /**
+     * Initial values of the options, declared above; lists are copied since parsing appends to them.
+     */
+    private static Map<Field, Object> defaults() {
+        Map<Field, Object> defaults = new LinkedHashMap<>();
+        try {
+            for (Field field : Main.class.getDeclaredFields()) {
+                if (field.isAnnotationPresent(Parameter.class)) {
+                    Object value = field.get(null);
+                    defaults.put(field, value instanceof List ? new ArrayList<>((List<?>) value) : value);
                 }
-                sequences.add(stringBuilder.toString());
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        return defaults;
+    }
 
-                bufferedReader.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-                System.exit(EXIT_CODE_WITH_ERROR);
+    /**
+     * Restores the options, so that a run does not inherit those of an earlier one in the same JVM.
+     */
+    private static void resetOptions() {
+        try {
+            for (Map.Entry<Field, Object> entry : DEFAULTS.entrySet()) {
+                Object value = entry.getValue();
+                entry.getKey().set(null, value instanceof List ? new ArrayList<>((List<?>) value) : value);
             }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static ArrayList<CharSequence> readFile() throws IOException {
+        ArrayList<CharSequence> sequences = new ArrayList<>();
+
+        for (String sequencePath : inputPaths) {
+            FastaRecord record = SequenceReader.readFirst(sequencePath);
+            sequences.add(record == null ? EMPTY : record.getSequence());
         }
 
         return sequences;
     }
 
-    private static ScoringFunction defineScoringFunction() {
+    /**
+     * Scoring from a matrix name or path, or from an alphabet name; the indel score is ignored by Default.
+     * Shared with the request settings of {@link AlignmentServer}.
+     */
+    static ScoringFunction createScoringFunction(String alphabetName, String matrixName, String indel,
+                                                 String unknown) {
         ScoringFunction scoringFunction;
 
-        if (alphabet.equals(DNA_FULL)) {
-            scoringFunction = new DNAFull(Integer.parseInt(gapPenalty), MATCH_DNA_FULL, MISMATCH_DNA_FULL);
-        } else if (alphabet.equals(BLOSUM_62)) {
-            scoringFunction = new BLOSUM62(Integer.parseInt(gapPenalty));
+        if (!matrixName.equals(EMPTY)) {
+            SubstitutionMatrix substitutionMatrix = MatrixRegistry.get(matrixName);
+            if (!unknown.equals(EMPTY)) {
+                substitutionMatrix = substitutionMatrix.withUnknownScore(Integer.parseInt(unknown));
+            }
+            scoringFunction = new MatrixScoringFunction(Integer.parseInt(indel), substitutionMatrix);
+        } else if (alphabetName.equals(DNA_FULL)) {
+            scoringFunction = new DNAFull(Integer.parseInt(indel), MATCH_DNA_FULL, MISMATCH_DNA_FULL);
+        } else if (alphabetName.equals(BLOSUM_62)) {
+            scoringFunction = new BLOSUM62(Integer.parseInt(indel));
         } else scoringFunction = new Default(INDEL_DEFAULT, MATCH_DEFAULT, MISMATCH_DEFAULT);
 
         return scoringFunction;
     }
 
+    private static ScoringFunction defineScoringFunction() {
+        return createScoringFunction(alphabet, matrix, gapPenalty.equals(EMPTY) ? gapOpen : gapPenalty,
+                unknownScore);
+    }
+
+    private static AlignmentType defineType() {
+        return optimization
+                ? AlignmentType.OVERLAP
+                : AlignmentType.parse(type, freeEnds);
+    }
+
+    private static AlignmentStrategy defineStrategy() {
+        if (mode.equals(MODE_HIRSCHBERG)) {
+            return AlignmentStrategy.HIRSCHBERG;
+        } else if (mode.equals(MODE_BANDED)) {
+            return AlignmentStrategy.BANDED;
+        } else if (mode.equals(MODE_BIT_PARALLEL)) {
+            return AlignmentStrategy.BIT_PARALLEL;
+        } else if (mode.equals(MODE_OUT_OF_CORE)) {
+            return AlignmentStrategy.OUT_OF_CORE;
+        } else return AlignmentStrategy.FULL;
+    }
+
+    /**
+     * Alignment of the pair; in banded mode the initial band also covers the diagonals of the seed hits, if any.
+     */
+    private static PairAlignment alignPair(CharSequence firstSequence, CharSequence secondSequence,
+                                           ScoringFunction scoringFunction, KmerIndex.Hit hit) {
+        if (defineStrategy() == AlignmentStrategy.BANDED) {
+            int width = bandWidth >= MIN_BAND_WIDTH
+                    ? bandWidth
+                    : BandedAlignment.autoBandWidth(firstSequence.length(), secondSequence.length(), divergence);
+            return new PairAlignment(firstSequence, secondSequence, scoringFunction, hit == null
+                    ? width
+                    : Math.max(width, BandedAlignment.diagonalBandWidth(firstSequence.length(),
+                    secondSequence.length(), hit.getLowDiagonal(), hit.getHighDiagonal())));
+        } else if (!gapOpen.equals(EMPTY)) {
+            return new PairAlignment(firstSequence, secondSequence, scoringFunction, defineType(),
+                    Integer.parseInt(gapOpen), Integer.parseInt(gapExtend));
+        } else if (defineStrategy() == AlignmentStrategy.OUT_OF_CORE) {
+            return new PairAlignment(firstSequence, secondSequence, scoringFunction, defineType(),
+                    scratchPath.equals(EMPTY) ? null : Paths.get(scratchPath),
+                    checkpointSeconds * NANOSECONDS_IN_SECOND);
+        } else return new PairAlignment(firstSequence, secondSequence, scoringFunction, defineType(),
+                defineStrategy(), threads);
+    }
+
+    /**
+     * Aligners shared by the batch workers when the pairs go through the full matrix with linear gaps
+     * on one thread each; null otherwise.
+     */
+    private static AlignerPool defineAlignerPool(ScoringFunction scoringFunction) {
+        return defineStrategy() == AlignmentStrategy.FULL && gapOpen.equals(EMPTY) && threads == MIN_THREADS
+                ? new AlignerPool(scoringFunction, defineType(), workers)
+                : null;
+    }
+
+    /**
+     * Score without a traceback, bit-parallel in bitparallel mode when the scoring fits it.
+     */
+    private static OptionalInt scorePair(CharSequence firstSequence, CharSequence secondSequence,
+                                         ScoringFunction scoringFunction, int minimumScore) {
+        if (defineStrategy() == AlignmentStrategy.BIT_PARALLEL
+                && BitParallelAlignment.supports(scoringFunction, defineType())) {
+            int score = new BitParallelAlignment(firstSequence, secondSequence, scoringFunction, defineType())
+                    .score();
+            return score >= minimumScore ? OptionalInt.of(score) : OptionalInt.empty();
+        } else return new ScoreOnlyAlignment(firstSequence, secondSequence, scoringFunction, defineType())
+                .score(minimumScore);
+    }
+
+    /**
+     * Output for one pair: only the score with -score, nothing below -threshold, the alignment otherwise;
+     * {@code hit} is the best seed hit run of the pair in batch mode with a pre-filter, null otherwise.
+     */
+    private static String describePair(CharSequence firstSequence, CharSequence secondSequence,
+                                       ScoringFunction scoringFunction, AlignerPool alignerPool, KmerIndex.Hit hit) {
+        if (!threshold.equals(EMPTY)) {
+            OptionalInt score = scorePair(firstSequence, secondSequence, scoringFunction,
+                    Integer.parseInt(threshold));
+            if (!score.isPresent()) {
+                return null;
+            } else if (scoreOnly) {
+                return String.valueOf(score.getAsInt());
+            }
+        } else if (scoreOnly) {
+            return String.valueOf(
+                    scorePair(firstSequence, secondSequence, scoringFunction, Integer.MIN_VALUE).getAsInt());
+        }
+        return alignerPool != null
+                ? alignerPool.align(firstSequence, secondSequence).toString()
+                : alignPair(firstSequence, secondSequence, scoringFunction, hit).toString();
+    }
+
+    /**
+     * Every option that affects the output of a pair, for the keys of the result cache. The seed options are
+     * included since seed hits set the band of banded mode; -index is not, the index always matches the seed.
+     */
+    private static String describeSettings() {
+        return String.join(SETTING_SEPARATOR, alphabet, matrix, gapPenalty, unknownScore, type, freeEnds,
+                String.valueOf(optimization), mode, String.valueOf(bandWidth), String.valueOf(divergence), gapOpen,
+                gapExtend, String.valueOf(scoreOnly), threshold, String.valueOf(kmer), spacedSeed,
+                String.valueOf(minimumHits));
+    }
+
+    private static void openCache() throws IOException {
+        if (!cachePath.equals(EMPTY)) {
+            resultCache = new ResultCache(Paths.get(cachePath), cacheSize * BYTES_IN_MEGABYTE, describeSettings(),
+                    matrix.equals(EMPTY) ? EMPTY : MatrixRegistry.fingerprint(matrix));
+        }
+    }
+
+    private static void closeCache() throws IOException {
+        if (resultCache != null) {
+            System.err.print(resultCache.getReport());
+            resultCache.close();
+            resultCache = null;
+        }
+    }
+
+    /**
+     * {@link #describePair} through the result cache, when there is one.
+     */
+    private static String cachedPair(CharSequence firstSequence, CharSequence secondSequence,
+                                     ScoringFunction scoringFunction, AlignerPool alignerPool, KmerIndex.Hit hit) {
+        return resultCache == null
+                ? describePair(firstSequence, secondSequence, scoringFunction, alignerPool, hit)
+                : resultCache.get(firstSequence, secondSequence,
+                () -> describePair(firstSequence, secondSequence, scoringFunction, alignerPool, hit));
+    }
+
+    private static AlignmentRecordWriter.Format defineFormat() {
+        if (format.equals(FORMAT_SAM)) {
+            return AlignmentRecordWriter.Format.SAM;
+        } else if (format.equals(FORMAT_PAF)) {
+            return AlignmentRecordWriter.Format.PAF;
+        } else return AlignmentRecordWriter.Format.BINARY;
+    }
+
+    /**
+     * Record of the pair for -f, null below -threshold.
+     */
+    private static AlignmentRecord recordPair(FastaRecord query, FastaRecord target, ScoringFunction scoringFunction,
+                                              AlignerPool alignerPool, KmerIndex.Hit hit) {
+        if (!threshold.equals(EMPTY) && !scorePair(query.getSequence(), target.getSequence(), scoringFunction,
+                Integer.parseInt(threshold)).isPresent()) {
+            return null;
+        }
+        AlignmentResult result = alignerPool != null
+                ? alignerPool.align(query.getSequence(), target.getSequence())
+                : alignPair(query.getSequence(), target.getSequence(), scoringFunction, hit).getResult();
+        return result.toRecord(query.getId(), target.getId());
+    }
+
+    /**
+     * Record writer of -f over a file channel of the output path, or over stdout.
+     */
+    private static AlignmentRecordWriter openRecordOutput(List<FastaRecord> targets) throws IOException {
+        return AlignmentRecordWriter.create(defineFormat(), outputPath.equals(EMPTY)
+                ? System.out
+                : Channels.newOutputStream(FileChannel.open(Paths.get(outputPath), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)), targets);
+    }
+
+    private static void closeRecordOutput(AlignmentRecordWriter recordWriter) throws IOException {
+        if (outputPath.equals(EMPTY)) {
+            recordWriter.flush();
+        } else recordWriter.close();
+    }
+
+    private static Writer openOutput() throws IOException {
+        return outputPath.equals(EMPTY)
+                ? new BufferedWriter(new OutputStreamWriter(System.out))
+                : new BufferedWriter(new FileWriter(outputPath));
+    }
+
+    private static void closeOutput(Writer writer) throws IOException {
+        if (outputPath.equals(EMPTY)) {
+            writer.flush();
+        } else writer.close();
+    }
+
+    private static void runPairRecord() throws IOException {
+        List<FastaRecord> records = new ArrayList<>();
+        for (String sequencePath : inputPaths) {
+            FastaRecord record = SequenceReader.readFirst(sequencePath);
+            records.add(record == null ? new FastaRecord(sequencePath, EMPTY) : record);
+        }
+        AlignmentRecord alignmentRecord = recordPair(records.get(FIRST_SEQUENCE_INDEX),
+                records.get(SECOND_SEQUENCE_INDEX), defineScoringFunction(), null, null);
+        AlignmentRecordWriter recordWriter = openRecordOutput(records.subList(SECOND_SEQUENCE_INDEX,
+                NUMBER_OF_SEQUENCES));
+        try {
+            if (alignmentRecord != null) {
+                recordWriter.write(alignmentRecord);
+            }
+        } finally {
+            closeRecordOutput(recordWriter);
+        }
+        printStats();
+    }
+
+    private static void runPair() throws IOException {
+        if (!format.equals(FORMAT_TEXT)) {
+            runPairRecord();
+            return;
+        }
+        ArrayList<CharSequence> sequences = readFile();
+        ScoringFunction scoringFunction = defineScoringFunction();
+        Writer writer = openOutput();
+        try {
+            if (scoreOnly || !threshold.equals(EMPTY) || resultCache != null) {
+                String text = cachedPair(sequences.get(FIRST_SEQUENCE_INDEX),
+                        sequences.get(SECOND_SEQUENCE_INDEX), scoringFunction, null, null);
+                if (text != null) {
+                    writer.write(text);
+                    writer.write(System.lineSeparator());
+                }
+            } else {
+                alignPair(sequences.get(FIRST_SEQUENCE_INDEX), sequences.get(SECOND_SEQUENCE_INDEX),
+                        scoringFunction, null).write(writer);
+                writer.write(System.lineSeparator());
+            }
+        } finally {
+            closeOutput(writer);
+        }
+        printStats();
+    }
+
+    /**
+     * Seed index of the records for the batch pre-filter, mapped from -index when it was saved for them;
+     * null without -kmer or -spaced.
+     */
+    private static KmerIndex defineIndex(List<FastaRecord> records) throws IOException {
+        if (kmer == 0 && spacedSeed.equals(EMPTY)) {
+            return null;
+        }
+        String seed = spacedSeed.equals(EMPTY) ? KmerIndex.contiguousSeed(kmer) : spacedSeed;
+        Path path = indexPath.equals(EMPTY) ? null : Paths.get(indexPath);
+        if (path != null && Files.isRegularFile(path)) {
+            KmerIndex index = KmerIndex.map(path);
+            if (index.matches(records, seed)) {
+                return index;
+            }
+        }
+
+        KmerIndex index = new KmerIndex(records, seed);
+        if (path != null) {
+            index.save(path);
+        }
+        return index;
+    }
+
+    private static void runBatch() throws IOException, InterruptedException {
+        List<FastaRecord> queries = SequenceReader.read(inputPaths.get(FIRST_SEQUENCE_INDEX)),
+                targets = inputPaths.size() == SINGLE_FILE
+                        ? null
+                        : SequenceReader.read(inputPaths.get(SECOND_SEQUENCE_INDEX));
+        ScoringFunction scoringFunction = defineScoringFunction();
+        AlignerPool alignerPool = defineAlignerPool(scoringFunction);
+        KmerIndex kmerIndex = defineIndex(targets == null ? queries : targets);
+        BatchAlignment batchAlignment;
+
+        if (format.equals(FORMAT_TEXT)) {
+            batchAlignment = new BatchAlignment(queries, targets, kmerIndex, minimumHits,
+                    (firstSequence, secondSequence, hit) -> cachedPair(firstSequence, secondSequence,
+                            scoringFunction, alignerPool, hit),
+                    workers, ordered);
+            Writer writer = openOutput();
+            try {
+                batchAlignment.run(writer);
+            } finally {
+                closeOutput(writer);
+            }
+        } else {
+            batchAlignment = BatchAlignment.ofRecords(queries, targets, kmerIndex, minimumHits,
+                    (query, target, hit) -> recordPair(query, target, scoringFunction, alignerPool, hit),
+                    workers, ordered);
+            AlignmentRecordWriter recordWriter = openRecordOutput(targets == null ? queries : targets);
+            try {
+                batchAlignment.run(recordWriter);
+            } finally {
+                closeRecordOutput(recordWriter);
+            }
+        }
+        System.err.print(batchAlignment.getReport());
+        printStats();
+    }
+
+    private static void runMultiple() throws IOException, InterruptedException {
+        List<FastaRecord> records = SequenceReader.read(inputPaths.get(FIRST_SEQUENCE_INDEX));
+        MultipleAlignment multipleAlignment = new MultipleAlignment(records, defineScoringFunction(),
+                treeMethod.equals(TREE_NEIGHBOUR_JOINING)
+                        ? MultipleAlignment.TreeMethod.NEIGHBOUR_JOINING
+                        : MultipleAlignment.TreeMethod.UPGMA,
+                workers);
+        multipleAlignment.align();
+
+        Writer writer = openOutput();
+        try {
+            multipleAlignment.write(writer);
+        } finally {
+            closeOutput(writer);
+        }
+        if (!newickPath.equals(EMPTY)) {
+            List<String> names = new ArrayList<>();
+            for (FastaRecord record : records) {
+                names.add(record.getId());
+            }
+            try (Writer newickWriter = new BufferedWriter(new FileWriter(newickPath))) {
+                newickWriter.write(multipleAlignment.getTree().toNewick(names));
+                newickWriter.write(System.lineSeparator());
+            }
+        }
+        System.err.print(multipleAlignment.getReport());
+        printStats();
+    }
+
+    private static void printStats() {
+        if (stats) {
+            System.err.println(AlignmentMetrics.getInstance().getJson());
+        }
+    }
+
+    private static void runServer() throws IOException {
+        AlignmentMetrics.register();
+        AlignmentServer server = new AlignmentServer(port, workers, microbatch, linger * NANOSECONDS_IN_MICROSECOND);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.stop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        server.start();
+        System.err.println("Listening on port " + server.getPort());
+    }
+
     public static void main(String[] args) {
         try {
+            resetOptions();
             Main main = new Main();
             JCommander jCommander = new JCommander(main);
             jCommander.parse(args);
+            if (stats) {
+                AlignmentMetrics.getInstance().setEnabled(true);
+                AlignmentMetrics.register();
+            }
+
+            if (port >= MIN_PORT) {
+                if (workers < MIN_THREADS || microbatch < MIN_BATCH || linger < 0) {
+                    jCommander.usage();
+                    return;
+                }
+                runServer();
+                return;
+            }
 
-            if (inputPaths.size() != NUMBER_OF_SEQUENCES
+            if ((multiple
+                    ? inputPaths.size() != SINGLE_FILE
+                    : batch
+                    ? inputPaths.size() != SINGLE_FILE && inputPaths.size() != NUMBER_OF_SEQUENCES
+                    : inputPaths.size() != NUMBER_OF_SEQUENCES)
+                    || workers < MIN_THREADS
                     || !(alphabet.equals(BLOSUM_62) || alphabet.equals(DNA_FULL) || alphabet.equals(DEFAULT))
-                    || (!alphabet.equals(DEFAULT) && gapPenalty.equals(EMPTY))) {
+                    || ((!alphabet.equals(DEFAULT) || !matrix.equals(EMPTY))
+                    && gapPenalty.equals(EMPTY) && gapOpen.equals(EMPTY))
+                    || (!unknownScore.equals(EMPTY) && matrix.equals(EMPTY))
+                    || !(mode.equals(MODE_FULL) || mode.equals(MODE_HIRSCHBERG) || mode.equals(MODE_BANDED)
+                    || mode.equals(MODE_BIT_PARALLEL) || mode.equals(MODE_OUT_OF_CORE))
+                    || !(type.equals(TYPE_GLOBAL) || type.equals(TYPE_SEMI_GLOBAL) || type.equals(TYPE_OVERLAP)
+                    || type.equals(TYPE_LOCAL))
+                    || (optimization && !(type.equals(TYPE_GLOBAL) || type.equals(TYPE_OVERLAP)))
+                    || (!freeEnds.equals(EMPTY) && !type.equals(TYPE_SEMI_GLOBAL))
+                    || (mode.equals(MODE_BANDED) && (optimization || !type.equals(TYPE_GLOBAL)))
+                    || (!gapOpen.equals(EMPTY) && type.equals(TYPE_LOCAL))
+                    || threads < MIN_THREADS
+                    || gapOpen.equals(EMPTY) != gapExtend.equals(EMPTY)
+                    || (!gapOpen.equals(EMPTY) && !mode.equals(MODE_FULL))
+                    || ((scoreOnly || !threshold.equals(EMPTY)) && !gapOpen.equals(EMPTY))
+                    || (!scratchPath.equals(EMPTY) && (!mode.equals(MODE_OUT_OF_CORE) || batch))
+                    || checkpointSeconds < 0
+                    || !(format.equals(FORMAT_TEXT) || format.equals(FORMAT_SAM) || format.equals(FORMAT_PAF)
+                    || format.equals(FORMAT_BINARY))
+                    || (!format.equals(FORMAT_TEXT) && (scoreOnly || multiple || !cachePath.equals(EMPTY)))
+                    || cacheSize < MIN_CACHE_SIZE
+                    || kmer < 0 || kmer > KmerIndex.MAXIMUM_WEIGHT || minimumHits < MIN_HITS
+                    || ((kmer != 0 || !spacedSeed.equals(EMPTY) || !indexPath.equals(EMPTY)) && !batch)
+                    || (!indexPath.equals(EMPTY) && kmer == 0 && spacedSeed.equals(EMPTY))
+                    || !(treeMethod.equals(TREE_UPGMA) || treeMethod.equals(TREE_NEIGHBOUR_JOINING))
+                    || (!newickPath.equals(EMPTY) && !multiple)
+                    || (multiple && (batch || !gapOpen.equals(EMPTY) || scoreOnly || !threshold.equals(EMPTY)
+                    || !type.equals(TYPE_GLOBAL) || optimization || !cachePath.equals(EMPTY)))) {
                 jCommander.usage();
                 return;
             }
 
-            ArrayList<String> sequences = readFile();
-            PairAlignment pairAlignment = new PairAlignment(
-                    sequences.get(FIRST_SEQUENCE_INDEX),
-                    sequences.get(SECOND_SEQUENCE_INDEX),
-                    defineScoringFunction(),
-                    optimization);
-
-            PrintStream console = System.out;
-            if (!outputPath.equals(EMPTY)) {
-                File file = new File(outputPath);
-                FileOutputStream fos = new FileOutputStream(file);
-                PrintStream ps = new PrintStream(fos);
-                System.setOut(ps);
+            openCache();
+            try {
+                if (multiple) {
+                    runMultiple();
+                } else if (batch) {
+                    runBatch();
+                } else runPair();
+            } finally {
+                closeCache();
             }
-            System.out.println(pairAlignment.toString());
-            System.setOut(console);
 
-        } catch (ParameterException | FileNotFoundException e) {
+        } catch (ParameterException | IllegalArgumentException | IOException | UncheckedIOException e) {
             e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
 
     }
-}
\ No newline at end of file
+}
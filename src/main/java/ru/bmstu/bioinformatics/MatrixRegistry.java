@@ -0,0 +1,87 @@
+package ru.bmstu.bioinformatics;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide cache of substitution matrices. A matrix is looked up as a file path first and then as
+ * a bundled classpath resource under /matrices (BLOSUM62, NUC.4.4); each one is parsed only once.
+ */
+public final class MatrixRegistry {
+    private static final String RESOURCE_DIRECTORY = "/matrices/", DIGEST = "SHA-256";
+    private static final int ONE_MATRIX = 1;
+    private static final ConcurrentHashMap<String, SubstitutionMatrix> MATRICES = new ConcurrentHashMap<>();
+
+    private MatrixRegistry() {
+    }
+
+    private static SubstitutionMatrix load(String nameOrPath) {
+        AlignmentMetrics.Probe probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.MATRIX_LOAD);
+        try {
+            File file = new File(nameOrPath);
+            if (file.isFile()) {
+                try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                    return SubstitutionMatrix.parse(file.getName(), reader);
+                }
+            }
+
+            String name = nameOrPath.toUpperCase(Locale.ROOT);
+            InputStream stream = MatrixRegistry.class.getResourceAsStream(RESOURCE_DIRECTORY + name);
+            if (stream == null) {
+                throw new IllegalArgumentException("Unknown substitution matrix: " + nameOrPath);
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.US_ASCII))) {
+                return SubstitutionMatrix.parse(name, reader);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            AlignmentMetrics.end(probe, ONE_MATRIX);
+        }
+    }
+
+    /**
+     * Matrix by bundled name or by path to an NCBI-format file.
+     */
+    public static SubstitutionMatrix get(String nameOrPath) {
+        return MATRICES.computeIfAbsent(nameOrPath, MatrixRegistry::load);
+    }
+
+    /**
+     * Digest of the bytes the matrix is loaded from, so that a cached result can be tied to the file content.
+     */
+    public static String fingerprint(String nameOrPath) {
+        try {
+            byte[] bytes;
+            File file = new File(nameOrPath);
+            if (file.isFile()) {
+                bytes = Files.readAllBytes(file.toPath());
+            } else {
+                try (InputStream stream = MatrixRegistry.class.getResourceAsStream(RESOURCE_DIRECTORY
+                        + nameOrPath.toUpperCase(Locale.ROOT))) {
+                    if (stream == null) {
+                        throw new IllegalArgumentException("Unknown substitution matrix: " + nameOrPath);
+                    }
+                    bytes = stream.readAllBytes();
+                }
+            }
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance(DIGEST).digest(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
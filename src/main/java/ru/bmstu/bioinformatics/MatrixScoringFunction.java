@@ -0,0 +1,29 @@
+package ru.bmstu.bioinformatics;
+
+/**
+ * Scores substitutions from a {@link SubstitutionMatrix}; every ASCII symbol is accepted,
+ * symbols the matrix does not define get its unknown score.
+ */
+public class MatrixScoringFunction implements ScoringFunction {
+    private int indel;
+    private SubstitutionMatrix matrix;
+
+    public MatrixScoringFunction(int indel, SubstitutionMatrix matrix) {
+        this.indel = indel;
+        this.matrix = matrix;
+    }
+
+    @Override
+    public int getIndel() {
+        return indel;
+    }
+
+    @Override
+    public int[] getTable() {
+        return matrix.getTable();
+    }
+
+    public SubstitutionMatrix getMatrix() {
+        return matrix;
+    }
+}
@@ -0,0 +1,383 @@
+package ru.bmstu.bioinformatics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Progressive multiple alignment of a record set.
+ * <p>
+ * The score-only global alignment of every pair of records ({@link BitParallelAlignment} when the scoring allows,
+ * {@link StripedScoreKernel} otherwise) is computed on {@code workers} threads and turned into
+ * the distance 1 - score / min(self score of either record). A guide tree (UPGMA or neighbour joining) is built from
+ * the distances, and the profiles of its two subtrees are aligned at every join. Joins whose subtrees are ready run
+ * concurrently, so balanced trees use all workers.
+ * <p>
+ * Two profiles are aligned by Needleman-Wunsch over columns. The score of a column pair is the sum-of-pairs score
+ * of the merged column: the substitution score for every pair of residues, the indel score for every pair of a residue
+ * and a gap, and 0 for two gaps. All column scores of one join share the denominator (size of one profile times
+ * size of the other), so the dynamic programming adds exact integer numerators. Ties prefer a substitution,
+ * then a gap in the first profile, as {@link FullAlignment} does, so two single sequences are aligned exactly
+ * like a global {@link PairAlignment}.
+ */
+public class MultipleAlignment {
+    public static final char GAP = '-';
+    private static final String HEADER_START = ">", NEXT_LINE = "\n",
+            REPORT_FORMAT = "Sequences: %d, columns: %d, distances: %.3f s, tree: %.3f s, alignment: %.3f s%n";
+    private static final double NANOSECONDS_IN_SECOND = 1e9;
+    private static final int NO_SYMBOL = -1;
+
+    /**
+     * How the guide tree is built from the distances.
+     */
+    public enum TreeMethod {
+        UPGMA,
+        NEIGHBOUR_JOINING
+    }
+
+    private final List<FastaRecord> records;
+    private final ScoringFunction scoringFunction;
+    private final TreeMethod treeMethod;
+    private final int workers;
+
+    private double[][] distances;
+    private GuideTree tree;
+    private char[][] rows;
+    private long distanceTime,
+            treeTime,
+            alignmentTime;
+
+    /**
+     * Aligned rows of a subtree with the input index of each row.
+     */
+    private static class Profile {
+        private final int[] members;
+        private final char[][] rows;
+
+        Profile(int[] members, char[][] rows) {
+            this.members = members;
+            this.rows = rows;
+        }
+
+        int getLength() {
+            return rows[0].length;
+        }
+    }
+
+    public MultipleAlignment(List<FastaRecord> records, ScoringFunction scoringFunction, TreeMethod treeMethod,
+                             int workers) {
+        this.records = records;
+        this.scoringFunction = scoringFunction;
+        this.treeMethod = treeMethod;
+        this.workers = workers;
+    }
+
+    private int selfScore(CharSequence sequence) {
+        int[] table = scoringFunction.getTable();
+        int score = 0;
+        for (byte code : scoringFunction.encode(sequence)) {
+            score += table[code * ScoringFunction.ALPHABET_SIZE + code];
+        }
+        return score;
+    }
+
+    private void computeDistances(ExecutorService executor) throws InterruptedException {
+        int n = records.size();
+        int[] selfScores = new int[n];
+        for (int i = 0; i < n; i++) {
+            selfScores[i] = selfScore(records.get(i).getSequence());
+        }
+        boolean bitParallel = BitParallelAlignment.supports(scoringFunction, AlignmentType.GLOBAL);
+
+        distances = new double[n][n];
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int first = i;
+            futures.add(executor.submit(() -> {
+                CharSequence firstSequence = records.get(first).getSequence();
+                StripedScoreKernel kernel = bitParallel || first == n - 1
+                        ? null
+                        : new StripedScoreKernel(firstSequence, scoringFunction, false);
+                for (int second = first + 1; second < n; second++) {
+                    CharSequence secondSequence = records.get(second).getSequence();
+                    int score = bitParallel
+                            ? new BitParallelAlignment(firstSequence, secondSequence, scoringFunction,
+                            AlignmentType.GLOBAL).score()
+                            : kernel.score(secondSequence);
+                    double distance = 1 - (double) score
+                            / Math.max(1, Math.min(selfScores[first], selfScores[second]));
+                    distances[first][second] = distances[second][first] = Math.max(0, distance);
+                }
+            }));
+        }
+        await(futures);
+    }
+
+    private static void await(List<? extends Future<?>> futures) throws InterruptedException {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private Profile leaf(int index) {
+        return new Profile(new int[]{index}, new char[][]{records.get(index).getSequence().toString().toCharArray()});
+    }
+
+    /**
+     * Residue counts of every column: column * symbols + symbol, over the symbol indices of the join.
+     */
+    private int[] columnCounts(Profile profile, int[] symbolIndices, int symbols) {
+        int[] counts = new int[profile.getLength() * symbols];
+        for (char[] row : profile.rows) {
+            for (int column = 0; column < row.length; column++) {
+                if (row[column] != GAP) {
+                    counts[column * symbols + symbolIndices[scoringFunction.encode(row[column])]]++;
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Aligns two profiles along the columns of the first one and the lines of the second one.
+     */
+    private Profile merge(Profile first, Profile second) {
+        // The symbols of the join get dense indices, so that the column vectors stay short.
+        int[] symbolIndices = new int[ScoringFunction.ALPHABET_SIZE],
+                codes = new int[ScoringFunction.ALPHABET_SIZE];
+        Arrays.fill(symbolIndices, NO_SYMBOL);
+        int symbols = 0;
+        for (Profile profile : new Profile[]{first, second}) {
+            for (char[] row : profile.rows) {
+                for (char symbol : row) {
+                    if (symbol != GAP) {
+                        byte code = scoringFunction.encode(symbol);
+                        if (symbolIndices[code] == NO_SYMBOL) {
+                            codes[symbols] = code;
+                            symbolIndices[code] = symbols++;
+                        }
+                    }
+                }
+            }
+        }
+
+        AlignmentMetrics.Probe probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.FILL);
+        int columns = first.getLength(),
+                lines = second.getLength(),
+                firstSize = first.rows.length,
+                secondSize = second.rows.length,
+                indel = scoringFunction.getIndel();
+        int[] table = scoringFunction.getTable(),
+                firstCounts = columnCounts(first, symbolIndices, symbols),
+                secondCounts = columnCounts(second, symbolIndices, symbols);
+
+        // Substitution numerators against every symbol, for each column of the first profile.
+        long[] columnScores = new long[columns * symbols];
+        int[] firstResidues = new int[columns];
+        for (int column = 0; column < columns; column++) {
+            for (int x = 0; x < symbols; x++) {
+                int count = firstCounts[column * symbols + x];
+                firstResidues[column] += count;
+                if (count != 0) {
+                    for (int y = 0; y < symbols; y++) {
+                        columnScores[column * symbols + y] +=
+                                (long) count * table[codes[x] * ScoringFunction.ALPHABET_SIZE + codes[y]];
+                    }
+                }
+            }
+        }
+
+        TracebackMatrix traceback = new TracebackMatrix(lines + 1, columns + 1);
+        long[] previousLine = new long[columns + 1],
+                currentLine = new long[columns + 1];
+        int[] present = new int[symbols];
+        for (int column = 1; column <= columns; column++) {
+            previousLine[column] = previousLine[column - 1] + (long) firstResidues[column - 1] * secondSize * indel;
+            traceback.set(0, column, PredecessorType.LEFT);
+        }
+        traceback.set(0, 0, PredecessorType.NULL);
+
+        for (int line = 1; line <= lines; line++) {
+            int presentCount = 0,
+                    secondResidues = 0,
+                    offset = (line - 1) * symbols;
+            for (int y = 0; y < symbols; y++) {
+                if (secondCounts[offset + y] != 0) {
+                    present[presentCount++] = y;
+                    secondResidues += secondCounts[offset + y];
+                }
+            }
+            int secondGaps = secondSize - secondResidues;
+            long upScore = (long) secondResidues * firstSize * indel;
+            currentLine[0] = previousLine[0] + upScore;
+            traceback.set(line, 0, PredecessorType.UP);
+
+            for (int column = 1; column <= columns; column++) {
+                int scoreOffset = (column - 1) * symbols,
+                        firstResidue = firstResidues[column - 1];
+                long substitution = 0;
+                for (int p = 0; p < presentCount; p++) {
+                    int y = present[p];
+                    substitution += columnScores[scoreOffset + y] * secondCounts[offset + y];
+                }
+                substitution += ((long) (firstSize - firstResidue) * secondResidues
+                        + (long) firstResidue * secondGaps) * indel;
+
+                long diagonal = previousLine[column - 1] + substitution,
+                        up = previousLine[column] + upScore,
+                        left = currentLine[column - 1] + (long) firstResidue * secondSize * indel;
+                if (diagonal >= up && diagonal >= left) {
+                    currentLine[column] = diagonal;
+                    traceback.set(line, column, PredecessorType.DIAG);
+                } else if (up >= left) {
+                    currentLine[column] = up;
+                    traceback.set(line, column, PredecessorType.UP);
+                } else {
+                    currentLine[column] = left;
+                    traceback.set(line, column, PredecessorType.LEFT);
+                }
+            }
+            long[] swap = previousLine;
+            previousLine = currentLine;
+            currentLine = swap;
+        }
+        AlignmentMetrics.end(probe, (long) lines * columns);
+
+        probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.TRACEBACK);
+        AlignmentOperations operations = new AlignmentOperations(lines + columns);
+        for (int line = lines, column = columns; line > 0 || column > 0; ) {
+            PredecessorType type = traceback.get(line, column);
+            operations.append(type, 1);
+            if (type != PredecessorType.LEFT) {
+                line--;
+            }
+            if (type != PredecessorType.UP) {
+                column--;
+            }
+        }
+
+        int length = operations.size();
+        char[][] rows = new char[firstSize + secondSize][length];
+        int[] members = new int[firstSize + secondSize];
+        System.arraycopy(first.members, 0, members, 0, firstSize);
+        System.arraycopy(second.members, 0, members, firstSize, secondSize);
+        for (int index = length - 1, column = 0, line = 0, position = 0; index >= 0; index--, position++) {
+            PredecessorType type = operations.get(index);
+            for (int row = 0; row < firstSize; row++) {
+                rows[row][position] = type == PredecessorType.UP ? GAP : first.rows[row][column];
+            }
+            for (int row = 0; row < secondSize; row++) {
+                rows[firstSize + row][position] = type == PredecessorType.LEFT ? GAP : second.rows[row][line];
+            }
+            if (type != PredecessorType.UP) {
+                column++;
+            }
+            if (type != PredecessorType.LEFT) {
+                line++;
+            }
+        }
+        AlignmentMetrics.end(probe, length);
+        return new Profile(members, rows);
+    }
+
+    /**
+     * Aligns the profiles bottom-up: every join waits only for its two subtrees.
+     */
+    private void alignAlongTree(ExecutorService executor) throws InterruptedException {
+        List<CompletableFuture<Profile>> profiles = new ArrayList<>();
+        for (int node = 0; node < tree.getNumberOfNodes(); node++) {
+            profiles.add(tree.isLeaf(node)
+                    ? CompletableFuture.completedFuture(leaf(node))
+                    : profiles.get(tree.getLeft(node)).thenCombineAsync(profiles.get(tree.getRight(node)),
+                    this::merge, executor));
+        }
+
+        Profile root;
+        try {
+            root = profiles.get(tree.getRoot()).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        rows = new char[records.size()][];
+        for (int row = 0; row < root.members.length; row++) {
+            rows[root.members[row]] = root.rows[row];
+        }
+    }
+
+    public void align() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            long start = System.nanoTime();
+            computeDistances(executor);
+            distanceTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            tree = treeMethod == TreeMethod.NEIGHBOUR_JOINING
+                    ? GuideTree.neighbourJoining(distances)
+                    : GuideTree.upgma(distances);
+            treeTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            if (records.isEmpty()) {
+                rows = new char[0][];
+            } else alignAlongTree(executor);
+            alignmentTime = System.nanoTime() - start;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public double[][] getDistances() {
+        return distances;
+    }
+
+    public GuideTree getTree() {
+        return tree;
+    }
+
+    /**
+     * Aligned row of the record with the given input index.
+     */
+    public String getRow(int index) {
+        return new String(rows[index]);
+    }
+
+    public int getLength() {
+        return rows.length == 0 ? 0 : rows[0].length;
+    }
+
+    /**
+     * Aligned records in input order, in FASTA format.
+     */
+    public void write(Writer writer) throws IOException {
+        for (int index = 0; index < records.size(); index++) {
+            writer.write(HEADER_START + records.get(index).getId() + NEXT_LINE);
+            writer.write(rows[index]);
+            writer.write(NEXT_LINE);
+        }
+    }
+
+    public String getReport() {
+        return String.format(Locale.ROOT, REPORT_FORMAT, records.size(), getLength(),
+                distanceTime / NANOSECONDS_IN_SECOND, treeTime / NANOSECONDS_IN_SECOND,
+                alignmentTime / NANOSECONDS_IN_SECOND);
+    }
+}
@@ -0,0 +1,373 @@
+package ru.bmstu.bioinformatics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Global or semi-global alignment of {@link FullAlignment} whose 2-bit traceback lives in a scratch file,
+ * for pairs whose traceback does not fit in memory.
+ * <p>
+ * The lines of the traceback are written tile by tile, each tile a memory-mapped window of about
+ * {@code tileBytes}, so the file is written front to back in large blocks. After a tile, at most once per
+ * {@code checkpointNanos}, every tile written since the previous checkpoint is forced to disk, then the checkpoint
+ * file gets the next line, the DP line before it and the best cell of the last column so far. A run over the same
+ * scratch path with the same pair and settings resumes from the checkpoint instead of line 0. The traceback maps the
+ * tiles back from the last one to the first and loads each one whole before reading it, so it reads the file in
+ * large sequential blocks too.
+ * <p>
+ * Only two DP lines and the codes of both sequences are kept in memory. Scores and paths equal those of
+ * {@link FullAlignment}. {@link #close()} deletes the scratch and checkpoint files once the traceback is complete
+ * and keeps them otherwise, so that a failed run can be resumed.
+ */
+public class OutOfCoreAlignment implements AutoCloseable {
+    public static final long DEFAULT_TILE_BYTES = 64L << 20, DEFAULT_CHECKPOINT_NANOS = 60_000_000_000L;
+    private static final long MAGIC = 0x4e574f4f43303031L, CELL_MASK = 3L;
+    private static final int CELLS_PER_WORD_SHIFT = 5, CELL_IN_WORD_MASK = 31, BITS_PER_CELL_SHIFT = 1,
+            HEADER_BYTES = 4 * Long.BYTES + 2 * Integer.BYTES, HASH_MULTIPLIER = 31;
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint", COPY_SUFFIX = ".tmp";
+    private static final PredecessorType[] TYPES = PredecessorType.values();
+    private final int ZERO = 0, ONE = 1, GAP_INDEX = 0, FIRST_INDEX = 1;
+
+    private final CharSequence firstSequence,
+            secondSequence;
+    private final ScoringFunction scoringFunction;
+    private final AlignmentType type;
+    private final Path scratchPath,
+            checkpointPath;
+    private final long checkpointNanos;
+
+    private final int lines,
+            columns,
+            stride,
+            tileLines;
+    private final long fingerprint;
+
+    private FileChannel channel;
+    private int[] previousLine,
+            currentLine;
+    private int bestColumnValue = Integer.MIN_VALUE,
+            bestColumnLine = -1;
+    private int resumedLine;
+    private long cells;
+    private boolean complete;
+    private int optimalLineIndex,
+            optimalColumnIndex;
+
+    public OutOfCoreAlignment(CharSequence firstSequence, CharSequence secondSequence,
+                              ScoringFunction scoringFunction, AlignmentType type, Path scratchPath,
+                              long tileBytes, long checkpointNanos) {
+        if (type.isLocal()) {
+            throw new IllegalArgumentException("Local alignment is computed by LocalAlignment");
+        }
+        this.firstSequence = firstSequence;
+        this.secondSequence = secondSequence;
+        this.scoringFunction = scoringFunction;
+        this.type = type;
+        this.scratchPath = scratchPath;
+        this.checkpointPath = Paths.get(scratchPath + CHECKPOINT_SUFFIX);
+        this.checkpointNanos = checkpointNanos;
+
+        this.lines = secondSequence.length() + ONE;
+        this.columns = firstSequence.length() + ONE;
+        this.stride = (columns + CELL_IN_WORD_MASK) >>> CELLS_PER_WORD_SHIFT;
+        long lineBytes = (long) stride * Long.BYTES;
+        if (lineBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Traceback line of " + columns + " cells is too large");
+        }
+        this.tileLines = (int) Math.max(ONE, Math.min(Integer.MAX_VALUE / lineBytes, tileBytes / lineBytes));
+        this.fingerprint = fingerprint();
+    }
+
+    /**
+     * Hash of everything the traceback depends on, so a checkpoint of another pair or setting is never resumed.
+     */
+    private long fingerprint() {
+        long hash = lines * (long) HASH_MULTIPLIER + columns;
+        for (CharSequence sequence : new CharSequence[]{firstSequence, secondSequence}) {
+            for (int i = 0; i < sequence.length(); i++) {
+                hash = hash * HASH_MULTIPLIER + sequence.charAt(i);
+            }
+        }
+        hash = hash * HASH_MULTIPLIER + Arrays.hashCode(scoringFunction.getTable());
+        hash = hash * HASH_MULTIPLIER + scoringFunction.getIndel();
+        hash = hash * HASH_MULTIPLIER + type.toString().hashCode();
+        return hash * HASH_MULTIPLIER + tileLines;
+    }
+
+    private int gapValue(int index, boolean free) {
+        return free
+                ? ZERO
+                : scoringFunction.getIndel() * index;
+    }
+
+    private long tileOffset(int tile) {
+        return (long) tile * tileLines * stride * Long.BYTES;
+    }
+
+    private int tileSize(int tile) {
+        return Math.min(tileLines, lines - tile * tileLines);
+    }
+
+    private MappedByteBuffer mapTile(int tile, FileChannel.MapMode mode) throws IOException {
+        return channel.map(mode, tileOffset(tile), (long) tileSize(tile) * stride * Long.BYTES);
+    }
+
+    private static void set(long[] words, int columnIndex, PredecessorType predecessorType) {
+        words[columnIndex >>> CELLS_PER_WORD_SHIFT] |=
+                (long) predecessorType.ordinal() << ((columnIndex & CELL_IN_WORD_MASK) << BITS_PER_CELL_SHIFT);
+    }
+
+    /**
+     * Restores the DP line and the last-column maximum of a matching checkpoint and returns the next line to fill;
+     * 0 without one.
+     */
+    private int resume() throws IOException {
+        if (!Files.isRegularFile(checkpointPath) || !Files.isRegularFile(scratchPath)) {
+            return ZERO;
+        }
+        try (FileChannel input = FileChannel.open(checkpointPath, StandardOpenOption.READ)) {
+            if (input.size() != HEADER_BYTES + (long) columns * Integer.BYTES) {
+                return ZERO;
+            }
+            ByteBuffer buffer = input.map(FileChannel.MapMode.READ_ONLY, 0, input.size());
+            if (buffer.getLong() != MAGIC || buffer.getLong() != fingerprint) {
+                return ZERO;
+            }
+            long nextLine = buffer.getLong();
+            int value = buffer.getInt(),
+                    line = buffer.getInt();
+            long tiles = buffer.getLong();
+            if (nextLine <= ZERO || nextLine > lines || tiles != (nextLine + tileLines - 1) / tileLines
+                    || channel.size() < tileOffset((int) tiles - 1) + (long) tileSize((int) tiles - 1) * stride
+                    * Long.BYTES) {
+                return ZERO;
+            }
+            buffer.asIntBuffer().get(previousLine, ZERO, columns);
+            bestColumnValue = value;
+            bestColumnLine = line;
+            return (int) nextLine;
+        }
+    }
+
+    private void checkpoint(int nextLine) throws IOException {
+        Path copy = Paths.get(checkpointPath + COPY_SUFFIX);
+        try (FileChannel output = FileChannel.open(copy, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = output.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_BYTES + (long) columns * Integer.BYTES);
+            buffer.putLong(MAGIC).putLong(fingerprint).putLong(nextLine).putInt(bestColumnValue)
+                    .putInt(bestColumnLine).putLong((nextLine + tileLines - 1) / tileLines);
+            buffer.asIntBuffer().put(previousLine, ZERO, columns);
+            buffer.force();
+        }
+        Files.move(copy, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Fills the matrix from the checkpoint, if any, writing the traceback tiles, and returns the optimal score.
+     */
+    public int fill() {
+        AlignmentMetrics.Probe probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.FILL);
+        byte[] firstCodes = scoringFunction.encode(firstSequence),
+                secondCodes = scoringFunction.encode(secondSequence);
+        int[] table = scoringFunction.getTable();
+        int indel = scoringFunction.getIndel();
+        previousLine = new int[columns];
+        currentLine = new int[columns];
+        long[] words = new long[stride];
+
+        try {
+            channel = FileChannel.open(scratchPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            resumedLine = resume();
+            int lineIndex = resumedLine;
+            long lastCheckpoint = System.nanoTime();
+            List<MappedByteBuffer> unforced = new ArrayList<>();
+
+            while (lineIndex < lines) {
+                int tile = lineIndex / tileLines;
+                MappedByteBuffer tileBuffer = mapTile(tile, FileChannel.MapMode.READ_WRITE);
+                LongBuffer output = tileBuffer.asLongBuffer();
+                if (checkpointNanos < Long.MAX_VALUE) unforced.add(tileBuffer);
+                int tileEnd = tile * tileLines + tileSize(tile);
+
+                for (; lineIndex < tileEnd; lineIndex++) {
+                    Arrays.fill(words, 0L);
+                    if (lineIndex == GAP_INDEX) {
+                        previousLine[GAP_INDEX] = ZERO;
+                        set(words, GAP_INDEX, PredecessorType.NULL);
+                        for (int columnIndex = FIRST_INDEX; columnIndex < columns; columnIndex++) {
+                            previousLine[columnIndex] = gapValue(columnIndex, type.isFirstStartFree());
+                            set(words, columnIndex, PredecessorType.LEFT);
+                        }
+                        output.put(words);
+                        continue;
+                    }
+
+                    int secondCode = secondCodes[lineIndex - ONE];
+                    currentLine[GAP_INDEX] = gapValue(lineIndex, type.isSecondStartFree());
+                    set(words, GAP_INDEX, PredecessorType.UP);
+                    for (int columnIndex = FIRST_INDEX; columnIndex < columns; columnIndex++) {
+                        int currentMaximum = previousLine[columnIndex - ONE]
+                                + table[firstCodes[columnIndex - ONE] * ScoringFunction.ALPHABET_SIZE + secondCode];
+                        PredecessorType currentType = PredecessorType.DIAG;
+
+                        if (previousLine[columnIndex] + indel > currentMaximum) {
+                            currentMaximum = previousLine[columnIndex] + indel;
+                            currentType = PredecessorType.UP;
+                        }
+                        if (currentLine[columnIndex - ONE] + indel > currentMaximum) {
+                            currentMaximum = currentLine[columnIndex - ONE] + indel;
+                            currentType = PredecessorType.LEFT;
+                        }
+
+                        currentLine[columnIndex] = currentMaximum;
+                        set(words, columnIndex, currentType);
+                    }
+                    output.put(words);
+
+                    if (currentLine[columns - ONE] > bestColumnValue) {
+                        bestColumnValue = currentLine[columns - ONE];
+                        bestColumnLine = lineIndex;
+                    }
+                    int[] swap = previousLine;
+                    previousLine = currentLine;
+                    currentLine = swap;
+                }
+
+                if (lineIndex < lines && System.nanoTime() - lastCheckpoint >= checkpointNanos) {
+                    // FileChannel.force does not cover writes made through a mapping, so each tile is forced.
+                    for (MappedByteBuffer buffer : unforced) {
+                        buffer.force();
+                    }
+                    unforced.clear();
+                    checkpoint(lineIndex);
+                    lastCheckpoint = System.nanoTime();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // The same end cell as AlignmentType.findOptimalCell, with the last column reduced to its first maximum.
+        optimalLineIndex = lines - ONE;
+        optimalColumnIndex = columns - ONE;
+        int maximum = previousLine[optimalColumnIndex];
+        for (int columnIndex = FIRST_INDEX; type.isFirstEndFree() && columnIndex < columns; columnIndex++) {
+            if (previousLine[columnIndex] > maximum) {
+                optimalColumnIndex = columnIndex;
+                maximum = previousLine[columnIndex];
+            }
+        }
+        if (type.isSecondEndFree() && bestColumnLine >= FIRST_INDEX && bestColumnValue > maximum) {
+            optimalLineIndex = bestColumnLine;
+            optimalColumnIndex = columns - ONE;
+            maximum = bestColumnValue;
+        }
+        cells = (long) (lines - ONE - Math.max(ZERO, resumedLine - ONE)) * (columns - ONE);
+        AlignmentMetrics.end(probe, cells);
+        return maximum;
+    }
+
+    /**
+     * Appends the path up to the optimal cell, reading the tiles back from the last one; with a free end
+     * the unaligned tail is left to the caller. Requires {@link #fill()}.
+     */
+    public void traceBack(AlignmentOperations operations) {
+        AlignmentMetrics.Probe probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.TRACEBACK);
+        int lineIndex = optimalLineIndex,
+                columnIndex = optimalColumnIndex;
+        int length = lineIndex + columnIndex,
+                position = length;
+        byte[] block = new byte[length];
+
+        try {
+            int tile = -1,
+                    tileStart = ZERO;
+            LongBuffer input = null;
+            while (true) {
+                if (lineIndex / tileLines != tile) {
+                    tile = lineIndex / tileLines;
+                    tileStart = tile * tileLines;
+                    MappedByteBuffer buffer = mapTile(tile, FileChannel.MapMode.READ_ONLY);
+                    buffer.load();
+                    input = buffer.asLongBuffer();
+                }
+                long word = input.get((lineIndex - tileStart) * stride + (columnIndex >>> CELLS_PER_WORD_SHIFT));
+                PredecessorType currentType = TYPES[(int) (word
+                        >>> ((columnIndex & CELL_IN_WORD_MASK) << BITS_PER_CELL_SHIFT) & CELL_MASK)];
+                if (currentType == PredecessorType.NULL) {
+                    break;
+                }
+
+                position--;
+                block[position] = (byte) currentType.ordinal();
+                if (currentType != PredecessorType.LEFT) {
+                    lineIndex--;
+                }
+                if (currentType != PredecessorType.UP) {
+                    columnIndex--;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        operations.append(block, position, length - position);
+        complete = true;
+        AlignmentMetrics.end(probe, length - position);
+    }
+
+    /**
+     * First line filled by the last {@link #fill()}: 0, or the line after the checkpoint it resumed from.
+     */
+    public int getResumedLine() {
+        return resumedLine;
+    }
+
+    /**
+     * Cells filled by the last {@link #fill()}, without those of the lines before the checkpoint it resumed from.
+     */
+    public long getCells() {
+        return cells;
+    }
+
+    public int getTileLines() {
+        return tileLines;
+    }
+
+    public int getOptimalLineIndex() {
+        return optimalLineIndex;
+    }
+
+    public int getOptimalColumnIndex() {
+        return optimalColumnIndex;
+    }
+
+    /**
+     * Closes the scratch file and, after a complete traceback, deletes it with the checkpoint.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        if (complete) {
+            Files.deleteIfExists(checkpointPath);
+            Files.deleteIfExists(scratchPath);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package ru.bmstu.bioinformatics;
+
+/**
+ * Immutable ASCII sequence packed into 64-bit words with the smallest code that fits its symbols:
+ * 2 bits for ACGT, 4 bits for IUPAC nucleotides, 5 bits for amino acids and a whole byte otherwise.
+ * Letters are packed case-folded; soft-masked (lowercase) letters add one case bit per symbol, so they keep the
+ * small code and still read back in lowercase.
+ * It is a {@link CharSequence}, so it goes to the aligner in place of a String at a fraction of the memory.
+ */
+public final class PackedSequence implements CharSequence {
+    private static final String[] ALPHABETS = {"ACGT", "ACGTNRYKMSWBDHV-", "ACDEFGHIKLMNPQRSTVWYBZXJUO*-"};
+    private static final int[] BITS = {2, 4, 5};
+    private static final int RAW_BITS = 8, WORD_BITS = 64, ASCII_SIZE = 128, NO_CODE = -1, CASE_BIT = 0x20;
+    private static final byte[][] CODES = new byte[ALPHABETS.length][ASCII_SIZE];
+
+    static {
+        for (int alphabet = 0; alphabet < ALPHABETS.length; alphabet++) {
+            java.util.Arrays.fill(CODES[alphabet], (byte) NO_CODE);
+            for (int code = 0; code < ALPHABETS[alphabet].length(); code++) {
+                CODES[alphabet][ALPHABETS[alphabet].charAt(code)] = (byte) code;
+            }
+        }
+    }
+
+    private final String alphabet;
+    private final int bits,
+            symbolsPerWord,
+            length;
+    private final long mask;
+    private final long[] words,
+            lowerCase;
+
+    private PackedSequence(String alphabet, int bits, int length, boolean softMasked) {
+        this.alphabet = alphabet;
+        this.bits = bits;
+        this.symbolsPerWord = WORD_BITS / bits;
+        this.length = length;
+        this.mask = (1L << bits) - 1;
+        this.words = new long[(length + symbolsPerWord - 1) / symbolsPerWord];
+        this.lowerCase = softMasked ? new long[(length + WORD_BITS - 1) / WORD_BITS] : null;
+    }
+
+    private static int foldCase(int symbol) {
+        return symbol >= 'a' && symbol <= 'z' ? symbol - CASE_BIT : symbol;
+    }
+
+    private static boolean fits(byte[] codes, boolean[] present) {
+        for (int symbol = 0; symbol < ASCII_SIZE; symbol++) {
+            if (present[symbol] && codes[symbol] == NO_CODE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Packs the first length symbols; every symbol must be a 7-bit ASCII character.
+     */
+    public static PackedSequence pack(byte[] symbols, int length) {
+        boolean[] present = new boolean[ASCII_SIZE];
+        boolean softMasked = false;
+        for (int index = 0; index < length; index++) {
+            if (symbols[index] < 0) {
+                throw new IllegalArgumentException("Non-ASCII symbol at position " + index);
+            }
+            int symbol = foldCase(symbols[index]);
+            softMasked |= symbol != symbols[index];
+            present[symbol] = true;
+        }
+
+        int alphabet = 0;
+        while (alphabet < ALPHABETS.length && !fits(CODES[alphabet], present)) {
+            alphabet++;
+        }
+        PackedSequence sequence = alphabet < ALPHABETS.length
+                ? new PackedSequence(ALPHABETS[alphabet], BITS[alphabet], length, softMasked)
+                : new PackedSequence(null, RAW_BITS, length, false);
+        byte[] codes = alphabet < ALPHABETS.length ? CODES[alphabet] : null;
+
+        for (int index = 0; index < length; index++) {
+            long code = codes == null ? symbols[index] : codes[foldCase(symbols[index])];
+            sequence.words[index / sequence.symbolsPerWord] |=
+                    code << (index % sequence.symbolsPerWord * sequence.bits);
+            if (sequence.lowerCase != null && foldCase(symbols[index]) != symbols[index]) {
+                sequence.lowerCase[index / WORD_BITS] |= 1L << (index % WORD_BITS);
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * Bits of the code of one symbol, without the case bit of soft-masked sequences.
+     */
+    public int getBitsPerSymbol() {
+        return bits;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of length " + length);
+        }
+        int code = (int) ((words[index / symbolsPerWord] >>> (index % symbolsPerWord * bits)) & mask);
+        if (alphabet == null) {
+            return (char) code;
+        }
+        char symbol = alphabet.charAt(code);
+        return lowerCase != null && (lowerCase[index / WORD_BITS] >>> (index % WORD_BITS) & 1L) != 0
+                ? (char) (symbol | CASE_BIT)
+                : symbol;
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of length " + length);
+        }
+        StringBuilder stringBuilder = new StringBuilder(end - start);
+        for (int index = start; index < end; index++) {
+            stringBuilder.append(charAt(index));
+        }
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+}
@@ -0,0 +1,54 @@
+package ru.bmstu.bioinformatics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * PAF, the pairwise mapping format of minimap2: the twelve mandatory columns, with MAPQ 255 (not available),
+ * followed by the score AS, the edit distance NM and the CIGAR cg. Unmapped records are skipped.
+ */
+public class PafWriter implements AlignmentRecordWriter {
+    private static final String FORWARD_STRAND = "\t+\t", MAPPING_QUALITY = "\t255", SCORE_TAG = "\tAS:i:",
+            EDITS_TAG = "\tNM:i:", CIGAR_TAG = "\tcg:Z:";
+    private static final char NEXT_LINE = '\n', SEPARATOR = '\t';
+
+    private final Writer writer;
+    private final StringBuilder line = new StringBuilder();
+
+    public PafWriter(OutputStream output) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    @Override
+    public void write(AlignmentRecord record) throws IOException {
+        if (!record.isMapped()) {
+            return;
+        }
+        AlignmentMetrics.Probe probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.OUTPUT);
+        line.setLength(0);
+        line.append(record.getQueryName()).append(SEPARATOR).append(record.getQueryLength()).append(SEPARATOR)
+                .append(record.getQueryStart()).append(SEPARATOR).append(record.getQueryEnd()).append(FORWARD_STRAND)
+                .append(record.getTargetName()).append(SEPARATOR).append(record.getTargetLength()).append(SEPARATOR)
+                .append(record.getTargetStart()).append(SEPARATOR).append(record.getTargetEnd()).append(SEPARATOR)
+                .append(record.getMatches()).append(SEPARATOR).append(record.getBlockLength()).append(MAPPING_QUALITY)
+                .append(SCORE_TAG).append(record.getScore()).append(EDITS_TAG).append(record.getEdits())
+                .append(CIGAR_TAG);
+        record.appendCigar(line);
+        writer.append(line.append(NEXT_LINE));
+        AlignmentMetrics.end(probe, record.getBlockLength());
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -1,224 +1,305 @@
 package ru.bmstu.bioinformatics;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 public class PairAlignment {
-    private final String OUTPUT_SEQUENCE_1 = "Seq1: ", OUTPUT_SEQUENCE_2 = "Seq2: ", OUTPUT_SCORE = "Score: ",
-            NEXT_LINE = "\n";
-    private final char GAP = '_';
-    private final int ZERO = 0, GAP_INDEX = 0, ONE = 1, FIRST_INDEX = 1, NUMBER_OF_SYMBOLS_IN_LINE = 50;
+    private static final String AFFINE_MODE = "AFFINE", SCRATCH_PREFIX = "traceback", SCRATCH_SUFFIX = ".scratch";
+    private static final int SINGLE_THREAD = 1;
 
-    private Cell[][] matrix;
-    private String firstSequence,
+    private CharSequence firstSequence,
             secondSequence;
     private ScoringFunction scoringFunction;
-    private boolean optimization;
+    private AlignmentType type;
+    private AlignmentStrategy strategy;
+    private int threads;
+    private boolean affine;
+    private int gapOpen,
+            gapExtend;
+    private int bandWidth;
+    private Path scratchPath;
+    private long checkpointNanos = OutOfCoreAlignment.DEFAULT_CHECKPOINT_NANOS;
 
-    private StringBuilder firstAlignSequence = new StringBuilder(),
-            secondAlignSequence = new StringBuilder();
+    private AlignmentOperations operations;
     private int score;
+    private long cells;
+    private int firstStart,
+            secondStart;
 
-    private int getIndel() {
-        if (scoringFunction instanceof Default) {
-            return ((Default) scoringFunction).getIndel();
-        } else if (scoringFunction instanceof DNAFull) {
-            return ((DNAFull) scoringFunction).getIndel();
-        } else return ((BLOSUM62) scoringFunction).getIndel();
+    private void fillMissingCharacters(int lineIndex, int columnIndex) {
+        operations.appendUnaligned(lineIndex, columnIndex, secondSequence.length(), firstSequence.length());
     }
 
-    private int getMatch(char firstChar, char secondChar) {
-        if (scoringFunction instanceof Default) {
-            return ((Default) scoringFunction).getMatch();
-        } else if (scoringFunction instanceof DNAFull) {
-            return ((DNAFull) scoringFunction).getMatch();
-        } else return ((BLOSUM62) scoringFunction).getScore(firstChar, secondChar);
-    }
+    private void alignFull() {
+        FullAlignment fullAlignment = new FullAlignment(
+                firstSequence, secondSequence, scoringFunction, type, threads);
 
-    private int getMismatch(char firstChar, char secondChar) {
-        if (scoringFunction instanceof Default) {
-            return ((Default) scoringFunction).getMismatch();
-        } else if (scoringFunction instanceof DNAFull) {
-            return ((DNAFull) scoringFunction).getMismatch();
-        } else return ((BLOSUM62) scoringFunction).getScore(firstChar, secondChar);
+        score = fullAlignment.fill();
+        cells = (long) firstSequence.length() * secondSequence.length();
+        fullAlignment.traceBack(operations);
+        fillMissingCharacters(fullAlignment.getOptimalLineIndex(), fullAlignment.getOptimalColumnIndex());
     }
 
-    private void fillMissingCharacters(int index, boolean inFirstSequence) {
-        if (inFirstSequence) {
-            firstAlignSequence.append(firstSequence.substring(index));
-            char[] addition = new char[firstSequence.length() - index];
-            Arrays.fill(addition, GAP);
-            secondAlignSequence.append(addition);
-        } else {
-            char[] addition = new char[secondSequence.length() - index];
-            Arrays.fill(addition, GAP);
-            firstAlignSequence.append(addition);
-            secondAlignSequence.append(secondSequence.substring(index));
-        }
+    private void alignBitParallel() {
+        BitParallelAlignment bitParallelAlignment = new BitParallelAlignment(
+                firstSequence, secondSequence, scoringFunction, type);
+
+        score = bitParallelAlignment.fill();
+        cells = bitParallelAlignment.getCells();
+        bitParallelAlignment.traceBack(operations);
+        fillMissingCharacters(bitParallelAlignment.getOptimalLineIndex(),
+                bitParallelAlignment.getOptimalColumnIndex());
     }
 
-    private Cell findOptimalScoreCell() {
-        int lineSize = secondSequence.length(),
-                columnSize = firstSequence.length(),
-                lineMaximum = lineSize,
-                columnMaximum = columnSize,
-                maximum = matrix[lineMaximum][columnMaximum].getValue(),
-                currentMaximum;
+    private void alignHirschberg() {
+        HirschbergAlignment hirschbergAlignment = new HirschbergAlignment(
+                firstSequence, secondSequence, scoringFunction, type);
 
-        for (int columnIndex = FIRST_INDEX; columnIndex <= columnSize; columnIndex++) {
-            currentMaximum = matrix[lineSize][columnIndex].getValue();
-            if (currentMaximum > maximum) {
-                columnMaximum = columnIndex;
-                maximum = currentMaximum;
-            }
-        }
-        for (int lineIndex = FIRST_INDEX; lineIndex <= lineSize; lineIndex++) {
-            currentMaximum = matrix[lineIndex][columnSize].getValue();
-            if (currentMaximum > maximum) {
-                lineMaximum = lineIndex;
-                columnMaximum = columnSize;
-                maximum = currentMaximum;
+        score = hirschbergAlignment.align(operations);
+        cells = hirschbergAlignment.getCells();
+        fillMissingCharacters(hirschbergAlignment.getOptimalLineIndex(), hirschbergAlignment.getOptimalColumnIndex());
+    }
+
+    /**
+     * Without a scratch path the traceback goes to a temporary file that is never checkpointed
+     * and is deleted even after a failure.
+     */
+    private void alignOutOfCore() {
+        try {
+            Path path = scratchPath != null
+                    ? scratchPath
+                    : Files.createTempFile(SCRATCH_PREFIX, SCRATCH_SUFFIX);
+            try (OutOfCoreAlignment outOfCoreAlignment = new OutOfCoreAlignment(firstSequence, secondSequence,
+                    scoringFunction, type, path, OutOfCoreAlignment.DEFAULT_TILE_BYTES,
+                    scratchPath != null ? checkpointNanos : Long.MAX_VALUE)) {
+                score = outOfCoreAlignment.fill();
+                cells = outOfCoreAlignment.getCells();
+                outOfCoreAlignment.traceBack(operations);
+                fillMissingCharacters(outOfCoreAlignment.getOptimalLineIndex(),
+                        outOfCoreAlignment.getOptimalColumnIndex());
+            } finally {
+                if (scratchPath == null) {
+                    Files.deleteIfExists(path);
+                }
             }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        if (lineMaximum != lineSize) {
-            fillMissingCharacters(lineMaximum, false);
-        } else if (columnMaximum != columnSize) {
-            fillMissingCharacters(columnMaximum, true);
-        }
+    private void alignBanded() {
+        BandedAlignment bandedAlignment = new BandedAlignment(
+                firstSequence, secondSequence, scoringFunction, bandWidth);
 
-        return matrix[lineMaximum][columnMaximum];
+        score = bandedAlignment.align(operations);
+        cells = bandedAlignment.getCells();
     }
 
-    private int checkMatch(int lineIndex, int columnIndex) {
-        char firstChar = firstSequence.charAt(columnIndex - ONE),
-                secondChar = secondSequence.charAt(lineIndex - ONE);
-        if (firstChar == secondChar) {
-            return getMatch(firstChar, secondChar);
-        } else return getMismatch(firstChar, secondChar);
+    private void alignAffine() {
+        AffineAlignment affineAlignment = new AffineAlignment(
+                firstSequence, secondSequence, scoringFunction, gapOpen, gapExtend, type);
+
+        score = affineAlignment.align(operations);
+        cells = (long) firstSequence.length() * secondSequence.length();
+        fillMissingCharacters(affineAlignment.getOptimalLineIndex(), affineAlignment.getOptimalColumnIndex());
     }
 
-    private void fillGapCells() {
-        matrix[GAP_INDEX][GAP_INDEX] = new Cell(null, PredecessorType.NULL, GAP, GAP, ZERO);
+    /**
+     * Locates the best pair of substrings and aligns them globally with the selected strategy;
+     * the operations then cover only the aligned region.
+     */
+    private void alignLocal() {
+        LocalAlignment localAlignment = new LocalAlignment(firstSequence, secondSequence, scoringFunction);
+        localAlignment.locate();
+        firstStart = localAlignment.getFirstStart();
+        secondStart = localAlignment.getSecondStart();
 
-        for (int columnIndex = FIRST_INDEX; columnIndex < matrix[GAP_INDEX].length; columnIndex++) {
-            int value = optimization
-                    ? ZERO
-                    : getIndel() * columnIndex;
-            matrix[GAP_INDEX][columnIndex] = new Cell(
-                    matrix[GAP_INDEX][columnIndex - ONE],
-                    PredecessorType.LEFT,
-                    firstSequence.charAt(columnIndex - ONE),
-                    GAP,
-                    value);
-        }
-        for (int lineIndex = FIRST_INDEX; lineIndex < matrix.length; lineIndex++) {
-            int value = optimization
-                    ? ZERO
-                    : getIndel() * lineIndex;
-            matrix[lineIndex][GAP_INDEX] = new Cell(
-                    matrix[lineIndex - ONE][GAP_INDEX],
-                    PredecessorType.UP,
-                    GAP,
-                    secondSequence.charAt(lineIndex - ONE),
-                    value);
-        }
+        CharSequence firstRegion = firstSequence.subSequence(firstStart, localAlignment.getFirstEnd()),
+                secondRegion = secondSequence.subSequence(secondStart, localAlignment.getSecondEnd());
+        PairAlignment region = strategy == AlignmentStrategy.OUT_OF_CORE
+                ? new PairAlignment(firstRegion, secondRegion, scoringFunction, AlignmentType.GLOBAL, scratchPath,
+                checkpointNanos)
+                : new PairAlignment(firstRegion, secondRegion, scoringFunction, AlignmentType.GLOBAL, strategy,
+                threads);
+        operations = region.getOperations();
+        score = localAlignment.getScore();
+        cells = (long) firstSequence.length() * secondSequence.length() + region.cells;
     }
 
-    private void fillScoringMatrix() {
-        for (int lineIndex = FIRST_INDEX; lineIndex < matrix.length; lineIndex++) {
-            for (int columnIndex = FIRST_INDEX; columnIndex < matrix[GAP_INDEX].length; columnIndex++) {
-                int currentMaximum = matrix[lineIndex - ONE][columnIndex - ONE].getValue()
-                        + checkMatch(lineIndex, columnIndex);
-                PredecessorType currentType = PredecessorType.DIAG;
+    private void align() {
+        AlignmentEvent event = AlignmentEvent.start();
+        operations = new AlignmentOperations(firstSequence.length() + secondSequence.length());
+        if (affine) {
+            alignAffine();
+        } else if (type.isLocal()) {
+            alignLocal();
+        } else {
+            switch (strategy) {
+                case HIRSCHBERG:
+                    alignHirschberg();
+                    break;
+                case BANDED:
+                    alignBanded();
+                    break;
+                case FULL:
+                    alignFull();
+                    break;
+                case BIT_PARALLEL:
+                    if (BitParallelAlignment.supports(scoringFunction, type)) {
+                        alignBitParallel();
+                    } else alignFull();
+                    break;
+                case OUT_OF_CORE:
+                    alignOutOfCore();
+                    break;
+            }
+        }
+        AlignmentEvent.finish(event, affine ? AFFINE_MODE : strategy.toString(), type, firstSequence.length(),
+                secondSequence.length(), cells, score);
+    }
 
-                if (matrix[lineIndex - 1][columnIndex].getValue() + getIndel() > currentMaximum) {
-                    currentMaximum = matrix[lineIndex - ONE][columnIndex].getValue() + getIndel();
-                    currentType = PredecessorType.UP;
-                }
-                if (matrix[lineIndex][columnIndex - ONE].getValue() + getIndel() > currentMaximum) {
-                    currentMaximum = matrix[lineIndex][columnIndex - ONE].getValue() + getIndel();
-                    currentType = PredecessorType.LEFT;
-                }
+    /**
+     * Local alignment runs the strategy on the located region only; banded alignment is global only.
+     */
+    public PairAlignment(CharSequence firstSequence, CharSequence secondSequence,
+                         ScoringFunction scoringFunction, AlignmentType type,
+                         AlignmentStrategy strategy, int threads) {
+        if (strategy == AlignmentStrategy.BANDED && !type.isGlobal() && !type.isLocal()) {
+            throw new IllegalArgumentException("Banded alignment supports global and local types only");
+        }
+        this.firstSequence = firstSequence;
+        this.secondSequence = secondSequence;
+        this.scoringFunction = scoringFunction;
+        this.type = type;
+        this.strategy = strategy;
+        this.threads = threads;
 
-                Cell predecessorCell = null;
-                switch (currentType) {
-                    case LEFT:
-                        predecessorCell = matrix[lineIndex][columnIndex - ONE];
-                        break;
-                    case DIAG:
-                        predecessorCell = matrix[lineIndex - ONE][columnIndex - ONE];
-                        break;
-                    case UP:
-                        predecessorCell = matrix[lineIndex - ONE][columnIndex];
-                        break;
-                }
+        align();
+    }
 
-                matrix[lineIndex][columnIndex] = new Cell(
-                        predecessorCell,
-                        currentType,
-                        firstSequence.charAt(columnIndex - ONE),
-                        secondSequence.charAt(lineIndex - ONE),
-                        currentMaximum);
-            }
-        }
+    public PairAlignment(CharSequence firstSequence, CharSequence secondSequence,
+                         ScoringFunction scoringFunction, boolean optimization,
+                         AlignmentStrategy strategy, int threads) {
+        this(firstSequence, secondSequence, scoringFunction, AlignmentType.of(optimization), strategy, threads);
     }
 
-    private void align() {
-        matrix = new Cell[secondSequence.length() + ONE][firstSequence.length() + ONE];
+    /**
+     * Banded global alignment starting from the given band width; the band is widened until
+     * the result is provably optimal, see {@link BandedAlignment}.
+     */
+    public PairAlignment(CharSequence firstSequence, CharSequence secondSequence,
+                         ScoringFunction scoringFunction, int bandWidth) {
+        this.firstSequence = firstSequence;
+        this.secondSequence = secondSequence;
+        this.scoringFunction = scoringFunction;
+        this.type = AlignmentType.GLOBAL;
+        this.strategy = AlignmentStrategy.BANDED;
+        this.bandWidth = bandWidth;
 
-        fillGapCells();
-        fillScoringMatrix();
+        align();
+    }
 
-        Cell optimalScoreCell = optimization
-                ? findOptimalScoreCell()
-                : matrix[secondSequence.length()][firstSequence.length()];
-        score = optimalScoreCell.getValue();
-        while (optimalScoreCell != null) {
-            optimalScoreCell = optimalScoreCell.fillInformation(firstAlignSequence, secondAlignSequence);
-        }
+    /**
+     * Out-of-core alignment with the traceback in the given scratch file, checkpointed at most once per
+     * {@code checkpointNanos}; a run over the scratch file of an interrupted one resumes it, see
+     * {@link OutOfCoreAlignment}. A null path means a temporary file.
+     */
+    public PairAlignment(CharSequence firstSequence, CharSequence secondSequence,
+                         ScoringFunction scoringFunction, AlignmentType type,
+                         Path scratchPath, long checkpointNanos) {
+        this.firstSequence = firstSequence;
+        this.secondSequence = secondSequence;
+        this.scoringFunction = scoringFunction;
+        this.type = type;
+        this.strategy = AlignmentStrategy.OUT_OF_CORE;
+        this.threads = SINGLE_THREAD;
+        this.scratchPath = scratchPath;
+        this.checkpointNanos = checkpointNanos;
+
+        align();
     }
 
-    public PairAlignment(String firstSequence, String secondSequence,
-                         ScoringFunction scoringFunction, boolean optimization) {
+    /**
+     * Affine gaps: a gap of length k scores gapOpen + gapExtend * (k - 1). Local alignment is not supported.
+     */
+    public PairAlignment(CharSequence firstSequence, CharSequence secondSequence,
+                         ScoringFunction scoringFunction, AlignmentType type,
+                         int gapOpen, int gapExtend) {
         this.firstSequence = firstSequence;
         this.secondSequence = secondSequence;
         this.scoringFunction = scoringFunction;
-        this.optimization = optimization;
+        this.type = type;
+        this.affine = true;
+        this.gapOpen = gapOpen;
+        this.gapExtend = gapExtend;
 
         align();
     }
 
-    @Override
-    public String toString() {
-        StringBuilder stringBuilder = new StringBuilder();
-        int i = FIRST_INDEX;
-        for (; i < Math.ceil((double) firstAlignSequence.length() / NUMBER_OF_SYMBOLS_IN_LINE); i++) {
-            stringBuilder.append(OUTPUT_SEQUENCE_1);
-            stringBuilder.append(firstAlignSequence.substring(
-                    NUMBER_OF_SYMBOLS_IN_LINE * (i - ONE),
-                    NUMBER_OF_SYMBOLS_IN_LINE * i));
-            stringBuilder.append(NEXT_LINE);
-
-            stringBuilder.append(OUTPUT_SEQUENCE_2);
-            stringBuilder.append(secondAlignSequence.substring(
-                    NUMBER_OF_SYMBOLS_IN_LINE * (i - ONE),
-                    NUMBER_OF_SYMBOLS_IN_LINE * i));
-            stringBuilder.append(NEXT_LINE);
-            stringBuilder.append(NEXT_LINE);
-        }
+    public PairAlignment(CharSequence firstSequence, CharSequence secondSequence,
+                         ScoringFunction scoringFunction, boolean optimization,
+                         int gapOpen, int gapExtend) {
+        this(firstSequence, secondSequence, scoringFunction, AlignmentType.of(optimization), gapOpen, gapExtend);
+    }
 
-        stringBuilder.append(OUTPUT_SEQUENCE_1);
-        stringBuilder.append(firstAlignSequence.substring(NUMBER_OF_SYMBOLS_IN_LINE * (i - ONE)));
-        stringBuilder.append(NEXT_LINE);
+    public PairAlignment(CharSequence firstSequence, CharSequence secondSequence,
+                         ScoringFunction scoringFunction, boolean optimization,
+                         AlignmentStrategy strategy) {
+        this(firstSequence, secondSequence, scoringFunction, optimization, strategy, SINGLE_THREAD);
+    }
 
-        stringBuilder.append(OUTPUT_SEQUENCE_2);
-        stringBuilder.append(secondAlignSequence.substring(NUMBER_OF_SYMBOLS_IN_LINE * (i - ONE)));
-        stringBuilder.append(NEXT_LINE);
-        stringBuilder.append(NEXT_LINE);
+    public PairAlignment(CharSequence firstSequence, CharSequence secondSequence,
+                         ScoringFunction scoringFunction, AlignmentType type) {
+        this(firstSequence, secondSequence, scoringFunction, type, AlignmentStrategy.FULL, SINGLE_THREAD);
+    }
 
-        stringBuilder.append(OUTPUT_SCORE);
-        stringBuilder.append(score);
+    public PairAlignment(CharSequence firstSequence, CharSequence secondSequence,
+                         ScoringFunction scoringFunction, boolean optimization) {
+        this(firstSequence, secondSequence, scoringFunction, optimization, AlignmentStrategy.FULL);
+    }
 
-        return stringBuilder.toString();
+    public int getScore() {
+        return score;
+    }
+
+    public AlignmentOperations getOperations() {
+        return operations;
+    }
+
+    public AlignmentType getType() {
+        return type;
+    }
+
+    /**
+     * Index of the first symbol of the first sequence covered by the operations; non-zero only for local alignment.
+     */
+    public int getFirstStart() {
+        return firstStart;
+    }
+
+    public int getSecondStart() {
+        return secondStart;
+    }
+
+    /**
+     * Immutable view of the result; the operations are shared, not copied.
+     */
+    public AlignmentResult getResult() {
+        return new AlignmentResult(firstSequence, secondSequence, operations, score, firstStart, secondStart);
+    }
+
+    /**
+     * Streams the alignment in blocks of 50 columns, followed by the score.
+     */
+    public void write(Writer writer) throws IOException {
+        getResult().write(writer);
+    }
+
+    @Override
+    public String toString() {
+        return getResult().toString();
     }
 }
@@ -0,0 +1,167 @@
+package ru.bmstu.bioinformatics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Groups items submitted concurrently into micro-batches for a fixed pool of workers.
+ * A dispatcher thread waits for a free worker, then takes everything queued up to {@code maximumBatch} items,
+ * waiting at most {@code lingerNanoseconds} for more, and hands the batch to the worker. Under load batches grow
+ * with the backlog, so per-batch costs (taking a warm aligner, scheduling a task) are paid once per batch;
+ * when idle an item waits at most the linger time. The queue is bounded: {@link #offer(Object)} refuses items
+ * when it is full, so an overloaded service sheds load instead of growing its heap. {@link #offerAll(List)}
+ * reserves room for all items at once, so a refused request never leaves some of its items queued.
+ */
+public class RequestBatcher<T> {
+    private int workers;
+    private int maximumBatch;
+    private long lingerNanoseconds;
+    private Consumer<List<T>> handler;
+
+    private BlockingQueue<T> queue;
+    private Semaphore freeSlots;
+    private Semaphore idleWorkers;
+    private ExecutorService executor;
+    private Thread dispatcher;
+
+    private AtomicLong items = new AtomicLong(),
+            batches = new AtomicLong();
+    private AtomicInteger maximumQueueDepth = new AtomicInteger(),
+            busyWorkers = new AtomicInteger();
+
+    public RequestBatcher(int workers, int maximumBatch, long lingerNanoseconds, int capacity,
+                          Consumer<List<T>> handler) {
+        this.workers = workers;
+        this.maximumBatch = maximumBatch;
+        this.lingerNanoseconds = lingerNanoseconds;
+        this.handler = handler;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.freeSlots = new Semaphore(capacity);
+        this.idleWorkers = new Semaphore(workers);
+        this.executor = Executors.newFixedThreadPool(workers);
+        this.dispatcher = new Thread(this::dispatch, "request-batcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Queues the item; false if the queue is full.
+     */
+    public boolean offer(T item) {
+        return offerAll(Collections.singletonList(item));
+    }
+
+    /**
+     * Queues either all the items or, if the queue has no room for all of them, none.
+     */
+    public boolean offerAll(List<T> items) {
+        if (!freeSlots.tryAcquire(items.size())) {
+            return false;
+        }
+        // The slots are released only after items leave the queue, so the reserved room is there.
+        queue.addAll(items);
+        maximumQueueDepth.accumulateAndGet(queue.size(), Math::max);
+        return true;
+    }
+
+    private List<T> collect() throws InterruptedException {
+        List<T> batch = new ArrayList<>();
+        batch.add(queue.take());
+        long deadline = System.nanoTime() + lingerNanoseconds;
+        while (batch.size() < maximumBatch) {
+            if (queue.drainTo(batch, maximumBatch - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            T item;
+            try {
+                item = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            } catch (InterruptedException e) {
+                // The items already taken are still dispatched; the loop stops after them.
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (item == null) {
+                break;
+            }
+            batch.add(item);
+        }
+        return batch;
+    }
+
+    private void dispatch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                idleWorkers.acquire();
+                List<T> batch;
+                try {
+                    batch = collect();
+                } catch (InterruptedException e) {
+                    idleWorkers.release();
+                    throw e;
+                }
+
+                freeSlots.release(batch.size());
+                items.addAndGet(batch.size());
+                batches.incrementAndGet();
+                executor.execute(() -> {
+                    busyWorkers.incrementAndGet();
+                    try {
+                        handler.accept(batch);
+                    } finally {
+                        busyWorkers.decrementAndGet();
+                        idleWorkers.release();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops dispatching and the workers; returns the items that were still queued.
+     */
+    public List<T> shutdown() throws InterruptedException {
+        dispatcher.interrupt();
+        dispatcher.join();
+        executor.shutdown();
+        List<T> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        return remaining;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getMaximumQueueDepth() {
+        return maximumQueueDepth.get();
+    }
+
+    public int getBusyWorkers() {
+        return busyWorkers.get();
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public long getItems() {
+        return items.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+}
@@ -0,0 +1,400 @@
+package ru.bmstu.bioinformatics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Persistent cache of alignment outputs, keyed by the SHA-256 of both sequences and the alignment settings.
+ * <p>
+ * The file is an append-only log of records, each with a 36-byte header and a UTF-8 value:
+ * scope (the settings), version (the substitution matrix content), 128-bit key and value length.
+ * A length of -1 marks a pair that produced no output, e.g. below a threshold; -2 marks a hit. Recency is kept
+ * in memory; on close the entries from the least recently used one that was hit onwards are logged as hits, so that
+ * least-recently-used order survives restarts while the log grows by at most one record per entry per run.
+ * The log is memory-mapped and scanned into an in-memory index on open. A torn record at the end, left by a crash,
+ * is cut off. Records of the same settings with another matrix version are dropped on open, so editing a matrix
+ * file invalidates its results.
+ * Once the values exceed {@code maximumBytes}, the least recently used ones are evicted. On close the log
+ * is rewritten without dead records if they take more space than the live ones.
+ * <p>
+ * The file is locked while open, so only one process uses it at a time. Lookups are thread-safe, and the
+ * alignment of a miss runs outside the lock.
+ */
+public class ResultCache implements Closeable {
+    private static final long MAGIC = 0x4e57434143484531L;
+    private static final int HEADER_BYTES = Long.BYTES, RECORD_HEADER_BYTES = 4 * Long.BYTES + Integer.BYTES,
+            NO_VALUE = -1, TOUCH = -2, BYTE_BITS = 8;
+    private static final String DIGEST = "SHA-256", COMPACT_SUFFIX = ".compact",
+            REPORT_FORMAT = "Cache: hits %d, misses %d, hit rate %.1f%%, entries %d, size %.1f MB, evicted %d, "
+                    + "invalidated %d%n";
+    private static final double BYTES_IN_MEGABYTE = 1024 * 1024, PERCENT = 100;
+
+    private final Path path;
+    private final long maximumBytes;
+    private final long scope,
+            version;
+    private final byte[] settings;
+
+    private FileChannel channel;
+    private FileLock lock;
+    private final LinkedHashMap<Key, Entry> index = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<Key> hitKeys = new HashSet<>();
+    private long size,
+            liveBytes;
+    private long hits,
+            misses,
+            evicted,
+            invalidated;
+
+    private static final class Key {
+        private final long high,
+                low;
+
+        Key(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) object;
+            return high == key.high && low == key.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(high ^ low);
+        }
+    }
+
+    private static final class Entry {
+        private final long scope,
+                version,
+                position;
+        private final int length;
+
+        Entry(long scope, long version, long position, int length) {
+            this.scope = scope;
+            this.version = version;
+            this.position = position;
+            this.length = length;
+        }
+
+        long getBytes() {
+            return RECORD_HEADER_BYTES + Math.max(0, length);
+        }
+    }
+
+    /**
+     * Opens or creates the cache for one setting: {@code settings} describes every option that affects the output,
+     * {@code version} the content of the substitution matrix file, if any.
+     */
+    public ResultCache(Path path, long maximumBytes, String settings, String version) throws IOException {
+        this.path = path;
+        this.maximumBytes = maximumBytes;
+        this.settings = settings.getBytes(StandardCharsets.UTF_8);
+        this.scope = prefix(digest(this.settings));
+        this.version = prefix(digest(version.getBytes(StandardCharsets.UTF_8)));
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        lock = channel.tryLock();
+        if (lock == null) {
+            channel.close();
+            throw new IOException("Result cache " + path + " is used by another process");
+        }
+        try {
+            load();
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private static byte[] digest(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance(DIGEST).digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long prefix(byte[] digest) {
+        return ByteBuffer.wrap(digest).getLong();
+    }
+
+    /**
+     * Big-endian number of {@code bytes} bytes, sign-extended.
+     */
+    private static long readNumber(ByteInput input, int bytes) throws IOException {
+        long value = 0;
+        for (int i = 0; i < bytes; i++) {
+            int next = input.read();
+            if (next == ByteInput.END) {
+                throw new IOException("Truncated record");
+            }
+            value = value << BYTE_BITS | next;
+        }
+        return value << (Long.SIZE - bytes * BYTE_BITS) >> (Long.SIZE - bytes * BYTE_BITS);
+    }
+
+    private void load() throws IOException {
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putLong(MAGIC);
+            header.flip();
+            channel.write(header, 0);
+            size = HEADER_BYTES;
+            return;
+        }
+
+        long end = HEADER_BYTES;
+        try (ByteInput.MappedInput input = new ByteInput.MappedInput(path)) {
+            if (channel.size() < HEADER_BYTES || readNumber(input, Long.BYTES) != MAGIC) {
+                throw new IOException(path + " is not a result cache");
+            }
+            long fileSize = channel.size();
+            while (input.getPosition() + RECORD_HEADER_BYTES <= fileSize) {
+                long recordScope = readNumber(input, Long.BYTES),
+                        recordVersion = readNumber(input, Long.BYTES);
+                Key key = new Key(readNumber(input, Long.BYTES), readNumber(input, Long.BYTES));
+                int length = (int) readNumber(input, Integer.BYTES);
+                long position = input.getPosition();
+                if (length == TOUCH) {
+                    index.get(key);
+                } else if (position + Math.max(0, length) <= fileSize) {
+                    put(key, new Entry(recordScope, recordVersion, position, length));
+                } else break;
+                input.seek(position + Math.max(0, length));
+                end = input.getPosition();
+            }
+        }
+        if (end < channel.size()) {
+            channel.truncate(end);
+        }
+        size = end;
+
+        Iterator<Entry> entries = index.values().iterator();
+        while (entries.hasNext()) {
+            Entry entry = entries.next();
+            if (entry.scope == scope && entry.version != version) {
+                entries.remove();
+                liveBytes -= entry.getBytes();
+                invalidated++;
+            }
+        }
+        evict();
+    }
+
+    private void put(Key key, Entry entry) {
+        Entry previous = index.put(key, entry);
+        if (previous != null) {
+            liveBytes -= previous.getBytes();
+        }
+        liveBytes += entry.getBytes();
+    }
+
+    private void evict() {
+        Iterator<Entry> entries = index.values().iterator();
+        while (liveBytes > maximumBytes && entries.hasNext()) {
+            liveBytes -= entries.next().getBytes();
+            entries.remove();
+            evicted++;
+        }
+    }
+
+    private Key key(CharSequence firstSequence, CharSequence secondSequence) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(DIGEST);
+            ByteBuffer lengths = ByteBuffer.allocate(3 * Integer.BYTES).putInt(settings.length)
+                    .putInt(firstSequence.length()).putInt(secondSequence.length());
+            lengths.flip();
+            digest.update(lengths);
+            digest.update(settings);
+            digest.update(ByteBuffer.allocate(Long.BYTES).putLong(version).array());
+            digest.update(firstSequence.toString().getBytes(StandardCharsets.UTF_8));
+            digest.update(secondSequence.toString().getBytes(StandardCharsets.UTF_8));
+            ByteBuffer bytes = ByteBuffer.wrap(digest.digest());
+            return new Key(bytes.getLong(), bytes.getLong());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ByteBuffer record(long recordScope, long recordVersion, Key key, int length, byte[] value) {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + (value == null ? 0 : value.length))
+                .putLong(recordScope).putLong(recordVersion).putLong(key.high).putLong(key.low).putInt(length);
+        if (value != null) {
+            buffer.put(value);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private long append(ByteBuffer buffer) throws IOException {
+        long position = size + RECORD_HEADER_BYTES;
+        while (buffer.hasRemaining()) {
+            size += channel.write(buffer, size);
+        }
+        return position;
+    }
+
+    private String read(Entry entry) throws IOException {
+        if (entry.length == NO_VALUE) {
+            return null;
+        }
+        ByteBuffer value = ByteBuffer.allocate(entry.length);
+        while (value.hasRemaining()) {
+            if (channel.read(value, entry.position + value.position()) < 0) {
+                throw new IOException("Truncated cache value");
+            }
+        }
+        return new String(value.array(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Stored output of the pair, or the output of {@code aligner}, which is then stored; null outputs are
+     * cached as well.
+     */
+    public String get(CharSequence firstSequence, CharSequence secondSequence, Supplier<String> aligner) {
+        Key key = key(firstSequence, secondSequence);
+        try {
+            synchronized (this) {
+                Entry entry = index.get(key);
+                if (entry != null) {
+                    hits++;
+                    hitKeys.add(key);
+                    return read(entry);
+                }
+                misses++;
+            }
+
+            String text = aligner.get();
+            byte[] value = text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+            int length = value == null ? NO_VALUE : value.length;
+            synchronized (this) {
+                long position = append(record(scope, version, key, length, value));
+                put(key, new Entry(scope, version, position, length));
+                evict();
+            }
+            return text;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvicted() {
+        return evicted;
+    }
+
+    /**
+     * Entries dropped on open because the substitution matrix of their settings changed.
+     */
+    public synchronized long getInvalidated() {
+        return invalidated;
+    }
+
+    public synchronized int getEntries() {
+        return index.size();
+    }
+
+    /**
+     * Bytes of the live records, headers included.
+     */
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    public synchronized String getReport() {
+        long lookups = hits + misses;
+        return String.format(Locale.ROOT, REPORT_FORMAT, hits, misses,
+                lookups == 0 ? 0 : PERCENT * hits / lookups, index.size(), liveBytes / BYTES_IN_MEGABYTE,
+                evicted, invalidated);
+    }
+
+    /**
+     * Logs hits for the entries from the least recently used one that was hit onwards, in recency order; replaying
+     * them on open restores the order of the index.
+     */
+    private void logRecency() throws IOException {
+        boolean hit = false;
+        for (Map.Entry<Key, Entry> entry : index.entrySet()) {
+            hit = hit || hitKeys.contains(entry.getKey());
+            if (hit) {
+                append(record(scope, version, entry.getKey(), TOUCH, null));
+            }
+        }
+        hitKeys.clear();
+    }
+
+    /**
+     * Rewrites the live records from the least to the most recently used into a new file and replaces the log.
+     */
+    private void compact() throws IOException {
+        Path compacted = Paths.get(path + COMPACT_SUFFIX);
+        try (FileChannel output = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putLong(MAGIC);
+            header.flip();
+            output.write(header);
+            for (Map.Entry<Key, Entry> entry : index.entrySet()) {
+                String text = read(entry.getValue());
+                byte[] value = text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer buffer = record(entry.getValue().scope, entry.getValue().version, entry.getKey(),
+                        entry.getValue().length, value);
+                while (buffer.hasRemaining()) {
+                    output.write(buffer);
+                }
+            }
+            output.force(false);
+        }
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            if (lock != null && size - HEADER_BYTES - liveBytes > liveBytes) {
+                compact();
+            } else if (lock != null) {
+                logRecency();
+                channel.force(false);
+            }
+        } finally {
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package ru.bmstu.bioinformatics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * SAM with one @SQ line per target. SEQ and QUAL are {@code *}, since the sequences are in the inputs;
+ * MAPQ is 255 (not available); the optional fields are the score AS and the edit distance NM.
+ * Unaligned ends of the query are soft-clipped.
+ */
+public class SamWriter implements AlignmentRecordWriter {
+    private static final String HEADER = "@HD\tVN:1.6\tSO:unsorted\n", REFERENCE = "@SQ\tSN:", LENGTH = "\tLN:",
+            PROGRAM = "@PG\tID:needleman-wunsch\tPN:needleman-wunsch\n", MISSING = "*",
+            MAPPED_FLAG = "\t0\t", UNMAPPED_FLAG = "\t4\t", MAPPING_QUALITY = "\t255\t",
+            UNMAPPED_FIELDS = "\t0\t0\t*\t*\t0\t0\t*\t*", MATE_FIELDS = "\t*\t0\t0\t*\t*", SCORE_TAG = "\tAS:i:",
+            EDITS_TAG = "\tNM:i:";
+    private static final char NEXT_LINE = '\n', SEPARATOR = '\t';
+
+    private final Writer writer;
+    private final StringBuilder line = new StringBuilder();
+
+    public SamWriter(OutputStream output, List<FastaRecord> targets) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writer.write(HEADER);
+        for (FastaRecord target : targets) {
+            writer.write(REFERENCE + target.getId() + LENGTH + target.getSequence().length() + NEXT_LINE);
+        }
+        writer.write(PROGRAM);
+    }
+
+    private void appendClip(int length) {
+        if (length > 0) {
+            line.append(length).append(AlignmentRecord.operationSymbol(AlignmentRecord.SOFT_CLIP));
+        }
+    }
+
+    @Override
+    public void write(AlignmentRecord record) throws IOException {
+        AlignmentMetrics.Probe probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.OUTPUT);
+        line.setLength(0);
+        line.append(record.getQueryName());
+        if (!record.isMapped()) {
+            line.append(UNMAPPED_FLAG).append(MISSING).append(UNMAPPED_FIELDS);
+        } else {
+            line.append(MAPPED_FLAG).append(record.getTargetName()).append(SEPARATOR)
+                    .append(record.getTargetStart() + 1).append(MAPPING_QUALITY);
+            appendClip(record.getQueryStart());
+            record.appendCigar(line);
+            appendClip(record.getQueryLength() - record.getQueryEnd());
+            line.append(MATE_FIELDS).append(SCORE_TAG).append(record.getScore())
+                    .append(EDITS_TAG).append(record.getEdits());
+        }
+        writer.append(line.append(NEXT_LINE));
+        AlignmentMetrics.end(probe, record.getBlockLength());
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
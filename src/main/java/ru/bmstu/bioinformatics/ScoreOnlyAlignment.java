@@ -0,0 +1,182 @@
+package ru.bmstu.bioinformatics;
+
+import java.util.OptionalInt;
+
+/**
+ * Optimal score of {@link PairAlignment} with linear gaps for any {@link AlignmentType},
+ * without a traceback and in O(min(n, m)) memory: the shorter sequence is laid along the rolling line.
+ * <p>
+ * {@link #score(int)} stops as soon as the target can no longer be reached. Every path crosses each line,
+ * so the best value of a line plus the best possible completion from each of its cells bounds the final score.
+ * A completion of r lines and c columns with d = min(r, c) scores at most d * maxSubstitution + |r - c| * indel
+ * (or (r + c) * indel if two gaps beat a substitution); a free end only needs r or c more steps,
+ * and a local alignment may stop anywhere. With a free gap column a path may instead start at column 0 of any
+ * later line without crossing the current one, so the best completion of such a start is part of the bound.
+ */
+public class ScoreOnlyAlignment {
+    private static final int CHECK_INTERVAL = 16;
+    private final int ZERO = 0, GAP_INDEX = 0, ONE = 1, FIRST_INDEX = 1, NO_THRESHOLD = Integer.MIN_VALUE;
+
+    private byte[] lineCodes,
+            columnCodes;
+    private int[] table;
+    private int indel;
+    private AlignmentType type;
+    private int maximumSubstitution;
+
+    public ScoreOnlyAlignment(CharSequence firstSequence, CharSequence secondSequence,
+                              ScoringFunction scoringFunction, AlignmentType type) {
+        byte[] firstCodes = scoringFunction.encode(firstSequence),
+                secondCodes = scoringFunction.encode(secondSequence);
+        int[] table = scoringFunction.getTable();
+        this.indel = scoringFunction.getIndel();
+        this.maximumSubstitution = BandedAlignment.maximumSubstitution(table, firstCodes, secondCodes);
+
+        if (firstCodes.length <= secondCodes.length) {
+            this.columnCodes = firstCodes;
+            this.lineCodes = secondCodes;
+            this.table = table;
+            this.type = type;
+        } else {
+            // Transposed, so that the table is still indexed by column code first.
+            this.columnCodes = secondCodes;
+            this.lineCodes = firstCodes;
+            this.table = ScoringFunction.transposedTable(table);
+            this.type = type.transpose();
+        }
+    }
+
+    public ScoreOnlyAlignment(CharSequence firstSequence, CharSequence secondSequence,
+                              ScoringFunction scoringFunction, boolean optimization) {
+        this(firstSequence, secondSequence, scoringFunction, AlignmentType.of(optimization));
+    }
+
+    private int gapValue(int index, boolean free) {
+        return free || type.isLocal()
+                ? ZERO
+                : indel * index;
+    }
+
+    private long completionBound(int lines, int columns) {
+        long diagonals = Math.min(lines, columns);
+        if (type.isLocal()) {
+            return Math.max(ZERO, diagonals * maximumSubstitution);
+        }
+
+        long bound = Math.max(diagonals * maximumSubstitution + (long) Math.abs(lines - columns) * indel,
+                (long) (lines + columns) * indel);
+        if (type.isFirstEndFree()) {
+            bound = Math.max(bound, Math.max(diagonals * maximumSubstitution + (lines - diagonals) * indel,
+                    (long) lines * indel));
+        }
+        if (type.isSecondEndFree()) {
+            bound = Math.max(bound, Math.max(diagonals * maximumSubstitution + (columns - diagonals) * indel,
+                    (long) columns * indel));
+        }
+        return bound;
+    }
+
+    /**
+     * Element i is the best completion of a path that starts for free at column 0 of line i or a later one;
+     * null when the gap column is not free.
+     */
+    private long[] restartBounds() {
+        if (!type.isSecondStartFree() || type.isLocal()) {
+            return null;
+        }
+        long[] bounds = new long[lineCodes.length + ONE];
+        bounds[lineCodes.length] = completionBound(ZERO, columnCodes.length);
+        for (int lineIndex = lineCodes.length - ONE; lineIndex >= ZERO; lineIndex--) {
+            bounds[lineIndex] = Math.max(bounds[lineIndex + ONE],
+                    completionBound(lineCodes.length - lineIndex, columnCodes.length));
+        }
+        return bounds;
+    }
+
+    private long lineBound(int[] line, int lineIndex, long[] restartBounds) {
+        long bound = restartBounds != null && lineIndex < lineCodes.length
+                ? restartBounds[lineIndex + ONE]
+                : Long.MIN_VALUE;
+        for (int columnIndex = GAP_INDEX; columnIndex < line.length; columnIndex++) {
+            bound = Math.max(bound, line[columnIndex]
+                    + completionBound(lineCodes.length - lineIndex, columnCodes.length - columnIndex));
+        }
+        return bound;
+    }
+
+    private OptionalInt fill(int threshold) {
+        AlignmentMetrics.Probe probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.FILL);
+        int columns = columnCodes.length + ONE;
+        int[] previousLine = new int[columns], currentLine = new int[columns];
+        boolean earlyExit = threshold != NO_THRESHOLD && indel <= ZERO,
+                local = type.isLocal();
+        // Best score among the cells passed so far where the alignment may already end.
+        int finished = local ? ZERO : Integer.MIN_VALUE;
+        long[] restartBounds = earlyExit ? restartBounds() : null;
+
+        for (int columnIndex = GAP_INDEX; columnIndex < columns; columnIndex++) {
+            previousLine[columnIndex] = gapValue(columnIndex, type.isFirstStartFree());
+        }
+
+        for (int lineIndex = FIRST_INDEX; lineIndex <= lineCodes.length; lineIndex++) {
+            int lineCode = lineCodes[lineIndex - ONE];
+            currentLine[GAP_INDEX] = gapValue(lineIndex, type.isSecondStartFree());
+
+            if (local) {
+                for (int columnIndex = FIRST_INDEX; columnIndex < columns; columnIndex++) {
+                    int value = previousLine[columnIndex - ONE]
+                            + table[columnCodes[columnIndex - ONE] * ScoringFunction.ALPHABET_SIZE + lineCode];
+                    value = Math.max(value, previousLine[columnIndex] + indel);
+                    value = Math.max(value, currentLine[columnIndex - ONE] + indel);
+                    currentLine[columnIndex] = Math.max(value, ZERO);
+                    finished = Math.max(finished, value);
+                }
+            } else {
+                for (int columnIndex = FIRST_INDEX; columnIndex < columns; columnIndex++) {
+                    int value = previousLine[columnIndex - ONE]
+                            + table[columnCodes[columnIndex - ONE] * ScoringFunction.ALPHABET_SIZE + lineCode];
+                    value = Math.max(value, previousLine[columnIndex] + indel);
+                    currentLine[columnIndex] = Math.max(value, currentLine[columnIndex - ONE] + indel);
+                }
+            }
+
+            int[] swap = previousLine;
+            previousLine = currentLine;
+            currentLine = swap;
+            if (type.isSecondEndFree()) {
+                finished = Math.max(finished, previousLine[columns - ONE]);
+            }
+            if (earlyExit && lineIndex % CHECK_INTERVAL == ZERO
+                    && Math.max(finished, lineBound(previousLine, lineIndex, restartBounds)) < threshold) {
+                AlignmentMetrics.end(probe, (long) lineIndex * columnCodes.length);
+                return OptionalInt.empty();
+            }
+        }
+
+        int score = local ? finished : Math.max(finished, previousLine[columns - ONE]);
+        if (type.isFirstEndFree()) {
+            // The same end cells as AlignmentType.findOptimalCell: the gap cell of the last line is not a candidate.
+            for (int columnIndex = FIRST_INDEX; columnIndex < columns; columnIndex++) {
+                score = Math.max(score, previousLine[columnIndex]);
+            }
+        }
+        AlignmentMetrics.end(probe, (long) lineCodes.length * columnCodes.length);
+        return score >= threshold
+                ? OptionalInt.of(score)
+                : OptionalInt.empty();
+    }
+
+    /**
+     * Optimal alignment score, equal to {@link PairAlignment#getScore()} for the same arguments.
+     */
+    public int score() {
+        return fill(NO_THRESHOLD).getAsInt();
+    }
+
+    /**
+     * Optimal score if it is at least the threshold; empty otherwise, usually long before the matrix is filled.
+     */
+    public OptionalInt score(int threshold) {
+        return fill(threshold);
+    }
+}
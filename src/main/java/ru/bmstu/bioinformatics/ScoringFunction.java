@@ -1,4 +1,75 @@
 package ru.bmstu.bioinformatics;
 
+import java.util.Arrays;
+
+/**
+ * Substitution scores and the linear gap score used by every alignment engine.
+ * Symbols are 7-bit ASCII characters. Sequences are turned into table indices once by {@link #encode(CharSequence)},
+ * so the dynamic programming reads substitution scores straight from the flat {@link #getTable()}.
+ */
 public interface ScoringFunction {
+    int ALPHABET_SIZE = 128;
+
+    int getIndel();
+
+    /**
+     * Flat ALPHABET_SIZE x ALPHABET_SIZE table: the score of (firstSymbol, secondSymbol)
+     * is at firstSymbol * ALPHABET_SIZE + secondSymbol.
+     */
+    int[] getTable();
+
+    default boolean isDefined(char symbol) {
+        return symbol < ALPHABET_SIZE;
+    }
+
+    default int score(char firstChar, char secondChar) {
+        return getTable()[encode(firstChar) * ALPHABET_SIZE + encode(secondChar)];
+    }
+
+    default byte encode(char symbol) {
+        if (symbol >= ALPHABET_SIZE || !isDefined(symbol)) {
+            throw new IllegalArgumentException("Symbol '" + symbol + "' is not in the alphabet");
+        }
+        return (byte) symbol;
+    }
+
+    default byte[] encode(CharSequence sequence) {
+        byte[] codes = new byte[sequence.length()];
+        encode(sequence, codes);
+        return codes;
+    }
+
+    /**
+     * Encodes the sequence into the beginning of a reused buffer of at least its length.
+     */
+    default void encode(CharSequence sequence, byte[] codes) {
+        for (int index = 0; index < sequence.length(); index++) {
+            codes[index] = encode(sequence.charAt(index));
+        }
+    }
+
+    /**
+     * Table with the same match score on the diagonal and the same mismatch score everywhere else.
+     */
+    static int[] matchMismatchTable(int match, int mismatch) {
+        int[] table = new int[ALPHABET_SIZE * ALPHABET_SIZE];
+        Arrays.fill(table, mismatch);
+        for (int symbol = 0; symbol < ALPHABET_SIZE; symbol++) {
+            table[symbol * ALPHABET_SIZE + symbol] = match;
+        }
+        return table;
+    }
+
+    /**
+     * Table with the roles of the two symbols swapped, for engines that lay the sequences the other way round.
+     */
+    static int[] transposedTable(int[] table) {
+        int[] transposed = new int[ALPHABET_SIZE * ALPHABET_SIZE];
+        for (int first = 0; first < ALPHABET_SIZE; first++) {
+            for (int second = 0; second < ALPHABET_SIZE; second++) {
+                transposed[second * ALPHABET_SIZE + first] = table[first * ALPHABET_SIZE + second];
+            }
+        }
+        return transposed;
+    }
 }
@@ -0,0 +1,206 @@
+package ru.bmstu.bioinformatics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the records of a multi-record FASTA or FASTQ file, plain or gzip-compressed.
+ * Plain files are memory-mapped; when a .fai index lies next to the file the records are read
+ * straight from its offsets, otherwise the file is scanned once. Bases are collected as bytes
+ * and handed out as {@link PackedSequence}s, so no intermediate Strings are built.
+ * <p>
+ * The record id is the first word of its header; FASTA lines before the first header form a record
+ * named after the file. FASTQ qualities are skipped.
+ */
+public final class SequenceReader {
+    private static final int FASTA_HEADER = '>', FASTQ_HEADER = '@', QUALITY_HEADER = '+', NEW_LINE = '\n',
+            SPACE = ' ', INITIAL_CAPACITY = 1 << 12, MAXIMUM_CAPACITY = Integer.MAX_VALUE - 8,
+            ALL_RECORDS = Integer.MAX_VALUE, ONE_RECORD = 1;
+
+    private final ByteInput input;
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length;
+
+    private SequenceReader(ByteInput input) {
+        this.input = input;
+    }
+
+    /**
+     * First whitespace-separated word of a header line without its leading marker.
+     */
+    static String recordId(CharSequence header) {
+        int begin = 0;
+        while (begin < header.length() && header.charAt(begin) <= SPACE) {
+            begin++;
+        }
+        int end = begin;
+        while (end < header.length() && header.charAt(end) > SPACE) {
+            end++;
+        }
+        return header.subSequence(begin, end).toString();
+    }
+
+    public static List<FastaRecord> read(String path) throws IOException {
+        return read(path, ALL_RECORDS);
+    }
+
+    /**
+     * First record of the file, or {@code null} if it has none.
+     */
+    public static FastaRecord readFirst(String path) throws IOException {
+        List<FastaRecord> records = read(path, ONE_RECORD);
+        return records.isEmpty() ? null : records.get(0);
+    }
+
+    /**
+     * Record with the given id, located through the .fai index; the index is built in memory if the file has none.
+     */
+    public static FastaRecord read(String path, String id) throws IOException {
+        AlignmentMetrics.Probe probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.PARSE);
+        Path indexPath = FastaIndex.indexPath(path);
+        FastaIndex index = Files.isRegularFile(indexPath)
+                ? FastaIndex.load(indexPath)
+                : FastaIndex.build(path);
+        FastaIndex.Entry entry = index.getEntry(id);
+        if (entry == null) {
+            throw new IllegalArgumentException("No record '" + id + "' in " + path);
+        }
+
+        try (ByteInput.MappedInput mappedInput = new ByteInput.MappedInput(Paths.get(path))) {
+            FastaRecord record = new SequenceReader(mappedInput).readEntry(mappedInput, entry);
+            AlignmentMetrics.end(probe, record.getSequence().length());
+            return record;
+        }
+    }
+
+    private static List<FastaRecord> read(String path, int maximumRecords) throws IOException {
+        AlignmentMetrics.Probe probe = AlignmentMetrics.begin(AlignmentMetrics.Phase.PARSE);
+        List<FastaRecord> records = readRecords(path, maximumRecords);
+        long symbols = 0;
+        for (FastaRecord record : records) {
+            symbols += record.getSequence().length();
+        }
+        AlignmentMetrics.end(probe, symbols);
+        return records;
+    }
+
+    private static List<FastaRecord> readRecords(String path, int maximumRecords) throws IOException {
+        Path file = Paths.get(path);
+        Path indexPath = FastaIndex.indexPath(path);
+
+        try (ByteInput input = ByteInput.open(file)) {
+            SequenceReader reader = new SequenceReader(input);
+            if (input instanceof ByteInput.MappedInput && Files.isRegularFile(indexPath)) {
+                List<FastaRecord> records = new ArrayList<>();
+                for (FastaIndex.Entry entry : FastaIndex.load(indexPath).getEntries()) {
+                    if (records.size() == maximumRecords) {
+                        break;
+                    }
+                    records.add(reader.readEntry((ByteInput.MappedInput) input, entry));
+                }
+                return records;
+            } else return reader.parse(file.getFileName().toString(), maximumRecords);
+        }
+    }
+
+    private void append(int symbol, String id) throws IOException {
+        if (length == buffer.length) {
+            if (length == MAXIMUM_CAPACITY) {
+                throw new IOException("Record '" + id + "' is longer than " + MAXIMUM_CAPACITY + " symbols");
+            }
+            buffer = Arrays.copyOf(buffer, (int) Math.min(MAXIMUM_CAPACITY, 2L * buffer.length));
+        }
+        buffer[length++] = (byte) symbol;
+    }
+
+    private FastaRecord record(String id) {
+        FastaRecord record = new FastaRecord(id, PackedSequence.pack(buffer, length));
+        length = 0;
+        return record;
+    }
+
+    private FastaRecord readEntry(ByteInput.MappedInput mappedInput, FastaIndex.Entry entry) throws IOException {
+        if (buffer.length < entry.getLength()) {
+            buffer = new byte[entry.getLength()];
+        }
+        length = 0;
+        mappedInput.seek(entry.getOffset());
+        while (length < entry.getLength()) {
+            int symbol = mappedInput.read();
+            if (symbol == ByteInput.END) {
+                throw new IOException("Record '" + entry.getName() + "' is shorter than its index entry");
+            }
+            if (symbol > SPACE) {
+                buffer[length++] = (byte) symbol;
+            }
+        }
+        return record(entry.getName());
+    }
+
+    private String readHeader() throws IOException {
+        StringBuilder header = new StringBuilder();
+        int symbol;
+        while ((symbol = input.read()) != ByteInput.END && symbol != NEW_LINE) {
+            header.append((char) symbol);
+        }
+        return recordId(header);
+    }
+
+    private void skipQualities(String id) throws IOException {
+        int symbol;
+        while ((symbol = input.read()) != ByteInput.END && symbol != NEW_LINE) {
+        }
+        for (int qualities = 0; qualities < length; ) {
+            if ((symbol = input.read()) == ByteInput.END) {
+                throw new IOException("Truncated qualities of FASTQ record '" + id + "'");
+            }
+            if (symbol > SPACE) {
+                qualities++;
+            }
+        }
+        while ((symbol = input.read()) != ByteInput.END && symbol != NEW_LINE) {
+        }
+    }
+
+    private List<FastaRecord> parse(String fileName, int maximumRecords) throws IOException {
+        List<FastaRecord> records = new ArrayList<>();
+        String id = fileName;
+        boolean hasRecord = false,
+                fastq = false,
+                lineStart = true;
+        int symbol;
+
+        while (records.size() < maximumRecords && (symbol = input.read()) != ByteInput.END) {
+            if (lineStart && (symbol == FASTA_HEADER || symbol == FASTQ_HEADER)) {
+                if (hasRecord || length > 0) {
+                    records.add(record(id));
+                    if (records.size() == maximumRecords) {
+                        break;
+                    }
+                }
+                fastq = symbol == FASTQ_HEADER;
+                id = readHeader();
+                hasRecord = true;
+            } else if (lineStart && fastq && symbol == QUALITY_HEADER) {
+                skipQualities(id);
+                records.add(record(id));
+                hasRecord = false;
+            } else {
+                lineStart = symbol == NEW_LINE;
+                if (symbol > SPACE) {
+                    append(symbol, id);
+                }
+            }
+        }
+        if (records.size() < maximumRecords && (hasRecord || length > 0)) {
+            records.add(record(id));
+        }
+
+        return records;
+    }
+}
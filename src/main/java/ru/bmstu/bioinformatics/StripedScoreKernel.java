@@ -0,0 +1,314 @@
+package ru.bmstu.bioinformatics;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Score-only Needleman-Wunsch in striped vertical vectors (Farrar's layout) on the incubating Vector API.
+ * The query is the first sequence of {@link PairAlignment}, every target is the second one, and
+ * {@link #score(CharSequence)} returns exactly the score {@link PairAlignment} reports for that pair.
+ * <p>
+ * The kernel runs in 16-bit lanes clamped to a safe range and repeats the alignment in 32-bit lanes
+ * if a value ever reaches that range. Query profiles and DP lines are kept between calls, so one instance
+ * should be created per query and reused for all targets by a single thread.
+ * Requires {@code --add-modules jdk.incubator.vector}.
+ */
+public class StripedScoreKernel {
+    private static final VectorSpecies<Short> SHORT_SPECIES = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
+    private final int ZERO = 0, ONE = 1, FIRST_LANE = 0,
+            INT_MINUS_INFINITY = Integer.MIN_VALUE / 2;
+
+    private byte[] query;
+    private ScoringFunction scoringFunction;
+    private int[] table;
+    private boolean optimization;
+    private int indel;
+
+    private int shortSegments, intSegments;
+    private short[][] shortProfiles = new short[ScoringFunction.ALPHABET_SIZE][];
+    private int[][] intProfiles = new int[ScoringFunction.ALPHABET_SIZE][];
+    private int minimumScore, maximumScore;
+
+    private short[] shortLoad, shortStore;
+    private int[] intLoad, intStore;
+    private boolean saturated;
+
+    public StripedScoreKernel(CharSequence query, ScoringFunction scoringFunction, boolean optimization) {
+        this.query = scoringFunction.encode(query);
+        this.scoringFunction = scoringFunction;
+        this.table = scoringFunction.getTable();
+        this.optimization = optimization;
+        this.indel = scoringFunction.getIndel();
+
+        shortSegments = (this.query.length + SHORT_SPECIES.length() - ONE) / SHORT_SPECIES.length();
+        intSegments = (this.query.length + INT_SPECIES.length() - ONE) / INT_SPECIES.length();
+    }
+
+    private int gapValue(int index) {
+        return optimization
+                ? ZERO
+                : indel * index;
+    }
+
+    /**
+     * Striped position of query character position in a profile or DP line of the given geometry.
+     */
+    private static int stripedIndex(int position, int segments, int lanes) {
+        return (position % segments) * lanes + position / segments;
+    }
+
+    private int[] buildProfile(byte targetCode, int segments, int lanes) {
+        int[] profile = new int[segments * lanes];
+        for (int position = ZERO; position < query.length; position++) {
+            int value = table[query[position] * ScoringFunction.ALPHABET_SIZE + targetCode];
+            profile[stripedIndex(position, segments, lanes)] = value;
+            minimumScore = Math.min(minimumScore, value);
+            maximumScore = Math.max(maximumScore, value);
+        }
+        return profile;
+    }
+
+    private short[] shortProfile(byte targetCode) {
+        short[] profile = shortProfiles[targetCode];
+        if (profile == null) {
+            int[] values = buildProfile(targetCode, shortSegments, SHORT_SPECIES.length());
+            profile = new short[values.length];
+            for (int index = ZERO; index < values.length; index++) {
+                profile[index] = (short) values[index];
+            }
+            shortProfiles[targetCode] = profile;
+        }
+        return profile;
+    }
+
+    private int[] intProfile(byte targetCode) {
+        int[] profile = intProfiles[targetCode];
+        if (profile == null) {
+            profile = buildProfile(targetCode, intSegments, INT_SPECIES.length());
+            intProfiles[targetCode] = profile;
+        }
+        return profile;
+    }
+
+    private short clamp(int value, int low, int high) {
+        if (value <= low || value >= high) {
+            saturated = true;
+        }
+        return (short) Math.max(low, Math.min(high, value));
+    }
+
+    private int scoreShort(byte[] target) {
+        int lanes = SHORT_SPECIES.length(),
+                segments = shortSegments,
+                low = Short.MIN_VALUE - Math.min(ZERO, Math.min(minimumScore, indel)),
+                high = Short.MAX_VALUE - Math.max(ZERO, maximumScore),
+                lastIndex = stripedIndex(query.length - ONE, segments, lanes),
+                lastColumnMaximum = Integer.MIN_VALUE;
+        if (shortLoad == null) {
+            shortLoad = new short[segments * lanes];
+            shortStore = new short[segments * lanes];
+        }
+        short[] load = shortLoad, store = shortStore;
+
+        ShortVector vectorGap = ShortVector.broadcast(SHORT_SPECIES, (short) indel),
+                vectorLow = ShortVector.broadcast(SHORT_SPECIES, (short) low),
+                vectorHigh = ShortVector.broadcast(SHORT_SPECIES, (short) high),
+                vectorMinimum = vectorHigh,
+                vectorMaximum = vectorLow;
+        VectorMask<Short> firstLane = SHORT_SPECIES.indexInRange(FIRST_LANE, ONE);
+
+        saturated = false;
+        for (int position = ZERO; position < segments * lanes; position++) {
+            load[stripedIndex(position, segments, lanes)] = clamp(gapValue(position + ONE), low, high);
+        }
+
+        for (int lineIndex = ZERO; lineIndex < target.length; lineIndex++) {
+            short[] profile = shortProfile(target[lineIndex]);
+            ShortVector vectorF = vectorLow.blend(clamp(gapValue(lineIndex + ONE) + indel, low, high), firstLane),
+                    vectorH = ShortVector.fromArray(SHORT_SPECIES, load, (segments - ONE) * lanes)
+                            .unslice(ONE)
+                            .blend(clamp(gapValue(lineIndex), low, high), firstLane);
+
+            for (int segment = ZERO; segment < segments; segment++) {
+                ShortVector vectorUp = ShortVector.fromArray(SHORT_SPECIES, load, segment * lanes);
+                vectorH = vectorH.add(ShortVector.fromArray(SHORT_SPECIES, profile, segment * lanes))
+                        .max(vectorUp.add(vectorGap))
+                        .max(vectorF)
+                        .max(vectorLow)
+                        .min(vectorHigh);
+                vectorMinimum = vectorMinimum.min(vectorH);
+                vectorMaximum = vectorMaximum.max(vectorH);
+                vectorH.intoArray(store, segment * lanes);
+                vectorF = vectorH.add(vectorGap);
+                vectorH = vectorUp;
+            }
+
+            vectorF = vectorF.unslice(ONE).blend(vectorLow, firstLane).max(vectorLow);
+            int segment = ZERO;
+            while (true) {
+                vectorH = ShortVector.fromArray(SHORT_SPECIES, store, segment * lanes);
+                if (!vectorF.compare(VectorOperators.GT, vectorH).anyTrue()) {
+                    break;
+                }
+                vectorH.max(vectorF).intoArray(store, segment * lanes);
+                vectorF = vectorF.add(vectorGap).max(vectorLow);
+                if (++segment == segments) {
+                    segment = ZERO;
+                    vectorF = vectorF.unslice(ONE).blend(vectorLow, firstLane);
+                }
+            }
+
+            short[] swap = load;
+            load = store;
+            store = swap;
+            lastColumnMaximum = Math.max(lastColumnMaximum, load[lastIndex]);
+        }
+
+        shortLoad = load;
+        shortStore = store;
+        if (vectorMinimum.compare(VectorOperators.LE, (short) low).anyTrue()
+                || vectorMaximum.compare(VectorOperators.GE, (short) high).anyTrue()) {
+            saturated = true;
+        }
+        return optimization
+                ? Math.max(lastColumnMaximum, maximumOf(load, segments, lanes))
+                : load[lastIndex];
+    }
+
+    private int scoreInt(byte[] target) {
+        int lanes = INT_SPECIES.length(),
+                segments = intSegments,
+                lastIndex = stripedIndex(query.length - ONE, segments, lanes),
+                lastColumnMaximum = Integer.MIN_VALUE;
+        if (intLoad == null) {
+            intLoad = new int[segments * lanes];
+            intStore = new int[segments * lanes];
+        }
+        int[] load = intLoad, store = intStore;
+
+        IntVector vectorGap = IntVector.broadcast(INT_SPECIES, indel),
+                vectorMinusInfinity = IntVector.broadcast(INT_SPECIES, INT_MINUS_INFINITY);
+        VectorMask<Integer> firstLane = INT_SPECIES.indexInRange(FIRST_LANE, ONE);
+
+        for (int position = ZERO; position < segments * lanes; position++) {
+            load[stripedIndex(position, segments, lanes)] = gapValue(position + ONE);
+        }
+
+        for (int lineIndex = ZERO; lineIndex < target.length; lineIndex++) {
+            int[] profile = intProfile(target[lineIndex]);
+            IntVector vectorF = vectorMinusInfinity.blend(gapValue(lineIndex + ONE) + indel, firstLane),
+                    vectorH = IntVector.fromArray(INT_SPECIES, load, (segments - ONE) * lanes)
+                            .unslice(ONE)
+                            .blend(gapValue(lineIndex), firstLane);
+
+            for (int segment = ZERO; segment < segments; segment++) {
+                IntVector vectorUp = IntVector.fromArray(INT_SPECIES, load, segment * lanes);
+                vectorH = vectorH.add(IntVector.fromArray(INT_SPECIES, profile, segment * lanes))
+                        .max(vectorUp.add(vectorGap))
+                        .max(vectorF);
+                vectorH.intoArray(store, segment * lanes);
+                vectorF = vectorH.add(vectorGap);
+                vectorH = vectorUp;
+            }
+
+            vectorF = vectorF.unslice(ONE).blend(vectorMinusInfinity, firstLane);
+            int segment = ZERO;
+            while (true) {
+                vectorH = IntVector.fromArray(INT_SPECIES, store, segment * lanes);
+                if (!vectorF.compare(VectorOperators.GT, vectorH).anyTrue()) {
+                    break;
+                }
+                vectorH.max(vectorF).intoArray(store, segment * lanes);
+                vectorF = vectorF.add(vectorGap).max(vectorMinusInfinity);
+                if (++segment == segments) {
+                    segment = ZERO;
+                    vectorF = vectorF.unslice(ONE).blend(vectorMinusInfinity, firstLane);
+                }
+            }
+
+            int[] swap = load;
+            load = store;
+            store = swap;
+            lastColumnMaximum = Math.max(lastColumnMaximum, load[lastIndex]);
+        }
+
+        intLoad = load;
+        intStore = store;
+        return optimization
+                ? Math.max(lastColumnMaximum, maximumOf(load, segments, lanes))
+                : load[lastIndex];
+    }
+
+    private int maximumOf(short[] line, int segments, int lanes) {
+        int maximum = Integer.MIN_VALUE;
+        for (int position = ZERO; position < query.length; position++) {
+            maximum = Math.max(maximum, line[stripedIndex(position, segments, lanes)]);
+        }
+        return maximum;
+    }
+
+    private int maximumOf(int[] line, int segments, int lanes) {
+        int maximum = Integer.MIN_VALUE;
+        for (int position = ZERO; position < query.length; position++) {
+            maximum = Math.max(maximum, line[stripedIndex(position, segments, lanes)]);
+        }
+        return maximum;
+    }
+
+    /**
+     * Plain linear-space fill for the cases the vector kernel does not cover: empty sequences and
+     * non-negative gap scores, for which the lazy horizontal gap pass would not terminate.
+     */
+    private int scoreScalar(byte[] target) {
+        int[] previous = new int[query.length + ONE], current = new int[query.length + ONE];
+        int lastColumnMaximum = Integer.MIN_VALUE;
+
+        for (int columnIndex = ZERO; columnIndex <= query.length; columnIndex++) {
+            previous[columnIndex] = gapValue(columnIndex);
+        }
+        for (int lineIndex = ONE; lineIndex <= target.length; lineIndex++) {
+            current[ZERO] = gapValue(lineIndex);
+            for (int columnIndex = ONE; columnIndex <= query.length; columnIndex++) {
+                int value = previous[columnIndex - ONE]
+                        + table[query[columnIndex - ONE] * ScoringFunction.ALPHABET_SIZE + target[lineIndex - ONE]];
+                value = Math.max(value, previous[columnIndex] + indel);
+                current[columnIndex] = Math.max(value, current[columnIndex - ONE] + indel);
+            }
+            lastColumnMaximum = Math.max(lastColumnMaximum, current[query.length]);
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        if (!optimization) {
+            return previous[query.length];
+        }
+        int maximum = previous[query.length];
+        for (int columnIndex = ONE; columnIndex <= query.length; columnIndex++) {
+            maximum = Math.max(maximum, previous[columnIndex]);
+        }
+        return Math.max(maximum, lastColumnMaximum);
+    }
+
+    public int score(CharSequence targetSequence) {
+        byte[] target = scoringFunction.encode(targetSequence);
+        if (query.length == ZERO || target.length == ZERO || indel > ZERO) {
+            return scoreScalar(target);
+        }
+
+        for (int lineIndex = ZERO; lineIndex < target.length; lineIndex++) {
+            shortProfile(target[lineIndex]);
+        }
+        if (minimumScore >= Short.MIN_VALUE / 2 && maximumScore <= Short.MAX_VALUE / 2) {
+            int score = scoreShort(target);
+            if (!saturated) {
+                return score;
+            }
+        }
+        return scoreInt(target);
+    }
+}
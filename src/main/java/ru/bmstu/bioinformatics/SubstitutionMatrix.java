@@ -0,0 +1,137 @@
+package ru.bmstu.bioinformatics;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Immutable substitution matrix parsed from the NCBI text format: '#' comment lines, a header line
+ * with the column symbols and one line per row symbol followed by its scores.
+ * Scores are kept in the flat {@link ScoringFunction#getTable()} layout; pairs with a symbol
+ * the matrix does not define score the unknown score, which is the matrix minimum unless set otherwise.
+ */
+public final class SubstitutionMatrix {
+    private static final String COMMENT = "#", SPACE_REGEX = "\\s+";
+    private static final int SIZE = ScoringFunction.ALPHABET_SIZE, ROW_SYMBOL_INDEX = 0, FIRST_SCORE_INDEX = 1,
+            CHARACTER_INDEX = 0, SYMBOL_LENGTH = 1;
+
+    private final String name;
+    private final int[] table;
+    private final boolean[] assigned;
+    private final int minimum,
+            maximum,
+            unknownScore;
+
+    private SubstitutionMatrix(String name, int[] table, boolean[] assigned, int minimum, int maximum,
+                               int unknownScore) {
+        this.name = name;
+        this.table = table;
+        this.assigned = assigned;
+        this.minimum = minimum;
+        this.maximum = maximum;
+        this.unknownScore = unknownScore;
+    }
+
+    private static char symbol(String token, String name) throws IOException {
+        char symbol = token.charAt(CHARACTER_INDEX);
+        if (token.length() != SYMBOL_LENGTH || symbol >= SIZE) {
+            throw new IOException("Bad symbol '" + token + "' in matrix " + name);
+        }
+        return symbol;
+    }
+
+    public static SubstitutionMatrix parse(String name, BufferedReader reader) throws IOException {
+        int[] table = new int[SIZE * SIZE];
+        boolean[] assigned = new boolean[SIZE * SIZE];
+        char[] columns = null;
+        int minimum = Integer.MAX_VALUE,
+                maximum = Integer.MIN_VALUE;
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith(COMMENT)) {
+                continue;
+            }
+            String[] tokens = line.split(SPACE_REGEX);
+            if (columns == null) {
+                columns = new char[tokens.length];
+                for (int index = 0; index < tokens.length; index++) {
+                    columns[index] = symbol(tokens[index], name);
+                }
+                continue;
+            }
+
+            if (tokens.length != columns.length + FIRST_SCORE_INDEX) {
+                throw new IOException("Row '" + tokens[ROW_SYMBOL_INDEX] + "' of matrix " + name
+                        + " has " + (tokens.length - FIRST_SCORE_INDEX) + " scores, expected " + columns.length);
+            }
+            char row = symbol(tokens[ROW_SYMBOL_INDEX], name);
+            for (int index = FIRST_SCORE_INDEX; index < tokens.length; index++) {
+                int score;
+                try {
+                    score = Integer.parseInt(tokens[index]);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Bad score '" + tokens[index] + "' in matrix " + name, e);
+                }
+                int cell = row * SIZE + columns[index - FIRST_SCORE_INDEX];
+                table[cell] = score;
+                assigned[cell] = true;
+                minimum = Math.min(minimum, score);
+                maximum = Math.max(maximum, score);
+            }
+        }
+        if (minimum > maximum) {
+            throw new IOException("Matrix " + name + " has no scores");
+        }
+
+        for (int cell = 0; cell < table.length; cell++) {
+            if (!assigned[cell]) {
+                table[cell] = minimum;
+            }
+        }
+        return new SubstitutionMatrix(name, table, assigned, minimum, maximum, minimum);
+    }
+
+    /**
+     * Copy of this matrix in which pairs with an undefined symbol score unknownScore.
+     */
+    public SubstitutionMatrix withUnknownScore(int unknownScore) {
+        int[] copy = Arrays.copyOf(table, table.length);
+        for (int cell = 0; cell < copy.length; cell++) {
+            if (!assigned[cell]) {
+                copy[cell] = unknownScore;
+            }
+        }
+        return new SubstitutionMatrix(name, copy, assigned, minimum, maximum, unknownScore);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Shared flat table; callers must not modify it.
+     */
+    public int[] getTable() {
+        return table;
+    }
+
+    public int getScore(char firstChar, char secondChar) {
+        return firstChar < SIZE && secondChar < SIZE
+                ? table[firstChar * SIZE + secondChar]
+                : unknownScore;
+    }
+
+    public int getMinimum() {
+        return minimum;
+    }
+
+    public int getMaximum() {
+        return maximum;
+    }
+
+    public int getUnknownScore() {
+        return unknownScore;
+    }
+}
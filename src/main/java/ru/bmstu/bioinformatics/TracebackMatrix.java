@@ -0,0 +1,63 @@
+package ru.bmstu.bioinformatics;
+
+public class TracebackMatrix {
+    private final int CELLS_PER_WORD_SHIFT = 5, CELL_IN_WORD_MASK = 31, BITS_PER_CELL_SHIFT = 1;
+    private final long CELL_MASK = 3L;
+    private static final PredecessorType[] TYPES = PredecessorType.values();
+
+    private long[] words;
+    private int stride;
+
+    private long cellIndex(int lineIndex, int columnIndex) {
+        return (long) lineIndex * stride + columnIndex;
+    }
+
+    /**
+     * Every line starts at a word boundary, so lines can be written from different threads.
+     */
+    public TracebackMatrix(int lines, int columns) {
+        reshape(lines, columns);
+    }
+
+    /**
+     * Lays the matrix out for new dimensions, reusing the words when they are enough. Every cell
+     * of the new matrix has to be set before it is read.
+     */
+    public void reshape(int lines, int columns) {
+        this.stride = (columns + CELL_IN_WORD_MASK) & ~CELL_IN_WORD_MASK;
+        long cells = (long) lines * stride;
+        long size = (cells + CELL_IN_WORD_MASK) >>> CELLS_PER_WORD_SHIFT;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Traceback of " + lines + "x" + columns + " cells is too large");
+        }
+        if (words == null || words.length < size) {
+            words = new long[(int) size];
+        }
+    }
+
+    /**
+     * Number of cells the allocated words can hold.
+     */
+    public long getCapacity() {
+        return (long) words.length << CELLS_PER_WORD_SHIFT;
+    }
+
+    public long getBytes() {
+        return (long) words.length * Long.BYTES;
+    }
+
+    public void set(int lineIndex, int columnIndex, PredecessorType predecessorType) {
+        long index = cellIndex(lineIndex, columnIndex);
+        int word = (int) (index >>> CELLS_PER_WORD_SHIFT),
+                shift = (int) (index & CELL_IN_WORD_MASK) << BITS_PER_CELL_SHIFT;
+        words[word] = (words[word] & ~(CELL_MASK << shift))
+                | ((long) predecessorType.ordinal() << shift);
+    }
+
+    public PredecessorType get(int lineIndex, int columnIndex) {
+        long index = cellIndex(lineIndex, columnIndex);
+        int word = (int) (index >>> CELLS_PER_WORD_SHIFT),
+                shift = (int) (index & CELL_IN_WORD_MASK) << BITS_PER_CELL_SHIFT;
+        return TYPES[(int) ((words[word] >>> shift) & CELL_MASK)];
+    }
+}
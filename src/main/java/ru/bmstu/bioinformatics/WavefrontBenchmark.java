@@ -0,0 +1,73 @@
+package ru.bmstu.bioinformatics;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Scaling report for the parallel matrix fill: aligns one random pair with 1, 2, 4, 8 and all available threads.
+ * Usage: WavefrontBenchmark [length] [repetitions]
+ */
+public class WavefrontBenchmark {
+    private static final String NUCLEOTIDES = "ACGT",
+            HEADER = "threads     time, ms    GCUPS    speedup",
+            ROW_FORMAT = "%7d %12.1f %8.3f %9.2fx%n";
+    private static final int DEFAULT_LENGTH = 10000, DEFAULT_REPETITIONS = 3, SEED = 42,
+            LENGTH_ARGUMENT = 0, REPETITIONS_ARGUMENT = 1, INDEL = -5, MATCH = 5, MISMATCH = -4, MAX_POWER = 8;
+    private static final double NANOSECONDS_IN_MILLISECOND = 1e6, CELLS_IN_GIGACELL = 1e9,
+            NANOSECONDS_IN_SECOND = 1e9;
+
+    private static String randomSequence(Random random, int length) {
+        StringBuilder stringBuilder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            stringBuilder.append(NUCLEOTIDES.charAt(random.nextInt(NUCLEOTIDES.length())));
+        }
+        return stringBuilder.toString();
+    }
+
+    private static long measure(String firstSequence, String secondSequence, ScoringFunction scoringFunction,
+                                int threads, int repetitions, String expected) {
+        long best = Long.MAX_VALUE;
+        for (int repetition = 0; repetition < repetitions; repetition++) {
+            long start = System.nanoTime();
+            PairAlignment pairAlignment = new PairAlignment(firstSequence, secondSequence, scoringFunction,
+                    false, AlignmentStrategy.FULL, threads);
+            best = Math.min(best, System.nanoTime() - start);
+            if (!pairAlignment.toString().equals(expected)) {
+                throw new IllegalStateException("Alignment with " + threads
+                        + " threads differs from the sequential one");
+            }
+        }
+        return best;
+    }
+
+    public static void main(String[] args) {
+        int length = args.length > LENGTH_ARGUMENT ? Integer.parseInt(args[LENGTH_ARGUMENT]) : DEFAULT_LENGTH,
+                repetitions = args.length > REPETITIONS_ARGUMENT
+                        ? Integer.parseInt(args[REPETITIONS_ARGUMENT])
+                        : DEFAULT_REPETITIONS;
+
+        Random random = new Random(SEED);
+        String firstSequence = randomSequence(random, length),
+                secondSequence = randomSequence(random, length);
+        ScoringFunction scoringFunction = new DNAFull(INDEL, MATCH, MISMATCH);
+        String expected = new PairAlignment(firstSequence, secondSequence, scoringFunction, false).toString();
+
+        TreeSet<Integer> threadCounts = new TreeSet<>();
+        for (int threads = 1; threads <= MAX_POWER; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(Runtime.getRuntime().availableProcessors());
+
+        double cells = (double) length * length;
+        long sequentialTime = 0;
+        System.out.println(HEADER);
+        for (int threads : threadCounts) {
+            long time = measure(firstSequence, secondSequence, scoringFunction, threads, repetitions, expected);
+            if (sequentialTime == 0) {
+                sequentialTime = time;
+            }
+            System.out.printf(ROW_FORMAT, threads, time / NANOSECONDS_IN_MILLISECOND,
+                    cells / CELLS_IN_GIGACELL / (time / NANOSECONDS_IN_SECOND), (double) sequentialTime / time);
+        }
+    }
+}
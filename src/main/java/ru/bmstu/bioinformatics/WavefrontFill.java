@@ -0,0 +1,154 @@
+package ru.bmstu.bioinformatics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fills the scoring matrix tile by tile along anti-diagonals on a {@link ForkJoinPool}.
+ * Tiles of one anti-diagonal depend only on tiles of the previous ones, so they run concurrently;
+ * each cell is computed exactly as in the sequential fill, which keeps scores and traceback identical.
+ * Pools are shared by all fills with the same number of threads; their workers are daemon threads.
+ */
+public class WavefrontFill {
+    private static final ConcurrentMap<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    private final int ZERO = 0, ONE = 1, FIRST_INDEX = 1, TILE_SIZE = 256;
+
+    private byte[] firstCodes,
+            secondCodes;
+    private int[] table;
+    private TracebackMatrix traceback;
+    private int indel;
+    private int threads;
+
+    private int[] lineBoundary,
+            columnBoundary,
+            corners;
+    private int tileLines,
+            tileColumns;
+
+    /**
+     * Sequences are given as {@link ScoringFunction#encode(CharSequence)} codes.
+     */
+    public WavefrontFill(byte[] firstCodes, byte[] secondCodes, ScoringFunction scoringFunction,
+                         TracebackMatrix traceback, int threads) {
+        this.firstCodes = firstCodes;
+        this.secondCodes = secondCodes;
+        this.table = scoringFunction.getTable();
+        this.traceback = traceback;
+        this.indel = scoringFunction.getIndel();
+        this.threads = threads;
+    }
+
+    private class Tile extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int tileLine, tileColumn;
+
+        Tile(int tileLine, int tileColumn) {
+            this.tileLine = tileLine;
+            this.tileColumn = tileColumn;
+        }
+
+        @Override
+        protected void compute() {
+            fillTile(tileLine, tileColumn);
+        }
+    }
+
+    private static class Wave extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Tile> tiles;
+
+        Wave(List<Tile> tiles) {
+            this.tiles = tiles;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(tiles);
+        }
+    }
+
+    private void fillTile(int tileLine, int tileColumn) {
+        int lineBegin = tileLine * TILE_SIZE,
+                lineEnd = Math.min(lineBegin + TILE_SIZE, secondCodes.length),
+                columnBegin = tileColumn * TILE_SIZE,
+                columnEnd = Math.min(columnBegin + TILE_SIZE, firstCodes.length),
+                width = columnEnd - columnBegin;
+        int[] previous = new int[width + ONE], current = new int[width + ONE];
+
+        previous[ZERO] = corners[tileLine * (tileColumns + ONE) + tileColumn];
+        System.arraycopy(lineBoundary, columnBegin + ONE, previous, FIRST_INDEX, width);
+
+        for (int lineIndex = lineBegin + ONE; lineIndex <= lineEnd; lineIndex++) {
+            current[ZERO] = columnBoundary[lineIndex];
+            int secondCode = secondCodes[lineIndex - ONE];
+
+            for (int offset = FIRST_INDEX; offset <= width; offset++) {
+                int columnIndex = columnBegin + offset;
+                int currentMaximum = previous[offset - ONE]
+                        + table[firstCodes[columnIndex - ONE] * ScoringFunction.ALPHABET_SIZE + secondCode];
+                PredecessorType currentType = PredecessorType.DIAG;
+
+                if (previous[offset] + indel > currentMaximum) {
+                    currentMaximum = previous[offset] + indel;
+                    currentType = PredecessorType.UP;
+                }
+                if (current[offset - ONE] + indel > currentMaximum) {
+                    currentMaximum = current[offset - ONE] + indel;
+                    currentType = PredecessorType.LEFT;
+                }
+
+                current[offset] = currentMaximum;
+                traceback.set(lineIndex, columnIndex, currentType);
+            }
+
+            columnBoundary[lineIndex] = current[width];
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        System.arraycopy(previous, FIRST_INDEX, lineBoundary, columnBegin + ONE, width);
+        corners[(tileLine + ONE) * (tileColumns + ONE) + tileColumn + ONE] = previous[width];
+    }
+
+    /**
+     * Fills every non-gap cell. On entry lastLine and lastColumn hold the gap line and gap column,
+     * on exit they hold the last line and the last column of the matrix.
+     */
+    public void fill(int[] lastLine, int[] lastColumn) {
+        lineBoundary = lastLine;
+        columnBoundary = lastColumn;
+        tileLines = (secondCodes.length + TILE_SIZE - ONE) / TILE_SIZE;
+        tileColumns = (firstCodes.length + TILE_SIZE - ONE) / TILE_SIZE;
+
+        corners = new int[(tileLines + ONE) * (tileColumns + ONE)];
+        for (int tileLine = ZERO; tileLine <= tileLines; tileLine++) {
+            corners[tileLine * (tileColumns + ONE)] = lastColumn[Math.min(tileLine * TILE_SIZE, secondCodes.length)];
+        }
+        for (int tileColumn = ZERO; tileColumn <= tileColumns; tileColumn++) {
+            corners[tileColumn] = lastLine[Math.min(tileColumn * TILE_SIZE, firstCodes.length)];
+        }
+
+        ForkJoinPool pool = POOLS.computeIfAbsent(threads, ForkJoinPool::new);
+        for (int diagonal = ZERO; diagonal < tileLines + tileColumns - ONE; diagonal++) {
+            List<Tile> wave = new ArrayList<>();
+            for (int tileLine = Math.max(ZERO, diagonal - tileColumns + ONE);
+                 tileLine <= Math.min(diagonal, tileLines - ONE); tileLine++) {
+                wave.add(new Tile(tileLine, diagonal - tileLine));
+            }
+            pool.invoke(new Wave(wave));
+        }
+
+        // The gap column is not part of any tile: its last cell opens the last line.
+        lastLine[ZERO] = lastColumn[secondCodes.length];
+        corners = null;
+    }
+}
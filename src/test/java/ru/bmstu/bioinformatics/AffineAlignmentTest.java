@@ -0,0 +1,45 @@
+package ru.bmstu.bioinformatics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class AffineAlignmentTest {
+    private final String NUCLEOTIDES = "ACGT", FIRST_SEQUENCE = "AAAAGGGGTTTT", SECOND_SEQUENCE = "AAAATTTT",
+            EXPECTED_ALIGNMENT = "Seq1: AAAAGGGGTTTT\nSeq2: AAAA____TTTT\n\nScore: 27";
+    private final int SEED = 5, NUMBER_OF_PAIRS = 30, MAXIMUM_LENGTH = 200,
+            INDEL = -2, MATCH = 1, MISMATCH = -1, GAP_OPEN = -10, GAP_EXTEND = -1,
+            MATCH_DNA_FULL = 5, MISMATCH_DNA_FULL = -4;
+
+    private String randomSequence(Random random) {
+        StringBuilder stringBuilder = new StringBuilder();
+        int length = random.nextInt(MAXIMUM_LENGTH);
+        for (int i = 0; i < length; i++) {
+            stringBuilder.append(NUCLEOTIDES.charAt(random.nextInt(NUCLEOTIDES.length())));
+        }
+        return stringBuilder.toString();
+    }
+
+    @Test
+    public void test1() {
+        Random random = new Random(SEED);
+        ScoringFunction scoringFunction = new Default(INDEL, MATCH, MISMATCH);
+
+        for (int pair = 0; pair < NUMBER_OF_PAIRS; pair++) {
+            String firstSequence = randomSequence(random), secondSequence = randomSequence(random);
+            boolean optimization = random.nextBoolean();
+            Assert.assertEquals(
+                    new PairAlignment(firstSequence, secondSequence, scoringFunction, optimization, INDEL, INDEL)
+                            .toString(),
+                    new PairAlignment(firstSequence, secondSequence, scoringFunction, optimization).toString());
+        }
+    }
+
+    @Test
+    public void test2() {
+        PairAlignment pairAlignment = new PairAlignment(FIRST_SEQUENCE, SECOND_SEQUENCE,
+                new DNAFull(GAP_OPEN, MATCH_DNA_FULL, MISMATCH_DNA_FULL), false, GAP_OPEN, GAP_EXTEND);
+        Assert.assertEquals(pairAlignment.toString(), EXPECTED_ALIGNMENT);
+    }
+}
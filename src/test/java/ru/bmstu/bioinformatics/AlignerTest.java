@@ -0,0 +1,80 @@
+package ru.bmstu.bioinformatics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class AlignerTest {
+    private final String NUCLEOTIDES = "ACGT";
+    private final int SEED = 23, NUMBER_OF_PAIRS = 60, MAXIMUM_LENGTH = 200, MATCH = 5, MISMATCH = -4, INDEL = -5,
+            THREADS = 4, RETAINED_CELLS = 1000;
+
+    private String randomSequence(Random random) {
+        StringBuilder stringBuilder = new StringBuilder();
+        int length = random.nextInt(MAXIMUM_LENGTH);
+        for (int i = 0; i < length; i++) {
+            stringBuilder.append(NUCLEOTIDES.charAt(random.nextInt(NUCLEOTIDES.length())));
+        }
+        return stringBuilder.toString();
+    }
+
+    @Test
+    public void test1() {
+        Random random = new Random(SEED);
+        ScoringFunction scoringFunction = new DNAFull(INDEL, MATCH, MISMATCH);
+        AlignmentType[] types = {AlignmentType.GLOBAL, AlignmentType.OVERLAP, AlignmentType.LOCAL,
+                AlignmentType.semiGlobal(true, true, false, false)};
+
+        for (AlignmentType type : types) {
+            // Pairs of growing and shrinking sizes through one aligner, with and without dropping large buffers.
+            Aligner aligner = new Aligner(scoringFunction, type),
+                    trimmedAligner = new Aligner(scoringFunction, type, RETAINED_CELLS);
+            List<AlignmentResult> results = new ArrayList<>();
+            List<String> expected = new ArrayList<>();
+            for (int pair = 0; pair < NUMBER_OF_PAIRS; pair++) {
+                String firstSequence = randomSequence(random), secondSequence = randomSequence(random);
+                PairAlignment pairAlignment = new PairAlignment(firstSequence, secondSequence, scoringFunction, type);
+
+                results.add(aligner.align(firstSequence, secondSequence));
+                expected.add(pairAlignment.toString());
+                Assert.assertEquals(expected.get(pair), trimmedAligner.align(firstSequence, secondSequence).toString());
+                if (!type.isLocal()) {
+                    Assert.assertEquals(pairAlignment.getScore(), aligner.fill(firstSequence, secondSequence));
+                }
+            }
+            for (int pair = 0; pair < NUMBER_OF_PAIRS; pair++) {
+                Assert.assertEquals(expected.get(pair), results.get(pair).toString());
+            }
+        }
+    }
+
+    @Test
+    public void test2() throws Exception {
+        Random random = new Random(SEED);
+        ScoringFunction scoringFunction = new DNAFull(INDEL, MATCH, MISMATCH);
+        AlignerPool alignerPool = new AlignerPool(scoringFunction, AlignmentType.GLOBAL, THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<String>> futures = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+
+        try {
+            for (int pair = 0; pair < NUMBER_OF_PAIRS; pair++) {
+                String firstSequence = randomSequence(random), secondSequence = randomSequence(random);
+                expected.add(new PairAlignment(firstSequence, secondSequence, scoringFunction, false).toString());
+                futures.add(executor.submit(() -> alignerPool.align(firstSequence, secondSequence).toString()));
+            }
+            for (int pair = 0; pair < NUMBER_OF_PAIRS; pair++) {
+                Assert.assertEquals(expected.get(pair), futures.get(pair).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertTrue(alignerPool.getIdle() <= THREADS);
+    }
+}
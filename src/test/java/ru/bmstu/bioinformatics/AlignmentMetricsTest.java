@@ -0,0 +1,58 @@
+package ru.bmstu.bioinformatics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+
+public class AlignmentMetricsTest {
+    private final String FIRST = "GATTACAGATTACA", SECOND = "GATACAGTTACA";
+    private final int MATCH = 5, MISMATCH = -4, INDEL = -5;
+
+    @Test
+    public void test1() throws Exception {
+        AlignmentMetrics metrics = AlignmentMetrics.getInstance();
+        ScoringFunction scoringFunction = new DNAFull(INDEL, MATCH, MISMATCH);
+        long cells = (long) FIRST.length() * SECOND.length();
+        metrics.reset();
+        metrics.setEnabled(true);
+        try {
+            PairAlignment pairAlignment = new PairAlignment(FIRST, SECOND, scoringFunction, false);
+            pairAlignment.write(new StringWriter());
+            new ScoreOnlyAlignment(FIRST, SECOND, scoringFunction, AlignmentType.GLOBAL).score();
+
+            AlignmentMetrics.PhaseStatistics fill = metrics.getPhase(AlignmentMetrics.Phase.FILL),
+                    traceback = metrics.getPhase(AlignmentMetrics.Phase.TRACEBACK),
+                    output = metrics.getPhase(AlignmentMetrics.Phase.OUTPUT);
+            Assert.assertEquals(2, fill.getCount());
+            Assert.assertEquals(2 * cells, fill.getUnits());
+            Assert.assertEquals(2 * cells, metrics.getCells());
+            Assert.assertTrue(fill.getNanoseconds() >= fill.getMaximumNanoseconds());
+            Assert.assertEquals(1, traceback.getCount());
+            Assert.assertEquals(1, output.getCount());
+            Assert.assertEquals(pairAlignment.getResult().getLength(), output.getUnits());
+            Assert.assertTrue(metrics.getPeakMatrixBytes() > 0);
+            Assert.assertTrue(metrics.getJson().contains("\"cells\":" + 2 * cells));
+        } finally {
+            metrics.setEnabled(false);
+        }
+
+        // Nothing is counted while disabled.
+        new PairAlignment(FIRST, SECOND, scoringFunction, false);
+        Assert.assertEquals(2, metrics.getPhase(AlignmentMetrics.Phase.FILL).getCount());
+        metrics.reset();
+        Assert.assertEquals(0, metrics.getCells());
+        Assert.assertEquals(0, metrics.getPeakMatrixBytes());
+    }
+
+    @Test
+    public void test2() throws Exception {
+        AlignmentMetrics.register();
+        AlignmentMetrics.register();
+        ObjectName name = new ObjectName(AlignmentMetrics.OBJECT_NAME);
+        Assert.assertEquals(false, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Enabled"));
+        Assert.assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+}
@@ -0,0 +1,118 @@
+package ru.bmstu.bioinformatics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class AlignmentRecordTest {
+    private final String NUCLEOTIDES = "ACGT";
+    private final int SEED = 23, NUMBER_OF_RECORDS = 6, LENGTH = 120, WORKERS = 2;
+
+    private String write(AlignmentRecordWriter.Format format, List<FastaRecord> targets, AlignmentRecord... records)
+            throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (AlignmentRecordWriter writer = AlignmentRecordWriter.create(format, output, targets)) {
+            for (AlignmentRecord record : records) {
+                writer.write(record);
+            }
+        }
+        return output.toString(StandardCharsets.UTF_8.name());
+    }
+
+    @Test
+    public void test1() throws Exception {
+        ScoringFunction scoringFunction = new DNAFull(-5, 5, -4);
+        FastaRecord query = new FastaRecord("read", "GGGATTACAGATTACATT"),
+                target = new FastaRecord("ref", "GATTACAGTTACA");
+
+        // The query holds the target with an extra A: its unaligned ends are left out of the block.
+        AlignmentRecord record = new PairAlignment(query.getSequence(), target.getSequence(), scoringFunction,
+                AlignmentType.semiGlobal(true, true, false, false)).getResult().toRecord("read", "ref");
+        Assert.assertEquals("8M1I5M", record.getCigar());
+        Assert.assertEquals(2, record.getQueryStart());
+        Assert.assertEquals(16, record.getQueryEnd());
+        Assert.assertEquals(0, record.getTargetStart());
+        Assert.assertEquals(13, record.getTargetEnd());
+        Assert.assertEquals(13, record.getMatches());
+        Assert.assertEquals(1, record.getEdits());
+        Assert.assertEquals(13.0 / 14, record.getIdentity(), 1e-9);
+        Assert.assertEquals(60, record.getScore());
+
+        Assert.assertEquals("@HD\tVN:1.6\tSO:unsorted\n@SQ\tSN:ref\tLN:13\n"
+                        + "@PG\tID:needleman-wunsch\tPN:needleman-wunsch\n"
+                        + "read\t0\tref\t1\t255\t2S8M1I5M2S\t*\t0\t0\t*\t*\tAS:i:60\tNM:i:1\n",
+                write(AlignmentRecordWriter.Format.SAM, Arrays.asList(target), record));
+        Assert.assertEquals("read\t18\t2\t16\t+\tref\t13\t0\t13\t13\t14\t255\tAS:i:60\tNM:i:1\tcg:Z:8M1I5M\n",
+                write(AlignmentRecordWriter.Format.PAF, Arrays.asList(target), record));
+
+        // Local alignment: the coordinates are those of the located region.
+        AlignmentRecord local = new PairAlignment("TTTTGATTACATTTT", "CCGATTACACC", scoringFunction,
+                AlignmentType.LOCAL).getResult().toRecord("first", "second");
+        Assert.assertEquals("7M", local.getCigar());
+        Assert.assertEquals(4, local.getQueryStart());
+        Assert.assertEquals(2, local.getTargetStart());
+        Assert.assertEquals(1.0, local.getIdentity(), 0);
+
+        // A path without aligned pairs is unmapped; PAF skips it.
+        AlignmentRecord unmapped = new PairAlignment("", "GATTACA", scoringFunction, false).getResult()
+                .toRecord("empty", "ref");
+        Assert.assertFalse(unmapped.isMapped());
+        Assert.assertTrue(write(AlignmentRecordWriter.Format.SAM, new ArrayList<>(), unmapped)
+                .endsWith("empty\t4\t*\t0\t0\t*\t*\t0\t0\t*\t*\n"));
+        Assert.assertEquals("", write(AlignmentRecordWriter.Format.PAF, new ArrayList<>(), unmapped));
+    }
+
+    @Test
+    public void test2() throws Exception {
+        Random random = new Random(SEED);
+        List<FastaRecord> records = new ArrayList<>();
+        for (int index = 0; index < NUMBER_OF_RECORDS; index++) {
+            StringBuilder stringBuilder = new StringBuilder();
+            for (int i = 0; i < LENGTH + index; i++) {
+                stringBuilder.append(NUCLEOTIDES.charAt(random.nextInt(NUCLEOTIDES.length())));
+            }
+            records.add(new FastaRecord("seq" + index, stringBuilder.toString()));
+        }
+        ScoringFunction scoringFunction = new Default(-2, 1, -1);
+        BatchAlignment batchAlignment = BatchAlignment.ofRecords(records, null, null, 0,
+                (query, target, hit) -> new PairAlignment(query.getSequence(), target.getSequence(),
+                        scoringFunction, true).getResult().toRecord(query.getId(), target.getId()),
+                WORKERS, true);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (AlignmentRecordWriter writer = AlignmentRecordWriter.create(AlignmentRecordWriter.Format.BINARY, output,
+                records)) {
+            batchAlignment.run(writer);
+        }
+
+        // The binary records read back equal to the records of every unordered pair, in order.
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+        BinaryAlignmentWriter.readHeader(input);
+        for (int first = 0; first < NUMBER_OF_RECORDS; first++) {
+            for (int second = first + 1; second < NUMBER_OF_RECORDS; second++) {
+                AlignmentRecord expected = new PairAlignment(records.get(first).getSequence(),
+                        records.get(second).getSequence(), scoringFunction, true).getResult()
+                        .toRecord(records.get(first).getId(), records.get(second).getId()),
+                        actual = BinaryAlignmentWriter.read(input);
+                Assert.assertEquals(expected.getQueryName(), actual.getQueryName());
+                Assert.assertEquals(expected.getTargetName(), actual.getTargetName());
+                Assert.assertEquals(expected.getCigar(), actual.getCigar());
+                Assert.assertEquals(expected.getScore(), actual.getScore());
+                Assert.assertEquals(Arrays.asList(expected.getQueryLength(), expected.getQueryStart(),
+                        expected.getQueryEnd(), expected.getTargetLength(), expected.getTargetStart(),
+                        expected.getTargetEnd(), expected.getMatches(), expected.getEdits()),
+                        Arrays.asList(actual.getQueryLength(), actual.getQueryStart(), actual.getQueryEnd(),
+                                actual.getTargetLength(), actual.getTargetStart(), actual.getTargetEnd(),
+                                actual.getMatches(), actual.getEdits()));
+            }
+        }
+        Assert.assertNull(BinaryAlignmentWriter.read(input));
+    }
+}
@@ -0,0 +1,123 @@
+package ru.bmstu.bioinformatics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class AlignmentServerTest {
+    private final String HOST = "http://localhost:", ALIGN = "/align", BATCH = "/align/batch", STATS = "/stats",
+            FIRST = "CCCCCGATTACACCCCC", SECOND = "GATTACA";
+    private final int ANY_PORT = 0, WORKERS = 2, MAXIMUM_BATCH = 8, LINGER = 100_000, OK = 200, BAD_REQUEST = 400,
+            PAYLOAD_TOO_LARGE = 413, CLIENTS = 4, REQUESTS_PER_CLIENT = 25, MATCH = 5, MISMATCH = -4, INDEL = -5,
+            NESTING = 100_000, LONG_PAIR = 40_000;
+
+    private AlignmentServer startServer() throws IOException {
+        AlignmentServer server = new AlignmentServer(ANY_PORT, WORKERS, MAXIMUM_BATCH, LINGER);
+        server.start();
+        return server;
+    }
+
+    private Object[] request(AlignmentServer server, String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(HOST + server.getPort() + path).openConnection();
+        if (body != null) {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            try (OutputStream output = connection.getOutputStream()) {
+                output.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        try (InputStream input = status < BAD_REQUEST ? connection.getInputStream() : connection.getErrorStream()) {
+            return new Object[]{status, Json.parseObject(new String(input.readAllBytes(), StandardCharsets.UTF_8))};
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> body(Object[] response) {
+        return (Map<String, Object>) response[1];
+    }
+
+    @Test
+    public void test1() throws Exception {
+        ScoringFunction scoringFunction = new DNAFull(INDEL, MATCH, MISMATCH);
+        PairAlignment expected = new PairAlignment(FIRST, SECOND, scoringFunction, AlignmentType.LOCAL);
+        AlignmentServer server = startServer();
+        try {
+            Object[] response = request(server, ALIGN, "{\"first\": \"" + FIRST + "\", \"second\": \"" + SECOND
+                    + "\", \"alphabet\": \"DNAFull\", \"gap\": -5, \"type\": \"local\"}");
+            Assert.assertEquals(OK, response[0]);
+            Assert.assertEquals((long) expected.getScore(), body(response).get("score"));
+            Assert.assertEquals((long) expected.getFirstStart(), body(response).get("firstStart"));
+            Assert.assertEquals(SECOND, body(response).get("alignedFirst"));
+            Assert.assertEquals(SECOND, body(response).get("alignedSecond"));
+
+            response = request(server, ALIGN, "{\"first\": \"GATTACA\", \"second\": \"GATACA\", "
+                    + "\"alphabet\": \"DNAFull\", \"gap\": -5, \"output\": \"cigar\"}");
+            Assert.assertEquals("2M1D4M", body(response).get("cigar"));
+
+            response = request(server, ALIGN, "{\"first\": \"GATTACA\", \"second\": \"GATACA\", "
+                    + "\"alphabet\": \"DNAFull\"}");
+            Assert.assertEquals(BAD_REQUEST, response[0]);
+            Assert.assertTrue(body(response).containsKey("error"));
+            Assert.assertEquals(BAD_REQUEST, request(server, ALIGN, "{\"first\": ")[0]);
+
+            // Deep nesting and huge pairs are refused before any alignment.
+            StringBuilder nested = new StringBuilder("{\"first\": ");
+            for (int level = 0; level < NESTING; level++) {
+                nested.append('[');
+            }
+            Assert.assertEquals(BAD_REQUEST, request(server, ALIGN, nested.toString())[0]);
+            Assert.assertEquals(PAYLOAD_TOO_LARGE, request(server, ALIGN, "{\"first\": \""
+                    + new String(new char[LONG_PAIR]).replace('\0', 'A') + "\", \"second\": \""
+                    + new String(new char[LONG_PAIR]).replace('\0', 'C') + "\"}")[0]);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void test2() throws Exception {
+        ScoringFunction scoringFunction = new BLOSUM62(INDEL);
+        String pairs = "{\"pairs\": [{\"first\": \"HEAGAWGHEE\", \"second\": \"PAWHEAE\"}, "
+                + "{\"first\": \"MKTAYIAK\", \"second\": \"MKTAYK\"}], \"alphabet\": \"BLOSUM62\", "
+                + "\"gap\": -5, \"output\": \"score\"}";
+        long[] expected = {new PairAlignment("HEAGAWGHEE", "PAWHEAE", scoringFunction, false).getScore(),
+                new PairAlignment("MKTAYIAK", "MKTAYK", scoringFunction, false).getScore()};
+        AlignmentServer server = startServer();
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<Object[]>> responses = new ArrayList<>();
+            for (int index = 0; index < CLIENTS * REQUESTS_PER_CLIENT; index++) {
+                responses.add(clients.submit(() -> request(server, BATCH, pairs)));
+            }
+            for (Future<Object[]> response : responses) {
+                Assert.assertEquals(OK, response.get()[0]);
+                List<Object> results = (List<Object>) body(response.get()).get("results");
+                for (int pair = 0; pair < expected.length; pair++) {
+                    Assert.assertEquals(expected[pair], ((Map<String, Object>) results.get(pair)).get("score"));
+                }
+            }
+
+            Map<String, Object> stats = body(request(server, STATS, null));
+            Assert.assertEquals((long) expected.length * CLIENTS * REQUESTS_PER_CLIENT, stats.get("pairs"));
+            Assert.assertEquals(1L, stats.get("cachedSettings"));
+            Assert.assertEquals(0L, stats.get("queueDepth"));
+        } finally {
+            clients.shutdownNow();
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package ru.bmstu.bioinformatics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class AlignmentTypeTest {
+    private final String NUCLEOTIDES = "ACGT", QUERY = "GATTACA", TARGET = "CCCCCGATTACACCCCC",
+            EXPECTED_SEMI_GLOBAL = "Seq1: CCCCCGATTACACCCCC\nSeq2: _____GATTACA_____\n\nScore: 35",
+            EXPECTED_LOCAL = "Seq1: GATTACA\nSeq2: GATTACA\n\nScore: 35";
+    private final int SEED = 17, NUMBER_OF_PAIRS = 40, MAXIMUM_LENGTH = 150, MATCH = 5, MISMATCH = -4, INDEL = -5,
+            QUERY_OFFSET = 5;
+
+    private String randomSequence(Random random) {
+        StringBuilder stringBuilder = new StringBuilder();
+        int length = random.nextInt(MAXIMUM_LENGTH);
+        for (int i = 0; i < length; i++) {
+            stringBuilder.append(NUCLEOTIDES.charAt(random.nextInt(NUCLEOTIDES.length())));
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Smith-Waterman score over the whole matrix.
+     */
+    private int localScore(String firstSequence, String secondSequence, ScoringFunction scoringFunction) {
+        int[][] matrix = new int[secondSequence.length() + 1][firstSequence.length() + 1];
+        int best = 0;
+        for (int line = 1; line <= secondSequence.length(); line++) {
+            for (int column = 1; column <= firstSequence.length(); column++) {
+                int value = matrix[line - 1][column - 1]
+                        + scoringFunction.score(firstSequence.charAt(column - 1), secondSequence.charAt(line - 1));
+                value = Math.max(value, matrix[line - 1][column] + scoringFunction.getIndel());
+                value = Math.max(value, matrix[line][column - 1] + scoringFunction.getIndel());
+                matrix[line][column] = Math.max(value, 0);
+                best = Math.max(best, value);
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void test1() {
+        ScoringFunction scoringFunction = new DNAFull(INDEL, MATCH, MISMATCH);
+        Assert.assertEquals(EXPECTED_SEMI_GLOBAL,
+                new PairAlignment(TARGET, QUERY, scoringFunction, AlignmentType.parse("semiglobal", "")).toString());
+
+        PairAlignment local = new PairAlignment(TARGET, QUERY, scoringFunction, AlignmentType.LOCAL);
+        Assert.assertEquals(EXPECTED_LOCAL, local.toString());
+        Assert.assertEquals(QUERY_OFFSET, local.getFirstStart());
+        Assert.assertEquals(0, local.getSecondStart());
+    }
+
+    @Test
+    public void test2() {
+        Random random = new Random(SEED);
+        ScoringFunction scoringFunction = new DNAFull(INDEL, MATCH, MISMATCH);
+
+        for (int pair = 0; pair < NUMBER_OF_PAIRS; pair++) {
+            String firstSequence = randomSequence(random), secondSequence = randomSequence(random);
+            AlignmentType type = AlignmentType.semiGlobal(random.nextBoolean(), random.nextBoolean(),
+                    random.nextBoolean(), random.nextBoolean());
+
+            int expected = new PairAlignment(firstSequence, secondSequence, scoringFunction, type).getScore();
+            Assert.assertEquals(expected, new PairAlignment(firstSequence, secondSequence, scoringFunction, type,
+                    AlignmentStrategy.HIRSCHBERG, 1).getScore());
+            Assert.assertEquals(expected, new ScoreOnlyAlignment(firstSequence, secondSequence, scoringFunction, type)
+                    .score());
+
+            int local = localScore(firstSequence, secondSequence, scoringFunction);
+            PairAlignment localAlignment = new PairAlignment(firstSequence, secondSequence, scoringFunction,
+                    AlignmentType.LOCAL);
+            Assert.assertEquals(local, localAlignment.getScore());
+            Assert.assertEquals(local, new ScoreOnlyAlignment(firstSequence, secondSequence, scoringFunction,
+                    AlignmentType.LOCAL).score());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package ru.bmstu.bioinformatics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class BatchAlignmentTest {
+    private final String NUCLEOTIDES = "ACGT", ID_PREFIX = "seq";
+    private final int SEED = 7, NUMBER_OF_RECORDS = 9, MAXIMUM_LENGTH = 120, WORKERS = 3,
+            INDEL = -5, MATCH = 5, MISMATCH = -4;
+
+    private List<FastaRecord> randomRecords(Random random) {
+        List<FastaRecord> records = new ArrayList<>();
+        for (int record = 0; record < NUMBER_OF_RECORDS; record++) {
+            StringBuilder stringBuilder = new StringBuilder();
+            int length = random.nextInt(MAXIMUM_LENGTH);
+            for (int i = 0; i < length; i++) {
+                stringBuilder.append(NUCLEOTIDES.charAt(random.nextInt(NUCLEOTIDES.length())));
+            }
+            records.add(new FastaRecord(ID_PREFIX + record, stringBuilder.toString()));
+        }
+        return records;
+    }
+
+    @Test
+    public void test1() throws Exception {
+        List<FastaRecord> records = randomRecords(new Random(SEED));
+        ScoringFunction scoringFunction = new DNAFull(INDEL, MATCH, MISMATCH);
+
+        StringBuilder expected = new StringBuilder();
+        for (int first = 0; first < records.size(); first++) {
+            for (int second = first + 1; second < records.size(); second++) {
+                expected.append('>').append(records.get(first).getId()).append(' ')
+                        .append(records.get(second).getId()).append('\n')
+                        .append(new PairAlignment(records.get(first).getSequence(), records.get(second).getSequence(),
+                                scoringFunction, false))
+                        .append('\n');
+            }
+        }
+
+        StringWriter writer = new StringWriter();
+        BatchAlignment batchAlignment = new BatchAlignment(records, null,
+                (firstSequence, secondSequence) -> new PairAlignment(firstSequence, secondSequence,
+                        scoringFunction, false).toString(),
+                WORKERS, true);
+        batchAlignment.run(writer);
+        Assert.assertEquals(expected.toString(), writer.toString());
+    }
+}
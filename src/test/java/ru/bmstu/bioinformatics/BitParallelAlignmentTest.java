@@ -0,0 +1,80 @@
+package ru.bmstu.bioinformatics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class BitParallelAlignmentTest {
+    private final String NUCLEOTIDES = "ACGT";
+    private final int SEED = 18, NUMBER_OF_PAIRS = 40, MAXIMUM_LENGTH = 200;
+
+    private String randomSequence(Random random, String source) {
+        StringBuilder stringBuilder = new StringBuilder();
+        int length = random.nextInt(MAXIMUM_LENGTH);
+        for (int i = 0; i < length; i++) {
+            // Mostly a mutated copy of the source, so that the paths are long and non-trivial.
+            if (i < source.length() && random.nextInt(4) != 0) {
+                stringBuilder.append(source.charAt(i));
+            } else stringBuilder.append(NUCLEOTIDES.charAt(random.nextInt(NUCLEOTIDES.length())));
+        }
+        return stringBuilder.toString();
+    }
+
+    @Test
+    public void test1() {
+        Random random = new Random(SEED);
+        ScoringFunction[] scoringFunctions = {new Default(-2, 1, -1), new Default(-1, 0, -1),
+                new DNAFull(-4, 2, -2), new DNAFull(-1, 2, 0), new DNAFull(-1, 1, -3)};
+        AlignmentType[] types = {AlignmentType.GLOBAL, AlignmentType.OVERLAP,
+                AlignmentType.semiGlobal(true, true, false, false), AlignmentType.semiGlobal(false, false, true, true),
+                AlignmentType.semiGlobal(false, true, true, false)};
+
+        for (ScoringFunction scoringFunction : scoringFunctions) {
+            Assert.assertTrue(BitParallelAlignment.supports(scoringFunction, AlignmentType.GLOBAL));
+            for (AlignmentType type : types) {
+                for (int pair = 0; pair < NUMBER_OF_PAIRS; pair++) {
+                    String firstSequence = randomSequence(random, ""),
+                            secondSequence = randomSequence(random, firstSequence);
+                    PairAlignment expected = new PairAlignment(firstSequence, secondSequence, scoringFunction, type),
+                            actual = new PairAlignment(firstSequence, secondSequence, scoringFunction, type,
+                                    AlignmentStrategy.BIT_PARALLEL, 1);
+
+                    Assert.assertEquals(expected.toString(), actual.toString());
+                    Assert.assertEquals(expected.getScore(), new BitParallelAlignment(firstSequence, secondSequence,
+                            scoringFunction, type).score());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test2() {
+        String firstSequence = "HEAGAWGHEE", secondSequence = "PAWHEAE";
+        ScoringFunction blosum = new BLOSUM62(-5), wide = new DNAFull(-5, 5, -4);
+        Assert.assertFalse(BitParallelAlignment.supports(blosum, AlignmentType.GLOBAL));
+        Assert.assertFalse(BitParallelAlignment.supports(wide, AlignmentType.GLOBAL));
+        Assert.assertFalse(BitParallelAlignment.supports(new Default(-2, 1, -1), AlignmentType.LOCAL));
+
+        // Scorings that do not fit fall back to the full matrix.
+        Assert.assertEquals(new PairAlignment(firstSequence, secondSequence, blosum, false).toString(),
+                new PairAlignment(firstSequence, secondSequence, blosum, false, AlignmentStrategy.BIT_PARALLEL)
+                        .toString());
+        Assert.assertEquals(new PairAlignment("GATTACA", "GCATGCT", wide, AlignmentType.LOCAL).toString(),
+                new PairAlignment("GATTACA", "GCATGCT", wide, AlignmentType.LOCAL, AlignmentStrategy.BIT_PARALLEL,
+                        1).toString());
+
+        // Several words per column.
+        StringBuilder longSequence = new StringBuilder();
+        Random random = new Random(SEED);
+        for (int i = 0; i < 1000; i++) {
+            longSequence.append(NUCLEOTIDES.charAt(random.nextInt(NUCLEOTIDES.length())));
+        }
+        String first = longSequence.substring(0, 700), second = longSequence.substring(100);
+        ScoringFunction scoringFunction = new Default(-2, 1, -1);
+        Assert.assertEquals(new PairAlignment(first, second, scoringFunction, true).toString(),
+                new PairAlignment(first, second, scoringFunction, true, AlignmentStrategy.BIT_PARALLEL).toString());
+        Assert.assertEquals(0, new BitParallelAlignment("", "", scoringFunction, AlignmentType.GLOBAL).score());
+        Assert.assertEquals(-10, new BitParallelAlignment("ACGTA", "", scoringFunction, AlignmentType.GLOBAL).fill());
+    }
+}
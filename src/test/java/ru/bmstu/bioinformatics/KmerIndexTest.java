@@ -0,0 +1,132 @@
+package ru.bmstu.bioinformatics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class KmerIndexTest {
+    private final String NUCLEOTIDES = "ACGT", ID_PREFIX = "target", SPACED = "111010010100110111";
+    private final int SEED = 20, NUMBER_OF_TARGETS = 50, LENGTH = 300, K = 11, MINIMUM_HITS = 3, WORKERS = 2,
+            REPEAT = 2000;
+
+    private String randomSequence(Random random, int length) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            stringBuilder.append(NUCLEOTIDES.charAt(random.nextInt(NUCLEOTIDES.length())));
+        }
+        return stringBuilder.toString();
+    }
+
+    private List<FastaRecord> randomTargets(Random random) {
+        List<FastaRecord> targets = new ArrayList<>();
+        for (int target = 0; target < NUMBER_OF_TARGETS; target++) {
+            targets.add(new FastaRecord(ID_PREFIX + target, randomSequence(random, LENGTH)));
+        }
+        return targets;
+    }
+
+    @Test
+    public void test1() throws Exception {
+        Random random = new Random(SEED);
+        List<FastaRecord> targets = randomTargets(random);
+        // The query is a piece of target 7 shifted by 40 and of target 31 in lower case, with a few mismatches.
+        String query = targets.get(7).getSequence().toString().substring(40, 140)
+                + targets.get(31).getSequence().toString().substring(0, 80).toLowerCase();
+        char[] symbols = query.toCharArray();
+        for (int i = 5; i < symbols.length; i += 23) {
+            symbols[i] = symbols[i] == 'A' ? 'C' : 'A';
+        }
+        query = new String(symbols);
+
+        for (String seed : Arrays.asList(KmerIndex.contiguousSeed(K), SPACED)) {
+            KmerIndex index = new KmerIndex(targets, seed);
+            Assert.assertEquals(seed, index.getSeedPattern());
+            List<KmerIndex.Hit> hits = index.search(query, MINIMUM_HITS);
+            Assert.assertEquals(2, hits.size());
+            Assert.assertEquals(7, hits.get(0).getTarget());
+            Assert.assertEquals(-40, hits.get(0).getLowDiagonal());
+            Assert.assertEquals(-40, hits.get(0).getHighDiagonal());
+            Assert.assertEquals(31, hits.get(1).getTarget());
+            Assert.assertEquals(100, hits.get(1).getLowDiagonal());
+            Assert.assertTrue(hits.get(1).getHits() >= MINIMUM_HITS);
+            Assert.assertTrue(index.search(randomSequence(random, LENGTH), MINIMUM_HITS).isEmpty());
+        }
+
+        Assert.assertEquals(31, BandedAlignment.diagonalBandWidth(100, 120, -51, 0));
+        Assert.assertEquals(0, BandedAlignment.diagonalBandWidth(100, 120, -20, 0));
+        Assert.assertEquals(5, BandedAlignment.diagonalBandWidth(100, 120, -10, 5));
+        for (String invalid : Arrays.asList("", "0111", "1102", "1111111111111")) {
+            try {
+                new KmerIndex(targets, invalid);
+                Assert.fail(invalid);
+            } catch (IllegalArgumentException e) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void test2() throws Exception {
+        Random random = new Random(SEED);
+        List<FastaRecord> targets = randomTargets(random);
+        KmerIndex index = new KmerIndex(targets, SPACED);
+        Path path = Files.createTempFile("targets", ".index");
+        try {
+            index.save(path);
+            KmerIndex mapped = KmerIndex.map(path);
+            Assert.assertTrue(mapped.matches(targets, SPACED));
+            Assert.assertFalse(mapped.matches(targets, KmerIndex.contiguousSeed(K)));
+            Assert.assertFalse(mapped.matches(targets.subList(1, NUMBER_OF_TARGETS), SPACED));
+            Assert.assertEquals(index.getNumberOfCodes(), mapped.getNumberOfCodes());
+            Assert.assertEquals(index.getNumberOfPostings(), mapped.getNumberOfPostings());
+
+            // Queries that overlap targets 3 and 12 only; every other pair is filtered out.
+            List<FastaRecord> queries = Arrays.asList(
+                    new FastaRecord("query0", targets.get(3).getSequence().toString().substring(100)),
+                    new FastaRecord("query1", randomSequence(random, LENGTH)),
+                    new FastaRecord("query2", targets.get(12).getSequence().toString().substring(0, 200)));
+            ScoringFunction scoringFunction = new DNAFull(-5, 5, -4);
+            StringWriter writer = new StringWriter();
+            BatchAlignment batchAlignment = new BatchAlignment(queries, targets, mapped, MINIMUM_HITS,
+                    (firstSequence, secondSequence, hit) -> new PairAlignment(firstSequence, secondSequence,
+                            scoringFunction, BandedAlignment.diagonalBandWidth(firstSequence.length(),
+                            secondSequence.length(), hit.getLowDiagonal(), hit.getHighDiagonal())).toString(),
+                    WORKERS, true);
+            batchAlignment.run(writer);
+
+            String expected = ">query0 target3\n" + new PairAlignment(queries.get(0).getSequence(),
+                    targets.get(3).getSequence(), scoringFunction, false) + "\n"
+                    + ">query2 target12\n" + new PairAlignment(queries.get(2).getSequence(),
+                    targets.get(12).getSequence(), scoringFunction, false) + "\n";
+            Assert.assertEquals(expected, writer.toString());
+            Assert.assertTrue(batchAlignment.getReport().contains("Seed filter: 2 of 150 pairs passed"));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void test3() {
+        Random random = new Random(SEED);
+        List<FastaRecord> targets = randomTargets(random);
+        char[] repeat = new char[REPEAT];
+        Arrays.fill(repeat, 'A');
+        String unique = randomSequence(random, LENGTH);
+        targets.add(new FastaRecord(ID_PREFIX + NUMBER_OF_TARGETS, unique + new String(repeat)));
+
+        // The poly-A code has far more postings than the cutoff and gives no hits; unique seeds still do.
+        KmerIndex index = new KmerIndex(targets, KmerIndex.contiguousSeed(K));
+        Assert.assertEquals(KmerIndex.MINIMUM_CUTOFF, index.getPostingsCutoff());
+        Assert.assertTrue(index.search(new String(repeat, 0, LENGTH), MINIMUM_HITS).isEmpty());
+        List<KmerIndex.Hit> hits = index.search(unique + new String(repeat, 0, LENGTH), MINIMUM_HITS);
+        Assert.assertEquals(1, hits.size());
+        Assert.assertEquals(NUMBER_OF_TARGETS, hits.get(0).getTarget());
+    }
+}
@@ -0,0 +1,110 @@
+package ru.bmstu.bioinformatics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class MultipleAlignmentTest {
+    private final String NUCLEOTIDES = "ACGT", ID_PREFIX = "seq";
+    private final int SEED = 21, NUMBER_OF_RECORDS = 12, LENGTH = 150, WORKERS = 3;
+
+    private String mutate(Random random, String source) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < source.length(); i++) {
+            int change = random.nextInt(20);
+            if (change == 0) {
+                continue;
+            } else if (change == 1) {
+                stringBuilder.append(NUCLEOTIDES.charAt(random.nextInt(NUCLEOTIDES.length())));
+            }
+            stringBuilder.append(change == 2 ? NUCLEOTIDES.charAt(random.nextInt(NUCLEOTIDES.length()))
+                    : source.charAt(i));
+        }
+        return stringBuilder.toString();
+    }
+
+    @Test
+    public void test1() throws Exception {
+        String firstSequence = "GATTACAGATTACA", secondSequence = "GATACAGTTACA";
+        ScoringFunction scoringFunction = new DNAFull(-5, 5, -4);
+        MultipleAlignment multipleAlignment = new MultipleAlignment(Arrays.asList(
+                new FastaRecord("first", firstSequence), new FastaRecord("second", secondSequence)),
+                scoringFunction, MultipleAlignment.TreeMethod.UPGMA, WORKERS);
+        multipleAlignment.align();
+
+        // Two sequences are aligned exactly as by the pairwise engine.
+        AlignmentResult result = new PairAlignment(firstSequence, secondSequence, scoringFunction, false).getResult();
+        StringBuilder firstRow = new StringBuilder(),
+                secondRow = new StringBuilder();
+        for (int index = 0, first = 0, second = 0; index < result.getLength(); index++) {
+            PredecessorType type = result.getOperation(index);
+            firstRow.append(type == PredecessorType.UP ? '-' : firstSequence.charAt(first++));
+            secondRow.append(type == PredecessorType.LEFT ? '-' : secondSequence.charAt(second++));
+        }
+        Assert.assertEquals(firstRow.toString(), multipleAlignment.getRow(0));
+        Assert.assertEquals(secondRow.toString(), multipleAlignment.getRow(1));
+
+        StringWriter writer = new StringWriter();
+        multipleAlignment.write(writer);
+        Assert.assertEquals(">first\n" + firstRow + "\n>second\n" + secondRow + "\n", writer.toString());
+
+        // The closest pair is joined first; neighbour joining is rooted at its last join.
+        double[][] distances = {{0, 2, 7, 7}, {2, 0, 7, 7}, {7, 7, 0, 4}, {7, 7, 4, 0}};
+        List<String> names = Arrays.asList("a", "b", "c", "d");
+        Assert.assertEquals("((a,b),(c,d));", GuideTree.upgma(distances).toNewick(names));
+        GuideTree tree = GuideTree.neighbourJoining(distances);
+        Assert.assertEquals(7, tree.getNumberOfNodes());
+        Assert.assertEquals(6, tree.getRoot());
+        Assert.assertTrue(tree.toNewick(names).startsWith("(((a,b),"));
+    }
+
+    @Test
+    public void test2() throws Exception {
+        Random random = new Random(SEED);
+        StringBuilder ancestor = new StringBuilder();
+        for (int i = 0; i < LENGTH; i++) {
+            ancestor.append(NUCLEOTIDES.charAt(random.nextInt(NUCLEOTIDES.length())));
+        }
+        List<FastaRecord> records = new ArrayList<>();
+        for (int record = 0; record < NUMBER_OF_RECORDS; record++) {
+            String parent = record < 2 ? ancestor.toString() : records.get(random.nextInt(record)).getSequence()
+                    .toString();
+            records.add(new FastaRecord(ID_PREFIX + record, mutate(random, parent)));
+        }
+        records.add(new FastaRecord("copy", records.get(3).getSequence()));
+
+        for (MultipleAlignment.TreeMethod method : MultipleAlignment.TreeMethod.values()) {
+            for (ScoringFunction scoringFunction : Arrays.asList(new DNAFull(-5, 5, -4), new Default(-2, 1, -1))) {
+                MultipleAlignment multipleAlignment = new MultipleAlignment(records, scoringFunction, method,
+                        WORKERS);
+                multipleAlignment.align();
+                Assert.assertEquals(2 * records.size() - 1, multipleAlignment.getTree().getNumberOfNodes());
+                Assert.assertEquals(0, multipleAlignment.getDistances()[3][records.size() - 1], 0);
+
+                for (int index = 0; index < records.size(); index++) {
+                    String row = multipleAlignment.getRow(index);
+                    Assert.assertEquals(multipleAlignment.getLength(), row.length());
+                    Assert.assertEquals(records.get(index).getSequence().toString(), row.replace("-", ""));
+                }
+                Assert.assertEquals(multipleAlignment.getRow(3), multipleAlignment.getRow(records.size() - 1));
+                for (int column = 0; column < multipleAlignment.getLength(); column++) {
+                    boolean residue = false;
+                    for (int index = 0; index < records.size(); index++) {
+                        residue |= multipleAlignment.getRow(index).charAt(column) != '-';
+                    }
+                    Assert.assertTrue(residue);
+                }
+            }
+        }
+
+        MultipleAlignment empty = new MultipleAlignment(new ArrayList<>(), new Default(-2, 1, -1),
+                MultipleAlignment.TreeMethod.UPGMA, WORKERS);
+        empty.align();
+        Assert.assertEquals(0, empty.getLength());
+    }
+}
@@ -0,0 +1,107 @@
+package ru.bmstu.bioinformatics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+public class OutOfCoreAlignmentTest {
+    private final String NUCLEOTIDES = "ACGT", CHECKPOINT_SUFFIX = ".checkpoint";
+    private final int SEED = 22, LENGTH = 700, TILE_BYTES = 1000;
+
+    private String randomSequence(Random random, int length) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            stringBuilder.append(NUCLEOTIDES.charAt(random.nextInt(NUCLEOTIDES.length())));
+        }
+        return stringBuilder.toString();
+    }
+
+    @Test
+    public void test1() throws Exception {
+        Random random = new Random(SEED);
+        ScoringFunction scoringFunction = new DNAFull(-5, 5, -4);
+        String firstSequence = randomSequence(random, LENGTH),
+                secondSequence = firstSequence.substring(100, 600) + randomSequence(random, 50);
+
+        for (AlignmentType type : Arrays.asList(AlignmentType.GLOBAL, AlignmentType.OVERLAP,
+                AlignmentType.semiGlobal(false, false, true, true), AlignmentType.LOCAL)) {
+            for (String[] pair : new String[][]{{firstSequence, secondSequence}, {secondSequence, firstSequence},
+                    {"", "GATTACA"}, {"GATTACA", ""}}) {
+                Assert.assertEquals(new PairAlignment(pair[0], pair[1], scoringFunction, type).toString(),
+                        new PairAlignment(pair[0], pair[1], scoringFunction, type, AlignmentStrategy.OUT_OF_CORE,
+                                1).toString());
+            }
+        }
+
+        // Tiles of a few lines each.
+        Path scratch = Files.createTempFile("traceback", ".scratch");
+        AlignmentOperations operations = new AlignmentOperations(LENGTH);
+        try (OutOfCoreAlignment outOfCoreAlignment = new OutOfCoreAlignment(firstSequence, secondSequence,
+                scoringFunction, AlignmentType.GLOBAL, scratch, TILE_BYTES, 0)) {
+            Assert.assertEquals(5, outOfCoreAlignment.getTileLines());
+            Assert.assertEquals(new PairAlignment(firstSequence, secondSequence, scoringFunction, false).getScore(),
+                    outOfCoreAlignment.fill());
+            outOfCoreAlignment.traceBack(operations);
+        }
+        Assert.assertFalse(Files.exists(scratch));
+        Assert.assertFalse(Files.exists(Paths.get(scratch + CHECKPOINT_SUFFIX)));
+    }
+
+    @Test
+    public void test2() throws Exception {
+        Random random = new Random(SEED);
+        ScoringFunction scoringFunction = new Default(-2, 1, -1);
+        String firstSequence = randomSequence(random, LENGTH),
+                secondSequence = randomSequence(random, LENGTH);
+        AlignmentType type = AlignmentType.OVERLAP;
+        Path scratch = Files.createTempFile("traceback", ".scratch");
+
+        try {
+            // A run that stops before the traceback keeps its files, with a checkpoint after every tile.
+            try (OutOfCoreAlignment interrupted = new OutOfCoreAlignment(firstSequence, secondSequence,
+                    scoringFunction, type, scratch, TILE_BYTES, 0)) {
+                interrupted.fill();
+                Assert.assertEquals(0, interrupted.getResumedLine());
+            }
+            Assert.assertTrue(Files.exists(Paths.get(scratch + CHECKPOINT_SUFFIX)));
+
+            // Another pair does not match the checkpoint.
+            try (OutOfCoreAlignment other = new OutOfCoreAlignment(secondSequence, firstSequence,
+                    scoringFunction, type, scratch, TILE_BYTES, Long.MAX_VALUE)) {
+                other.fill();
+                Assert.assertEquals(0, other.getResumedLine());
+            }
+
+            try (OutOfCoreAlignment interrupted = new OutOfCoreAlignment(firstSequence, secondSequence,
+                    scoringFunction, type, scratch, TILE_BYTES, 0)) {
+                interrupted.fill();
+            }
+            PairAlignment resumed = new PairAlignment(firstSequence, secondSequence, scoringFunction, type,
+                    scratch, Long.MAX_VALUE);
+            Assert.assertEquals(new PairAlignment(firstSequence, secondSequence, scoringFunction, type).toString(),
+                    resumed.toString());
+            Assert.assertFalse(Files.exists(scratch));
+
+            try (OutOfCoreAlignment interrupted = new OutOfCoreAlignment(firstSequence, secondSequence,
+                    scoringFunction, type, scratch, TILE_BYTES, 0)) {
+                interrupted.fill();
+            }
+            try (OutOfCoreAlignment resuming = new OutOfCoreAlignment(firstSequence, secondSequence,
+                    scoringFunction, type, scratch, TILE_BYTES, Long.MAX_VALUE)) {
+                int score = resuming.fill();
+                int tileLines = resuming.getTileLines();
+                Assert.assertEquals(LENGTH / tileLines * tileLines, resuming.getResumedLine());
+                Assert.assertEquals(new PairAlignment(firstSequence, secondSequence, scoringFunction, type)
+                        .getScore(), score);
+            }
+        } finally {
+            Files.deleteIfExists(scratch);
+            Files.deleteIfExists(Paths.get(scratch + CHECKPOINT_SUFFIX));
+        }
+    }
+}
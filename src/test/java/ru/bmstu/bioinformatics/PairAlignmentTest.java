@@ -24,7 +24,9 @@ public class PairAlignmentTest {
 
     private final String SPACE_REGEX = "\\s+", OUTPUT_FILE_PATH = "./out.txt", EMPTY = "",
         PATH_KEY = "-i", ALPHABET_KEY = "-a", GAP_PENALTY_KEY = "-g", OUTPUT_FILE_KEY = "-o",
-            OPTIMIZATION_KEY = "-optimization", TRUE = "true", FALSE = "false";
+            OPTIMIZATION_KEY = "-optimization", TRUE = "true", FALSE = "false",
+            MODE_KEY = "-mode", HIRSCHBERG = "hirschberg", FULL = "full", THREADS_KEY = "-t", FOUR = "4",
+            BANDED = "banded", BAND_KEY = "-band", ZERO_BAND = "0";
     private final int ZERO = 0, SCORE_INDEX = 1, EXIT_CODE_WITH_ERROR = 1;
 
     private String firstSequencePath,
@@ -86,4 +88,66 @@ public class PairAlignmentTest {
                 OPTIMIZATION_KEY, TRUE});
         Assert.assertEquals(getScore(), optimizedScore);
     }
+
+    @Test
+    public void test3() {
+        Main.main(new String[]{
+                PATH_KEY, firstSequencePath, secondSequencePath,
+                ALPHABET_KEY, alphabet,
+                GAP_PENALTY_KEY, gapPenalty,
+                OUTPUT_FILE_KEY, OUTPUT_FILE_PATH,
+                OPTIMIZATION_KEY, FALSE,
+                MODE_KEY, HIRSCHBERG});
+        Assert.assertEquals(getScore(), notOptimizedScore);
+    }
+
+    @Test
+    public void test4() {
+        Main.main(new String[]{
+                PATH_KEY, firstSequencePath, secondSequencePath,
+                ALPHABET_KEY, alphabet,
+                GAP_PENALTY_KEY, gapPenalty,
+                OUTPUT_FILE_KEY, OUTPUT_FILE_PATH,
+                OPTIMIZATION_KEY, TRUE,
+                MODE_KEY, HIRSCHBERG});
+        Assert.assertEquals(getScore(), optimizedScore);
+    }
+
+    @Test
+    public void test5() {
+        Main.main(new String[]{
+                PATH_KEY, firstSequencePath, secondSequencePath,
+                ALPHABET_KEY, alphabet,
+                GAP_PENALTY_KEY, gapPenalty,
+                OUTPUT_FILE_KEY, OUTPUT_FILE_PATH,
+                OPTIMIZATION_KEY, TRUE,
+                MODE_KEY, FULL,
+                THREADS_KEY, FOUR});
+        Assert.assertEquals(getScore(), optimizedScore);
+    }
+
+    @Test
+    public void test6() {
+        Main.main(new String[]{
+                PATH_KEY, firstSequencePath, secondSequencePath,
+                ALPHABET_KEY, alphabet,
+                GAP_PENALTY_KEY, gapPenalty,
+                OUTPUT_FILE_KEY, OUTPUT_FILE_PATH,
+                OPTIMIZATION_KEY, FALSE,
+                MODE_KEY, BANDED,
+                BAND_KEY, ZERO_BAND});
+        Assert.assertEquals(getScore(), notOptimizedScore);
+    }
+
+    @Test
+    public void test7() {
+        Main.main(new String[]{
+                PATH_KEY, firstSequencePath, secondSequencePath,
+                ALPHABET_KEY, alphabet,
+                GAP_PENALTY_KEY, gapPenalty,
+                OUTPUT_FILE_KEY, OUTPUT_FILE_PATH,
+                OPTIMIZATION_KEY, FALSE,
+                MODE_KEY, FULL});
+        Assert.assertEquals(getScore(), notOptimizedScore);
+    }
 }
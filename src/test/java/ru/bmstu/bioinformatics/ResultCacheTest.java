@@ -0,0 +1,125 @@
+package ru.bmstu.bioinformatics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ResultCacheTest {
+    private final String FIRST = "GATTACA", SECOND = "GCATGCT", SETTINGS = "DNAFull -5", VERSION = "1";
+    private final long MAXIMUM_BYTES = 1 << 20;
+    private final int LOOKUPS = 1000;
+
+    private String align(AtomicInteger calls, String firstSequence, String secondSequence) {
+        calls.incrementAndGet();
+        return new PairAlignment(firstSequence, secondSequence, new DNAFull(-5, 5, -4), false).toString();
+    }
+
+    @Test
+    public void test1() throws IOException {
+        Path path = Files.createTempFile("results", ".cache");
+        AtomicInteger calls = new AtomicInteger();
+        try {
+            String expected;
+            try (ResultCache cache = new ResultCache(path, MAXIMUM_BYTES, SETTINGS, VERSION)) {
+                expected = cache.get(FIRST, SECOND, () -> align(calls, FIRST, SECOND));
+                Assert.assertEquals(expected, cache.get(FIRST, SECOND, () -> align(calls, FIRST, SECOND)));
+                Assert.assertNull(cache.get(SECOND, FIRST, () -> null));
+                Assert.assertNull(cache.get(SECOND, FIRST, () -> "recomputed"));
+                Assert.assertEquals(2, cache.getHits());
+                Assert.assertEquals(2, cache.getMisses());
+            }
+
+            // Persisted across reopening, separately for other settings.
+            try (ResultCache cache = new ResultCache(path, MAXIMUM_BYTES, SETTINGS, VERSION)) {
+                Assert.assertEquals(2, cache.getEntries());
+                Assert.assertEquals(expected, cache.get(FIRST, SECOND, () -> align(calls, FIRST, SECOND)));
+                Assert.assertEquals(1, cache.getHits());
+            }
+            try (ResultCache cache = new ResultCache(path, MAXIMUM_BYTES, "BLOSUM62 -5", VERSION)) {
+                Assert.assertEquals("other", cache.get(FIRST, SECOND, () -> "other"));
+                Assert.assertEquals(0, cache.getHits());
+            }
+            Assert.assertEquals(1, calls.get());
+
+            // A changed matrix drops the entries of its settings only.
+            try (ResultCache cache = new ResultCache(path, MAXIMUM_BYTES, SETTINGS, "2")) {
+                Assert.assertEquals(2, cache.getInvalidated());
+                Assert.assertEquals(1, cache.getEntries());
+                Assert.assertEquals(expected, cache.get(FIRST, SECOND, () -> align(calls, FIRST, SECOND)));
+                Assert.assertEquals(1, cache.getMisses());
+            }
+            Assert.assertEquals(2, calls.get());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void test2() throws IOException {
+        Path path = Files.createTempFile("results", ".cache");
+        try {
+            // Room for about three records of 100 bytes.
+            long maximumBytes = 3 * 140;
+            try (ResultCache cache = new ResultCache(path, maximumBytes, SETTINGS, VERSION)) {
+                for (int i = 0; i < 3; i++) {
+                    String value = String.format("%0100d", i);
+                    cache.get(String.valueOf(i), SECOND, () -> value);
+                }
+                cache.get("0", SECOND, () -> "recomputed");
+                cache.get("3", SECOND, () -> String.format("%0100d", 3));
+                Assert.assertEquals(1, cache.getEvicted());
+                Assert.assertEquals(3, cache.getEntries());
+                Assert.assertTrue(cache.getLiveBytes() <= maximumBytes);
+                Assert.assertTrue(cache.getReport().contains("hits 1, misses 4"));
+            }
+
+            // The least recently used pair is gone, the recency survives reopening, and the log is compacted.
+            long logSize;
+            try (ResultCache cache = new ResultCache(path, maximumBytes, SETTINGS, VERSION)) {
+                Assert.assertEquals(String.format("%0100d", 0), cache.get("0", SECOND, () -> "recomputed"));
+                Assert.assertEquals("recomputed", cache.get("1", SECOND, () -> "recomputed"));
+                Assert.assertEquals(String.format("%0100d", 3), cache.get("3", SECOND, () -> "recomputed"));
+                Assert.assertEquals(2, cache.getEvicted());
+                logSize = Files.size(path);
+            }
+            Assert.assertTrue(Files.size(path) < logSize);
+
+            // A torn record at the end is cut off.
+            byte[] bytes = Files.readAllBytes(path);
+            Files.write(path, Arrays.copyOf(bytes, bytes.length - 3));
+            try (ResultCache cache = new ResultCache(path, maximumBytes, SETTINGS, VERSION)) {
+                Assert.assertEquals(2, cache.getEntries());
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void test3() throws IOException {
+        Path path = Files.createTempFile("results", ".cache");
+        try {
+            // Hits do not grow the log while it is open; closing logs each hit entry once.
+            long logSize, recordBytes;
+            try (ResultCache cache = new ResultCache(path, MAXIMUM_BYTES, SETTINGS, VERSION)) {
+                cache.get(FIRST, SECOND, () -> "first");
+                cache.get(SECOND, FIRST, () -> "second");
+                recordBytes = cache.getLiveBytes() / 2;
+                logSize = Files.size(path);
+                for (int i = 0; i < LOOKUPS; i++) {
+                    cache.get(FIRST, SECOND, () -> "recomputed");
+                }
+                Assert.assertEquals(LOOKUPS, cache.getHits());
+                Assert.assertEquals(logSize, Files.size(path));
+            }
+            Assert.assertTrue(Files.size(path) - logSize <= recordBytes);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ru.bmstu.bioinformatics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.OptionalInt;
+import java.util.Random;
+
+public class ScoreOnlyAlignmentTest {
+    private final String NUCLEOTIDES = "ACGT", AMINO_ACIDS = "ARNDCQEGHILKMFPSTWYV";
+    private final int SEED = 11, NUMBER_OF_PAIRS = 60, MAXIMUM_LENGTH = 300, MAXIMUM_OFFSET = 40,
+            INDEL_DNA_FULL = -5, MATCH_DNA_FULL = 5, MISMATCH_DNA_FULL = -4, INDEL_BLOSUM_62 = -4;
+    private final String[] FREE_ENDS = {"first-start", "second-start", "first-end,second-start",
+            "first-start,second-end", "first-start,second-start", "second-start,second-end"};
+
+    private String randomSequence(Random random, String alphabet) {
+        StringBuilder stringBuilder = new StringBuilder();
+        int length = random.nextInt(MAXIMUM_LENGTH);
+        for (int i = 0; i < length; i++) {
+            stringBuilder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return stringBuilder.toString();
+    }
+
+    @Test
+    public void test1() {
+        Random random = new Random(SEED);
+        ScoringFunction[] scoringFunctions = {new DNAFull(INDEL_DNA_FULL, MATCH_DNA_FULL, MISMATCH_DNA_FULL),
+                new BLOSUM62(INDEL_BLOSUM_62)};
+        String[] alphabets = {NUCLEOTIDES, AMINO_ACIDS};
+
+        for (int pair = 0; pair < NUMBER_OF_PAIRS; pair++) {
+            int alphabet = random.nextInt(alphabets.length);
+            String firstSequence = randomSequence(random, alphabets[alphabet]),
+                    secondSequence = randomSequence(random, alphabets[alphabet]);
+            boolean optimization = random.nextBoolean();
+            int expected = new PairAlignment(firstSequence, secondSequence, scoringFunctions[alphabet], optimization)
+                    .getScore();
+            ScoreOnlyAlignment scoreOnlyAlignment = new ScoreOnlyAlignment(firstSequence, secondSequence,
+                    scoringFunctions[alphabet], optimization);
+
+            Assert.assertEquals(expected, scoreOnlyAlignment.score());
+            int threshold = expected + random.nextInt(2 * MAXIMUM_OFFSET) - MAXIMUM_OFFSET;
+            OptionalInt screened = scoreOnlyAlignment.score(threshold);
+            Assert.assertEquals(expected >= threshold, screened.isPresent());
+            if (screened.isPresent()) {
+                Assert.assertEquals(expected, screened.getAsInt());
+            }
+        }
+    }
+
+    @Test
+    public void test2() {
+        ScoringFunction scoringFunction = new DNAFull(INDEL_DNA_FULL, MATCH_DNA_FULL, MISMATCH_DNA_FULL);
+
+        // A free gap column lets the path start below the checked line, so the early exit must not drop it.
+        ScoreOnlyAlignment freeStart = new ScoreOnlyAlignment("A", "GGCGCGAAACGCCTCCTA", scoringFunction,
+                AlignmentType.parse("semiglobal", "first-end,second-start"));
+        Assert.assertEquals(5, freeStart.score());
+        Assert.assertEquals(OptionalInt.of(5), freeStart.score(5));
+
+        Random random = new Random(SEED);
+        for (int pair = 0; pair < NUMBER_OF_PAIRS; pair++) {
+            String firstSequence = randomSequence(random, NUCLEOTIDES),
+                    secondSequence = randomSequence(random, NUCLEOTIDES);
+            AlignmentType type = AlignmentType.parse("semiglobal", FREE_ENDS[pair % FREE_ENDS.length]);
+            int expected = new PairAlignment(firstSequence, secondSequence, scoringFunction, type).getScore();
+            Assert.assertEquals(OptionalInt.of(expected),
+                    new ScoreOnlyAlignment(firstSequence, secondSequence, scoringFunction, type).score(expected));
+        }
+    }
+}
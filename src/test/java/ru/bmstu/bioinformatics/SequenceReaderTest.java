@@ -0,0 +1,103 @@
+package ru.bmstu.bioinformatics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+public class SequenceReaderTest {
+    private final String FASTA = "ACGTAC\n>first description\nACGTACGTAC\nACGTACGTAC\nAC\n\n>second\r\nNNRYAC\r\nGT\r\n"
+            + ">third\nMKVLAAGIW*\n>empty\n",
+            FASTQ = "@read1 x\nACGT\nAC\n+\n@@II\nII\n@read2\nMKV\n+read2\n+@!\n",
+            SOFT_MASKED = ">masked\nACGTacgtnnACGT\n>protein\nMKvlAA\n";
+    private final String[] FASTA_IDS = {"input.fa", "first", "second", "third", "empty"},
+            FASTA_SEQUENCES = {"ACGTAC", "ACGTACGTACACGTACGTACAC", "NNRYACGT", "MKVLAAGIW*", ""},
+            FASTQ_IDS = {"read1", "read2"},
+            FASTQ_SEQUENCES = {"ACGTAC", "MKV"};
+    private final int[] FASTA_BITS = {2, 2, 4, 5, 2};
+
+    private Path write(Path directory, String name, String content, boolean gzip) throws Exception {
+        Path path = directory.resolve(name);
+        try (OutputStream stream = gzip
+                ? new GZIPOutputStream(Files.newOutputStream(path))
+                : Files.newOutputStream(path)) {
+            stream.write(content.getBytes(StandardCharsets.US_ASCII));
+        }
+        return path;
+    }
+
+    private void assertRecords(String[] ids, String[] sequences, List<FastaRecord> records) {
+        Assert.assertEquals(ids.length, records.size());
+        for (int index = 0; index < ids.length; index++) {
+            Assert.assertEquals(ids[index], records.get(index).getId());
+            Assert.assertEquals(sequences[index], records.get(index).getSequence().toString());
+        }
+    }
+
+    @Test
+    public void test1() throws Exception {
+        Path directory = Files.createTempDirectory("sequences");
+        Path plain = write(directory, "input.fa", FASTA, false);
+        List<FastaRecord> records = SequenceReader.read(plain.toString());
+        assertRecords(FASTA_IDS, FASTA_SEQUENCES, records);
+        for (int index = 0; index < FASTA_BITS.length; index++) {
+            Assert.assertEquals(FASTA_BITS[index],
+                    ((PackedSequence) records.get(index).getSequence()).getBitsPerSymbol());
+        }
+
+        Path compressed = write(directory, "input.fa.gz", FASTA, true);
+        List<FastaRecord> compressedRecords = SequenceReader.read(compressed.toString());
+        Assert.assertEquals(FASTA_IDS.length, compressedRecords.size());
+        for (int index = 1; index < FASTA_IDS.length; index++) {
+            Assert.assertEquals(FASTA_SEQUENCES[index], compressedRecords.get(index).getSequence().toString());
+        }
+
+        assertRecords(FASTQ_IDS, FASTQ_SEQUENCES, SequenceReader.read(write(directory, "reads.fq", FASTQ, false)
+                .toString()));
+        assertRecords(FASTQ_IDS, FASTQ_SEQUENCES, SequenceReader.read(write(directory, "reads.fq.gz", FASTQ, true)
+                .toString()));
+    }
+
+    @Test
+    public void test2() throws Exception {
+        Path directory = Files.createTempDirectory("sequences");
+        Path plain = write(directory, "indexed.fa", FASTA.substring(FASTA.indexOf('>')), false);
+        FastaIndex index = FastaIndex.build(plain.toString());
+        Assert.assertEquals(FASTA_IDS.length - 1, index.getEntries().size());
+        Assert.assertEquals(10, index.getEntry("first").getLineBases());
+        Assert.assertEquals(11, index.getEntry("first").getLineWidth());
+        Assert.assertEquals(8, index.getEntry("second").getLength());
+
+        index.write(FastaIndex.indexPath(plain.toString()));
+        List<FastaRecord> records = SequenceReader.read(plain.toString());
+        for (int record = 1; record < FASTA_IDS.length; record++) {
+            Assert.assertEquals(FASTA_IDS[record], records.get(record - 1).getId());
+            Assert.assertEquals(FASTA_SEQUENCES[record], records.get(record - 1).getSequence().toString());
+        }
+        Assert.assertEquals(FASTA_SEQUENCES[3],
+                SequenceReader.read(plain.toString(), "third").getSequence().toString());
+
+        Path reads = write(directory, "reads.fq", FASTQ, false);
+        Assert.assertEquals(19, FastaIndex.build(reads.toString()).getEntry("read1").getQualityOffset());
+    }
+
+    @Test
+    public void test3() throws Exception {
+        Path directory = Files.createTempDirectory("sequences");
+        List<FastaRecord> records = SequenceReader.read(write(directory, "masked.fa", SOFT_MASKED, false)
+                .toString());
+
+        // Lowercase letters keep the code of their uppercase form and read back unchanged.
+        Assert.assertEquals("ACGTacgtnnACGT", records.get(0).getSequence().toString());
+        Assert.assertEquals(4, ((PackedSequence) records.get(0).getSequence()).getBitsPerSymbol());
+        Assert.assertEquals("MKvlAA", records.get(1).getSequence().toString());
+        Assert.assertEquals(5, ((PackedSequence) records.get(1).getSequence()).getBitsPerSymbol());
+        Assert.assertEquals(2, PackedSequence.pack("acgtACGT".getBytes(StandardCharsets.US_ASCII), 8)
+                .getBitsPerSymbol());
+    }
+}
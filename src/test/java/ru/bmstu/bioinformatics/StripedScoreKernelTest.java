@@ -0,0 +1,72 @@
+package ru.bmstu.bioinformatics;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Random;
+
+@RunWith(Parameterized.class)
+public class StripedScoreKernelTest {
+
+    @Parameterized.Parameters(name = "Test {index}")
+    public static Iterable<Object[]> data() {
+        return Arrays.asList(new Object[][]{
+                {new BLOSUM62(-1), "ARNDCQEGHILKMFPSTWYV"},
+                {new BLOSUM62(-4), "ARNDCQEGHILKMFPSTWYV"},
+                {new DNAFull(-5, 5, -4), "ACGT"},
+                {new Default(-2, 1, -1), "ACGT"}
+        });
+    }
+
+    private final int SEED = 17, NUMBER_OF_TARGETS = 20, MAXIMUM_LENGTH = 300, LONG_LENGTH = 9000;
+
+    private ScoringFunction scoringFunction;
+    private String alphabet;
+
+    private String randomSequence(Random random, int length) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            stringBuilder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return stringBuilder.toString();
+    }
+
+    private void checkTargets(boolean optimization) {
+        Random random = new Random(SEED);
+        String query = randomSequence(random, random.nextInt(MAXIMUM_LENGTH));
+        StripedScoreKernel kernel = new StripedScoreKernel(query, scoringFunction, optimization);
+
+        for (int target = 0; target < NUMBER_OF_TARGETS; target++) {
+            String targetSequence = randomSequence(random, random.nextInt(MAXIMUM_LENGTH));
+            Assert.assertEquals(kernel.score(targetSequence),
+                    new PairAlignment(query, targetSequence, scoringFunction, optimization).getScore());
+        }
+    }
+
+    public StripedScoreKernelTest(ScoringFunction scoringFunction, String alphabet) {
+        this.scoringFunction = scoringFunction;
+        this.alphabet = alphabet;
+    }
+
+    @Test
+    public void test1() {
+        checkTargets(false);
+    }
+
+    @Test
+    public void test2() {
+        checkTargets(true);
+    }
+
+    @Test
+    public void test3() {
+        Random random = new Random(SEED);
+        String query = randomSequence(random, LONG_LENGTH),
+                target = randomSequence(random, LONG_LENGTH);
+        Assert.assertEquals(new StripedScoreKernel(query, scoringFunction, false).score(target),
+                new PairAlignment(query, target, scoringFunction, false, AlignmentStrategy.HIRSCHBERG).getScore());
+    }
+}
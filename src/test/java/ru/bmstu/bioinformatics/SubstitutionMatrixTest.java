@@ -0,0 +1,39 @@
+package ru.bmstu.bioinformatics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+public class SubstitutionMatrixTest {
+    private final String BLOSUM_62 = "BLOSUM62", NUC_4_4 = "NUC.4.4", CUSTOM = "custom",
+            CUSTOM_MATRIX = "# two letters\n   A  B\nA  3 -2\nB -1  4\n";
+    private final int UNKNOWN_SCORE = -9;
+
+    @Test
+    public void test1() {
+        SubstitutionMatrix matrix = MatrixRegistry.get(BLOSUM_62);
+        Assert.assertSame(matrix, MatrixRegistry.get(BLOSUM_62));
+        Assert.assertEquals(4, matrix.getScore('A', 'A'));
+        Assert.assertEquals(11, matrix.getScore('W', 'W'));
+        Assert.assertEquals(-3, matrix.getScore('W', 'A'));
+        Assert.assertEquals(matrix.getMinimum(), matrix.getScore('J', 'A'));
+        Assert.assertEquals(UNKNOWN_SCORE, matrix.withUnknownScore(UNKNOWN_SCORE).getScore('A', 'J'));
+        Assert.assertEquals(4, matrix.withUnknownScore(UNKNOWN_SCORE).getScore('A', 'A'));
+
+        SubstitutionMatrix nucleotides = MatrixRegistry.get(NUC_4_4);
+        Assert.assertEquals(5, nucleotides.getScore('G', 'G'));
+        Assert.assertEquals(1, nucleotides.getScore('A', 'R'));
+    }
+
+    @Test
+    public void test2() throws Exception {
+        SubstitutionMatrix matrix = SubstitutionMatrix.parse(CUSTOM,
+                new BufferedReader(new StringReader(CUSTOM_MATRIX)));
+        Assert.assertEquals(-2, matrix.getScore('A', 'B'));
+        Assert.assertEquals(-1, matrix.getScore('B', 'A'));
+        Assert.assertEquals(-2, matrix.getScore('C', 'C'));
+        Assert.assertEquals(4, matrix.getMaximum());
+    }
+}
@@ -0,0 +1,58 @@
+package ru.bmstu.bioinformatics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class WavefrontFillTest {
+    private final String NUCLEOTIDES = "ACGT", EMPTY = "", SEQUENCE = "GATTACA";
+    private final int SEED = 3, NUMBER_OF_PAIRS = 10, MAXIMUM_LENGTH = 700, MATCH = 5, MISMATCH = -4, INDEL = -5,
+            THREADS = 4, SEQUENTIAL = 1;
+
+    private String randomSequence(Random random) {
+        StringBuilder stringBuilder = new StringBuilder();
+        int length = random.nextInt(MAXIMUM_LENGTH);
+        for (int i = 0; i < length; i++) {
+            stringBuilder.append(NUCLEOTIDES.charAt(random.nextInt(NUCLEOTIDES.length())));
+        }
+        return stringBuilder.toString();
+    }
+
+    private void assertSameAsSequential(String first, String second, ScoringFunction scoringFunction,
+                                        AlignmentType type) {
+        PairAlignment expected = new PairAlignment(first, second, scoringFunction, type, AlignmentStrategy.FULL,
+                SEQUENTIAL),
+                actual = new PairAlignment(first, second, scoringFunction, type, AlignmentStrategy.FULL, THREADS);
+        Assert.assertEquals(expected.getScore(), actual.getScore());
+        Assert.assertEquals(expected.getResult().toRecord(first, second).getCigar(),
+                actual.getResult().toRecord(first, second).getCigar());
+    }
+
+    @Test
+    public void test1() {
+        ScoringFunction scoringFunction = new DNAFull(INDEL, MATCH, MISMATCH);
+
+        // With an empty sequence there are no tiles; the score is that of the gap line or the gap column.
+        for (AlignmentType type : new AlignmentType[]{AlignmentType.GLOBAL, AlignmentType.OVERLAP}) {
+            Assert.assertEquals(type == AlignmentType.GLOBAL ? INDEL * SEQUENCE.length() : 0,
+                    new PairAlignment(EMPTY, SEQUENCE, scoringFunction, type, AlignmentStrategy.FULL, THREADS)
+                            .getScore());
+            assertSameAsSequential(EMPTY, SEQUENCE, scoringFunction, type);
+            assertSameAsSequential(SEQUENCE, EMPTY, scoringFunction, type);
+            assertSameAsSequential(EMPTY, EMPTY, scoringFunction, type);
+        }
+    }
+
+    @Test
+    public void test2() {
+        Random random = new Random(SEED);
+        ScoringFunction scoringFunction = new DNAFull(INDEL, MATCH, MISMATCH);
+
+        // Pairs spanning several tiles in both directions, through the pool shared by every fill.
+        for (int pair = 0; pair < NUMBER_OF_PAIRS; pair++) {
+            assertSameAsSequential(randomSequence(random), randomSequence(random), scoringFunction,
+                    pair % 2 == 0 ? AlignmentType.GLOBAL : AlignmentType.OVERLAP);
+        }
+    }
+}